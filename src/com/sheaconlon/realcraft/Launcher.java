@@ -2,35 +2,484 @@ package com.sheaconlon.realcraft;
 
 import com.sheaconlon.realcraft.concurrency.Runner;
 import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.entities.EntityStore;
+import com.sheaconlon.realcraft.entities.EntityTicker;
+import com.sheaconlon.realcraft.entities.MovementSystem;
+import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.entities.WanderSystem;
 import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.metrics.MetricsDumper;
+import com.sheaconlon.realcraft.metrics.ThroughputReporter;
+import com.sheaconlon.realcraft.network.Client;
+import com.sheaconlon.realcraft.network.LoadTest;
+import com.sheaconlon.realcraft.network.Protocol;
+import com.sheaconlon.realcraft.network.Server;
+import com.sheaconlon.realcraft.renderer.CameraPathRecorder;
 import com.sheaconlon.realcraft.renderer.Prerenderer;
 import com.sheaconlon.realcraft.renderer.Renderer;
+import com.sheaconlon.realcraft.simulator.Simulator;
+import com.sheaconlon.realcraft.storage.ChunkCache;
+import com.sheaconlon.realcraft.storage.EditJournal;
+import com.sheaconlon.realcraft.storage.SaveWorker;
+import com.sheaconlon.realcraft.storage.WorldStorage;
+import com.sheaconlon.realcraft.ui.InputRecorder;
+import com.sheaconlon.realcraft.ui.InputReplayer;
+import com.sheaconlon.realcraft.ui.InputSource;
+import com.sheaconlon.realcraft.ui.InputTraceReader;
+import com.sheaconlon.realcraft.ui.InputTraceWriter;
+import com.sheaconlon.realcraft.ui.ScriptedInput;
 import com.sheaconlon.realcraft.ui.UserInterface;
+import com.sheaconlon.realcraft.ui.Window;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+import com.sheaconlon.realcraft.world.PrefetchPlanner;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.PriorityBlockingQueue;
 
+/**
+ * The entry point of Realcraft.
+ *
+ * Usage:
+ * <pre>
+ * Launcher [--record-camera FILE] [--record-input FILE | --replay-input FILE]
+ *          [--connect HOST[:PORT] [--compress] | [--seed SEED] [--world DIR [--full-chunks]] [--prefetch SECONDS]]
+ * Launcher --headless [--duration SECONDS] [--stats-interval SECONDS] [--record-camera FILE]
+ *                     [--record-input FILE | --replay-input FILE]
+ *                     [--connect HOST[:PORT] [--compress]
+ *                      | [--seed SEED] [--world DIR [--full-chunks]] [--prefetch SECONDS]]
+ * Launcher --serve PORT [--send-budget BYTES] [--duration SECONDS] [--stats-interval SECONDS]
+ * Launcher --load-test BOTS [--animals N] [--send-budget BYTES] [--duration SECONDS] [--stats-interval SECONDS]
+ * </pre>
+ * Headless mode opens no window and creates no OpenGL context, so it runs on machines with no display. It runs
+ * generation, simulation and entity ticking around a virtual player, which walks forward while slowly turning, and
+ * prints throughput stats every {@code --stats-interval} seconds (by default {@value #DEFAULT_STATS_INTERVAL}). If
+ * {@code --duration} is given, it stops after that many seconds and prints the totals.
+ *
+ * If {@code --record-camera} is given, the player's pose is sampled every frame and saved on exit as a
+ * {@link com.sheaconlon.realcraft.renderer.CameraPath}, for replay by the render benchmark.
+ *
+ * If {@code --record-input} is given, the input and the player's state on every user interface tick are written to
+ * an input trace. If {@code --replay-input} is given, the player instead follows a trace recorded earlier, tick by
+ * tick, so that runs of different builds fly the same way; unless {@code --duration} is given, the game stops when the
+ * trace runs out.
+ *
+ * {@code --serve} runs only a {@link Server}, with no player of its own, printing throughput stats as in headless
+ * mode. {@code --connect} makes the game a {@link Client} of such a server, which generates and simulates nothing
+ * itself; {@code --compress} asks the server to compress the chunks it sends. {@code --send-budget} sets how many
+ * bytes of chunks the server may send each client per server tick; see {@link Server#setSendBudget(long)}.
+ *
+ * {@code --seed} sets the seed of the terrain generated, by default 0. {@code --world} loads the world from a
+ * directory, creating it with the seed if it does not exist, and saves the chunks generated back to it every
+ * {@value #AUTOSAVE_INTERVAL} seconds in the background and on exit; see {@link SaveWorker}. Edits in between are
+ * journaled, so that they survive a crash; see {@link EditJournal}. Saved worlds store only
+ * the blocks edited since the terrain was generated, unless created with {@code --full-chunks}; see
+ * {@link WorldStorage}.
+ *
+ * Chunks the game has generated are kept in a {@link ChunkCache} once no ticket has covered them for a while: deflated
+ * in memory a little way off, and spilled to a temporary directory farther away. Chunks the player is predicted to
+ * reach within {@code --prefetch} seconds (by default {@value PrefetchPlanner#DEFAULT_HORIZON}) are generated and
+ * meshed ahead of time; 0 turns this off. See {@link PrefetchPlanner}.
+ *
+ * {@code --load-test} runs a {@link LoadTest}: a local server, and that many bots connected to it from the same
+ * process, with {@code --animals} animals (by default {@value #DEFAULT_LOAD_TEST_ANIMALS}) wandering around the spawn
+ * point. It prints progress every {@code --stats-interval} seconds and a report of the server's tick times, send
+ * queues and the bots' input latencies when it stops.
+ */
 public class Launcher {
-    public static void main(final String[] args) {
-        final UserInterface ui = new UserInterface();
+    private static final double DEFAULT_STATS_INTERVAL = 5;
+    private static final double AUTOSAVE_INTERVAL = 60;
+    private static final int DEFAULT_LOAD_TEST_ANIMALS = 1_000;
+
+    /**
+     * The seed of the load test's bots' paths and animals' positions, fixed so that runs are comparable.
+     */
+    private static final long LOAD_TEST_SEED = 0;
+
+    /**
+     * The distance the virtual player's cursor moves sideways on each user interface tick. In pixels. Small enough
+     * that the player walks in a wide circle, reaching new chunks as it goes.
+     */
+    private static final double VIRTUAL_PLAYER_TURN = 0.2;
+
+    private static final long MILLISECONDS_PER_SECOND = 1_000;
+    private static final double NANOSECONDS_PER_MILLISECOND = 1_000_000;
+
+    public static void main(final String[] args) throws InterruptedException, IOException {
+        boolean headless = false;
+        double duration = Double.POSITIVE_INFINITY;
+        double statsInterval = DEFAULT_STATS_INTERVAL;
+        Path cameraPathFile = null;
+        Path recordInputFile = null;
+        Path replayInputFile = null;
+        int servePort = -1;
+        long sendBudget = -1;
+        int loadTestBots = -1;
+        int loadTestAnimals = DEFAULT_LOAD_TEST_ANIMALS;
+        String serverAddress = null;
+        boolean compress = false;
+        Path worldDir = null;
+        Long seed = null;
+        boolean fullChunks = false;
+        double prefetchHorizon = PrefetchPlanner.DEFAULT_HORIZON;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--headless")) {
+                headless = true;
+            } else if (args[i].equals("--duration") && i + 1 < args.length) {
+                duration = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--stats-interval") && i + 1 < args.length) {
+                statsInterval = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--record-camera") && i + 1 < args.length) {
+                cameraPathFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--record-input") && i + 1 < args.length) {
+                recordInputFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--replay-input") && i + 1 < args.length) {
+                replayInputFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--serve") && i + 1 < args.length) {
+                servePort = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--load-test") && i + 1 < args.length) {
+                loadTestBots = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--animals") && i + 1 < args.length) {
+                loadTestAnimals = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--send-budget") && i + 1 < args.length) {
+                sendBudget = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--connect") && i + 1 < args.length) {
+                serverAddress = args[++i];
+            } else if (args[i].equals("--compress")) {
+                compress = true;
+            } else if (args[i].equals("--world") && i + 1 < args.length) {
+                worldDir = Paths.get(args[++i]);
+            } else if (args[i].equals("--seed") && i + 1 < args.length) {
+                seed = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--full-chunks")) {
+                fullChunks = true;
+            } else if (args[i].equals("--prefetch") && i + 1 < args.length) {
+                prefetchHorizon = Double.parseDouble(args[++i]);
+            } else {
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        if (recordInputFile != null && replayInputFile != null) {
+            throw new IllegalArgumentException("cannot both record and replay input");
+        }
+        if (servePort >= 0) {
+            Launcher.serve(servePort, sendBudget, duration, statsInterval);
+            return;
+        }
+        if (loadTestBots >= 0) {
+            Launcher.loadTest(loadTestBots, loadTestAnimals, sendBudget, duration, statsInterval);
+            return;
+        }
+
+        final Window window = headless ? null : new Window();
+        InputSource input = headless
+                ? new ScriptedInput(VIRTUAL_PLAYER_TURN, 0, InputSource.Control.FORWARD)
+                : window;
+        final InputReplayer replayer = replayInputFile == null ? null
+                : new InputReplayer(InputTraceReader.open(replayInputFile), window);
+        if (replayer != null) {
+            input = replayer;
+        }
+        final InputRecorder recorder = recordInputFile == null ? null
+                : new InputRecorder(input, InputTraceWriter.create(recordInputFile));
+        if (recorder != null) {
+            input = recorder;
+        }
+        final Client client = serverAddress == null ? null
+                : new Client(Launcher.parseAddress(serverAddress), compress, input);
+        if (client != null && worldDir != null) {
+            throw new IllegalArgumentException("cannot both connect to a server and load a world");
+        }
+        final WorldStorage storage = worldDir == null ? null
+                : Launcher.openWorld(worldDir, seed, fullChunks);
+        final Generator generator = client != null ? null
+                : storage != null ? new Generator(storage)
+                : new Generator(seed == null ? 0 : seed);
+
+        final List<Worker> workers;
+        final ThroughputReporter reporter;
+        if (headless) {
+            reporter = new ThroughputReporter(statsInterval, System.out);
+            workers = Launcher.headlessWorkers(new UserInterface(input), client, generator, reporter);
+        } else {
+            reporter = null;
+            workers = Launcher.windowedWorkers(new UserInterface(window, input), client, generator);
+        }
+        final MetricsDumper metricsDumper = MetricsDumper.fromSystemProperties();
+        if (metricsDumper != null) {
+            workers.add(metricsDumper);
+        }
+        final CameraPathRecorder cameraPathRecorder = cameraPathFile == null ? null : new CameraPathRecorder();
+        if (cameraPathRecorder != null) {
+            workers.add(cameraPathRecorder);
+        }
+        final SaveWorker saveWorker = storage == null ? null
+                : new SaveWorker(storage, generator, AUTOSAVE_INTERVAL);
+        if (saveWorker != null) {
+            workers.add(saveWorker);
+            workers.add(storage.getJournal());
+            LightEngine.WORLD.addEditListener(storage::journal);
+        }
+        final ChunkCache cache = generator == null ? null
+                : new ChunkCache(generator, Files.createTempDirectory("realcraft-chunks"));
+        if (cache != null) {
+            workers.add(cache);
+        }
+        if (generator != null && prefetchHorizon > 0) {
+            workers.add(new PrefetchPlanner(ChunkTickets.WORLD, prefetchHorizon, Renderer.RENDER_DISTANCE));
+        }
+        if (duration != Double.POSITIVE_INFINITY) {
+            Launcher.stopAfter(Thread.currentThread(), duration);
+        } else if (replayer != null) {
+            Launcher.stopWhenFinished(Thread.currentThread(), replayer);
+        }
+        Launcher.run(workers);
+        if (client != null) {
+            client.close();
+        }
+        if (recorder != null) {
+            recorder.close();
+        }
+        if (replayer != null) {
+            System.out.println("replayed " + replayer.getTicks() + " ticks of input");
+            replayer.close();
+        }
+        if (cameraPathRecorder != null) {
+            cameraPathRecorder.getPath().save(cameraPathFile);
+        }
+        if (saveWorker != null) {
+            Launcher.saveWorld(storage, saveWorker);
+        }
+        if (reporter != null) {
+            System.out.print(reporter.formatTotal());
+            if (cache != null) {
+                System.out.print(cache.format());
+            }
+            System.out.print(ChunkTickets.WORLD.format());
+            System.out.print(Metrics.format());
+        }
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    /**
+     * Run a server until the current thread is interrupted or some time has passed, printing throughput stats.
+     * @param port The port to listen on.
+     * @param sendBudget The bytes of chunks to send each client per tick, or -1 for the server's default.
+     * @param duration The time to run for, or infinity. In seconds.
+     * @param statsInterval The time between throughput stats. In seconds.
+     */
+    private static void serve(final int port, final long sendBudget, final double duration,
+                              final double statsInterval) throws InterruptedException, IOException {
+        final Server server = new Server(port);
+        if (sendBudget != -1) {
+            server.setSendBudget(sendBudget);
+        }
+        System.out.println("serving on port " + server.getPort());
+        final ThroughputReporter reporter = new ThroughputReporter(statsInterval, System.out);
+        final List<Worker> workers = new ArrayList<>(Arrays.asList(server, reporter));
+        final MetricsDumper metricsDumper = MetricsDumper.fromSystemProperties();
+        if (metricsDumper != null) {
+            workers.add(metricsDumper);
+        }
+        if (duration != Double.POSITIVE_INFINITY) {
+            Launcher.stopAfter(Thread.currentThread(), duration);
+        }
+        Launcher.run(workers);
+        server.close();
+        System.out.print(reporter.formatTotal());
+        System.out.print(Metrics.format());
+    }
+
+    /**
+     * Run a load test until the current thread is interrupted or some time has passed, printing progress and then a
+     * report.
+     * @param bots The number of bots.
+     * @param animals The number of animals.
+     * @param sendBudget The bytes of chunks to send each client per tick, or -1 for the server's default.
+     * @param duration The time to run for, or infinity. In seconds.
+     * @param statsInterval The time between progress lines. In seconds.
+     */
+    private static void loadTest(final int bots, final int animals, final long sendBudget, final double duration,
+                                 final double statsInterval) throws IOException {
+        final LoadTest loadTest = new LoadTest(bots, animals, LOAD_TEST_SEED);
+        if (sendBudget != -1) {
+            loadTest.getServer().setSendBudget(sendBudget);
+        }
+        System.out.println("load testing with " + bots + " bots and " + animals + " animals");
+        loadTest.run(duration, statsInterval, System.out);
+        System.out.print(loadTest.formatReport());
+        loadTest.close();
+        System.out.print(Metrics.format());
+    }
+
+    /**
+     * Open a saved world, or create it if it does not exist.
+     * @param dir The directory the world is saved in.
+     * @param seed The seed to create the world with, or null for 0. Must match the world's if given and it exists.
+     * @param fullChunks Whether to create the world storing chunks whole.
+     * @return The saved world.
+     */
+    private static WorldStorage openWorld(final Path dir, final Long seed, final boolean fullChunks)
+            throws IOException {
+        if (!WorldStorage.exists(dir)) {
+            return WorldStorage.create(dir, fullChunks ? WorldStorage.Mode.FULL : WorldStorage.Mode.DELTA,
+                    seed == null ? 0 : seed);
+        }
+        final WorldStorage storage = WorldStorage.open(dir);
+        if (seed != null && seed != storage.getSeed()) {
+            throw new IllegalArgumentException("world in " + dir + " has seed " + storage.getSeed());
+        }
+        return storage;
+    }
+
+    /**
+     * Save every chunk of a saved world, and close it.
+     * @param storage The saved world.
+     * @param saveWorker The save worker of the saved world.
+     */
+    private static void saveWorld(final WorldStorage storage, final SaveWorker saveWorker) throws IOException {
+        final long start = System.nanoTime();
+        saveWorker.saveNow();
+        System.out.printf("saved world in %.1f ms, %d bytes on disk%n",
+                (System.nanoTime() - start) / NANOSECONDS_PER_MILLISECOND, storage.getDiskBytes());
+        storage.close();
+    }
+
+    /**
+     * Parse the address of a server.
+     * @param address The address, as a host name or IP address, optionally followed by a colon and a port. If no
+     *                port is given, {@link Protocol#DEFAULT_PORT} is used.
+     * @return The address.
+     */
+    private static InetSocketAddress parseAddress(final String address) {
+        final int colon = address.lastIndexOf(':');
+        if (colon == -1) {
+            return new InetSocketAddress(address, Protocol.DEFAULT_PORT);
+        }
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    /**
+     * Get the workers of a game with a window: a user interface, rendering, and everything behind them.
+     * @param ui The user interface, which must have a window.
+     * @param client The client to take the world from, or null to generate and simulate it locally.
+     * @param generator The generator of the world, if it is generated locally.
+     * @return The workers.
+     */
+    private static List<Worker> windowedWorkers(final UserInterface ui, final Client client,
+                                                final Generator generator) {
         final Renderer renderer = new Renderer(ui);
-        final Generator generator = new Generator();
-        final Prerenderer prerenderer = new Prerenderer(renderer);
-        final Worker[] workers = new Worker[]{
-                ui,
-                renderer,
-                generator,
-                prerenderer
-        };
+        final List<Worker> workers = new ArrayList<>(Arrays.asList(ui, renderer));
+        if (client == null) {
+            workers.add(generator);
+            workers.add(new Prerenderer(renderer, generator::isGenerated));
+            workers.addAll(Launcher.simulationWorkers(generator));
+        } else {
+            workers.add(client);
+            workers.add(new Prerenderer(renderer, client::hasChunk));
+        }
+        return workers;
+    }
+
+    /**
+     * Get the workers of a game with no window, whose player is driven by a virtual player or a replayed trace.
+     * @param ui The user interface, which must have no window.
+     * @param client The client to take the world from, or null to generate and simulate it locally.
+     * @param generator The generator of the world, if it is generated locally.
+     * @param reporter The reporter to print throughput stats with.
+     * @return The workers.
+     */
+    private static List<Worker> headlessWorkers(final UserInterface ui, final Client client,
+                                                final Generator generator, final ThroughputReporter reporter) {
+        final List<Worker> workers = new ArrayList<>(Arrays.asList(ui, reporter));
+        if (client == null) {
+            workers.add(generator);
+            workers.addAll(Launcher.simulationWorkers(generator));
+        } else {
+            workers.add(client);
+        }
+        return workers;
+    }
+
+    /**
+     * Get the workers which simulate the world, which run with or without a window.
+     * @param generator The generator of the world, which says which chunks hold their final blocks.
+     * @return The workers.
+     */
+    private static List<Worker> simulationWorkers(final Generator generator) {
+        final Simulator simulator = new Simulator(generator::isGenerated, ChunkTickets.WORLD);
+        simulator.add(Player.PLAYER);
+        final EntityTicker entityTicker = new EntityTicker(EntityStore.WORLD, ChunkTickets.WORLD);
+        entityTicker.add(EntityStore.Archetype.ANIMAL, new WanderSystem());
+        entityTicker.add(EntityStore.Archetype.ANIMAL, new MovementSystem());
+        return Arrays.asList(simulator, entityTicker);
+    }
 
+    /**
+     * Interrupt a thread after some time, from a daemon thread.
+     * @param thread The thread.
+     * @param duration The time. In seconds.
+     */
+    private static void stopAfter(final Thread thread, final double duration) {
+        final Thread stopper = new Thread(() -> {
+            try {
+                Thread.sleep((long)(duration * MILLISECONDS_PER_SECOND));
+            } catch (final InterruptedException e) {
+                return;
+            }
+            thread.interrupt();
+        });
+        stopper.setName("Stopper");
+        stopper.setDaemon(true);
+        stopper.start();
+    }
+
+    /**
+     * Interrupt a thread once an input replayer's trace runs out, from a daemon thread.
+     * @param thread The thread.
+     * @param replayer The input replayer.
+     */
+    private static void stopWhenFinished(final Thread thread, final InputReplayer replayer) {
+        final Thread stopper = new Thread(() -> {
+            try {
+                replayer.awaitFinished();
+            } catch (final InterruptedException e) {
+                return;
+            }
+            thread.interrupt();
+        });
+        stopper.setName("Stopper");
+        stopper.setDaemon(true);
+        stopper.start();
+    }
+
+    /**
+     * Tick some workers on a pool of runners, one per processor, until the current thread is interrupted. The
+     * current thread becomes the first runner.
+     * @param workers The workers.
+     */
+    private static void run(final List<Worker> workers) throws InterruptedException {
         final Queue<Worker> sharedWorkers = new PriorityBlockingQueue<>();
         final int nThreads = Runtime.getRuntime().availableProcessors(); // TODO: Check value periodically per https://docs.oracle.com/javase/7/docs/api/java/lang/Runtime.html#availableProcessors().
         final Runner[] runners = new Runner[nThreads];
         for (int i = 0; i < runners.length; i++) {
-            runners[i] = new Runner(sharedWorkers);
+            runners[i] = new Runner(sharedWorkers, "Runner #" + i);
         }
         int dedicatedCurrRunner = 1 % runners.length;
         for (final Worker w : workers) {
+            w.registerMetrics();
             if (w.needsDedicatedThread()) {
                 if (w.needsMainThread()) {
                     runners[0].assign(w);
@@ -54,5 +503,8 @@ public class Launcher {
         for (int i = 0; i < threads.length; i++) {
             threads[i].interrupt();
         }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+        }
     }
-}
\ No newline at end of file
+}
@@ -17,6 +17,7 @@ public class AirBlock extends Block {
     private static final double MASS = 1;
     private static final List<Hitbox> HITBOXES = Collections.emptyList();
     private static final List<float[]> FACE_COLORS = Collections.emptyList();
+    private static final int LIGHT_OPACITY = 0;
 
     /**
      * Create an air block.
@@ -46,6 +47,11 @@ public class AirBlock extends Block {
     public List<Hitbox> getHitboxes() {
         return HITBOXES;
     }
+
+    @Override
+    public int getLightOpacity() {
+        return LIGHT_OPACITY;
+    }
 }
 
 // TODO: Optimize rendering by rendering only those blocks touching air/a translucent block.
@@ -22,6 +22,11 @@ public abstract class Block extends WorldObject {
     // ##### PUBLIC STATIC FINAL #####
     public static final int SIZE = 1;
 
+    /**
+     * The opacity of a block which lets no light through. See {@link #getLightOpacity()}.
+     */
+    public static final int OPAQUE = 15;
+
     // ##### PRIVATE STATIC FINAL #####
     private static final float[] FRONT_NORMAL = new float[]{0, 0, 1};
     private static final float[] LEFT_NORMAL = new float[]{-1, 0, 0};
@@ -110,4 +115,23 @@ public abstract class Block extends WorldObject {
     public List<Hitbox> getHitboxes() {
         return this.hitboxes;
     }
+
+    /**
+     * Get how much this block dims light passing through it.
+     *
+     * Light loses one level for each block it crosses, plus this block's opacity for crossing this block. A block
+     * of opacity {@link #OPAQUE} lets no light through.
+     * @return The opacity of this block. Between 0 and {@link #OPAQUE}.
+     */
+    public int getLightOpacity() {
+        return OPAQUE;
+    }
+
+    /**
+     * Get the level of the light this block gives off.
+     * @return The level of the light this block gives off. Between 0 and 15.
+     */
+    public int getLightEmission() {
+        return 0;
+    }
 }
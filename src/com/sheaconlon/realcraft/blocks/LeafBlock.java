@@ -20,6 +20,7 @@ public class LeafBlock extends Block {
             LEAF_GREEN,
             LEAF_GREEN
     ).collect(Collectors.toList()));
+    private static final int LIGHT_OPACITY = 1;
 
     /**
      * Create a leaf block.
@@ -33,4 +34,9 @@ public class LeafBlock extends Block {
     protected List<float[]> getFaceColors() {
         return FACE_COLORS;
     }
+
+    @Override
+    public int getLightOpacity() {
+        return LIGHT_OPACITY;
+    }
 }
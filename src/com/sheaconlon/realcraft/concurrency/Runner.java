@@ -1,5 +1,10 @@
 package com.sheaconlon.realcraft.concurrency;
 
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.metrics.SchedulerWaitEvent;
+
 import java.util.PriorityQueue;
 import java.util.Queue;
 
@@ -15,13 +20,37 @@ public class Runner implements Runnable {
 
     private final Queue<Worker> assignedWorkers;
 
+    /**
+     * How long this runner spends choosing each worker to tick, including waiting for the shared queue's lock.
+     */
+    private final Histogram queueWait;
+
+    /**
+     * The time this runner has spent sleeping because no worker was due. In nanoseconds.
+     */
+    private final Counter idleTime;
+
+    /**
+     * The time this runner has spent ticking workers. In nanoseconds.
+     */
+    private final Counter busyTime;
+
+    /**
+     * The Flight Recorder event for the current wait between ticks, or null if this runner is ticking a worker.
+     */
+    private SchedulerWaitEvent waitEvent;
+
     /**
      * Create a runner.
      * @param sharedWorkers Workers which this runner should tick. This queue may be shared with other runners.
+     * @param name The name to report this runner's metrics under. See {@link Metrics}.
      */
-    public Runner(final Queue<Worker> sharedWorkers) {
+    public Runner(final Queue<Worker> sharedWorkers, final String name) {
         this.sharedWorkers = sharedWorkers;
         this.assignedWorkers = new PriorityQueue<>();
+        this.queueWait = Metrics.histogram(name, "queueWait");
+        this.idleTime = Metrics.counter(name, "idleNanoseconds");
+        this.busyTime = Metrics.counter(name, "busyNanoseconds");
     }
 
     /**
@@ -33,6 +62,11 @@ public class Runner implements Runnable {
             w.initInThread();
         }
         while (!Thread.interrupted()) {
+            final long searchStart = System.nanoTime();
+            if (this.waitEvent == null) {
+                this.waitEvent = new SchedulerWaitEvent();
+                this.waitEvent.begin();
+            }
             Worker topSharedWorker = this.sharedWorkers.poll();
             if (topSharedWorker != null && topSharedWorker.timeUntilTickDue() > MINIMUM_TIME_UNTIL_DUE) {
                 this.sharedWorkers.add(topSharedWorker);
@@ -44,35 +78,54 @@ public class Runner implements Runnable {
                 topAssignedWorker = null;
             }
             if (topSharedWorker == null && topAssignedWorker == null) {
+                this.waitEvent.addSleep();
+                final long sleepStart = System.nanoTime();
                 try {
                     Thread.sleep(NO_WORKER_SLEEP_TIME);
                 } catch (final InterruptedException e) {
                     return;
+                } finally {
+                    this.idleTime.add(System.nanoTime() - sleepStart);
                 }
                 continue;
             }
             if (topSharedWorker == null) {
-                topAssignedWorker.tick();
+                this.tick(topAssignedWorker, searchStart);
                 this.assignedWorkers.add(topAssignedWorker);
                 continue;
             }
             if (topAssignedWorker == null) {
-                topSharedWorker.tick();
+                this.tick(topSharedWorker, searchStart);
                 this.sharedWorkers.add(topSharedWorker);
                 continue;
             }
             if (topSharedWorker.compareTo(topAssignedWorker) < 0) { // Ties go to assigned workers.
                 this.assignedWorkers.add(topAssignedWorker);
-                topSharedWorker.tick();
+                this.tick(topSharedWorker, searchStart);
                 this.sharedWorkers.add(topSharedWorker);
             } else {
                 this.sharedWorkers.add(topSharedWorker);
-                topAssignedWorker.tick();
+                this.tick(topAssignedWorker, searchStart);
                 this.assignedWorkers.add(topAssignedWorker);
             }
         }
     }
 
+    /**
+     * Tick a worker, recording how long it took to choose it and how long the tick took.
+     * @param w The worker.
+     * @param searchStart The time at which this runner started choosing a worker. As given by
+     *                    {@link System#nanoTime()}.
+     */
+    private void tick(final Worker w, final long searchStart) {
+        final long tickStart = System.nanoTime();
+        this.queueWait.record(tickStart - searchStart);
+        this.waitEvent.commit();
+        this.waitEvent = null;
+        w.tick();
+        this.busyTime.add(w.getLastTickEndTime() - tickStart);
+    }
+
     /**
      * Assign a worker for this runner to tick. This worker is not ticked by other runners. Should not be called
      * once {@link #run()} is called.
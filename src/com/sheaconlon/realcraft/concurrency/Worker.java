@@ -1,5 +1,8 @@
 package com.sheaconlon.realcraft.concurrency;
 
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.metrics.WorkerTickEvent;
 import com.sheaconlon.realcraft.utilities.RollingAverager;
 
 /**
@@ -20,17 +23,40 @@ public abstract class Worker implements Comparable<Worker> {
 
     private long lastTickTime;
 
+    private long lastTickEndTime;
+
     private final RollingAverager tickIntervalAverager;
 
+    /**
+     * How long calls to {@link #tick(double)} take.
+     */
+    private Histogram tickDuration;
+
+    /**
+     * How long after they were due calls to {@link #tick(double)} start. See {@link #getTargetFreq()}.
+     */
+    private Histogram tickLateness;
+
     /**
      * Create a worker.
      *
      * It will consider its first tick to have occurred upon construction.
      */
     protected Worker() {
-        this.lastTickTime = System.nanoTime();
         this.tickIntervalAverager = new RollingAverager(Worker.AVERAGE_TICK_INTERVAL_SAMPLE_SIZE);
+        this.tickDuration = new Histogram();
+        this.tickLateness = new Histogram();
         this.lastTickTime = System.nanoTime();
+        this.lastTickEndTime = this.lastTickTime;
+    }
+
+    /**
+     * Register this worker's tick duration and lateness histograms with {@link Metrics}, under its name. Until this
+     * is called, they are recorded but not reported. Should be called before this worker is first ticked.
+     */
+    public void registerMetrics() {
+        this.tickDuration = Metrics.histogram(this.toString(), "tickDuration");
+        this.tickLateness = Metrics.histogram(this.toString(), "tickLateness");
     }
 
     /**
@@ -60,13 +86,37 @@ public abstract class Worker implements Comparable<Worker> {
     public abstract boolean needsDedicatedThread();
 
     /**
-     * Record the interval that has passed since the last call to this method and do some bit of work.
+     * Record the interval that has passed since the last call to this method and do some bit of work, recording
+     * how late the call was and how long the work took.
      */
     void tick() {
-        final double elapsedTime = nsToS(System.nanoTime() - this.lastTickTime);
-        this.lastTickTime = System.nanoTime();
+        final WorkerTickEvent event = new WorkerTickEvent();
+        event.begin();
+        final long start = System.nanoTime();
+        final long elapsed = start - this.lastTickTime;
+        // A worker with an infinite target frequency is always due, so its lateness is the whole interval.
+        final long period = (long)(NANOSECONDS_PER_SECOND / this.getTargetFreq());
+        final long lateness = Math.max(0, elapsed - period);
+        this.tickLateness.record(lateness);
+        this.lastTickTime = start;
+        final double elapsedTime = nsToS(elapsed);
         this.tickIntervalAverager.add(elapsedTime);
         this.tick(elapsedTime);
+        this.lastTickEndTime = System.nanoTime();
+        this.tickDuration.record(this.lastTickEndTime - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.set(this.toString(), lateness);
+            event.commit();
+        }
+    }
+
+    /**
+     * @return The time at which the last call to {@link #tick()} returned, or at which this worker was created if
+     * there has been none. As given by {@link System#nanoTime()}.
+     */
+    long getLastTickEndTime() {
+        return this.lastTickEndTime;
     }
 
     /**
@@ -17,18 +17,33 @@ public abstract class Animal extends Entity {
      */
     private static final double VERT_ORIENT_MAX = 0.999 * Math.PI / 2;
 
-    private double vertOrient;
+    /**
+     * Create an animal in the world's entity store.
+     * @param position See {@link WorldObject#getPos()}.
+     * @param velocity See {@link WorldObject#getVelocity()}.
+     * @param orient See {@link WorldObject#getOrient()}.
+     * @param vertOrient See {@link #getVertOrient()}.
+     */
+    public Animal(final Vector position, final Vector velocity, final double orient, final double vertOrient) {
+        this(EntityStore.WORLD, EntityStore.Archetype.ANIMAL, position, velocity, orient, vertOrient);
+    }
 
     /**
      * Create an animal.
+     * @param store See {@link Entity#getStore()}.
+     * @param archetype The archetype of the animal. Must have a vertical orientation.
      * @param position See {@link WorldObject#getPos()}.
      * @param velocity See {@link WorldObject#getVelocity()}.
      * @param orient See {@link WorldObject#getOrient()}.
      * @param vertOrient See {@link #getVertOrient()}.
      */
-    public Animal(final Vector position, final Vector velocity, final double orient, final double vertOrient) {
-        super(position, orient, velocity);
-        this.vertOrient = vertOrient;
+    protected Animal(final EntityStore store, final EntityStore.Archetype archetype, final Vector position,
+                     final Vector velocity, final double orient, final double vertOrient) {
+        super(store, archetype, position, orient, velocity);
+        if (!archetype.hasVertOrient()) {
+            throw new IllegalArgumentException("archetype of an animal must have a vertical orientation");
+        }
+        this.setVertOrient(vertOrient);
     }
 
     /**
@@ -38,7 +53,7 @@ public abstract class Animal extends Entity {
      * @return This animal's look direction. In radians.
      */
     public double getVertOrient() {
-        return this.vertOrient;
+        return this.table().getVertOrient()[this.row()];
     }
 
     /**
@@ -46,7 +61,9 @@ public abstract class Animal extends Entity {
      * @param delta The amount to change it by. In radians.
      */
     public void changeVertOrient(final double delta) {
-        this.setVertOrient(this.getVertOrient() + delta);
+        synchronized (this.getLock()) {
+            this.setVertOrient(this.getVertOrient() + delta);
+        }
     }
 
     /**
@@ -54,8 +71,17 @@ public abstract class Animal extends Entity {
      * @param vertOrient The new look direction. In radians.
      */
     public void setVertOrient(final double vertOrient) {
-        this.vertOrient = vertOrient;
-        this.vertOrient = Math.max(Animal.VERT_ORIENT_MIN, this.vertOrient);
-        this.vertOrient = Math.min(Animal.VERT_ORIENT_MAX, this.vertOrient);
+        synchronized (this.getLock()) {
+            this.table().getVertOrient()[this.row()] = clampVertOrient(vertOrient);
+        }
+    }
+
+    /**
+     * Clamp a vertical orientation to the range allowed for animals. See {@link #getVertOrient()}.
+     * @param vertOrient The vertical orientation. In radians.
+     * @return The nearest allowed vertical orientation to {@code vertOrient}. In radians.
+     */
+    public static double clampVertOrient(final double vertOrient) {
+        return Math.min(Animal.VERT_ORIENT_MAX, Math.max(Animal.VERT_ORIENT_MIN, vertOrient));
     }
 }
@@ -5,6 +5,9 @@ import com.sheaconlon.realcraft.world.WorldObject;
 
 /**
  * An entity, a world object that is not a block.
+ *
+ * An entity is a view of a row of an entity store, which holds its position, orientation, and velocity. Its lock is
+ * its store's, which also guards the moving of rows, so that a write never lands in a row its entity has left.
  */
 public abstract class Entity extends WorldObject {
     // ##### PRIVATE STATIC #####
@@ -12,17 +15,182 @@ public abstract class Entity extends WorldObject {
 
     // ##### PRIVATE FINAL #####
     private final int id;
+    private final EntityStore store;
+    private final int handle;
 
     // ##### CONSTRUCTORS #####
     /**
-     * Create an entity.
+     * Create an entity in the world's entity store.
      * @param pos See {@link WorldObject#getPos()}.
      * @param orient See {@link WorldObject#getOrient()}.
      * @param velocity See {@link WorldObject#getVelocity()}.
      */
     public Entity(final Vector pos, final double orient, final Vector velocity) {
-        super(pos, orient, velocity);
+        this(EntityStore.WORLD, EntityStore.Archetype.ENTITY, pos, orient, velocity);
+    }
+
+    /**
+     * Create an entity.
+     * @param store The entity store to hold the entity's state.
+     * @param archetype The archetype of the entity.
+     * @param pos See {@link WorldObject#getPos()}.
+     * @param orient See {@link WorldObject#getOrient()}.
+     * @param velocity See {@link WorldObject#getVelocity()}.
+     */
+    protected Entity(final EntityStore store, final EntityStore.Archetype archetype, final Vector pos,
+                     final double orient, final Vector velocity) {
+        super();
         this.id = currID++;
+        this.store = store;
+        this.handle = store.create(archetype, this);
+        this.setPos(pos);
+        this.setOrient(orient);
+        this.setVelocity(velocity);
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The ID of this entity, which no other entity has, unlike its handle.
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    // ##### STORE #####
+    /**
+     * @return The entity store holding this entity's state.
+     */
+    public EntityStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * @return The handle of this entity within its entity store.
+     */
+    public int getHandle() {
+        return this.handle;
+    }
+
+    /**
+     * Remove this entity's state from its entity store. This entity must not be used afterwards.
+     */
+    public void destroy() {
+        this.store.destroy(this.handle);
+    }
+
+    /**
+     * @return The table of the entity store holding this entity's state.
+     */
+    EntityStore.Table table() {
+        return this.store.table(this.handle);
+    }
+
+    /**
+     * @return The row of {@link #table()} holding this entity's state.
+     */
+    int row() {
+        return this.store.row(this.handle);
+    }
+
+    // ##### WORLD OBJECT OVERRIDES #####
+    @Override
+    public Object getLock() {
+        return this.store;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Allocates a vector. Code which runs often should use {@link #getPosX()} and its like instead.
+     */
+    @Override
+    public Vector getPos() {
+        return new Vector(this.getPosX(), this.getPosY(), this.getPosZ());
+    }
+
+    @Override
+    public double getPosX() {
+        return this.table().getPosX()[this.row()];
+    }
+
+    @Override
+    public double getPosY() {
+        return this.table().getPosY()[this.row()];
+    }
+
+    @Override
+    public double getPosZ() {
+        return this.table().getPosZ()[this.row()];
+    }
+
+    @Override
+    public void setPos(final Vector pos) {
+        this.setPos(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    public void setPos(final double x, final double y, final double z) {
+        synchronized (this.store) {
+            final EntityStore.Table table = this.table();
+            final int row = this.row();
+            table.getPosX()[row] = x;
+            table.getPosY()[row] = y;
+            table.getPosZ()[row] = z;
+            this.store.moved(this.handle);
+        }
+    }
+
+    @Override
+    public double getOrient() {
+        return this.table().getOrient()[this.row()];
+    }
+
+    @Override
+    public void setOrient(final double orient) {
+        synchronized (this.store) {
+            this.table().getOrient()[this.row()] = wrapOrient(orient);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Allocates a vector. Code which runs often should use {@link #getVelocityX()} and its like instead.
+     */
+    @Override
+    public Vector getVelocity() {
+        return new Vector(this.getVelocityX(), this.getVelocityY(), this.getVelocityZ());
+    }
+
+    @Override
+    public double getVelocityX() {
+        return this.table().getVelocityX()[this.row()];
+    }
+
+    @Override
+    public double getVelocityY() {
+        return this.table().getVelocityY()[this.row()];
+    }
+
+    @Override
+    public double getVelocityZ() {
+        return this.table().getVelocityZ()[this.row()];
+    }
+
+    @Override
+    public void setVelocity(final Vector velocity) {
+        this.setVelocity(velocity.getX(), velocity.getY(), velocity.getZ());
+    }
+
+    @Override
+    public void setVelocity(final double x, final double y, final double z) {
+        synchronized (this.store) {
+            final EntityStore.Table table = this.table();
+            final int row = this.row();
+            table.getVelocityX()[row] = x;
+            table.getVelocityY()[row] = y;
+            table.getVelocityZ()[row] = z;
+        }
     }
 
     // ##### OVERRIDES OF OBJECT #####
@@ -0,0 +1,474 @@
+package com.sheaconlon.realcraft.entities;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A store of the state of entities, kept in primitive arrays.
+ *
+ * Entities are grouped by archetype, and each archetype has its own table, in which each entity occupies a row. Each
+ * component (the x-coordinate of position, say) is a separate array indexed by row, so that systems which update
+ * many entities walk memory sequentially and allocate nothing. Rows are kept dense by moving the last row into the
+ * place of a destroyed one, so entities are referred to by handles, which stay the same for their whole lives.
+ *
+ * Entities should be created and destroyed only while no system is iterating over the store.
+ *
+ * The store's lock guards its rows against being moved or regrown while an entity writes to them: creation and
+ * destruction hold it, as does each {@link Entity} while it writes its row. Arrays are replaced only after they are
+ * copied, and through volatile fields, so that readers, which do not lock, see the copies.
+ */
+public class EntityStore {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The store for the entities of the world.
+     */
+    public static final EntityStore WORLD = new EntityStore();
+
+    /**
+     * A kind of entity, defined by the components it has.
+     */
+    public enum Archetype {
+        /**
+         * Entities with a position, velocity, and orientation.
+         */
+        ENTITY(false),
+        /**
+         * Entities which also have a vertical orientation, and which are moved by systems.
+         */
+        ANIMAL(true),
+        /**
+         * Entities which also have a vertical orientation, and which are moved by a user rather than by systems.
+         */
+        PLAYER(true);
+
+        private final boolean hasVertOrient;
+
+        Archetype(final boolean hasVertOrient) {
+            this.hasVertOrient = hasVertOrient;
+        }
+
+        /**
+         * @return Whether entities of this archetype have a vertical orientation.
+         */
+        public boolean hasVertOrient() {
+            return this.hasVertOrient;
+        }
+    }
+
+    /**
+     * A listener for changes to the entities of a store.
+     *
+     * Listeners are called on whatever thread made the change, while the store is locked if the change was a
+     * creation or destruction.
+     */
+    public interface Listener {
+        /**
+         * Respond to the creation of an entity. Its state has not yet been set.
+         * @param handle The handle of the entity.
+         */
+        void created(int handle);
+
+        /**
+         * Respond to a change in the position of an entity through {@link Entity#setPos(double, double, double)}.
+         * @param handle The handle of the entity.
+         */
+        void moved(int handle);
+
+        /**
+         * Respond to the imminent destruction of an entity. Its handle may be reused afterwards.
+         * @param handle The handle of the entity.
+         */
+        void destroyed(int handle);
+
+        /**
+         * Respond to a system having run over a table, which may have changed the state of any of its rows.
+         * @param table The table.
+         */
+        void updated(Table table);
+    }
+
+    /**
+     * The rows of one archetype.
+     */
+    public static class Table {
+        private final Archetype archetype;
+        private int size;
+        private volatile double[] posX;
+        private volatile double[] posY;
+        private volatile double[] posZ;
+        private volatile double[] velocityX;
+        private volatile double[] velocityY;
+        private volatile double[] velocityZ;
+        private volatile double[] orient;
+        private volatile double[] vertOrient;
+        private volatile int[] handles;
+        private volatile Entity[] entities;
+
+        private Table(final Archetype archetype) {
+            this.archetype = archetype;
+            this.size = 0;
+            this.posX = new double[INITIAL_CAPACITY];
+            this.posY = new double[INITIAL_CAPACITY];
+            this.posZ = new double[INITIAL_CAPACITY];
+            this.velocityX = new double[INITIAL_CAPACITY];
+            this.velocityY = new double[INITIAL_CAPACITY];
+            this.velocityZ = new double[INITIAL_CAPACITY];
+            this.orient = new double[INITIAL_CAPACITY];
+            this.vertOrient = archetype.hasVertOrient() ? new double[INITIAL_CAPACITY] : null;
+            this.handles = new int[INITIAL_CAPACITY];
+            this.entities = new Entity[INITIAL_CAPACITY];
+        }
+
+        /**
+         * @return The archetype of the entities in this table.
+         */
+        public Archetype getArchetype() {
+            return this.archetype;
+        }
+
+        /**
+         * @return The number of rows in this table.
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * @return The x-coordinates of the positions of the entities, indexed by row.
+         */
+        public double[] getPosX() {
+            return this.posX;
+        }
+
+        /**
+         * @return The y-coordinates of the positions of the entities, indexed by row.
+         */
+        public double[] getPosY() {
+            return this.posY;
+        }
+
+        /**
+         * @return The z-coordinates of the positions of the entities, indexed by row.
+         */
+        public double[] getPosZ() {
+            return this.posZ;
+        }
+
+        /**
+         * @return The x-components of the velocities of the entities, indexed by row.
+         */
+        public double[] getVelocityX() {
+            return this.velocityX;
+        }
+
+        /**
+         * @return The y-components of the velocities of the entities, indexed by row.
+         */
+        public double[] getVelocityY() {
+            return this.velocityY;
+        }
+
+        /**
+         * @return The z-components of the velocities of the entities, indexed by row.
+         */
+        public double[] getVelocityZ() {
+            return this.velocityZ;
+        }
+
+        /**
+         * @return The orientations of the entities, indexed by row. See {@link Entity#getOrient()}.
+         */
+        public double[] getOrient() {
+            return this.orient;
+        }
+
+        /**
+         * @return The vertical orientations of the entities, indexed by row, or null if entities of this table's
+         *         archetype have none. See {@link Animal#getVertOrient()}.
+         */
+        public double[] getVertOrient() {
+            return this.vertOrient;
+        }
+
+        /**
+         * @return The handles of the entities, indexed by row.
+         */
+        public int[] getHandles() {
+            return this.handles;
+        }
+
+        /**
+         * @return The entities, indexed by row.
+         */
+        public Entity[] getEntities() {
+            return this.entities;
+        }
+
+        /**
+         * Grow the arrays of this table. Must be called under the lock of its store, so that no entity writes to an
+         * array after it has been copied.
+         * @param capacity The number of rows the arrays should have room for.
+         */
+        private void ensureCapacity(final int capacity) {
+            if (capacity <= this.handles.length) {
+                return;
+            }
+            final int newCapacity = Math.max(capacity, 2 * this.handles.length);
+            this.posX = Arrays.copyOf(this.posX, newCapacity);
+            this.posY = Arrays.copyOf(this.posY, newCapacity);
+            this.posZ = Arrays.copyOf(this.posZ, newCapacity);
+            this.velocityX = Arrays.copyOf(this.velocityX, newCapacity);
+            this.velocityY = Arrays.copyOf(this.velocityY, newCapacity);
+            this.velocityZ = Arrays.copyOf(this.velocityZ, newCapacity);
+            this.orient = Arrays.copyOf(this.orient, newCapacity);
+            if (this.vertOrient != null) {
+                this.vertOrient = Arrays.copyOf(this.vertOrient, newCapacity);
+            }
+            this.handles = Arrays.copyOf(this.handles, newCapacity);
+            this.entities = Arrays.copyOf(this.entities, newCapacity);
+        }
+
+        private void copyRow(final int from, final int to) {
+            this.posX[to] = this.posX[from];
+            this.posY[to] = this.posY[from];
+            this.posZ[to] = this.posZ[from];
+            this.velocityX[to] = this.velocityX[from];
+            this.velocityY[to] = this.velocityY[from];
+            this.velocityZ[to] = this.velocityZ[from];
+            this.orient[to] = this.orient[from];
+            if (this.vertOrient != null) {
+                this.vertOrient[to] = this.vertOrient[from];
+            }
+            this.handles[to] = this.handles[from];
+            this.entities[to] = this.entities[from];
+        }
+    }
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The number of rows that each task of a parallel iteration updates.
+     */
+    private static final int ROWS_PER_TASK = 4096;
+
+    /**
+     * The value of {@link #handleRows} for a handle which is not in use.
+     */
+    private static final int NO_ROW = -1;
+
+    // ##### PRIVATE FINAL #####
+    private final Table[] tables;
+
+    // ##### PRIVATE #####
+    /**
+     * The table and row of each handle, indexed by handle.
+     */
+    private volatile Table[] handleTables;
+    private volatile int[] handleRows;
+
+    /**
+     * Handles which have been released and may be reused, as a stack.
+     */
+    private int[] freeHandles;
+    private int freeHandleCount;
+
+    /**
+     * The number of handles that have ever been handed out.
+     */
+    private int handleCount;
+
+    /**
+     * The listeners. Replaced rather than modified, so that it can be read without locking.
+     */
+    private volatile Listener[] listeners;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create an empty store.
+     */
+    public EntityStore() {
+        this.tables = new Table[Archetype.values().length];
+        for (final Archetype archetype : Archetype.values()) {
+            this.tables[archetype.ordinal()] = new Table(archetype);
+        }
+        this.handleTables = new Table[INITIAL_CAPACITY];
+        this.handleRows = new int[INITIAL_CAPACITY];
+        this.freeHandles = new int[INITIAL_CAPACITY];
+        this.freeHandleCount = 0;
+        this.handleCount = 0;
+        this.listeners = new Listener[0];
+    }
+
+    // ##### ENTITIES #####
+    /**
+     * Add a row for an entity.
+     * @param archetype The archetype of the entity.
+     * @param entity The entity.
+     * @return The handle of the entity.
+     */
+    synchronized int create(final Archetype archetype, final Entity entity) {
+        final int handle;
+        if (this.freeHandleCount > 0) {
+            this.freeHandleCount--;
+            handle = this.freeHandles[this.freeHandleCount];
+        } else {
+            handle = this.handleCount;
+            this.handleCount++;
+            if (this.handleCount > this.handleRows.length) {
+                final int capacity = 2 * this.handleRows.length;
+                this.handleTables = Arrays.copyOf(this.handleTables, capacity);
+                this.handleRows = Arrays.copyOf(this.handleRows, capacity);
+                this.freeHandles = Arrays.copyOf(this.freeHandles, capacity);
+            }
+        }
+        final Table table = this.tables[archetype.ordinal()];
+        table.ensureCapacity(table.size + 1);
+        final int row = table.size;
+        table.size++;
+        table.handles[row] = handle;
+        table.entities[row] = entity;
+        this.handleTables[handle] = table;
+        this.handleRows[handle] = row;
+        for (final Listener listener : this.listeners) {
+            listener.created(handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Remove the row of an entity. Its handle may be reused.
+     * @param handle The handle of the entity.
+     */
+    synchronized void destroy(final int handle) {
+        final Table table = this.handleTables[handle];
+        final int row = this.handleRows[handle];
+        if (row == NO_ROW) {
+            throw new IllegalArgumentException("attempted to destroy an entity twice");
+        }
+        for (final Listener listener : this.listeners) {
+            listener.destroyed(handle);
+        }
+        final int last = table.size - 1;
+        if (row != last) {
+            table.copyRow(last, row);
+            this.handleRows[table.handles[row]] = row;
+        }
+        table.entities[last] = null;
+        table.size--;
+        this.handleTables[handle] = null;
+        this.handleRows[handle] = NO_ROW;
+        this.freeHandles[this.freeHandleCount] = handle;
+        this.freeHandleCount++;
+    }
+
+    /**
+     * Tell the listeners that an entity's position has changed.
+     * @param handle The handle of the entity.
+     */
+    void moved(final int handle) {
+        for (final Listener listener : this.listeners) {
+            listener.moved(handle);
+        }
+    }
+
+    /**
+     * Get the entity with some handle.
+     * @param handle The handle. Must be in use.
+     * @return The entity with handle {@code handle}.
+     */
+    public Entity getEntity(final int handle) {
+        return this.handleTables[handle].entities[this.handleRows[handle]];
+    }
+
+    /**
+     * @return One more than the greatest handle that has ever been handed out.
+     */
+    public int getHandleLimit() {
+        return this.handleCount;
+    }
+
+    /**
+     * Get the table holding an entity.
+     * @param handle The handle of the entity.
+     * @return The table holding the entity.
+     */
+    Table table(final int handle) {
+        return this.handleTables[handle];
+    }
+
+    /**
+     * Get the row of an entity within its table.
+     * @param handle The handle of the entity.
+     * @return The row of the entity.
+     */
+    int row(final int handle) {
+        return this.handleRows[handle];
+    }
+
+    /**
+     * Get the table of some archetype.
+     * @param archetype The archetype.
+     * @return The table of {@code archetype}.
+     */
+    public Table getTable(final Archetype archetype) {
+        return this.tables[archetype.ordinal()];
+    }
+
+    // ##### LISTENERS #####
+    /**
+     * Add a listener. It is told of the creation of every entity already in this store.
+     * @param listener The listener.
+     */
+    public synchronized void addListener(final Listener listener) {
+        final Listener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        for (final Table table : this.tables) {
+            for (int row = 0; row < table.size; row++) {
+                listener.created(table.handles[row]);
+            }
+        }
+        this.listeners = listeners;
+    }
+
+    /**
+     * Remove a listener.
+     * @param listener The listener.
+     */
+    public synchronized void removeListener(final Listener listener) {
+        final Listener[] listeners = new Listener[this.listeners.length];
+        int count = 0;
+        for (final Listener other : this.listeners) {
+            if (other != listener) {
+                listeners[count] = other;
+                count++;
+            }
+        }
+        this.listeners = Arrays.copyOf(listeners, count);
+    }
+
+    // ##### SYSTEMS #####
+    /**
+     * Run a system over every row of the table of some archetype, splitting the rows among the threads of the
+     * common fork-join pool.
+     * @param archetype The archetype.
+     * @param system The system.
+     * @param interval The time that has elapsed since the last update. In seconds.
+     */
+    public void runParallel(final Archetype archetype, final EntitySystem system, final double interval) {
+        final Table table = this.getTable(archetype);
+        final int size = table.size;
+        if (size <= ROWS_PER_TASK) {
+            system.update(table, 0, size, interval);
+        } else {
+            final int tasks = (size + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+            IntStream.range(0, tasks).parallel().forEach(task -> {
+                final int from = task * ROWS_PER_TASK;
+                system.update(table, from, Math.min(from + ROWS_PER_TASK, size), interval);
+            });
+        }
+        for (final Listener listener : this.listeners) {
+            listener.updated(table);
+        }
+    }
+}
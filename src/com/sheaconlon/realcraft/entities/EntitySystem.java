@@ -0,0 +1,15 @@
+package com.sheaconlon.realcraft.entities;
+
+/**
+ * A system, which updates the rows of a table of an entity store.
+ */
+public interface EntitySystem {
+    /**
+     * Update some rows of a table. May be called concurrently for disjoint ranges of rows.
+     * @param table The table.
+     * @param from The first row to update.
+     * @param to One past the last row to update.
+     * @param interval The time that has elapsed since the last update. In seconds.
+     */
+    void update(EntityStore.Table table, int from, int to, double interval);
+}
@@ -0,0 +1,166 @@
+package com.sheaconlon.realcraft.entities;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.LongHashSet;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * An entity ticker, which runs systems over the tables of an entity store.
+ *
+ * Each system runs over the rows of its archetype's table in parallel. Systems run one after another, in the order
+ * they were added.
+ *
+ * The ticker holds a {@link ChunkTickets.Level#TICK} ticket on each chunk holding an entity it ticks, so that the
+ * chunks its entities are in stay loaded.
+ */
+public class EntityTicker extends Worker {
+    /**
+     * An entity ticker's return value for {@link #getTargetFreq()}.
+     */
+    private static final double TARGET_FREQ = 20;
+
+    private final EntityStore store;
+    private final List<EntityStore.Archetype> archetypes;
+    private final List<EntitySystem> systems;
+
+    /**
+     * The tickets to hold tickets in, and the ticket held on each chunk holding an entity, by packed position.
+     */
+    private final ChunkTickets tickets;
+    private final LongHashMap<ChunkTickets.Ticket> held;
+
+    /**
+     * Scratch space for the chunks holding an entity, by packed position.
+     */
+    private final LongHashSet occupied;
+
+    /**
+     * Scratch space for the positions of chunks, of which there are {@link #numPositions}.
+     */
+    private long[] positions;
+    private int numPositions;
+
+    /**
+     * Adds the positions of the chunks which no longer hold an entity but still have a ticket to {@link #positions}.
+     */
+    private final ObjLongConsumer<ChunkTickets.Ticket> collectVacated;
+
+    /**
+     * Create an entity ticker with no systems.
+     * @param store The entity store to run systems over.
+     * @param tickets The tickets to hold tickets on the chunks holding entities in.
+     */
+    public EntityTicker(final EntityStore store, final ChunkTickets tickets) {
+        this.store = store;
+        this.archetypes = new ArrayList<>();
+        this.systems = new ArrayList<>();
+        this.tickets = tickets;
+        this.held = new LongHashMap<>();
+        this.occupied = new LongHashSet();
+        this.positions = new long[0];
+        this.collectVacated = (ticket, pos) -> {
+            if (!this.occupied.contains(pos)) {
+                this.positions[this.numPositions] = pos;
+                this.numPositions++;
+            }
+        };
+    }
+
+    /**
+     * Add a system. Should not be called once this entity ticker is being ticked.
+     * @param archetype The archetype whose table the system should run over.
+     * @param system The system.
+     */
+    public void add(final EntityStore.Archetype archetype, final EntitySystem system) {
+        this.archetypes.add(archetype);
+        this.systems.add(system);
+    }
+
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.MEDIUM;
+    }
+
+    @Override
+    public String toString() {
+        return "EntityTicker";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return EntityTicker.TARGET_FREQ;
+    }
+
+    /**
+     * Run each system once, and move the tickets held to the chunks the entities are now in.
+     */
+    @Override
+    protected void tick(final double interval) {
+        for (int i = 0; i < this.systems.size(); i++) {
+            this.store.runParallel(this.archetypes.get(i), this.systems.get(i), interval);
+        }
+        this.holdTickets();
+    }
+
+    /**
+     * Hold a ticket on each chunk holding an entity of an archetype some system runs over, and on no other chunk.
+     */
+    private void holdTickets() {
+        this.occupied.clear();
+        // Entities are only created and destroyed with the store locked, which keeps rows from moving meanwhile.
+        synchronized (this.store) {
+            for (int i = 0; i < this.archetypes.size(); i++) {
+                final EntityStore.Archetype archetype = this.archetypes.get(i);
+                if (this.archetypes.indexOf(archetype) != i) {
+                    continue;
+                }
+                final EntityStore.Table table = this.store.getTable(archetype);
+                final double[] posX = table.getPosX();
+                final double[] posY = table.getPosY();
+                final double[] posZ = table.getPosZ();
+                for (int row = 0; row < table.size(); row++) {
+                    this.occupied.add(ChunkPos.containing(posX[row], posY[row], posZ[row]));
+                }
+            }
+        }
+        this.reservePositions(this.held.size());
+        this.numPositions = 0;
+        this.held.forEach(this.collectVacated);
+        for (int i = 0; i < this.numPositions; i++) {
+            this.tickets.remove(this.held.remove(this.positions[i]));
+        }
+        this.reservePositions(this.occupied.size());
+        this.occupied.toArray(this.positions);
+        for (int i = 0; i < this.occupied.size(); i++) {
+            final long pos = this.positions[i];
+            if (!this.held.containsKey(pos)) {
+                this.held.put(pos, this.tickets.add(ChunkTickets.Type.SIMULATION, ChunkTickets.Level.TICK, pos, 0));
+            }
+        }
+    }
+
+    /**
+     * Make {@link #positions} hold at least some number of positions.
+     */
+    private void reservePositions(final int count) {
+        if (this.positions.length < count) {
+            this.positions = new long[Math.max(count, 2 * this.positions.length)];
+        }
+    }
+}
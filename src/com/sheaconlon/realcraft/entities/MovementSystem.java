@@ -0,0 +1,21 @@
+package com.sheaconlon.realcraft.entities;
+
+/**
+ * A system which moves entities according to their velocities.
+ */
+public class MovementSystem implements EntitySystem {
+    @Override
+    public void update(final EntityStore.Table table, final int from, final int to, final double interval) {
+        final double[] posX = table.getPosX();
+        final double[] posY = table.getPosY();
+        final double[] posZ = table.getPosZ();
+        final double[] velocityX = table.getVelocityX();
+        final double[] velocityY = table.getVelocityY();
+        final double[] velocityZ = table.getVelocityZ();
+        for (int row = from; row < to; row++) {
+            posX[row] += velocityX[row] * interval;
+            posY[row] += velocityY[row] * interval;
+            posZ[row] += velocityZ[row] * interval;
+        }
+    }
+}
@@ -41,7 +41,8 @@ public class Player extends Animal {
 
     // ##### CONSTRUCTORS #####
     private Player() {
-        super(INITIAL_POSITION, INITIAL_VELOCITY, INITIAL_ORIENTATION, INITIAL_VERTICAL_ORIENTATION);
+        super(EntityStore.WORLD, EntityStore.Archetype.PLAYER, INITIAL_POSITION, INITIAL_VELOCITY,
+                INITIAL_ORIENTATION, INITIAL_VERTICAL_ORIENTATION);
     }
 
     // ##### WORLD OBJECT OVERRIDES #####
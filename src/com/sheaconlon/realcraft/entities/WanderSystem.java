@@ -0,0 +1,35 @@
+package com.sheaconlon.realcraft.entities;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A system which makes entities wander, every so often turning to face a random direction and walking that way.
+ */
+public class WanderSystem implements EntitySystem {
+    /**
+     * The average number of times per second that a wandering entity turns.
+     */
+    private static final double TURN_RATE = 0.2;
+
+    /**
+     * The speed at which wandering entities walk. In blocks per second.
+     */
+    private static final double SPEED = 1;
+
+    @Override
+    public void update(final EntityStore.Table table, final int from, final int to, final double interval) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final double turnProbability = TURN_RATE * interval;
+        final double[] orient = table.getOrient();
+        final double[] velocityX = table.getVelocityX();
+        final double[] velocityZ = table.getVelocityZ();
+        for (int row = from; row < to; row++) {
+            if (random.nextDouble() < turnProbability) {
+                orient[row] = random.nextDouble(-Math.PI, Math.PI);
+            }
+            // Face along the orientation, which is measured from the positive x-axis towards the negative z-axis.
+            velocityX[row] = SPEED * Math.cos(orient[row]);
+            velocityZ[row] = -SPEED * Math.sin(orient[row]);
+        }
+    }
+}
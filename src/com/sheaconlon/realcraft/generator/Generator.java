@@ -4,29 +4,109 @@ import com.sheaconlon.realcraft.blocks.Block;
 import com.sheaconlon.realcraft.blocks.DirtBlock;
 import com.sheaconlon.realcraft.concurrency.Worker;
 import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.metrics.ChunkGenerationEvent;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Metrics;
 import com.sheaconlon.realcraft.renderer.Renderer;
+import com.sheaconlon.realcraft.storage.ChunkCache;
+import com.sheaconlon.realcraft.storage.WorldStorage;
+import com.sheaconlon.realcraft.utilities.LongHashSet;
 import com.sheaconlon.realcraft.utilities.Vector;
 import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkOffsets;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Generator extends Worker {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The most chunks a generator generates, loads or restores per tick, about as many as the pre-renderer meshes, so
+     * that one tick takes a few milliseconds. Tickets are served in order, so later tickets, such as prefetch tickets,
+     * get only what earlier ones leave.
+     */
+    public static final int CHUNKS_PER_TICK = 3;
+
     // ##### PRIVATE STATIC FINAL #####
-    private static final PerlinNoiseGenerator HEIGHT_MAP_GENERATOR =
-            new PerlinNoiseGenerator(0.005, 3, x -> (x + 1) / 2);
+    private static final double HEIGHT_MAP_FREQUENCY = 0.005;
+    private static final double HEIGHT_MAP_AMPLITUDE = 3;
     private static final double HEIGHT_MAP_MINIMUM = 0;
     private static final double HEIGHT_MAP_MAXIMUM = 100;
     private static final double HEIGHT_MAP_RANGE = HEIGHT_MAP_MAXIMUM - HEIGHT_MAP_MINIMUM;
+    private static final Counter CHUNKS_GENERATED = Metrics.counter("Generator", "chunksGenerated");
 
     // ##### PRIVATE FINAL #####
-    private final Set<Chunk> generated;
+    private final long seed;
+    private final PerlinNoiseGenerator heightMap;
+
+    /**
+     * The positions of the chunks this generator has generated or loaded. Only this generator adds to it, but others
+     * may read it under its lock. See {@link #getGenerated()}.
+     */
+    private final LongHashSet generated;
+
+    /**
+     * The storage to load chunks from instead of generating them, or null.
+     */
+    private final WorldStorage storage;
+
+    /**
+     * Scratch space for the player's position.
+     */
+    private final double[] playerPos;
+
+    /**
+     * Scratch space for the tickets whose chunks to generate.
+     */
+    private final List<ChunkTickets.Ticket> ticketed;
+
+    // ##### PRIVATE #####
+    /**
+     * The cache to restore chunks from instead of loading or generating them, or null.
+     */
+    private volatile ChunkCache cache;
+
+    /**
+     * The ticket this generator holds on the chunks around the player, or null until it first ticks.
+     */
+    private ChunkTickets.Ticket playerTicket;
 
     // ##### CONSTRUCTORS #####
+    /**
+     * Create a generator of the world with seed 0.
+     */
     public Generator() {
-        this.generated = new HashSet<>();
+        this(0);
+    }
+
+    /**
+     * Create a generator of the world with some seed. Generators with the same seed generate the same terrain.
+     * @param seed The seed.
+     */
+    public Generator(final long seed) {
+        this(seed, null);
+    }
+
+    /**
+     * Create a generator which loads chunks from storage, regenerating those it has not stored from its seed.
+     * @param storage The storage.
+     */
+    public Generator(final WorldStorage storage) {
+        this(storage.getSeed(), storage);
+    }
+
+    private Generator(final long seed, final WorldStorage storage) {
+        this.seed = seed;
+        this.heightMap = new PerlinNoiseGenerator(seed, HEIGHT_MAP_FREQUENCY, HEIGHT_MAP_AMPLITUDE,
+                x -> (x + 1) / 2);
+        this.generated = new LongHashSet();
+        this.storage = storage;
+        this.playerPos = new double[3];
+        this.ticketed = new ArrayList<>();
     }
 
     // ##### PRIVATE STATIC FINAL #####
@@ -61,17 +141,21 @@ public class Generator extends Worker {
         return NEEDS_DEDICATED_THREAD;
     }
 
-    private static final int CHUNKS_PER_TICK = 3;
-
+    /**
+     * Move this generator's ticket to the player, and generate up to {@link #CHUNKS_PER_TICK} of the chunks of the
+     * tickets.
+     */
     @Override
     protected void tick(double interval) {
-        final Chunk playerChunk = Chunk.containingChunk(Player.PLAYER.getPos());
-        for (final Chunk chunkNearPlayer : playerChunk.chunksNearby(RADIUS)) {
-            if (!this.generated.contains(chunkNearPlayer)) {
-                this.generate(chunkNearPlayer);
-                this.generated.add(chunkNearPlayer);
-            }
+        Player.PLAYER.getPos(this.playerPos);
+        final long center = ChunkPos.containing(this.playerPos[0], this.playerPos[1], this.playerPos[2]);
+        if (this.playerTicket == null) {
+            this.playerTicket = ChunkTickets.WORLD.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE, center,
+                    RADIUS);
+        } else {
+            ChunkTickets.WORLD.move(this.playerTicket, center);
         }
+        this.generateTicketed(ChunkTickets.WORLD, CHUNKS_PER_TICK);
     }
 
     private static final double TARGET_FREQ = 4;
@@ -82,18 +166,159 @@ public class Generator extends Worker {
     }
 
     // ##### GENERATION #####
-    private void generate(final Chunk chunk) {
-        final Map<Vector, Integer> heightCache = new HashMap<Vector, Integer>();
-        for (final Vector blockAnchor : chunk.blockAnchors()) {
-            final Vector horizontalBlockAnchor = Vector.setY(blockAnchor, 0);
-            Integer height = heightCache.get(horizontalBlockAnchor);
-            if (height == null) {
-                final double noise = HEIGHT_MAP_GENERATOR.noise(horizontalBlockAnchor);
-                height = (int)(noise * HEIGHT_MAP_RANGE + HEIGHT_MAP_MINIMUM);
-                heightCache.put(horizontalBlockAnchor, height);
+    /**
+     * Generate and light the chunks within the render distance of some chunk which this generator has not generated
+     * yet, nearest first.
+     * @param center The packed position of the chunk. See {@link ChunkPos}.
+     */
+    public void generateAround(final long center) {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(RADIUS);
+        for (int i = 0; i < offsets.size(); i++) {
+            this.generateChunk(offsets.apply(center, i));
+        }
+    }
+
+    /**
+     * Generate and light the chunks covered by some tickets which this generator has not generated yet, nearest the
+     * center of each ticket first.
+     * @param tickets The tickets. Those at any level are generated for.
+     */
+    public void generateTicketed(final ChunkTickets tickets) {
+        this.generateTicketed(tickets, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Generate and light some of the chunks covered by some tickets which this generator has not generated yet, in the
+     * order the tickets are served in, and nearest the center of each ticket first.
+     * @param tickets The tickets. Those at any level are generated for.
+     * @param budget The most chunks to generate, load or restore.
+     * @return The number of chunks generated, loaded or restored.
+     */
+    public int generateTicketed(final ChunkTickets tickets, final int budget) {
+        int count = 0;
+        tickets.getTickets(ChunkTickets.Level.GENERATE, this.ticketed);
+        for (final ChunkTickets.Ticket ticket : this.ticketed) {
+            final ChunkOffsets offsets = ChunkOffsets.forRadius(ticket.getRadius());
+            final long center = ticket.getCenter();
+            for (int i = 0; i < offsets.size(); i++) {
+                final long pos = offsets.apply(center, i);
+                if (this.isGenerated(pos)) {
+                    continue;
+                }
+                if (count == budget) {
+                    return count;
+                }
+                this.generateChunk(pos);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generate and light a chunk, unless this generator has already generated it. If this generator has a cache
+     * holding the chunk, the chunk is restored from it instead, or else if this generator has storage, loaded from it.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return The chunk.
+     */
+    public Chunk generateChunk(final long pos) {
+        final Chunk chunk = Chunk.getChunk(pos);
+        if (!this.generated.contains(pos)) {
+            final ChunkGenerationEvent event = new ChunkGenerationEvent(pos);
+            event.begin();
+            final ChunkCache cache = this.cache;
+            // A cached chunk was lit before it was cached, and its light was cached with it.
+            if (cache == null || !cache.restore(chunk)) {
+                if (this.storage == null) {
+                    this.generate(chunk);
+                } else {
+                    try {
+                        this.storage.load(chunk);
+                    } catch (final IOException e) {
+                        throw new RuntimeException("could not load chunk", e);
+                    }
+                }
+                LightEngine.WORLD.lightChunk(chunk);
+                CHUNKS_GENERATED.increment();
             }
-            if (blockAnchor.getY() <= height) {
-                chunk.putBlock(new DirtBlock(blockAnchor));
+            event.commit();
+            synchronized (this.generated) {
+                this.generated.add(pos);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Unload a chunk this generator has generated, removing it from the world, so that it is generated again the next
+     * time it is needed.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return The chunk, or null if this generator has not generated it.
+     */
+    public Chunk unload(final long pos) {
+        synchronized (this.generated) {
+            if (!this.generated.remove(pos)) {
+                return null;
+            }
+        }
+        return Chunk.unload(pos);
+    }
+
+    /**
+     * Set the cache to restore chunks from. See {@link ChunkCache}.
+     * @param cache The cache, or null for none.
+     */
+    public void setCache(final ChunkCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Return whether this generator has generated or loaded a chunk, and not unloaded it since.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return Whether the chunk holds its final blocks.
+     */
+    public boolean isGenerated(final long pos) {
+        synchronized (this.generated) {
+            return this.generated.contains(pos);
+        }
+    }
+
+    /**
+     * Get the positions of the chunks this generator has generated or loaded.
+     * @return The packed positions of the chunks. See {@link ChunkPos}.
+     */
+    public long[] getGenerated() {
+        synchronized (this.generated) {
+            final long[] positions = new long[this.generated.size()];
+            this.generated.toArray(positions);
+            return positions;
+        }
+    }
+
+    /**
+     * @return The seed of the terrain this generator generates.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * Fill a chunk with terrain, unlit.
+     * @param chunk The chunk, which must hold only air.
+     */
+    public void generate(final Chunk chunk) {
+        final Vector anchor = chunk.getAnchor();
+        final int anchorX = anchor.getXInt();
+        final int anchorY = anchor.getYInt();
+        final int anchorZ = anchor.getZInt();
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                final double noise = this.heightMap.noise(x, 0, z);
+                final int height = (int)(noise * HEIGHT_MAP_RANGE + HEIGHT_MAP_MINIMUM);
+                final int top = Math.min(height, anchorY + Chunk.BLOCKS - 1);
+                for (int y = anchorY; y <= top; y++) {
+                    chunk.putBlock(new DirtBlock(new Vector(x, y, z)));
+                }
             }
         }
     }
@@ -1,32 +1,28 @@
 package com.sheaconlon.realcraft.generator;
 
+import com.sheaconlon.realcraft.utilities.LongHashSet;
 import com.sheaconlon.realcraft.utilities.Vector;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.UnaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 /**
  * A Perlin noise generator.
  *
- * Implemented using the guide at http://flafla2.github.io/2014/08/09/perlinnoise.html.
+ * Implemented using the guide at http://flafla2.github.io/2014/08/09/perlinnoise.html. Generators with different seeds
+ * pick different gradients, and so make different noise.
  */
 public class PerlinNoiseGenerator {
     // ##### PRIVATE STATIC FINAL #####
-    private static final UnaryOperator<Double> EASING_FUNCTION = new UnaryOperator<Double>() {
-        @Override
-        public Double apply(Double x) {
-            final double x3 = x * x * x;
-            final double x4 = x3 * x;
-            final double x5 = x4 * x;
-            return 6*x5 - 15*x4 + 10*x3;
-        }
-    };
+    /**
+     * The number of vertices of a unit cube, each of which is a possible gradient.
+     */
+    private static final int GRADIENTS = 8;
 
     // ##### PRIVATE FINAL #####
+    private final long seed;
     private final double frequency;
     private final double amplitude;
-    private final UnaryOperator<Double> postTransformation;
+    private final DoubleUnaryOperator postTransformation;
 
     // ##### CONSTRUCTORS #####
     /**
@@ -36,7 +32,20 @@ public class PerlinNoiseGenerator {
      * @param postTransformation The postprocessing transformation to apply to the noise.
      */
     public PerlinNoiseGenerator(final double frequency, final double amplitude,
-                                final UnaryOperator<Double> postTransformation) {
+                                final DoubleUnaryOperator postTransformation) {
+        this(0, frequency, amplitude, postTransformation);
+    }
+
+    /**
+     * Create a Perlin noise generator with some seed.
+     * @param seed The seed. Seed 0 gives the same noise as a generator created without one.
+     * @param frequency The frequency of the noise. Higher values yield more rapidly varying noise.
+     * @param amplitude The amplitude of the noise. Higher values yield noise over a larger range.
+     * @param postTransformation The postprocessing transformation to apply to the noise.
+     */
+    public PerlinNoiseGenerator(final long seed, final double frequency, final double amplitude,
+                                final DoubleUnaryOperator postTransformation) {
+        this.seed = seed;
         this.frequency = frequency;
         this.amplitude = amplitude;
         this.postTransformation = postTransformation;
@@ -49,38 +58,82 @@ public class PerlinNoiseGenerator {
      * @return The value of the Perlin noise at {@code point}.
      */
     public double noise(final Vector point) {
-        final Vector scaledPoint = Vector.scale(point, this.frequency);
-        final Vector lowVertex = Vector.round(scaledPoint);
-        List<Double> influences = new ArrayList<>();
-        for (final Vector unitCubeVertex : Vector.UNIT_CUBE_VERTICES) {
-            final Vector gridPoint = Vector.add(lowVertex, unitCubeVertex);
-            final Vector gradient = gradient(gridPoint);
-            final Vector dispToGridPoint = Vector.subtract(gridPoint, scaledPoint);
-            final double influence = Vector.multiply(dispToGridPoint, gradient).sum();
-            influences.add(influence);
-        }
-        List<Double> interpolatedInfluences = new ArrayList<>();
-        final Vector relativeInput = Vector.apply(Vector.subtract(scaledPoint, lowVertex), EASING_FUNCTION);
-        for (int i = 0; i < influences.size(); i += 2) {
-            interpolatedInfluences.add(lerp(influences.get(i), influences.get(i + 1), relativeInput.getX()));
-        }
-        influences = interpolatedInfluences;
-        interpolatedInfluences = new ArrayList<>();
-        for (int i = 0; i < influences.size(); i += 2) {
-            interpolatedInfluences.add(lerp(influences.get(i), influences.get(i + 1), relativeInput.getY()));
-        }
-        influences = interpolatedInfluences;
-        interpolatedInfluences = new ArrayList<>();
-        for (int i = 0; i < influences.size(); i += 2) {
-            interpolatedInfluences.add(lerp(influences.get(i), influences.get(i + 1), relativeInput.getZ()));
-        }
-        return this.postTransformation.apply(interpolatedInfluences.get(0) * this.amplitude);
+        return this.noise(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Get the value of the Perlin noise at some point, without allocating.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param z The z-coordinate of the point.
+     * @return The value of the Perlin noise at {@code (x, y, z)}.
+     */
+    public double noise(final double x, final double y, final double z) {
+        final double scaledX = this.frequency * x;
+        final double scaledY = this.frequency * y;
+        final double scaledZ = this.frequency * z;
+        final double lowX = Math.floor(scaledX);
+        final double lowY = Math.floor(scaledY);
+        final double lowZ = Math.floor(scaledZ);
+        // The corners of the grid cell are numbered like Vector#UNIT_CUBE_VERTICES: bit 0 is x, bit 1 y, bit 2 z.
+        final double relativeX = ease(scaledX - lowX);
+        final double relativeY = ease(scaledY - lowY);
+        final double relativeZ = ease(scaledZ - lowZ);
+        final double x00 = lerp(influence(lowX, lowY, lowZ, 0, scaledX, scaledY, scaledZ),
+                influence(lowX, lowY, lowZ, 1, scaledX, scaledY, scaledZ), relativeX);
+        final double x10 = lerp(influence(lowX, lowY, lowZ, 2, scaledX, scaledY, scaledZ),
+                influence(lowX, lowY, lowZ, 3, scaledX, scaledY, scaledZ), relativeX);
+        final double x01 = lerp(influence(lowX, lowY, lowZ, 4, scaledX, scaledY, scaledZ),
+                influence(lowX, lowY, lowZ, 5, scaledX, scaledY, scaledZ), relativeX);
+        final double x11 = lerp(influence(lowX, lowY, lowZ, 6, scaledX, scaledY, scaledZ),
+                influence(lowX, lowY, lowZ, 7, scaledX, scaledY, scaledZ), relativeX);
+        final double y0 = lerp(x00, x10, relativeY);
+        final double y1 = lerp(x01, x11, relativeY);
+        return this.postTransformation.applyAsDouble(lerp(y0, y1, relativeZ) * this.amplitude);
     }
 
     // ##### PRIVATE #####
-    private static Vector gradient(final Vector gridPoint) {
-        final int random = (int)(((double)gridPoint.hashCode() - Integer.MIN_VALUE) / (-(double)Integer.MIN_VALUE + Integer.MAX_VALUE) * Vector.UNIT_CUBE_VERTICES.size());
-        return Vector.UNIT_CUBE_VERTICES.get(random);
+    /**
+     * Get the influence of a corner of a grid cell on a point within it.
+     * @param lowX The x-coordinate of the lowest corner of the grid cell.
+     * @param lowY The y-coordinate of the lowest corner of the grid cell.
+     * @param lowZ The z-coordinate of the lowest corner of the grid cell.
+     * @param corner The index of the corner.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param z The z-coordinate of the point.
+     * @return The dot product of the corner's gradient and the displacement from the point to the corner.
+     */
+    private double influence(final double lowX, final double lowY, final double lowZ, final int corner,
+                                    final double x, final double y, final double z) {
+        final double gridX = lowX + (corner & 1);
+        final double gridY = lowY + ((corner >> 1) & 1);
+        final double gridZ = lowZ + ((corner >> 2) & 1);
+        final int gradient = gradient(gridX, gridY, gridZ);
+        return (gridX - x) * (gradient & 1) + (gridY - y) * ((gradient >> 1) & 1)
+                + (gridZ - z) * ((gradient >> 2) & 1);
+    }
+
+    /**
+     * Pick the gradient at a grid point.
+     * @param x The x-coordinate of the grid point.
+     * @param y The y-coordinate of the grid point.
+     * @param z The z-coordinate of the grid point.
+     * @return The index of the gradient within {@link Vector#UNIT_CUBE_VERTICES}.
+     */
+    private int gradient(final double x, final double y, final double z) {
+        // Matches Vector#hashCode(), so that the noise is the same as when grid points were vectors.
+        final int pointHash = 31 * (31 * Double.hashCode(x) + Double.hashCode(y)) + Double.hashCode(z);
+        final int hash = this.seed == 0 ? pointHash : (int)LongHashSet.mix(pointHash ^ this.seed);
+        return (int)(((double)hash - Integer.MIN_VALUE) / (-(double)Integer.MIN_VALUE + Integer.MAX_VALUE)
+                * GRADIENTS);
+    }
+
+    private static double ease(final double x) {
+        final double x3 = x * x * x;
+        final double x4 = x3 * x;
+        final double x5 = x4 * x;
+        return 6*x5 - 15*x4 + 10*x3;
     }
 
     private static double lerp(final double a, final double b, final double x) {
@@ -0,0 +1,381 @@
+package com.sheaconlon.realcraft.lighting;
+
+import com.sheaconlon.realcraft.blocks.Block;
+import com.sheaconlon.realcraft.utilities.IntQueue;
+import com.sheaconlon.realcraft.utilities.NibbleArray;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A light engine, which keeps the light levels stored in chunks consistent with their blocks.
+ *
+ * There are two kinds of light. Sky light enters from above, falls straight down through clear blocks without
+ * dimming, and otherwise spreads like block light. Block light is given off by blocks and loses one level per block
+ * it crosses, plus the opacity of each block it enters.
+ *
+ * Light is spread by breadth-first search. When a block changes, the light that passed through it is first taken
+ * back by a search that clears every level which could have depended on it, and then the light around the cleared
+ * region is spread back in. Both searches run over whichever chunks exist, so light crosses chunk borders freely.
+ * Chunks which do not exist are treated as open sky above and as darkness to every other side.
+ */
+public class LightEngine {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The light engine for the world.
+     */
+    public static final LightEngine WORLD = new LightEngine();
+
+    /**
+     * The greatest light level.
+     */
+    public static final int MAX_LEVEL = NibbleArray.MAX_VALUE;
+
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * The kinds of light, as values of the {@code sky} parameter of the searches.
+     */
+    private static final boolean[] KINDS = new boolean[]{true, false};
+
+    // ##### PRIVATE FINAL #####
+    /**
+     * Blocks whose light should be spread to their neighbors, and blocks whose former light should be taken back
+     * from their neighbors. Each entry is four elements: the coordinates of the block, then its light level.
+     */
+    private final IntQueue increases;
+    private final IntQueue decreases;
+
+    // ##### PRIVATE #####
+    /**
+     * The chunk found by the last lookup, which the next lookup will probably want too. Forgotten at the start of each
+     * update, since chunks may have been unloaded since the last, but not during one: chunks are only unloaded with
+     * this engine's lock held.
+     */
+    private Chunk cachedChunk;
+
+    /**
+     * What to tell of each block put with {@link #putBlock(Block)}. Replaced rather than modified, so that it can be
+     * read without locking.
+     */
+    private volatile Consumer<Block>[] editListeners;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a light engine.
+     */
+    public LightEngine() {
+        this.increases = new IntQueue();
+        this.decreases = new IntQueue();
+        this.cachedChunk = null;
+        this.editListeners = newListeners(0);
+    }
+
+    // ##### UPDATES #####
+    /**
+     * Recompute the light of a chunk from scratch, and update the light of the chunks around it to match.
+     *
+     * Should be called once a chunk's blocks have been put in place without going through {@link #blockChanged(int,
+     * int, int)}, as when the chunk is generated.
+     * @param chunk The chunk.
+     */
+    public synchronized void lightChunk(final Chunk chunk) {
+        this.cachedChunk = null;
+        final int anchorX = chunk.getAnchor().getXInt();
+        final int anchorY = chunk.getAnchor().getYInt();
+        final int anchorZ = chunk.getAnchor().getZInt();
+        for (final boolean sky : KINDS) {
+            final NibbleArray levels = sky ? chunk.getSkyLight() : chunk.getBlockLight();
+            // Take back the chunk's old light from its neighbors. Only border blocks have neighbors outside it.
+            for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+                for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                    for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                        if (!onBorder(x - anchorX, y - anchorY, z - anchorZ)) {
+                            continue;
+                        }
+                        final int level = levels.get(chunk.lightIndex(x, y, z));
+                        if (level > 0) {
+                            enqueue(this.decreases, x, y, z, level);
+                        }
+                    }
+                }
+            }
+            levels.fill(0);
+            this.spreadDecreases(sky);
+            // Spread in new light from the chunk's own sources and from its neighbors.
+            for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+                for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                    for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                        this.seed(chunk, x, y, z, sky);
+                        if (onBorder(x - anchorX, y - anchorY, z - anchorZ)) {
+                            this.enqueueNeighbors(x, y, z, sky);
+                        }
+                    }
+                }
+            }
+            this.spreadIncreases(sky);
+        }
+    }
+
+    /**
+     * Update light after a block has changed.
+     * @param x The x-coordinate of the anchor point of the block.
+     * @param y The y-coordinate of the anchor point of the block.
+     * @param z The z-coordinate of the anchor point of the block.
+     */
+    public synchronized void blockChanged(final int x, final int y, final int z) {
+        this.cachedChunk = null;
+        final Chunk chunk = this.chunkAt(x, y, z);
+        if (chunk == null) {
+            return;
+        }
+        final int index = chunk.lightIndex(x, y, z);
+        for (final boolean sky : KINDS) {
+            final NibbleArray levels = sky ? chunk.getSkyLight() : chunk.getBlockLight();
+            final int level = levels.get(index);
+            if (level > 0) {
+                levels.set(index, 0);
+                enqueue(this.decreases, x, y, z, level);
+                this.spreadDecreases(sky);
+            }
+            this.seed(chunk, x, y, z, sky);
+            this.enqueueNeighbors(x, y, z, sky);
+            this.spreadIncreases(sky);
+        }
+    }
+
+    /**
+     * Put a block into the chunk containing it, and update light to match.
+     * @param block The block.
+     */
+    public void putBlock(final Block block) {
+        final int x = block.getPos().getXInt();
+        final int y = block.getPos().getYInt();
+        final int z = block.getPos().getZInt();
+        Chunk.containingChunk(x, y, z).putBlock(block);
+        this.blockChanged(x, y, z);
+        for (final Consumer<Block> listener : this.editListeners) {
+            listener.accept(block);
+        }
+    }
+
+    /**
+     * Add something to tell of each block put with {@link #putBlock(Block)}, once it is in place, such as a journal of
+     * edits. It is called on the thread which put the block.
+     * @param listener The listener.
+     */
+    public synchronized void addEditListener(final Consumer<Block> listener) {
+        final Consumer<Block>[] listeners = Arrays.copyOf(this.editListeners, this.editListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        this.editListeners = listeners;
+    }
+
+    /**
+     * Stop telling a listener of blocks put. See {@link #addEditListener(Consumer)}.
+     * @param listener The listener.
+     */
+    public synchronized void removeEditListener(final Consumer<Block> listener) {
+        final Consumer<Block>[] listeners = newListeners(this.editListeners.length);
+        int count = 0;
+        for (final Consumer<Block> other : this.editListeners) {
+            if (other != listener) {
+                listeners[count] = other;
+                count++;
+            }
+        }
+        this.editListeners = Arrays.copyOf(listeners, count);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Consumer<Block>[] newListeners(final int length) {
+        return (Consumer<Block>[])new Consumer[length];
+    }
+
+    // ##### QUERIES #####
+    /**
+     * Get the level of light at some block, the brighter of its sky light and block light.
+     * @param x The x-coordinate of the anchor point of the block.
+     * @param y The y-coordinate of the anchor point of the block.
+     * @param z The z-coordinate of the anchor point of the block.
+     * @return The level of light at the block, or {@link #MAX_LEVEL} if its chunk does not exist.
+     */
+    public static int getLight(final int x, final int y, final int z) {
+        final Chunk chunk = Chunk.existingChunk(x, y, z);
+        return chunk == null ? MAX_LEVEL : chunk.getLight(x, y, z);
+    }
+
+    // ##### SEARCHES #####
+    /**
+     * Spread light from the blocks in the increase queue until no block can be made brighter.
+     * @param sky Whether to spread sky light rather than block light.
+     */
+    private void spreadIncreases(final boolean sky) {
+        while (!this.increases.isEmpty()) {
+            final int x = this.increases.remove();
+            final int y = this.increases.remove();
+            final int z = this.increases.remove();
+            final int level = this.increases.remove();
+            // Skip entries made stale by a later, brighter entry for the same block.
+            final Chunk chunk = this.chunkAt(x, y, z);
+            if (chunk == null || levels(chunk, sky).get(chunk.lightIndex(x, y, z)) != level) {
+                continue;
+            }
+            for (int direction = 0; direction < BlockPos.DIRECTIONS; direction++) {
+                final int nx = x + BlockPos.directionX(direction);
+                final int ny = y + BlockPos.directionY(direction);
+                final int nz = z + BlockPos.directionZ(direction);
+                final Chunk neighborChunk = this.chunkAt(nx, ny, nz);
+                if (neighborChunk == null) {
+                    continue;
+                }
+                final int opacity = neighborChunk.getBlock(nx, ny, nz).getLightOpacity();
+                final int newLevel = spreadLevel(level, opacity, sky && direction == BlockPos.NEG_Y);
+                if (newLevel <= 0) {
+                    continue;
+                }
+                final NibbleArray neighborLevels = levels(neighborChunk, sky);
+                final int neighborIndex = neighborChunk.lightIndex(nx, ny, nz);
+                if (newLevel > neighborLevels.get(neighborIndex)) {
+                    neighborLevels.set(neighborIndex, newLevel);
+                    enqueue(this.increases, nx, ny, nz, newLevel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Take back light from the neighbors of the blocks in the decrease queue, clearing every level which may have
+     * come from them. The blocks lit independently at the edge of the cleared region are put in the increase queue,
+     * so that spreading increases afterwards relights the region.
+     * @param sky Whether to take back sky light rather than block light.
+     */
+    private void spreadDecreases(final boolean sky) {
+        while (!this.decreases.isEmpty()) {
+            final int x = this.decreases.remove();
+            final int y = this.decreases.remove();
+            final int z = this.decreases.remove();
+            final int level = this.decreases.remove();
+            for (int direction = 0; direction < BlockPos.DIRECTIONS; direction++) {
+                final int nx = x + BlockPos.directionX(direction);
+                final int ny = y + BlockPos.directionY(direction);
+                final int nz = z + BlockPos.directionZ(direction);
+                final Chunk neighborChunk = this.chunkAt(nx, ny, nz);
+                if (neighborChunk == null) {
+                    continue;
+                }
+                final NibbleArray neighborLevels = levels(neighborChunk, sky);
+                final int neighborIndex = neighborChunk.lightIndex(nx, ny, nz);
+                final int neighborLevel = neighborLevels.get(neighborIndex);
+                if (neighborLevel == 0) {
+                    continue;
+                }
+                final boolean fellFromHere = sky && direction == BlockPos.NEG_Y && level == MAX_LEVEL
+                        && neighborLevel == MAX_LEVEL;
+                if (neighborLevel < level || fellFromHere) {
+                    neighborLevels.set(neighborIndex, 0);
+                    enqueue(this.decreases, nx, ny, nz, neighborLevel);
+                    if (!sky) {
+                        final int emission = neighborChunk.getBlock(nx, ny, nz).getLightEmission();
+                        if (emission > 0) {
+                            neighborLevels.set(neighborIndex, emission);
+                            enqueue(this.increases, nx, ny, nz, emission);
+                        }
+                    }
+                } else {
+                    enqueue(this.increases, nx, ny, nz, neighborLevel);
+                }
+            }
+        }
+    }
+
+    // ##### HELPERS #####
+    /**
+     * Light a block by its own emission or, if its chunk is the highest that exists, by the sky above it, and put it
+     * in the increase queue if it was lit.
+     */
+    private void seed(final Chunk chunk, final int x, final int y, final int z, final boolean sky) {
+        final Block block = chunk.getBlock(x, y, z);
+        final int level;
+        if (sky) {
+            if (chunk.contains(x, y + 1, z) || this.chunkAt(x, y + 1, z) != null) {
+                return;
+            }
+            level = spreadLevel(MAX_LEVEL, block.getLightOpacity(), true);
+        } else {
+            level = block.getLightEmission();
+        }
+        final NibbleArray levels = levels(chunk, sky);
+        final int index = chunk.lightIndex(x, y, z);
+        if (level > levels.get(index)) {
+            levels.set(index, level);
+            enqueue(this.increases, x, y, z, level);
+        }
+    }
+
+    /**
+     * Put the lit neighbors of a block in the increase queue, so that their light spreads into it.
+     */
+    private void enqueueNeighbors(final int x, final int y, final int z, final boolean sky) {
+        for (int direction = 0; direction < BlockPos.DIRECTIONS; direction++) {
+            final int nx = x + BlockPos.directionX(direction);
+            final int ny = y + BlockPos.directionY(direction);
+            final int nz = z + BlockPos.directionZ(direction);
+            final Chunk neighborChunk = this.chunkAt(nx, ny, nz);
+            if (neighborChunk == null) {
+                continue;
+            }
+            final int level = levels(neighborChunk, sky).get(neighborChunk.lightIndex(nx, ny, nz));
+            if (level > 0) {
+                enqueue(this.increases, nx, ny, nz, level);
+            }
+        }
+    }
+
+    /**
+     * Get the chunk containing a block, if it exists.
+     */
+    private Chunk chunkAt(final int x, final int y, final int z) {
+        if (this.cachedChunk != null && this.cachedChunk.contains(x, y, z)) {
+            return this.cachedChunk;
+        }
+        final Chunk chunk = Chunk.existingChunk(x, y, z);
+        if (chunk != null) {
+            this.cachedChunk = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Get the level light reaches after spreading into a block.
+     * @param level The level of the light before spreading.
+     * @param opacity The opacity of the block.
+     * @param skyFalling Whether the light is sky light spreading downward.
+     * @return The level of the light in the block.
+     */
+    private static int spreadLevel(final int level, final int opacity, final boolean skyFalling) {
+        if (opacity >= Block.OPAQUE) {
+            return 0;
+        }
+        if (skyFalling && level == MAX_LEVEL && opacity == 0) {
+            return MAX_LEVEL;
+        }
+        return Math.max(level - 1 - opacity, 0);
+    }
+
+    private static NibbleArray levels(final Chunk chunk, final boolean sky) {
+        return sky ? chunk.getSkyLight() : chunk.getBlockLight();
+    }
+
+    private static boolean onBorder(final int x, final int y, final int z) {
+        final int last = Chunk.BLOCKS - 1;
+        return x == 0 || y == 0 || z == 0 || x == last || y == last || z == last;
+    }
+
+    private static void enqueue(final IntQueue queue, final int x, final int y, final int z, final int level) {
+        queue.add(x);
+        queue.add(y);
+        queue.add(z);
+        queue.add(level);
+    }
+}
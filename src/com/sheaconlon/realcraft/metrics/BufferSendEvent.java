@@ -0,0 +1,42 @@
+package com.sheaconlon.realcraft.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the sending of a chunk's VBO to the GPU.
+ */
+@Name("realcraft.BufferSend")
+@Label("VBO Send")
+@Description("Uploading a chunk's pre-rendered vertices to the GPU")
+public class BufferSendEvent extends ChunkEvent {
+    @Label("Vertices")
+    @Description("The number of vertices sent, counting repeats")
+    private int vertices;
+
+    @Label("Success")
+    private boolean success;
+
+    /**
+     * Create an event for the sending of some chunk's VBO.
+     * @param pos The packed position of the chunk. See {@link com.sheaconlon.realcraft.world.ChunkPos}.
+     */
+    public BufferSendEvent(final long pos) {
+        super(pos);
+    }
+
+    /**
+     * @param vertices The number of vertices sent, counting repeats.
+     */
+    public void setVertices(final int vertices) {
+        this.vertices = vertices;
+    }
+
+    /**
+     * @param success Whether the VBO was sent successfully.
+     */
+    public void setSuccess(final boolean success) {
+        this.success = success;
+    }
+}
@@ -0,0 +1,34 @@
+package com.sheaconlon.realcraft.metrics;
+
+import com.sheaconlon.realcraft.world.BlockPos;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+
+/**
+ * A Flight Recorder event about some chunk, which records the chunk's position.
+ *
+ * Like the other events in this package, chunk events are created once per operation. They cost almost nothing when
+ * no recording has them enabled, since the JIT compiler can then remove the allocation entirely.
+ */
+@Category({"Realcraft", "Chunk Pipeline"})
+public abstract class ChunkEvent extends jdk.jfr.Event {
+    // Not private, since Flight Recorder only records the private fields of the event class itself.
+    @Label("Chunk X")
+    int chunkX;
+
+    @Label("Chunk Y")
+    int chunkY;
+
+    @Label("Chunk Z")
+    int chunkZ;
+
+    /**
+     * Create an event about some chunk.
+     * @param pos The packed position of the chunk. See {@link com.sheaconlon.realcraft.world.ChunkPos}.
+     */
+    protected ChunkEvent(final long pos) {
+        this.chunkX = BlockPos.getX(pos);
+        this.chunkY = BlockPos.getY(pos);
+        this.chunkZ = BlockPos.getZ(pos);
+    }
+}
@@ -0,0 +1,21 @@
+package com.sheaconlon.realcraft.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the generation and initial lighting of a chunk.
+ */
+@Name("realcraft.ChunkGeneration")
+@Label("Chunk Generation")
+@Description("Filling a chunk with terrain and lighting it")
+public class ChunkGenerationEvent extends ChunkEvent {
+    /**
+     * Create an event for the generation of some chunk.
+     * @param pos The packed position of the chunk. See {@link com.sheaconlon.realcraft.world.ChunkPos}.
+     */
+    public ChunkGenerationEvent(final long pos) {
+        super(pos);
+    }
+}
@@ -0,0 +1,32 @@
+package com.sheaconlon.realcraft.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the pre-rendering of a chunk into a VBO.
+ */
+@Name("realcraft.ChunkMeshing")
+@Label("Chunk Meshing")
+@Description("Pre-rendering a chunk's blocks into the vertices of a VBO")
+public class ChunkMeshingEvent extends ChunkEvent {
+    @Label("Vertices")
+    @Description("The number of vertices written, counting repeats")
+    private int vertices;
+
+    /**
+     * Create an event for the meshing of some chunk.
+     * @param pos The packed position of the chunk. See {@link com.sheaconlon.realcraft.world.ChunkPos}.
+     */
+    public ChunkMeshingEvent(final long pos) {
+        super(pos);
+    }
+
+    /**
+     * @param vertices The number of vertices written, counting repeats.
+     */
+    public void setVertices(final int vertices) {
+        this.vertices = vertices;
+    }
+}
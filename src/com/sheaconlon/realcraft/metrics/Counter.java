@@ -0,0 +1,37 @@
+package com.sheaconlon.realcraft.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of some event, which may be added to from any thread without allocating.
+ */
+public class Counter implements CounterMXBean {
+    private final LongAdder count;
+
+    /**
+     * Create a counter at 0. Usually called through {@link Metrics#counter(String, String)}.
+     */
+    public Counter() {
+        this.count = new LongAdder();
+    }
+
+    /**
+     * Add 1 to this counter.
+     */
+    public void increment() {
+        this.count.increment();
+    }
+
+    /**
+     * Add some amount to this counter.
+     * @param amount The amount.
+     */
+    public void add(final long amount) {
+        this.count.add(amount);
+    }
+
+    @Override
+    public long getCount() {
+        return this.count.sum();
+    }
+}
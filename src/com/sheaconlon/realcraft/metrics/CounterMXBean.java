@@ -0,0 +1,11 @@
+package com.sheaconlon.realcraft.metrics;
+
+/**
+ * The management interface of a {@link Counter}.
+ */
+public interface CounterMXBean {
+    /**
+     * @return The current count.
+     */
+    long getCount();
+}
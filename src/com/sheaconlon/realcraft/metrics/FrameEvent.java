@@ -0,0 +1,31 @@
+package com.sheaconlon.realcraft.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the rendering of a frame.
+ */
+@Name("realcraft.Frame")
+@Label("Frame")
+@Category({"Realcraft", "Rendering"})
+@Description("Rendering one frame, from refilling empty VBOs to swapping buffers")
+public class FrameEvent extends jdk.jfr.Event {
+    @Label("Chunks Drawn")
+    private int chunksDrawn;
+
+    @Label("Vertices Drawn")
+    @Description("The number of vertices drawn, counting repeats")
+    private int verticesDrawn;
+
+    /**
+     * @param chunksDrawn The number of chunks drawn.
+     * @param verticesDrawn The number of vertices drawn, counting repeats.
+     */
+    public void setDrawn(final int chunksDrawn, final int verticesDrawn) {
+        this.chunksDrawn = chunksDrawn;
+        this.verticesDrawn = verticesDrawn;
+    }
+}
@@ -0,0 +1,139 @@
+package com.sheaconlon.realcraft.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, stored in primitive log-scaled buckets.
+ *
+ * Durations are recorded in nanoseconds. Each power of two is split into {@link #SUB_BUCKETS} buckets, so percentiles
+ * are reported to within about 6%, using a fixed 8 KB of memory however many durations are recorded. Recording does
+ * not allocate and may happen on any thread; reads from other threads see a consistent enough picture for monitoring.
+ */
+public class Histogram implements HistogramMXBean {
+    // ##### PRIVATE STATIC FINAL #####
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final double NANOSECONDS_PER_MILLISECOND = 1_000_000;
+
+    // ##### PRIVATE FINAL #####
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create an empty histogram. Usually called through {@link Metrics#histogram(String, String)}.
+     */
+    public Histogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    // ##### RECORDING #####
+    /**
+     * Record a duration.
+     * @param nanoseconds The duration. In nanoseconds. Negative durations are recorded as 0.
+     */
+    public void record(final long nanoseconds) {
+        final long value = Math.max(0, nanoseconds);
+        this.counts.incrementAndGet(bucket(value));
+        this.count.incrementAndGet();
+        this.sum.addAndGet(value);
+        this.max.accumulateAndGet(value, Math::max);
+    }
+
+    // ##### QUERYING #####
+    /**
+     * Get a percentile of the durations recorded.
+     * @param fraction The fraction of durations which should be no longer than the result. Between 0 and 1.
+     * @return The upper bound of the bucket containing the percentile, capped at the longest duration recorded, or 0
+     * if no durations have been recorded. In nanoseconds.
+     */
+    public long percentile(final double fraction) {
+        final long total = this.count.get();
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long)Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * @return The sum of the durations recorded. In nanoseconds.
+     */
+    public long getSum() {
+        return this.sum.get();
+    }
+
+    @Override
+    public long getCount() {
+        return this.count.get();
+    }
+
+    @Override
+    public double getMean() {
+        final long total = this.count.get();
+        return total == 0 ? 0 : this.sum.get() / NANOSECONDS_PER_MILLISECOND / total;
+    }
+
+    @Override
+    public double getP50() {
+        return this.percentile(0.5) / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    @Override
+    public double getP99() {
+        return this.percentile(0.99) / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    @Override
+    public double getMax() {
+        return this.max.get() / NANOSECONDS_PER_MILLISECOND;
+    }
+
+    // ##### BUCKETS #####
+    /**
+     * @param value A nonnegative value.
+     * @return The index of the bucket containing {@code value}.
+     */
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int)((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @param bucket The index of a bucket.
+     * @return The smallest value in the bucket.
+     */
+    static long lowerBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        return (long)(SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @param bucket The index of a bucket.
+     * @return The largest value in the bucket.
+     */
+    static long upperBound(final int bucket) {
+        return bucket + 1 == BUCKETS ? Long.MAX_VALUE : lowerBound(bucket + 1) - 1;
+    }
+}
@@ -0,0 +1,31 @@
+package com.sheaconlon.realcraft.metrics;
+
+/**
+ * The management interface of a {@link Histogram}. All durations are in milliseconds.
+ */
+public interface HistogramMXBean {
+    /**
+     * @return The number of durations recorded.
+     */
+    long getCount();
+
+    /**
+     * @return The mean of the durations recorded, or 0 if there are none.
+     */
+    double getMean();
+
+    /**
+     * @return The median of the durations recorded, to within the precision of the histogram.
+     */
+    double getP50();
+
+    /**
+     * @return The 99th percentile of the durations recorded, to within the precision of the histogram.
+     */
+    double getP99();
+
+    /**
+     * @return The longest duration recorded, exactly.
+     */
+    double getMax();
+}
@@ -0,0 +1,102 @@
+package com.sheaconlon.realcraft.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The registry of the game's counters and histograms.
+ *
+ * Every metric belongs to a group, such as a worker, and has a name within it. Metrics are registered with the
+ * platform MBean server as {@code realcraft:type=GROUP,name=NAME}, so they can be watched with JConsole or any other
+ * JMX client, and can be dumped as text with {@link #format()}.
+ */
+public final class Metrics {
+    // ##### PRIVATE STATIC FINAL #####
+    private static final String DOMAIN = "realcraft";
+
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    // ##### CONSTRUCTORS #####
+    private Metrics() {
+    }
+
+    // ##### REGISTRATION #####
+    /**
+     * Get a counter, creating and registering it if needed.
+     * @param group The group of the counter.
+     * @param name The name of the counter within its group.
+     * @return The counter named {@code name} in group {@code group}.
+     */
+    public static Counter counter(final String group, final String name) {
+        return COUNTERS.computeIfAbsent(key(group, name), k -> register(group, name, new Counter()));
+    }
+
+    /**
+     * Get a histogram, creating and registering it if needed.
+     * @param group The group of the histogram.
+     * @param name The name of the histogram within its group.
+     * @return The histogram named {@code name} in group {@code group}.
+     */
+    public static Histogram histogram(final String group, final String name) {
+        return HISTOGRAMS.computeIfAbsent(key(group, name), k -> register(group, name, new Histogram()));
+    }
+
+    // ##### REPORTING #####
+    /**
+     * @return A read-only view of all the counters, by {@code GROUP.NAME}, sorted.
+     */
+    public static Map<String, Counter> getCounters() {
+        return Collections.unmodifiableMap(COUNTERS);
+    }
+
+    /**
+     * @return A read-only view of all the histograms, by {@code GROUP.NAME}, sorted.
+     */
+    public static Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(HISTOGRAMS);
+    }
+
+    /**
+     * Format all the metrics as text, one per line, sorted by group and then name.
+     * @return The text.
+     */
+    public static String format() {
+        final StringBuilder text = new StringBuilder();
+        for (final Map.Entry<String, Histogram> entry : HISTOGRAMS.entrySet()) {
+            final Histogram histogram = entry.getValue();
+            text.append(String.format("%-40s n=%-9d mean=%9.3fms p50=%9.3fms p99=%9.3fms max=%9.3fms%n",
+                    entry.getKey(), histogram.getCount(), histogram.getMean(), histogram.getP50(),
+                    histogram.getP99(), histogram.getMax()));
+        }
+        for (final Map.Entry<String, Counter> entry : COUNTERS.entrySet()) {
+            text.append(String.format("%-40s %d%n", entry.getKey(), entry.getValue().getCount()));
+        }
+        return text.toString();
+    }
+
+    // ##### PRIVATE #####
+    private static String key(final String group, final String name) {
+        return group + "." + name;
+    }
+
+    private static <T> T register(final String group, final String name, final T metric) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName objectName = new ObjectName(DOMAIN + ":type=" + ObjectName.quote(group)
+                    + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metric, objectName);
+            }
+        } catch (final JMException e) {
+            throw new RuntimeException("could not register metric " + key(group, name), e);
+        }
+        return metric;
+    }
+}
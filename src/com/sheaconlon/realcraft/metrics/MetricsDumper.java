@@ -0,0 +1,77 @@
+package com.sheaconlon.realcraft.metrics;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+
+import java.io.PrintStream;
+
+/**
+ * A metrics dumper, which periodically prints all the metrics in {@link Metrics} as text.
+ *
+ * Histograms and counters are cumulative since startup, so each dump summarizes the whole run so far.
+ */
+public class MetricsDumper extends Worker {
+    /**
+     * The system property which, if set, gives the interval between dumps. In seconds.
+     */
+    public static final String INTERVAL_PROPERTY = "realcraft.metrics.dumpInterval";
+
+    private final double interval;
+    private final PrintStream out;
+
+    /**
+     * Create a metrics dumper.
+     * @param interval The interval between dumps. In seconds.
+     * @param out The stream to print dumps to.
+     */
+    public MetricsDumper(final double interval, final PrintStream out) {
+        this.interval = interval;
+        this.out = out;
+    }
+
+    /**
+     * Create a metrics dumper as configured by the {@link #INTERVAL_PROPERTY} system property, printing to standard
+     * output.
+     * @return The metrics dumper, or null if the property is not set.
+     */
+    public static MetricsDumper fromSystemProperties() {
+        final String interval = System.getProperty(INTERVAL_PROPERTY);
+        if (interval == null) {
+            return null;
+        }
+        return new MetricsDumper(Double.parseDouble(interval), System.out);
+    }
+
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.LOW;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsDumper";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return 1 / this.interval;
+    }
+
+    /**
+     * Print all the metrics.
+     */
+    @Override
+    protected void tick(final double interval) {
+        this.out.print(Metrics.format());
+        this.out.println();
+    }
+}
@@ -0,0 +1,27 @@
+package com.sheaconlon.realcraft.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for the time a runner spends between ticks, choosing a worker or sleeping until one is
+ * due.
+ */
+@Name("realcraft.SchedulerWait")
+@Label("Scheduler Wait")
+@Category({"Realcraft", "Scheduling"})
+@Description("A runner choosing the next worker to tick, including any sleeps because none was due")
+public class SchedulerWaitEvent extends jdk.jfr.Event {
+    @Label("Sleeps")
+    @Description("The number of times the runner slept because no worker was due")
+    private int sleeps;
+
+    /**
+     * Count a sleep because no worker was due.
+     */
+    public void addSleep() {
+        this.sleeps++;
+    }
+}
@@ -0,0 +1,145 @@
+package com.sheaconlon.realcraft.metrics;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A throughput reporter, which periodically prints how fast each counter in {@link Metrics} has grown, and how often
+ * each histogram has been recorded to, over the last interval.
+ *
+ * Counters of time, whose names end in {@value #TIME_COUNTER_SUFFIX}, are reported as a percentage of the wall-clock
+ * time instead. Meant for runs with no display, where these rates are the only output.
+ */
+public class ThroughputReporter extends Worker {
+    private static final double NANOSECONDS_PER_SECOND = 1_000_000_000;
+    private static final String TIME_COUNTER_SUFFIX = "Nanoseconds";
+
+    private final double interval;
+    private final PrintStream out;
+
+    /**
+     * The counts of the counters and histograms at startup and at the last report, by name.
+     */
+    private final Map<String, Long> startCounts;
+    private final Map<String, Long> lastCounts;
+
+    /**
+     * The times of startup and of the last report. As given by {@link System#nanoTime()}.
+     */
+    private final long startTime;
+    private long lastTime;
+
+    /**
+     * Create a throughput reporter. Its first report will cover the time since its creation.
+     * @param interval The interval between reports. In seconds.
+     * @param out The stream to print reports to.
+     */
+    public ThroughputReporter(final double interval, final PrintStream out) {
+        this.interval = interval;
+        this.out = out;
+        this.startCounts = new HashMap<>();
+        this.lastCounts = new HashMap<>();
+        this.startTime = System.nanoTime();
+        this.lastTime = this.startTime;
+        this.snapshot(this.startCounts);
+        this.snapshot(this.lastCounts);
+    }
+
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.LOW;
+    }
+
+    @Override
+    public String toString() {
+        return "ThroughputReporter";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return 1 / this.interval;
+    }
+
+    /**
+     * Print the rates over the time since the last report.
+     */
+    @Override
+    protected void tick(final double interval) {
+        this.out.print(this.formatInterval());
+    }
+
+    // ##### REPORTS #####
+    /**
+     * Format the rates over the time since the last report, and start a new interval.
+     * @return The report.
+     */
+    public String formatInterval() {
+        final long now = System.nanoTime();
+        final long elapsed = now - this.lastTime;
+        final String report = this.format("last " + seconds(elapsed), this.lastCounts, elapsed);
+        this.lastTime = now;
+        this.snapshot(this.lastCounts);
+        return report;
+    }
+
+    /**
+     * Format the rates over the time since this reporter was created.
+     * @return The report.
+     */
+    public String formatTotal() {
+        final long now = System.nanoTime();
+        return this.format("total " + seconds(now - this.startTime), this.startCounts, now - this.startTime);
+    }
+
+    // ##### PRIVATE #####
+    private String format(final String title, final Map<String, Long> baseline, final long elapsed) {
+        final double elapsedSeconds = Math.max(elapsed, 1) / NANOSECONDS_PER_SECOND;
+        final StringBuilder text = new StringBuilder();
+        text.append(String.format("throughput, %s, uptime %s%n", title,
+                seconds(System.nanoTime() - this.startTime)));
+        for (final Map.Entry<String, Counter> entry : Metrics.getCounters().entrySet()) {
+            final long count = entry.getValue().getCount();
+            final long delta = count - baseline.getOrDefault(entry.getKey(), 0L);
+            if (entry.getKey().endsWith(TIME_COUNTER_SUFFIX)) {
+                text.append(String.format("  %-40s %12.1f%%  total %s%n", entry.getKey(),
+                        100.0 * delta / Math.max(elapsed, 1), seconds(count)));
+            } else {
+                text.append(String.format("  %-40s %12.1f/s  total %d%n", entry.getKey(), delta / elapsedSeconds,
+                        count));
+            }
+        }
+        for (final Map.Entry<String, Histogram> entry : Metrics.getHistograms().entrySet()) {
+            final Histogram histogram = entry.getValue();
+            final long delta = histogram.getCount() - baseline.getOrDefault(entry.getKey(), 0L);
+            text.append(String.format("  %-40s %12.1f/s  p99 %.3fms%n", entry.getKey(), delta / elapsedSeconds,
+                    histogram.getP99()));
+        }
+        return text.toString();
+    }
+
+    private void snapshot(final Map<String, Long> dest) {
+        for (final Map.Entry<String, Counter> entry : Metrics.getCounters().entrySet()) {
+            dest.put(entry.getKey(), entry.getValue().getCount());
+        }
+        for (final Map.Entry<String, Histogram> entry : Metrics.getHistograms().entrySet()) {
+            dest.put(entry.getKey(), entry.getValue().getCount());
+        }
+    }
+
+    private static String seconds(final long nanoseconds) {
+        return String.format("%.1fs", nanoseconds / NANOSECONDS_PER_SECOND);
+    }
+}
@@ -0,0 +1,33 @@
+package com.sheaconlon.realcraft.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for a runner's tick of a worker.
+ */
+@Name("realcraft.WorkerTick")
+@Label("Worker Tick")
+@Category({"Realcraft", "Scheduling"})
+@Description("A runner ticking a worker")
+public class WorkerTickEvent extends jdk.jfr.Event {
+    @Label("Worker")
+    private String worker;
+
+    @Label("Lateness")
+    @Description("How long after it was due the tick started")
+    @Timespan(Timespan.NANOSECONDS)
+    private long lateness;
+
+    /**
+     * @param worker The name of the worker.
+     * @param lateness How long after it was due the tick started. In nanoseconds.
+     */
+    public void set(final String worker, final long lateness) {
+        this.worker = worker;
+        this.lateness = lateness;
+    }
+}
@@ -0,0 +1,82 @@
+package com.sheaconlon.realcraft.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reader of values written by a {@link BitWriter}.
+ */
+class BitReader {
+    private final ByteBuffer src;
+    private final int start;
+    private final long limit;
+
+    /**
+     * The number of bits read.
+     */
+    private long position;
+
+    /**
+     * Create a reader of the rest of a buffer, which it does not move.
+     * @param src The buffer.
+     */
+    BitReader(final ByteBuffer src) {
+        this.src = src;
+        this.start = src.position();
+        this.limit = 8L * src.remaining();
+        this.position = 0;
+    }
+
+    /**
+     * Read some bits as the low bits of a value.
+     * @param bits The number of bits. At most 64.
+     * @return The value.
+     */
+    long readBits(final int bits) {
+        if (this.position + bits > this.limit) {
+            throw new IllegalArgumentException("bit-packed data is truncated");
+        }
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            final int b = this.src.get(this.start + (int)(this.position >>> 3));
+            value = (value << 1) | ((b >>> (7 - (this.position & 7))) & 1);
+            this.position++;
+        }
+        return value;
+    }
+
+    /**
+     * @return The number of bits not yet read, counting any padding at the end.
+     */
+    long getBitsLeft() {
+        return this.limit - this.position;
+    }
+
+    /**
+     * @return The next bit.
+     */
+    boolean readBit() {
+        return this.readBits(1) != 0;
+    }
+
+    /**
+     * @return The next number written by {@link BitWriter#writeUnsigned(int)}.
+     */
+    int readUnsigned() {
+        if (!this.readBit()) {
+            return (int)this.readBits(4);
+        } else if (!this.readBit()) {
+            return (int)this.readBits(8);
+        } else if (!this.readBit()) {
+            return (int)this.readBits(16);
+        }
+        return (int)this.readBits(32);
+    }
+
+    /**
+     * @return The next number written by {@link BitWriter#writeSigned(int)}.
+     */
+    int readSigned() {
+        final int zigzag = this.readUnsigned();
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.sheaconlon.realcraft.network;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A writer of values packed into as few bits as they need, most significant bit first.
+ *
+ * Small numbers are written in fewer bits than large ones by {@link #writeUnsigned(int)} and
+ * {@link #writeSigned(int)}: a prefix of up to three bits says whether 4, 8, 16 or 32 bits follow. Read back with a
+ * {@link BitReader}. Can be reused by calling {@link #clear()}.
+ */
+class BitWriter {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] bytes;
+
+    /**
+     * The number of bits written.
+     */
+    private long length;
+
+    /**
+     * Create an empty writer.
+     */
+    BitWriter() {
+        this.bytes = new byte[INITIAL_CAPACITY];
+        this.length = 0;
+    }
+
+    /**
+     * Forget everything written.
+     */
+    void clear() {
+        Arrays.fill(this.bytes, 0, this.getNumBytes(), (byte)0);
+        this.length = 0;
+    }
+
+    /**
+     * Write the low bits of a value.
+     * @param value The value.
+     * @param bits The number of its low bits to write. At most 64.
+     */
+    void writeBits(final long value, final int bits) {
+        if (this.length + bits > 8L * this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(2 * this.bytes.length, this.getNumBytes() + 8));
+        }
+        for (int i = bits - 1; i >= 0; i--) {
+            if (((value >>> i) & 1) != 0) {
+                this.bytes[(int)(this.length >>> 3)] |= (byte)(0x80 >>> (this.length & 7));
+            }
+            this.length++;
+        }
+    }
+
+    /**
+     * Write a bit.
+     * @param bit The bit.
+     */
+    void writeBit(final boolean bit) {
+        this.writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Write a number in as few bits as its size allows.
+     * @param value The number, taken as unsigned.
+     */
+    void writeUnsigned(final int value) {
+        if ((value & ~0xF) == 0) {
+            this.writeBits(0b0, 1);
+            this.writeBits(value, 4);
+        } else if ((value & ~0xFF) == 0) {
+            this.writeBits(0b10, 2);
+            this.writeBits(value, 8);
+        } else if ((value & ~0xFFFF) == 0) {
+            this.writeBits(0b110, 3);
+            this.writeBits(value, 16);
+        } else {
+            this.writeBits(0b111, 3);
+            this.writeBits(value, 32);
+        }
+    }
+
+    /**
+     * Write a number in as few bits as its magnitude allows.
+     * @param value The number.
+     */
+    void writeSigned(final int value) {
+        // Interleave negative and positive numbers, so that those near zero either way are small.
+        this.writeUnsigned((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * @return The number of whole or partial bytes written.
+     */
+    int getNumBytes() {
+        return (int)((this.length + 7) >>> 3);
+    }
+
+    /**
+     * Put what was written into a buffer, padded to whole bytes with zeros.
+     * @param dest The buffer.
+     */
+    void writeTo(final ByteBuffer dest) {
+        dest.put(this.bytes, 0, this.getNumBytes());
+    }
+}
@@ -0,0 +1,221 @@
+package com.sheaconlon.realcraft.network;
+
+import com.sheaconlon.realcraft.blocks.AirBlock;
+import com.sheaconlon.realcraft.blocks.Block;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.blocks.LeafBlock;
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+
+/**
+ * An encoder and decoder of chunks as compact binary, for sending over the network and storing on disk.
+ *
+ * A chunk's blocks are encoded as runs, each a byte giving the type of block and a short giving how many blocks in a
+ * row have it, visiting the blocks in the same order as {@link Chunk#lightIndex(int, int, int)}. Most chunks are
+ * mostly air or mostly dirt, so most need only a few runs. The sky and block light follow as packed nibbles. The
+ * encoded chunk may then be compressed with {@link Deflater}, which mostly shrinks the light.
+ */
+public final class ChunkCodec {
+    // ##### PACKAGE-PRIVATE STATIC FINAL #####
+    /**
+     * The encodings of chunk data in a {@link Protocol#CHUNK} frame.
+     */
+    static final byte RAW = 0;
+    static final byte DEFLATE = 1;
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final int AIR = 0;
+    private static final int DIRT = 1;
+    private static final int LEAF = 2;
+    private static final int WOOD = 3;
+
+    private static final int BLOCKS = Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS;
+    private static final int RUN_BYTES = 1 + Short.BYTES;
+
+    // ##### CONSTRUCTORS #####
+    private ChunkCodec() {
+    }
+
+    // ##### ENCODING #####
+    /**
+     * Encode a chunk.
+     * @param chunk The chunk.
+     * @return The encoded chunk, exactly as long as needed.
+     */
+    public static byte[] encode(final Chunk chunk) {
+        final ByteBuffer dest = ByteBuffer.allocate(BLOCKS * RUN_BYTES + chunk.getSkyLight().packedLength()
+                + chunk.getBlockLight().packedLength());
+        final int anchorX = ChunkPos.anchorX(chunk.getPos());
+        final int anchorY = ChunkPos.anchorY(chunk.getPos());
+        final int anchorZ = ChunkPos.anchorZ(chunk.getPos());
+        int runType = -1;
+        int runLength = 0;
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                    final int type = ChunkCodec.typeOf(chunk.getBlock(x, y, z));
+                    if (type == runType) {
+                        runLength++;
+                    } else {
+                        if (runLength > 0) {
+                            dest.put((byte)runType).putShort((short)runLength);
+                        }
+                        runType = type;
+                        runLength = 1;
+                    }
+                }
+            }
+        }
+        dest.put((byte)runType).putShort((short)runLength);
+        chunk.getSkyLight().writeTo(dest);
+        chunk.getBlockLight().writeTo(dest);
+        return Arrays.copyOf(dest.array(), dest.position());
+    }
+
+    /**
+     * Decode a chunk into another chunk at the same position.
+     * @param src The buffer to read the encoded chunk from, which is read to the end of the chunk.
+     * @param dest The chunk to overwrite with the decoded one.
+     */
+    public static void decode(final ByteBuffer src, final Chunk dest) {
+        final int anchorX = ChunkPos.anchorX(dest.getPos());
+        final int anchorY = ChunkPos.anchorY(dest.getPos());
+        final int anchorZ = ChunkPos.anchorZ(dest.getPos());
+        int runType = 0;
+        int runLeft = 0;
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                    if (runLeft == 0) {
+                        runType = src.get();
+                        runLeft = src.getShort() & 0xFFFF;
+                    }
+                    // Most blocks are already of the right type in a chunk being refreshed, or air in a new one.
+                    if (ChunkCodec.typeOf(dest.getBlock(x, y, z)) != runType) {
+                        dest.putBlock(ChunkCodec.newBlock(runType, new Vector(x, y, z)));
+                    }
+                    runLeft--;
+                }
+            }
+        }
+        if (runLeft != 0) {
+            throw new IllegalArgumentException("chunk data has a run past the end of the chunk");
+        }
+        dest.getSkyLight().readFrom(src);
+        dest.getBlockLight().readFrom(src);
+    }
+
+    /**
+     * Compute the version of an encoded chunk, which differs between chunks whose blocks or light differ.
+     *
+     * A client which already holds a chunk of the server's version is told so instead of being sent the chunk again.
+     * @param data The encoded chunk.
+     * @return The version of the chunk.
+     */
+    static int version(final byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int)crc.getValue();
+    }
+
+    // ##### COMPRESSION #####
+    /**
+     * Compress encoded chunk data.
+     * @param data The data.
+     * @param deflater The deflater to compress with, which is reset first.
+     * @return The compressed data, exactly as long as needed.
+     */
+    public static byte[] compress(final byte[] data, final Deflater deflater) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] dest = new byte[data.length / 2 + 64];
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == dest.length) {
+                dest = Arrays.copyOf(dest, 2 * dest.length);
+            }
+            length += deflater.deflate(dest, length, dest.length - length);
+        }
+        return Arrays.copyOf(dest, length);
+    }
+
+    /**
+     * Decompress encoded chunk data compressed by {@link #compress(byte[], Deflater)}.
+     * @param src The buffer to read the compressed data from, which is read to its limit.
+     * @param decodedLength The length of the data once decompressed.
+     * @param inflater The inflater to decompress with, which is reset first.
+     * @return A buffer holding the decompressed data.
+     */
+    public static ByteBuffer decompress(final ByteBuffer src, final int decodedLength, final Inflater inflater) {
+        inflater.reset();
+        inflater.setInput(src.array(), src.arrayOffset() + src.position(), src.remaining());
+        final byte[] dest = new byte[decodedLength];
+        try {
+            int length = 0;
+            while (length < decodedLength && !inflater.finished()) {
+                final int inflated = inflater.inflate(dest, length, decodedLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != decodedLength) {
+                throw new IllegalArgumentException("compressed chunk data is truncated");
+            }
+        } catch (final DataFormatException e) {
+            throw new IllegalArgumentException("compressed chunk data is corrupt", e);
+        }
+        src.position(src.limit());
+        return ByteBuffer.wrap(dest);
+    }
+
+    // ##### BLOCK TYPES #####
+    /**
+     * Get the number which stands for the type of a block in encoded chunks.
+     * @param block The block.
+     * @return The number of its type.
+     */
+    public static int typeOf(final Block block) {
+        if (block instanceof AirBlock) {
+            return AIR;
+        } else if (block instanceof DirtBlock) {
+            return DIRT;
+        } else if (block instanceof LeafBlock) {
+            return LEAF;
+        } else if (block instanceof WoodBlock) {
+            return WOOD;
+        }
+        throw new IllegalArgumentException("cannot encode block of type " + block.getClass().getSimpleName());
+    }
+
+    /**
+     * Create a block of the type some number stands for in encoded chunks.
+     * @param type The number of the type. See {@link #typeOf(Block)}.
+     * @param pos The anchor point of the block.
+     * @return The block.
+     */
+    public static Block newBlock(final int type, final Vector pos) {
+        switch (type) {
+            case AIR:
+                return new AirBlock(pos);
+            case DIRT:
+                return new DirtBlock(pos);
+            case LEAF:
+                return new LeafBlock(pos);
+            case WOOD:
+                return new WoodBlock(pos);
+            default:
+                throw new IllegalArgumentException("chunk data has unknown block type " + type);
+        }
+    }
+}
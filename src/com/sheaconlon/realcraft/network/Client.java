@@ -0,0 +1,487 @@
+package com.sheaconlon.realcraft.network;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.entities.Animal;
+import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.ui.InputSource;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.LongHashSet;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkOffsets;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.function.LongFunction;
+import java.util.zip.Inflater;
+
+/**
+ * A client of a {@link Server}, which takes the world from it instead of generating it.
+ *
+ * Each tick, the client decodes the chunks the server has sent into the world, where the pre-renderer finds them
+ * (see {@link #hasChunk(long)}), and sends the server the controls the user holds and where they are looking. The
+ * player keeps moving locally as the user interface moves it, so that movement feels immediate, and is put back
+ * where the server says it is whenever the two drift more than {@link #CORRECTION_DISTANCE} apart.
+ *
+ * A client may start out holding chunks from an earlier connection, which the server then does not send again unless
+ * they have changed. The time from connecting until the chunks around the player have arrived, so that the world
+ * can be played, is recorded (see {@link #getTimeToPlayable()}).
+ *
+ * The entities near the player are taken from the server's snapshots and smoothed over time (see
+ * {@link #getEntities()}). Each snapshot taken in is acknowledged, so that the server can send the next as a delta
+ * from it.
+ *
+ * While the player is moving, the time from sending each input until the server reports the player's state after it
+ * is recorded (see {@link #getInputLatency()}).
+ */
+public class Client extends Worker {
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * A client's return value for {@link #getTargetFreq()}.
+     */
+    private static final double TARGET_FREQ = 60;
+
+    /**
+     * The distance between the player's local and authoritative positions beyond which the local one is corrected.
+     */
+    private static final double CORRECTION_DISTANCE = 1;
+
+    /**
+     * The chunks which must have arrived for the world to be playable: those within this distance of the player's.
+     */
+    private static final int PLAYABLE_DISTANCE = 2;
+
+    private static final int HELLO_BYTES = Integer.BYTES + 1 + Integer.BYTES;
+    private static final int HELD_CHUNK_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int SNAPSHOT_ACK_BYTES = Integer.BYTES;
+    private static final int MAX_HELD_CHUNKS = (Protocol.MAX_FRAME_BYTES - 1 - HELLO_BYTES) / HELD_CHUNK_BYTES;
+    private static final int INPUT_BYTES = Integer.BYTES + 1 + 2 * Float.BYTES;
+
+    /**
+     * The number of recent inputs whose send times are kept, to measure the latency of.
+     */
+    private static final int INPUT_HISTORY = 64;
+
+    private static final Counter CHUNKS_RECEIVED = Metrics.counter("Client", "chunksReceived");
+    private static final Counter BYTES_RECEIVED = Metrics.counter("Client", "chunkBytesReceived");
+    private static final Counter CHUNKS_CURRENT = Metrics.counter("Client", "chunksCurrent");
+    private static final Counter SNAPSHOT_BYTES_RECEIVED = Metrics.counter("Client", "snapshotBytesReceived");
+    private static final Histogram TIME_TO_PLAYABLE = Metrics.histogram("Client", "timeToPlayable");
+    private static final Histogram INPUT_LATENCY = Metrics.histogram("Client", "inputLatency");
+
+    // ##### PRIVATE FINAL #####
+    private final Connection connection;
+    private final InputSource input;
+
+    /**
+     * The player whose orientations this client sends and whose position it corrects, usually {@link Player#PLAYER}.
+     */
+    private final Animal player;
+
+    /**
+     * Where to decode each chunk received, by packed position. See {@link ChunkPos}.
+     */
+    private final LongFunction<Chunk> chunks;
+
+    /**
+     * The chunks received, or which the server said are current, by packed position. Guarded by itself, since the
+     * pre-renderer asks about it.
+     */
+    private final LongHashSet received;
+
+    /**
+     * The versions of the chunks held, by packed position. See {@link ChunkCodec#version(byte[])}.
+     */
+    private final LongHashMap<Integer> versions;
+
+    private final ChunkOffsets playableOffsets;
+    private final long connectTime;
+
+    private final Inflater inflater;
+    private final RemoteEntities entities;
+
+    /**
+     * The times the recent inputs were sent, indexed by sequence number modulo {@link #INPUT_HISTORY}. As given by
+     * {@link System#nanoTime()}.
+     */
+    private final long[] inputSendTimes;
+
+    /**
+     * The input latencies of this client alone. See {@link #getInputLatency()}.
+     */
+    private final Histogram inputLatency;
+
+    // ##### PRIVATE #####
+    private boolean welcomed;
+
+    /**
+     * The input last sent to the server, and the sequence number of the next input to send.
+     */
+    private int sentControls;
+    private float sentOrient;
+    private float sentVertOrient;
+    private int inputSequence;
+
+    /**
+     * The sequence number of the newest input the server has reported the player's state after.
+     */
+    private int confirmedInput;
+
+    /**
+     * The nanoseconds from connecting until the world was playable, or 0 if it is not yet.
+     */
+    private long timeToPlayable;
+
+    /**
+     * The sequence numbers of the newest snapshot taken in and the newest acknowledged.
+     */
+    private int newestSnapshot;
+    private int ackedSnapshot;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Connect to a server. Blocks until connected.
+     * @param server The address of the server.
+     * @param compress Whether to ask for chunks to be compressed.
+     * @param input The source of the user's input, which this client reads but does not poll.
+     */
+    public Client(final SocketAddress server, final boolean compress, final InputSource input) throws IOException {
+        this(server, compress, input, Chunk::getChunk);
+    }
+
+    /**
+     * Connect to a server, decoding chunks somewhere other than the world. Blocks until connected.
+     * @param server The address of the server.
+     * @param compress Whether to ask for chunks to be compressed.
+     * @param input The source of the user's input, which this client reads but does not poll.
+     * @param chunks Where to decode each chunk received, by packed position.
+     */
+    Client(final SocketAddress server, final boolean compress, final InputSource input,
+           final LongFunction<Chunk> chunks) throws IOException {
+        this(server, compress, input, chunks, new LongHashMap<>());
+    }
+
+    /**
+     * Connect to a server, decoding chunks somewhere other than the world which already holds some chunks, such as
+     * those received by an earlier client. Blocks until connected.
+     * @param server The address of the server.
+     * @param compress Whether to ask for chunks to be compressed.
+     * @param input The source of the user's input, which this client reads but does not poll.
+     * @param chunks Where to decode each chunk received, by packed position.
+     * @param held The versions of the chunks {@code chunks} already holds, by packed position. See
+     *             {@link #getVersions()}.
+     */
+    Client(final SocketAddress server, final boolean compress, final InputSource input,
+           final LongFunction<Chunk> chunks, final LongHashMap<Integer> held) throws IOException {
+        this(server, compress, input, chunks, held, Player.PLAYER);
+    }
+
+    /**
+     * Connect to a server on behalf of some player other than the user's, decoding chunks somewhere other than the
+     * world. Blocks until connected.
+     * @param server The address of the server.
+     * @param compress Whether to ask for chunks to be compressed.
+     * @param input The source of the player's input, which this client reads but does not poll.
+     * @param chunks Where to decode each chunk received, by packed position.
+     * @param held The versions of the chunks {@code chunks} already holds, by packed position. See
+     *             {@link #getVersions()}.
+     * @param player The player, whose orientations are sent to the server and whose position the server corrects.
+     */
+    Client(final SocketAddress server, final boolean compress, final InputSource input,
+           final LongFunction<Chunk> chunks, final LongHashMap<Integer> held, final Animal player)
+            throws IOException {
+        this.connection = new Connection(SocketChannel.open(server));
+        this.input = input;
+        this.player = player;
+        this.chunks = chunks;
+        this.received = new LongHashSet();
+        this.versions = new LongHashMap<>(held.size());
+        this.playableOffsets = ChunkOffsets.forRadius(PLAYABLE_DISTANCE);
+        this.inflater = new Inflater();
+        this.entities = new RemoteEntities();
+        this.inputSendTimes = new long[INPUT_HISTORY];
+        this.inputLatency = new Histogram();
+        this.newestSnapshot = -1;
+        this.ackedSnapshot = -1;
+        this.welcomed = false;
+        this.sentControls = -1;
+        this.inputSequence = 0;
+        this.confirmedInput = -1;
+        this.timeToPlayable = 0;
+        final int numHeld = Math.min(held.size(), MAX_HELD_CHUNKS);
+        final ByteBuffer hello = Protocol.frame(Protocol.HELLO, HELLO_BYTES + numHeld * HELD_CHUNK_BYTES);
+        hello.putInt(Protocol.VERSION);
+        hello.put((byte)(compress ? Protocol.FLAG_COMPRESS : 0));
+        hello.putInt(numHeld);
+        held.forEach((version, pos) -> {
+            if (this.versions.size() < numHeld) {
+                this.versions.put(pos, version);
+                hello.putLong(pos).putInt(version);
+            }
+        });
+        hello.flip();
+        this.connectTime = System.nanoTime();
+        this.connection.send(hello);
+        this.connection.flush();
+    }
+
+    // ##### WORKER OVERRIDES #####
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.HIGH;
+    }
+
+    @Override
+    public String toString() {
+        return "Client";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return Client.TARGET_FREQ;
+    }
+
+    /**
+     * Take in what the server has sent, and send it the user's input if it has changed.
+     */
+    @Override
+    public void tick(final double interval) {
+        try {
+            if (!this.connection.read()) {
+                throw new RuntimeException("server closed the connection");
+            }
+            ByteBuffer frame;
+            while ((frame = this.connection.nextFrame()) != null) {
+                this.handle(frame);
+            }
+            if (this.welcomed && this.timeToPlayable == 0 && this.isAroundPlayerReceived()) {
+                this.timeToPlayable = System.nanoTime() - this.connectTime;
+                TIME_TO_PLAYABLE.record(this.timeToPlayable);
+            }
+            this.sendInput();
+            this.ackSnapshots();
+            this.connection.flush();
+        } catch (final IOException e) {
+            throw new RuntimeException("lost connection to server", e);
+        }
+        this.entities.interpolate(System.nanoTime());
+    }
+
+    // ##### GETTERS #####
+    /**
+     * Return whether a chunk has been received from the server.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return Whether the chunk at {@code pos} has been received.
+     */
+    public boolean hasChunk(final long pos) {
+        synchronized (this.received) {
+            return this.received.contains(pos);
+        }
+    }
+
+    /**
+     * @return The number of chunks received from the server.
+     */
+    public int getNumChunks() {
+        synchronized (this.received) {
+            return this.received.size();
+        }
+    }
+
+    /**
+     * @return The nanoseconds from connecting until the chunks around the player had all arrived, or 0 if they have
+     * not yet.
+     */
+    public long getTimeToPlayable() {
+        return this.timeToPlayable;
+    }
+
+    /**
+     * @return Whether the chunks around the player have all arrived.
+     */
+    public boolean isPlayable() {
+        return this.timeToPlayable != 0;
+    }
+
+    /**
+     * @return A copy of the versions of the chunks held, by packed position, to give a later client using the same
+     * chunks. See {@link ChunkPos}.
+     */
+    LongHashMap<Integer> getVersions() {
+        synchronized (this.received) {
+            final LongHashMap<Integer> copy = new LongHashMap<>(this.versions.size());
+            this.versions.forEach((version, pos) -> copy.put(pos, version));
+            return copy;
+        }
+    }
+
+    /**
+     * @return The entities near the player, as of the last tick. Call {@link RemoteEntities#interpolate(long)} to
+     * bring them up to date between ticks.
+     */
+    public RemoteEntities getEntities() {
+        return this.entities;
+    }
+
+    /**
+     * @return The times from sending inputs until the server reported the player's state after them, for this client
+     * alone. In nanoseconds. All clients' are also recorded as {@code Client.inputLatency} in {@link Metrics}.
+     */
+    public Histogram getInputLatency() {
+        return this.inputLatency;
+    }
+
+    /**
+     * @return Whether the server has accepted this client.
+     */
+    public boolean isWelcomed() {
+        return this.welcomed;
+    }
+
+    /**
+     * Disconnect from the server.
+     */
+    public void close() {
+        this.connection.close();
+        this.inflater.end();
+    }
+
+    // ##### PRIVATE #####
+    private void handle(final ByteBuffer frame) throws IOException {
+        final byte type = frame.get();
+        if (type == Protocol.WELCOME) {
+            this.player.setPos(frame.getDouble(), frame.getDouble(), frame.getDouble());
+            this.welcomed = true;
+        } else if (type == Protocol.CHUNK) {
+            final long pos = frame.getLong();
+            final int version = frame.getInt();
+            final byte encoding = frame.get();
+            final int decodedLength = frame.getInt();
+            final ByteBuffer data = encoding == ChunkCodec.DEFLATE
+                    ? ChunkCodec.decompress(frame, decodedLength, this.inflater)
+                    : frame;
+            ChunkCodec.decode(data, this.chunks.apply(pos));
+            synchronized (this.received) {
+                this.received.add(pos);
+                this.versions.put(pos, version);
+            }
+            CHUNKS_RECEIVED.increment();
+            BYTES_RECEIVED.add(frame.limit() + Integer.BYTES);
+        } else if (type == Protocol.CHUNK_CURRENT) {
+            final long pos = frame.getLong();
+            final int version = frame.getInt();
+            synchronized (this.received) {
+                final Integer heldVersion = this.versions.get(pos);
+                if (heldVersion == null || heldVersion != version) {
+                    throw new IOException("server says a chunk not held is current");
+                }
+                this.received.add(pos);
+            }
+            CHUNKS_CURRENT.increment();
+        } else if (type == Protocol.SNAPSHOT) {
+            final int sequence = frame.getInt();
+            final int baselineSequence = frame.getInt();
+            final int time = frame.getInt();
+            final EntitySnapshot baseline = baselineSequence < 0 ? null : this.entities.get(baselineSequence);
+            if (baselineSequence >= 0 && baseline == null) {
+                throw new IOException("server sent a snapshot from a baseline no longer kept");
+            }
+            final EntitySnapshot snapshot = this.entities.slot(sequence);
+            snapshot.decode(new BitReader(frame), baseline, sequence, time);
+            this.entities.received(snapshot, System.nanoTime());
+            this.newestSnapshot = Math.max(this.newestSnapshot, sequence);
+            SNAPSHOT_BYTES_RECEIVED.add(frame.limit() + Integer.BYTES);
+        } else if (type == Protocol.PLAYER_STATE) {
+            this.confirmInput(frame.getInt());
+            final double x = frame.getDouble();
+            final double y = frame.getDouble();
+            final double z = frame.getDouble();
+            final double dx = x - this.player.getPosX();
+            final double dy = y - this.player.getPosY();
+            final double dz = z - this.player.getPosZ();
+            if (dx * dx + dy * dy + dz * dz > CORRECTION_DISTANCE * CORRECTION_DISTANCE) {
+                this.player.setPos(x, y, z);
+            }
+        } else {
+            throw new IOException("server sent unknown message type " + type);
+        }
+    }
+
+    private boolean isAroundPlayerReceived() {
+        final long center = ChunkPos.containing(this.player.getPosX(), this.player.getPosY(),
+                this.player.getPosZ());
+        synchronized (this.received) {
+            for (int i = 0; i < this.playableOffsets.size(); i++) {
+                if (!this.received.contains(this.playableOffsets.apply(center, i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record the latency of an input the server has reported the player's state after, unless already recorded.
+     */
+    private void confirmInput(final int sequence) {
+        if (sequence <= this.confirmedInput || sequence >= this.inputSequence
+                || sequence <= this.inputSequence - INPUT_HISTORY) {
+            return;
+        }
+        final long latency = System.nanoTime() - this.inputSendTimes[sequence % INPUT_HISTORY];
+        this.inputLatency.record(latency);
+        INPUT_LATENCY.record(latency);
+        this.confirmedInput = sequence;
+    }
+
+    private void ackSnapshots() {
+        if (this.newestSnapshot == this.ackedSnapshot) {
+            return;
+        }
+        final ByteBuffer frame = Protocol.frame(Protocol.SNAPSHOT_ACK, SNAPSHOT_ACK_BYTES);
+        frame.putInt(this.newestSnapshot);
+        frame.flip();
+        this.connection.send(frame);
+        this.ackedSnapshot = this.newestSnapshot;
+    }
+
+    private void sendInput() {
+        int controls = 0;
+        for (final InputSource.Control control : InputSource.Control.values()) {
+            if (this.input.isPressed(control)) {
+                controls |= 1 << control.ordinal();
+            }
+        }
+        final float orient = (float)this.player.getOrient();
+        final float vertOrient = (float)this.player.getVertOrient();
+        if (controls == this.sentControls && orient == this.sentOrient && vertOrient == this.sentVertOrient) {
+            return;
+        }
+        final ByteBuffer frame = Protocol.frame(Protocol.INPUT, INPUT_BYTES);
+        this.inputSendTimes[this.inputSequence % INPUT_HISTORY] = System.nanoTime();
+        frame.putInt(this.inputSequence++);
+        frame.put((byte)controls);
+        frame.putFloat(orient);
+        frame.putFloat(vertOrient);
+        frame.flip();
+        this.connection.send(frame);
+        this.sentControls = controls;
+        this.sentOrient = orient;
+        this.sentVertOrient = vertOrient;
+    }
+}
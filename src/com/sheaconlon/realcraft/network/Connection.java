@@ -0,0 +1,194 @@
+package com.sheaconlon.realcraft.network;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+/**
+ * A connection which sends and receives frames of the {@link Protocol} over a non-blocking socket channel.
+ *
+ * Neither reading nor writing ever blocks. Frames to send are queued and written as far as the socket will take
+ * them on each {@link #flush()}; bytes received are buffered until they make up whole frames. Frames queued but not
+ * yet started can be cancelled.
+ */
+class Connection {
+    private static final int INITIAL_READ_CAPACITY = 64 * 1024;
+
+    private final SocketChannel channel;
+
+    /**
+     * The bytes received but not yet taken as frames. In write mode between calls.
+     */
+    private ByteBuffer in;
+
+    /**
+     * The frames queued to send, the first possibly partly sent.
+     */
+    private final Deque<ByteBuffer> out;
+    private long pendingBytes;
+
+    /**
+     * The most bytes to write on one flush, to simulate a slow link.
+     */
+    private long writeLimit;
+
+    /**
+     * Create a connection.
+     * @param channel The channel, which is made non-blocking.
+     */
+    Connection(final SocketChannel channel) throws IOException {
+        this.channel = channel;
+        this.channel.configureBlocking(false);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.in = ByteBuffer.allocate(INITIAL_READ_CAPACITY);
+        this.out = new ArrayDeque<>();
+        this.pendingBytes = 0;
+        this.writeLimit = Long.MAX_VALUE;
+    }
+
+    /**
+     * @return The channel of this connection.
+     */
+    SocketChannel getChannel() {
+        return this.channel;
+    }
+
+    // ##### RECEIVING #####
+    /**
+     * Read whatever bytes have arrived.
+     * @return Whether the connection is still open at the other end.
+     */
+    boolean read() throws IOException {
+        while (true) {
+            if (!this.in.hasRemaining()) {
+                // Only a frame longer than the buffer fills it; nextFrame grows the buffer to fit such a frame.
+                return true;
+            }
+            final int read = this.channel.read(this.in);
+            if (read == -1) {
+                return false;
+            }
+            if (read == 0) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take the next whole frame received.
+     * @return The frame after its length, positioned at its type, or null if no whole frame has been received.
+     */
+    ByteBuffer nextFrame() throws IOException {
+        this.in.flip();
+        try {
+            if (this.in.remaining() < Integer.BYTES) {
+                return null;
+            }
+            final int length = this.in.getInt(this.in.position());
+            if (length < 1 || length > Protocol.MAX_FRAME_BYTES) {
+                throw new IOException("received frame of bad length " + length);
+            }
+            if (this.in.remaining() < Integer.BYTES + length) {
+                if (this.in.capacity() < Integer.BYTES + length) {
+                    final ByteBuffer bigger = ByteBuffer.allocate(Integer.BYTES + length);
+                    bigger.put(this.in);
+                    bigger.flip();
+                    this.in = bigger;
+                }
+                return null;
+            }
+            this.in.position(this.in.position() + Integer.BYTES);
+            final ByteBuffer frame = ByteBuffer.allocate(length);
+            final int limit = this.in.limit();
+            this.in.limit(this.in.position() + length);
+            frame.put(this.in);
+            this.in.limit(limit);
+            frame.flip();
+            return frame;
+        } finally {
+            this.in.compact();
+        }
+    }
+
+    // ##### SENDING #####
+    /**
+     * Queue a frame to send.
+     * @param frame The frame, including its header, with its whole contents remaining. Must not be changed after.
+     */
+    void send(final ByteBuffer frame) {
+        this.pendingBytes += frame.remaining();
+        this.out.addLast(frame);
+    }
+
+    /**
+     * Write as much of the queued frames as the socket will take without blocking, up to the write limit.
+     */
+    void flush() throws IOException {
+        long left = this.writeLimit;
+        while (!this.out.isEmpty() && left > 0) {
+            final ByteBuffer frame = this.out.peekFirst();
+            final int limit = frame.limit();
+            if (frame.remaining() > left) {
+                frame.limit(frame.position() + (int)left);
+            }
+            final int written = this.channel.write(frame);
+            frame.limit(limit);
+            this.pendingBytes -= written;
+            left -= written;
+            if (frame.hasRemaining()) {
+                return;
+            }
+            this.out.pollFirst();
+        }
+    }
+
+    /**
+     * Drop some of the queued frames which have not started to be written.
+     * @param shouldCancel Whether to drop a frame, given the whole frame, which it must not move or change.
+     * @return The number of frames dropped.
+     */
+    int cancel(final Predicate<ByteBuffer> shouldCancel) {
+        int cancelled = 0;
+        final Iterator<ByteBuffer> frames = this.out.iterator();
+        while (frames.hasNext()) {
+            final ByteBuffer frame = frames.next();
+            if (frame.position() == 0 && shouldCancel.test(frame)) {
+                frames.remove();
+                this.pendingBytes -= frame.remaining();
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Limit how many bytes each flush writes, to simulate a slow link.
+     * @param bytesPerFlush The most bytes to write on one flush.
+     */
+    void setWriteLimit(final long bytesPerFlush) {
+        this.writeLimit = bytesPerFlush;
+    }
+
+    /**
+     * @return The number of bytes queued to send but not yet written to the socket.
+     */
+    long getPendingBytes() {
+        return this.pendingBytes;
+    }
+
+    /**
+     * Close the connection, dropping anything not yet sent.
+     */
+    void close() {
+        try {
+            this.channel.close();
+        } catch (final IOException e) {
+            // The connection is being dropped anyway.
+        }
+    }
+}
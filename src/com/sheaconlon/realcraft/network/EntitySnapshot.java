@@ -0,0 +1,466 @@
+package com.sheaconlon.realcraft.network;
+
+import java.util.Arrays;
+
+/**
+ * The quantized state of the entities near a client's player at some moment, sorted by entity ID.
+ *
+ * Positions are kept in {@link #POSITION_SCALE}ths of a block, orientations in {@link #ORIENT_STEPS}ths of a
+ * revolution and vertical orientations in {@link #VERT_ORIENT_STEPS} steps from straight down to straight up, which
+ * is finer than can be seen but makes the state of an entity small integers which change little from one snapshot
+ * to the next.
+ *
+ * A snapshot is encoded as a delta from an earlier snapshot the client is known to have, its baseline. For each
+ * entity of the baseline, in order, a bit says whether it is still near, then a bit whether it changed, and if so a
+ * mask of which fields changed and the change in each, bit-packed (see {@link BitWriter}). The entities not in the
+ * baseline follow: their number, then for each its ID and state, as differences from the previous such entity's. An
+ * entity which has not changed costs two bits, and one which has walked a little, a few bytes.
+ */
+class EntitySnapshot {
+    // ##### PACKAGE-PRIVATE STATIC FINAL #####
+    static final int POSITION_SCALE = 32;
+    static final int ORIENT_STEPS = 1 << 10;
+    static final int VERT_ORIENT_STEPS = 1 << 8;
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final int ORIENT_BITS = 10;
+    private static final int VERT_ORIENT_BITS = 8;
+
+    /**
+     * The bits of the mask of which fields of an entity changed.
+     */
+    private static final int CHANGED_X = 1;
+    private static final int CHANGED_Y = 1 << 1;
+    private static final int CHANGED_Z = 1 << 2;
+    private static final int CHANGED_ORIENT = 1 << 3;
+    private static final int CHANGED_VERT_ORIENT = 1 << 4;
+    private static final int CHANGED_BITS = 5;
+
+    private static final double FULL_REV_ANGLE = 2 * Math.PI;
+
+    // ##### PRIVATE #####
+    private int sequence;
+
+    /**
+     * The time of this snapshot on the server's clock. In milliseconds.
+     */
+    private int time;
+
+    private int size;
+    private int[] ids;
+    private int[] x;
+    private int[] y;
+    private int[] z;
+    private int[] orient;
+    private int[] vertOrient;
+
+    /**
+     * Scratch space for entities added by a snapshot being decoded, or being sorted, made when first needed.
+     */
+    private EntitySnapshot added;
+    private long[] keys;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create an empty snapshot.
+     */
+    EntitySnapshot() {
+        this.ids = new int[INITIAL_CAPACITY];
+        this.x = new int[INITIAL_CAPACITY];
+        this.y = new int[INITIAL_CAPACITY];
+        this.z = new int[INITIAL_CAPACITY];
+        this.orient = new int[INITIAL_CAPACITY];
+        this.vertOrient = new int[INITIAL_CAPACITY];
+        this.clear(-1, 0);
+    }
+
+    // ##### BUILDING #####
+    /**
+     * Empty this snapshot, for reuse.
+     * @param sequence See {@link #getSequence()}.
+     * @param time See {@link #getTime()}.
+     */
+    void clear(final int sequence, final int time) {
+        this.sequence = sequence;
+        this.time = time;
+        this.size = 0;
+    }
+
+    /**
+     * Add an entity, quantizing its state. Entities must be added in increasing order of ID, or be sorted afterwards
+     * with {@link #sortById()}.
+     * @param id The ID of the entity.
+     * @param posX The x-coordinate of its position.
+     * @param posY The y-coordinate of its position.
+     * @param posZ The z-coordinate of its position.
+     * @param orient Its orientation. In radians.
+     * @param vertOrient Its vertical orientation, or 0 if it has none. In radians.
+     */
+    void add(final int id, final double posX, final double posY, final double posZ, final double orient,
+             final double vertOrient) {
+        this.addQuantized(id, quantizePosition(posX), quantizePosition(posY), quantizePosition(posZ),
+                quantizeOrient(orient), quantizeVertOrient(vertOrient));
+    }
+
+    /**
+     * Add the entities of another snapshot within some distance of a point, in their order.
+     * @param other The other snapshot.
+     * @param centerX The x-coordinate of the point.
+     * @param centerY The y-coordinate of the point.
+     * @param centerZ The z-coordinate of the point.
+     * @param distance The distance. In blocks.
+     */
+    void addNear(final EntitySnapshot other, final double centerX, final double centerY, final double centerZ,
+                 final double distance) {
+        final long cx = quantizePosition(centerX);
+        final long cy = quantizePosition(centerY);
+        final long cz = quantizePosition(centerZ);
+        final long reach = (long)(distance * POSITION_SCALE);
+        for (int i = 0; i < other.size; i++) {
+            final long dx = other.x[i] - cx;
+            final long dy = other.y[i] - cy;
+            final long dz = other.z[i] - cz;
+            if (dx * dx + dy * dy + dz * dz <= reach * reach) {
+                this.addQuantized(other.ids[i], other.x[i], other.y[i], other.z[i], other.orient[i],
+                        other.vertOrient[i]);
+            }
+        }
+    }
+
+    /**
+     * Put the entities in increasing order of ID.
+     */
+    void sortById() {
+        if (this.keys == null || this.keys.length < this.size) {
+            this.keys = new long[this.ids.length];
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.keys[i] = ((long)this.ids[i] << 32) | i;
+        }
+        Arrays.sort(this.keys, 0, this.size);
+        if (this.added == null) {
+            this.added = new EntitySnapshot();
+        }
+        final EntitySnapshot sorted = this.added;
+        sorted.clear(this.sequence, this.time);
+        for (int i = 0; i < this.size; i++) {
+            final int from = (int)this.keys[i];
+            sorted.addQuantized(this.ids[from], this.x[from], this.y[from], this.z[from], this.orient[from],
+                    this.vertOrient[from]);
+        }
+        for (int i = 0; i < this.size; i++) {
+            this.copy(sorted, i, i);
+        }
+    }
+
+    private void addQuantized(final int id, final int x, final int y, final int z, final int orient,
+                              final int vertOrient) {
+        if (this.size == this.ids.length) {
+            this.grow(2 * this.size);
+        }
+        this.ids[this.size] = id;
+        this.x[this.size] = x;
+        this.y[this.size] = y;
+        this.z[this.size] = z;
+        this.orient[this.size] = orient;
+        this.vertOrient[this.size] = vertOrient;
+        this.size++;
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The sequence number of this snapshot among those sent to its client, or -1 if it has none.
+     */
+    int getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * @return The time of this snapshot on the server's clock. In milliseconds.
+     */
+    int getTime() {
+        return this.time;
+    }
+
+    /**
+     * @return The number of entities in this snapshot.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @param i The index of an entity. Entities are in increasing order of ID.
+     * @return The ID of the entity.
+     */
+    int getId(final int i) {
+        return this.ids[i];
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The x-coordinate of the entity's position, as quantized.
+     */
+    double getPosX(final int i) {
+        return (double)this.x[i] / POSITION_SCALE;
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The y-coordinate of the entity's position, as quantized.
+     */
+    double getPosY(final int i) {
+        return (double)this.y[i] / POSITION_SCALE;
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The z-coordinate of the entity's position, as quantized.
+     */
+    double getPosZ(final int i) {
+        return (double)this.z[i] / POSITION_SCALE;
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The entity's orientation, as quantized, in {@code [0, 2 pi)}. In radians.
+     */
+    double getOrient(final int i) {
+        return this.orient[i] * FULL_REV_ANGLE / ORIENT_STEPS;
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The entity's vertical orientation, as quantized. In radians.
+     */
+    double getVertOrient(final int i) {
+        return this.vertOrient[i] * Math.PI / (VERT_ORIENT_STEPS - 1) - Math.PI / 2;
+    }
+
+    /**
+     * Find an entity.
+     * @param id The ID of the entity.
+     * @return The index of the entity, or a negative number if it is not in this snapshot.
+     */
+    int indexOf(final int id) {
+        return Arrays.binarySearch(this.ids, 0, this.size, id);
+    }
+
+    // ##### ENCODING #####
+    /**
+     * Encode this snapshot.
+     * @param baseline The snapshot to encode this one as a delta from, or null to encode it in full.
+     * @param out The writer to write the encoded snapshot to.
+     */
+    void encode(final EntitySnapshot baseline, final BitWriter out) {
+        int i = 0;
+        if (baseline != null) {
+            for (int b = 0; b < baseline.size; b++) {
+                while (i < this.size && this.ids[i] < baseline.ids[b]) {
+                    i++;
+                }
+                final boolean kept = i < this.size && this.ids[i] == baseline.ids[b];
+                out.writeBit(kept);
+                if (kept) {
+                    this.encodeChange(baseline, b, i, out);
+                    i++;
+                }
+            }
+        }
+        int added = 0;
+        for (int j = 0; j < this.size; j++) {
+            if (baseline == null || baseline.indexOf(this.ids[j]) < 0) {
+                added++;
+            }
+        }
+        out.writeUnsigned(added);
+        // Each added entity is given relative to the one before, the first relative to a zeroed one.
+        int prevId = -1;
+        int prevX = 0;
+        int prevY = 0;
+        int prevZ = 0;
+        for (int j = 0; j < this.size; j++) {
+            if (baseline == null || baseline.indexOf(this.ids[j]) < 0) {
+                out.writeUnsigned(this.ids[j] - prevId - 1);
+                out.writeSigned(this.x[j] - prevX);
+                out.writeSigned(this.y[j] - prevY);
+                out.writeSigned(this.z[j] - prevZ);
+                out.writeBits(this.orient[j], ORIENT_BITS);
+                out.writeBits(this.vertOrient[j], VERT_ORIENT_BITS);
+                prevId = this.ids[j];
+                prevX = this.x[j];
+                prevY = this.y[j];
+                prevZ = this.z[j];
+            }
+        }
+    }
+
+    private void encodeChange(final EntitySnapshot baseline, final int b, final int i, final BitWriter out) {
+        int changed = 0;
+        if (this.x[i] != baseline.x[b]) {
+            changed |= CHANGED_X;
+        }
+        if (this.y[i] != baseline.y[b]) {
+            changed |= CHANGED_Y;
+        }
+        if (this.z[i] != baseline.z[b]) {
+            changed |= CHANGED_Z;
+        }
+        if (this.orient[i] != baseline.orient[b]) {
+            changed |= CHANGED_ORIENT;
+        }
+        if (this.vertOrient[i] != baseline.vertOrient[b]) {
+            changed |= CHANGED_VERT_ORIENT;
+        }
+        out.writeBit(changed != 0);
+        if (changed == 0) {
+            return;
+        }
+        out.writeBits(changed, CHANGED_BITS);
+        if ((changed & CHANGED_X) != 0) {
+            out.writeSigned(this.x[i] - baseline.x[b]);
+        }
+        if ((changed & CHANGED_Y) != 0) {
+            out.writeSigned(this.y[i] - baseline.y[b]);
+        }
+        if ((changed & CHANGED_Z) != 0) {
+            out.writeSigned(this.z[i] - baseline.z[b]);
+        }
+        if ((changed & CHANGED_ORIENT) != 0) {
+            out.writeSigned(wrapOrientStep(this.orient[i] - baseline.orient[b]));
+        }
+        if ((changed & CHANGED_VERT_ORIENT) != 0) {
+            out.writeSigned(this.vertOrient[i] - baseline.vertOrient[b]);
+        }
+    }
+
+    /**
+     * Decode a snapshot into this one.
+     * @param in The reader to read the encoded snapshot from.
+     * @param baseline The snapshot it was encoded as a delta from, or null if it was encoded in full.
+     * @param sequence See {@link #getSequence()}.
+     * @param time See {@link #getTime()}.
+     */
+    void decode(final BitReader in, final EntitySnapshot baseline, final int sequence, final int time) {
+        this.clear(sequence, time);
+        if (baseline != null) {
+            for (int b = 0; b < baseline.size; b++) {
+                if (!in.readBit()) {
+                    continue;
+                }
+                int x = baseline.x[b];
+                int y = baseline.y[b];
+                int z = baseline.z[b];
+                int orient = baseline.orient[b];
+                int vertOrient = baseline.vertOrient[b];
+                if (in.readBit()) {
+                    final int changed = (int)in.readBits(CHANGED_BITS);
+                    if ((changed & CHANGED_X) != 0) {
+                        x += in.readSigned();
+                    }
+                    if ((changed & CHANGED_Y) != 0) {
+                        y += in.readSigned();
+                    }
+                    if ((changed & CHANGED_Z) != 0) {
+                        z += in.readSigned();
+                    }
+                    if ((changed & CHANGED_ORIENT) != 0) {
+                        orient = (orient + in.readSigned()) & (ORIENT_STEPS - 1);
+                    }
+                    if ((changed & CHANGED_VERT_ORIENT) != 0) {
+                        vertOrient += in.readSigned();
+                    }
+                }
+                this.addQuantized(baseline.ids[b], x, y, z, orient, vertOrient);
+            }
+        }
+        final int kept = this.size;
+        final int added = in.readUnsigned();
+        if (added < 0 || added > in.getBitsLeft()) {
+            throw new IllegalArgumentException("snapshot claims to add " + added + " entities");
+        }
+        int id = -1;
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        for (int j = 0; j < added; j++) {
+            id += in.readUnsigned() + 1;
+            x += in.readSigned();
+            y += in.readSigned();
+            z += in.readSigned();
+            this.addQuantized(id, x, y, z, (int)in.readBits(ORIENT_BITS), (int)in.readBits(VERT_ORIENT_BITS));
+        }
+        this.mergeAdded(kept);
+    }
+
+    /**
+     * Merge the entities after some index, which are sorted, into those before it, which are too.
+     */
+    private void mergeAdded(final int kept) {
+        if (kept == 0 || kept == this.size || this.ids[kept - 1] < this.ids[kept]) {
+            return;
+        }
+        if (this.added == null) {
+            this.added = new EntitySnapshot();
+        }
+        final EntitySnapshot added = this.added;
+        added.clear(-1, 0);
+        for (int j = kept; j < this.size; j++) {
+            added.addQuantized(this.ids[j], this.x[j], this.y[j], this.z[j], this.orient[j], this.vertOrient[j]);
+        }
+        int to = this.size - 1;
+        int from = kept - 1;
+        int a = added.size - 1;
+        while (a >= 0) {
+            if (from >= 0 && this.ids[from] > added.ids[a]) {
+                this.copy(this, from, to);
+                from--;
+            } else {
+                this.copy(added, a, to);
+                a--;
+            }
+            to--;
+        }
+    }
+
+    private void copy(final EntitySnapshot src, final int from, final int to) {
+        this.ids[to] = src.ids[from];
+        this.x[to] = src.x[from];
+        this.y[to] = src.y[from];
+        this.z[to] = src.z[from];
+        this.orient[to] = src.orient[from];
+        this.vertOrient[to] = src.vertOrient[from];
+    }
+
+    private void grow(final int capacity) {
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.x = Arrays.copyOf(this.x, capacity);
+        this.y = Arrays.copyOf(this.y, capacity);
+        this.z = Arrays.copyOf(this.z, capacity);
+        this.orient = Arrays.copyOf(this.orient, capacity);
+        this.vertOrient = Arrays.copyOf(this.vertOrient, capacity);
+    }
+
+    // ##### QUANTIZATION #####
+    static int quantizePosition(final double pos) {
+        return (int)Math.round(pos * POSITION_SCALE);
+    }
+
+    static int quantizeOrient(final double orient) {
+        return (int)Math.round(orient / FULL_REV_ANGLE * ORIENT_STEPS) & (ORIENT_STEPS - 1);
+    }
+
+    static int quantizeVertOrient(final double vertOrient) {
+        final long step = Math.round((vertOrient + Math.PI / 2) / Math.PI * (VERT_ORIENT_STEPS - 1));
+        return (int)Math.max(0, Math.min(VERT_ORIENT_STEPS - 1, step));
+    }
+
+    /**
+     * Wrap a change in quantized orientation to the shorter way around.
+     */
+    private static int wrapOrientStep(final int delta) {
+        return ((delta + ORIENT_STEPS / 2) & (ORIENT_STEPS - 1)) - ORIENT_STEPS / 2;
+    }
+}
@@ -0,0 +1,444 @@
+package com.sheaconlon.realcraft.network;
+
+import com.sheaconlon.realcraft.entities.Animal;
+import com.sheaconlon.realcraft.entities.EntityStore;
+import com.sheaconlon.realcraft.entities.MovementSystem;
+import com.sheaconlon.realcraft.entities.WanderSystem;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.simulator.Hitbox;
+import com.sheaconlon.realcraft.ui.InputSource;
+import com.sheaconlon.realcraft.ui.ScriptedInput;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToLongFunction;
+
+/**
+ * A load test of a {@link Server}, which connects many simulated players to it from the same process and reports how
+ * well it keeps up.
+ *
+ * Each bot is a {@link Client} with no window, renderer or world of its own, which decodes the chunks it is sent into
+ * scratch space and forgets them. Bots always walk forward: some in circles of different sizes, the rest heading off
+ * in a new random direction every few seconds, so that between them they keep the server generating and streaming
+ * new chunks. The server also runs wandering animals, which it sends to the bots near them in entity snapshots.
+ *
+ * Since clients never block, the animals, the server and every bot are ticked in turn on one thread, in rounds at the
+ * server's tick rate. Bots connect a few per round, as players would trickle in. The report gives the server's tick
+ * durations, the bytes queued to send to clients, and each bot's input latency (see {@link Client#getInputLatency()}).
+ */
+public class LoadTest {
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * The time between rounds. In seconds.
+     */
+    private static final double ROUND_INTERVAL = 1.0 / 30;
+
+    /**
+     * The most bots to connect on one round. Few enough that their connections fit in the server's accept backlog.
+     */
+    private static final int BOTS_PER_ROUND = 4;
+
+    /**
+     * How far from the spawn point the animals start. In blocks.
+     */
+    private static final double ANIMAL_SPREAD = 64;
+
+    /**
+     * The range of rates at which circling bots turn. In radians per second.
+     */
+    private static final double MIN_TURN_RATE = 0.05;
+    private static final double MAX_TURN_RATE = 0.5;
+
+    /**
+     * The mean time between wandering bots' changes of direction. In seconds.
+     */
+    private static final double HEADING_CHANGE_INTERVAL = 5;
+
+    private static final double FULL_REV_ANGLE = 2 * Math.PI;
+    private static final double NANOSECONDS_PER_SECOND = 1_000_000_000;
+    private static final double NANOSECONDS_PER_MILLISECOND = 1_000_000;
+
+    /**
+     * A simulated player, and the client it plays through.
+     */
+    private static class Bot extends Animal {
+        private final Random random;
+
+        /**
+         * The rate at which this bot turns, or 0 if it instead heads in random directions. In radians per second.
+         */
+        private final double turnRate;
+
+        /**
+         * The time until this bot next changes direction, if it heads in random directions. In seconds.
+         */
+        private double untilHeadingChange;
+
+        private Client client;
+
+        Bot(final EntityStore store, final Vector pos, final Random random, final boolean circling) {
+            super(store, EntityStore.Archetype.PLAYER, pos, new Vector(0, 0, 0),
+                    random.nextDouble() * FULL_REV_ANGLE, 0);
+            this.random = random;
+            this.turnRate = circling
+                    ? (random.nextBoolean() ? 1 : -1) * (MIN_TURN_RATE
+                            + random.nextDouble() * (MAX_TURN_RATE - MIN_TURN_RATE))
+                    : 0;
+            this.untilHeadingChange = 0;
+        }
+
+        /**
+         * Turn this bot along its path.
+         * @param interval The time since it was last turned. In seconds.
+         */
+        void steer(final double interval) {
+            if (this.turnRate != 0) {
+                this.setOrient(this.getOrient() + this.turnRate * interval);
+                return;
+            }
+            this.untilHeadingChange -= interval;
+            if (this.untilHeadingChange <= 0) {
+                this.setOrient(this.random.nextDouble() * FULL_REV_ANGLE);
+                this.untilHeadingChange = this.random.nextDouble() * 2 * HEADING_CHANGE_INTERVAL;
+            }
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * An animal which wanders around the server's world.
+     */
+    private static class Critter extends Animal {
+        Critter(final EntityStore store, final Vector pos) {
+            super(store, EntityStore.Archetype.ANIMAL, pos, new Vector(0, 0, 0), 0, 0);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    // ##### PRIVATE FINAL #####
+    private final Server server;
+    private final InetSocketAddress address;
+    private final int numBots;
+    private final List<Bot> bots;
+    private final Random random;
+
+    /**
+     * The animals of the server's world, and the bots' players, which the server does not send.
+     */
+    private final EntityStore store;
+    private final WanderSystem wander;
+    private final MovementSystem movement;
+
+    /**
+     * What every bot holds down.
+     */
+    private final InputSource input;
+
+    /**
+     * Where the bots decode the chunks they are sent.
+     */
+    private final Chunk scratch;
+
+    private final double spawnX;
+    private final double spawnY;
+    private final double spawnZ;
+
+    private final Histogram serverTickDuration;
+
+    // ##### PRIVATE #####
+    private long rounds;
+
+    /**
+     * The sum and number of samples of the bytes queued to send to all clients, taken once per round, and the most
+     * queued to all and to any one client.
+     */
+    private long pendingBytesSum;
+    private long pendingBytesSamples;
+    private long maxPendingBytes;
+    private long maxClientPendingBytes;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a load test, starting its server. No bots connect until the first round.
+     * @param numBots The number of bots to connect.
+     * @param numAnimals The number of animals in the server's world.
+     * @param seed The seed of the bots' paths and the animals' positions.
+     */
+    public LoadTest(final int numBots, final int numAnimals, final long seed) throws IOException {
+        this(numBots, numAnimals, seed, Server.DEFAULT_SPAWN_X, Server.DEFAULT_SPAWN_Y, Server.DEFAULT_SPAWN_Z);
+    }
+
+    /**
+     * Create a load test whose bots start somewhere other than the usual spawn point.
+     * @param numBots The number of bots to connect.
+     * @param numAnimals The number of animals in the server's world, which start around the spawn point.
+     * @param seed The seed of the bots' paths and the animals' positions.
+     * @param spawnX The x-coordinate of the spawn point.
+     * @param spawnY The y-coordinate of the spawn point.
+     * @param spawnZ The z-coordinate of the spawn point.
+     */
+    LoadTest(final int numBots, final int numAnimals, final long seed, final double spawnX, final double spawnY,
+             final double spawnZ) throws IOException {
+        if (numBots < 0 || numAnimals < 0) {
+            throw new IllegalArgumentException("numbers of bots and animals must be nonnegative");
+        }
+        this.numBots = numBots;
+        this.bots = new ArrayList<>(numBots);
+        this.random = new Random(seed);
+        this.spawnX = spawnX;
+        this.spawnY = spawnY;
+        this.spawnZ = spawnZ;
+        this.store = new EntityStore();
+        for (int i = 0; i < numAnimals; i++) {
+            new Critter(this.store, new Vector(
+                    spawnX + (2 * this.random.nextDouble() - 1) * ANIMAL_SPREAD, spawnY,
+                    spawnZ + (2 * this.random.nextDouble() - 1) * ANIMAL_SPREAD));
+        }
+        this.wander = new WanderSystem();
+        this.movement = new MovementSystem();
+        this.input = new ScriptedInput(0, 0, InputSource.Control.FORWARD);
+        this.scratch = Chunk.detached(ChunkPos.containing(spawnX, spawnY, spawnZ));
+        this.server = new Server(0, spawnX, spawnY, spawnZ, this.store);
+        this.address = new InetSocketAddress("localhost", this.server.getPort());
+        this.serverTickDuration = new Histogram();
+        this.rounds = 0;
+    }
+
+    // ##### RUNNING #####
+    /**
+     * Run rounds at the server's tick rate until some time has passed or the current thread is interrupted, printing
+     * progress.
+     * @param duration The time to run for, or infinity. In seconds.
+     * @param statsInterval The time between progress lines. In seconds.
+     * @param out The stream to print progress to.
+     */
+    public void run(final double duration, final double statsInterval, final PrintStream out) {
+        final long start = System.nanoTime();
+        long lastRound = start - (long)(ROUND_INTERVAL * NANOSECONDS_PER_SECOND);
+        long nextStats = start + (long)(statsInterval * NANOSECONDS_PER_SECOND);
+        while (!Thread.currentThread().isInterrupted()) {
+            final long now = System.nanoTime();
+            if (now - start >= duration * NANOSECONDS_PER_SECOND) {
+                return;
+            }
+            this.round((now - lastRound) / NANOSECONDS_PER_SECOND);
+            lastRound = now;
+            if (now >= nextStats) {
+                out.println(this.formatProgress((now - start) / NANOSECONDS_PER_SECOND));
+                nextStats += (long)(statsInterval * NANOSECONDS_PER_SECOND);
+            }
+            final long sleep = lastRound + (long)(ROUND_INTERVAL * NANOSECONDS_PER_SECOND) - System.nanoTime();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep / (long)NANOSECONDS_PER_MILLISECOND,
+                            (int)(sleep % (long)NANOSECONDS_PER_MILLISECOND));
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run one round: connect more bots if some are still to connect, move the animals, tick the server, and then
+     * steer and tick every bot.
+     * @param interval The time since the last round. In seconds.
+     */
+    void round(final double interval) {
+        for (int i = 0; i < BOTS_PER_ROUND && this.bots.size() < this.numBots; i++) {
+            this.connect();
+        }
+        this.store.runParallel(EntityStore.Archetype.ANIMAL, this.wander, interval);
+        this.store.runParallel(EntityStore.Archetype.ANIMAL, this.movement, interval);
+        final long start = System.nanoTime();
+        this.server.tick(interval);
+        this.serverTickDuration.record(System.nanoTime() - start);
+        final long pendingBytes = this.server.getPendingBytes();
+        this.pendingBytesSum += pendingBytes;
+        this.pendingBytesSamples++;
+        this.maxPendingBytes = Math.max(this.maxPendingBytes, pendingBytes);
+        this.maxClientPendingBytes = Math.max(this.maxClientPendingBytes, this.server.getMaxPendingBytes());
+        for (final Bot bot : this.bots) {
+            bot.steer(interval);
+            bot.client.tick(interval);
+        }
+        this.rounds++;
+    }
+
+    /**
+     * Disconnect every bot and stop the server.
+     */
+    public void close() {
+        for (final Bot bot : this.bots) {
+            bot.client.close();
+        }
+        this.server.close();
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The server under test.
+     */
+    public Server getServer() {
+        return this.server;
+    }
+
+    /**
+     * @return The number of bots connected so far.
+     */
+    public int getNumBots() {
+        return this.bots.size();
+    }
+
+    /**
+     * @param i The index of a bot, in the order they connected.
+     * @return The client of the bot.
+     */
+    Client getClient(final int i) {
+        return this.bots.get(i).client;
+    }
+
+    /**
+     * @return The durations of the server's ticks. In nanoseconds.
+     */
+    public Histogram getServerTickDuration() {
+        return this.serverTickDuration;
+    }
+
+    // ##### REPORTING #####
+    /**
+     * Format a one-line summary of the load test so far.
+     * @param elapsed The time since the load test started. In seconds.
+     * @return The summary.
+     */
+    public String formatProgress(final double elapsed) {
+        final long[] latencies = this.botFigures(client -> client.getInputLatency().percentile(0.99));
+        return String.format("%7.1fs %5d/%d bots %5d playable  server tick p50=%7.2fms p99=%7.2fms  "
+                        + "queued=%9dB  bot p99 latency p50=%7.2fms max=%7.2fms",
+                elapsed, this.bots.size(), this.numBots, this.countPlayable(),
+                this.serverTickDuration.getP50(), this.serverTickDuration.getP99(),
+                this.meanPendingBytes(),
+                percentile(latencies, 0.5) / NANOSECONDS_PER_MILLISECOND,
+                percentile(latencies, 1) / NANOSECONDS_PER_MILLISECOND);
+    }
+
+    /**
+     * Format a report of the whole load test so far, one figure per line.
+     * @return The report.
+     */
+    public String formatReport() {
+        final long[] medians = this.botFigures(client -> client.getInputLatency().percentile(0.5));
+        final long[] tails = this.botFigures(client -> client.getInputLatency().percentile(0.99));
+        final long[] timesToPlayable = this.botFigures(Client::getTimeToPlayable);
+        final StringBuilder text = new StringBuilder();
+        text.append(String.format("%-28s %d of %d connected, %d playable%n", "bots", this.bots.size(), this.numBots,
+                this.countPlayable()));
+        text.append(String.format("%-28s %d%n", "rounds", this.rounds));
+        text.append(String.format("%-28s n=%-9d mean=%9.3fms p50=%9.3fms p99=%9.3fms max=%9.3fms%n",
+                "server tick", this.serverTickDuration.getCount(), this.serverTickDuration.getMean(),
+                this.serverTickDuration.getP50(), this.serverTickDuration.getP99(),
+                this.serverTickDuration.getMax()));
+        text.append(String.format("%-28s mean=%dB max=%dB max for one client=%dB%n", "send queue",
+                this.meanPendingBytes(),
+                this.maxPendingBytes, this.maxClientPendingBytes));
+        this.appendSpread(text, "bot p50 input latency", medians);
+        this.appendSpread(text, "bot p99 input latency", tails);
+        this.appendSpread(text, "bot time to playable", timesToPlayable);
+        return text.toString();
+    }
+
+    // ##### PRIVATE #####
+    private void connect() {
+        final Bot bot = new Bot(this.store, new Vector(this.spawnX, this.spawnY, this.spawnZ),
+                new Random(this.random.nextLong()), this.bots.size() % 2 == 0);
+        try {
+            bot.client = new Client(this.address, true, this.input, pos -> this.scratch, new LongHashMap<>(), bot);
+        } catch (final IOException e) {
+            throw new RuntimeException("could not connect bot", e);
+        }
+        this.bots.add(bot);
+    }
+
+    private long meanPendingBytes() {
+        return this.pendingBytesSamples == 0 ? 0 : this.pendingBytesSum / this.pendingBytesSamples;
+    }
+
+    private int countPlayable() {
+        int playable = 0;
+        for (final Bot bot : this.bots) {
+            if (bot.client.isPlayable()) {
+                playable++;
+            }
+        }
+        return playable;
+    }
+
+    /**
+     * Get one figure from each bot which has recorded it, sorted.
+     * @param figure The figure, from a bot's client. 0 if not recorded. In nanoseconds.
+     * @return The figures, sorted.
+     */
+    private long[] botFigures(final ToLongFunction<Client> figure) {
+        final long[] figures = new long[this.bots.size()];
+        int count = 0;
+        for (final Bot bot : this.bots) {
+            final long value = figure.applyAsLong(bot.client);
+            if (value != 0) {
+                figures[count++] = value;
+            }
+        }
+        final long[] recorded = Arrays.copyOf(figures, count);
+        Arrays.sort(recorded);
+        return recorded;
+    }
+
+    private void appendSpread(final StringBuilder text, final String name, final long[] sorted) {
+        text.append(String.format("%-28s n=%-9d min=%9.3fms p50=%9.3fms p99=%9.3fms max=%9.3fms%n", name,
+                sorted.length, percentile(sorted, 0) / NANOSECONDS_PER_MILLISECOND,
+                percentile(sorted, 0.5) / NANOSECONDS_PER_MILLISECOND,
+                percentile(sorted, 0.99) / NANOSECONDS_PER_MILLISECOND,
+                percentile(sorted, 1) / NANOSECONDS_PER_MILLISECOND));
+    }
+
+    /**
+     * @param sorted Some values, sorted.
+     * @param fraction The fraction of values which should be no greater than the result. Between 0 and 1.
+     * @return The percentile of the values, or 0 if there are none.
+     */
+    private static long percentile(final long[] sorted, final double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        final int rank = Math.max(1, (int)Math.ceil(fraction * sorted.length));
+        return sorted[rank - 1];
+    }
+}
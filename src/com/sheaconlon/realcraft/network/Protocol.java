@@ -0,0 +1,84 @@
+package com.sheaconlon.realcraft.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The protocol spoken between a {@link Server} and its {@link Client}s.
+ *
+ * Every message is a frame: an int giving the number of bytes which follow, a byte giving the type of the message,
+ * and then the message's fields, all big-endian. The types and their fields are:
+ * <ul>
+ *     <li>{@link #HELLO}, from a client on connecting: the int {@link #VERSION}, a byte of flags, such as
+ *     {@link #FLAG_COMPRESS}, an int giving the number of chunks the client already holds, and for each the chunk's
+ *     packed position as a long and its version as an int. See {@link ChunkCodec#version(byte[])}.</li>
+ *     <li>{@link #INPUT}, from a client whenever its input changes: an int sequence number, a byte with one bit per
+ *     held {@link com.sheaconlon.realcraft.ui.InputSource.Control}, and the player's orientation and vertical
+ *     orientation as floats.</li>
+ *     <li>{@link #SNAPSHOT_ACK}, from a client whenever it has taken in new entity snapshots: the sequence number of
+ *     the newest as an int.</li>
+ *     <li>{@link #WELCOME}, from the server in reply to a hello: the x-, y- and z-coordinates of the player's spawn
+ *     point as doubles.</li>
+ *     <li>{@link #CHUNK}, from the server: the chunk's packed position as a long (see
+ *     {@link com.sheaconlon.realcraft.world.ChunkPos}), its version as an int, a byte giving the encoding of the
+ *     rest, an int giving the length of the chunk's data once decoded, and the data. See {@link ChunkCodec}.</li>
+ *     <li>{@link #CHUNK_CURRENT}, from the server in place of a chunk the client already holds at the server's
+ *     version: the chunk's packed position as a long and its version as an int.</li>
+ *     <li>{@link #PLAYER_STATE}, from the server whenever the player moves: the sequence number of the last input
+ *     applied, and the x-, y- and z-coordinates of the player as doubles.</li>
+ *     <li>{@link #SNAPSHOT}, from the server every tick: the snapshot's sequence number as an int, the sequence
+ *     number of the snapshot it is a delta from as an int, or -1 if none, the snapshot's time on the server's clock
+ *     in milliseconds as an int, and the entities near the player, bit-packed. See {@link EntitySnapshot}.</li>
+ * </ul>
+ */
+public final class Protocol {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The default port of a server.
+     */
+    public static final int DEFAULT_PORT = 25_575;
+
+    // ##### PACKAGE-PRIVATE STATIC FINAL #####
+    static final int VERSION = 3;
+
+    /**
+     * The number of bytes before a frame's fields: its length and its type.
+     */
+    static final int HEADER_BYTES = Integer.BYTES + 1;
+
+    /**
+     * The most bytes a frame may have after its length. Frames claiming to be longer are taken to be garbage.
+     */
+    static final int MAX_FRAME_BYTES = 1 << 20;
+
+    static final byte HELLO = 1;
+    static final byte INPUT = 2;
+    static final byte SNAPSHOT_ACK = 3;
+    static final byte WELCOME = 16;
+    static final byte CHUNK = 17;
+    static final byte PLAYER_STATE = 18;
+    static final byte CHUNK_CURRENT = 19;
+    static final byte SNAPSHOT = 20;
+
+    /**
+     * The flag in a hello asking for chunks to be compressed.
+     */
+    static final int FLAG_COMPRESS = 1;
+
+    // ##### CONSTRUCTORS #####
+    private Protocol() {
+    }
+
+    // ##### FRAMES #####
+    /**
+     * Start a frame.
+     * @param type The type of the message.
+     * @param fieldBytes The number of bytes of the message's fields.
+     * @return A buffer with the frame's header written, and room for exactly its fields.
+     */
+    static ByteBuffer frame(final byte type, final int fieldBytes) {
+        final ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + fieldBytes);
+        frame.putInt(1 + fieldBytes);
+        frame.put(type);
+        return frame;
+    }
+}
@@ -0,0 +1,263 @@
+package com.sheaconlon.realcraft.network;
+
+import java.util.Arrays;
+
+/**
+ * The entities near the player as a {@link Client} last heard of them from the server, smoothed over time.
+ *
+ * The server sends a snapshot of the entities every tick, which would make them jump from place to place if drawn
+ * as they arrive. Instead, the entities are shown as they were a little in the past, at
+ * {@link #INTERPOLATION_DELAY} behind the newest snapshot, interpolating between the two snapshots either side of
+ * that moment. Snapshots which arrive late or unevenly are then still in time to be shown. An entity seen in only one
+ * of the two snapshots is shown as in the later one.
+ *
+ * Also keeps the recent snapshots, which the server's deltas refer to. Call {@link #interpolate(long)} to bring the
+ * state up to date, for instance once per frame.
+ */
+public class RemoteEntities {
+    // ##### PACKAGE-PRIVATE STATIC FINAL #####
+    /**
+     * How far behind the newest snapshot entities are shown. In milliseconds.
+     */
+    static final int INTERPOLATION_DELAY = 100;
+
+    /**
+     * The number of recent snapshots kept. Must be more than the server keeps, so that any baseline the server picks
+     * is still here.
+     */
+    static final int HISTORY = 64;
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final double FULL_REV_ANGLE = 2 * Math.PI;
+    private static final long NANOSECONDS_PER_MILLISECOND = 1_000_000;
+
+    // ##### PRIVATE FINAL #####
+    /**
+     * The recent snapshots, indexed by sequence number modulo {@link #HISTORY}.
+     */
+    private final EntitySnapshot[] history;
+
+    // ##### PRIVATE #####
+    private int newestSequence;
+
+    /**
+     * The server's clock less this client's, as well as it can be told: the least delay any snapshot has seemed to
+     * arrive with. In milliseconds.
+     */
+    private long clockOffset;
+
+    private int size;
+    private int[] ids;
+    private double[] posX;
+    private double[] posY;
+    private double[] posZ;
+    private double[] orient;
+    private double[] vertOrient;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a view of no entities.
+     */
+    public RemoteEntities() {
+        this.history = new EntitySnapshot[HISTORY];
+        for (int i = 0; i < HISTORY; i++) {
+            this.history[i] = new EntitySnapshot();
+        }
+        this.newestSequence = -1;
+        this.clockOffset = Long.MIN_VALUE;
+        this.size = 0;
+        this.ids = new int[0];
+        this.posX = new double[0];
+        this.posY = new double[0];
+        this.posZ = new double[0];
+        this.orient = new double[0];
+        this.vertOrient = new double[0];
+    }
+
+    // ##### SNAPSHOTS #####
+    /**
+     * Get a recent snapshot.
+     * @param sequence The sequence number of the snapshot.
+     * @return The snapshot, or null if it has not arrived or is no longer kept.
+     */
+    synchronized EntitySnapshot get(final int sequence) {
+        final EntitySnapshot snapshot = this.history[Math.floorMod(sequence, HISTORY)];
+        return snapshot.getSequence() == sequence ? snapshot : null;
+    }
+
+    /**
+     * Get the snapshot to decode an arriving snapshot into, which is the oldest kept. Pass it to
+     * {@link #received(EntitySnapshot, long)} once decoded.
+     * @param sequence The sequence number of the arriving snapshot.
+     * @return The snapshot to decode it into.
+     */
+    synchronized EntitySnapshot slot(final int sequence) {
+        return this.history[Math.floorMod(sequence, HISTORY)];
+    }
+
+    /**
+     * Take in an arriving snapshot.
+     * @param snapshot The snapshot, decoded into the one given by {@link #slot(int)}.
+     * @param nanos The time it arrived, as given by {@link System#nanoTime()}.
+     */
+    synchronized void received(final EntitySnapshot snapshot, final long nanos) {
+        if (snapshot.getSequence() > this.newestSequence) {
+            this.newestSequence = snapshot.getSequence();
+        }
+        this.clockOffset = Math.max(this.clockOffset, snapshot.getTime() - nanos / NANOSECONDS_PER_MILLISECOND);
+    }
+
+    // ##### INTERPOLATION #####
+    /**
+     * Bring the entities up to date.
+     * @param nanos The current time, as given by {@link System#nanoTime()}.
+     */
+    public synchronized void interpolate(final long nanos) {
+        if (this.newestSequence < 0) {
+            return;
+        }
+        final long renderTime = nanos / NANOSECONDS_PER_MILLISECOND + this.clockOffset - INTERPOLATION_DELAY;
+        // Find the newest snapshot no later than the moment to show, and the one after it.
+        EntitySnapshot before = this.get(this.newestSequence);
+        EntitySnapshot after = null;
+        for (int sequence = this.newestSequence - 1; sequence >= 0 && sequence > this.newestSequence - HISTORY;
+             sequence--) {
+            if (before.getTime() <= renderTime) {
+                break;
+            }
+            final EntitySnapshot earlier = this.get(sequence);
+            if (earlier == null) {
+                break;
+            }
+            after = before;
+            before = earlier;
+        }
+        if (after == null || before.getTime() > renderTime) {
+            this.show(before, before, 0);
+        } else {
+            final double fraction = (double)(renderTime - before.getTime()) / (after.getTime() - before.getTime());
+            this.show(before, after, fraction);
+        }
+    }
+
+    private void show(final EntitySnapshot before, final EntitySnapshot after, final double fraction) {
+        this.ensureCapacity(after.size());
+        this.size = after.size();
+        int b = 0;
+        for (int i = 0; i < after.size(); i++) {
+            final int id = after.getId(i);
+            while (b < before.size() && before.getId(b) < id) {
+                b++;
+            }
+            this.ids[i] = id;
+            if (b < before.size() && before.getId(b) == id) {
+                this.posX[i] = lerp(before.getPosX(b), after.getPosX(i), fraction);
+                this.posY[i] = lerp(before.getPosY(b), after.getPosY(i), fraction);
+                this.posZ[i] = lerp(before.getPosZ(b), after.getPosZ(i), fraction);
+                this.orient[i] = lerpAngle(before.getOrient(b), after.getOrient(i), fraction);
+                this.vertOrient[i] = lerp(before.getVertOrient(b), after.getVertOrient(i), fraction);
+            } else {
+                this.posX[i] = after.getPosX(i);
+                this.posY[i] = after.getPosY(i);
+                this.posZ[i] = after.getPosZ(i);
+                this.orient[i] = after.getOrient(i);
+                this.vertOrient[i] = after.getVertOrient(i);
+            }
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= this.ids.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, 2 * this.ids.length);
+        this.ids = Arrays.copyOf(this.ids, newCapacity);
+        this.posX = Arrays.copyOf(this.posX, newCapacity);
+        this.posY = Arrays.copyOf(this.posY, newCapacity);
+        this.posZ = Arrays.copyOf(this.posZ, newCapacity);
+        this.orient = Arrays.copyOf(this.orient, newCapacity);
+        this.vertOrient = Arrays.copyOf(this.vertOrient, newCapacity);
+    }
+
+    private static double lerp(final double from, final double to, final double fraction) {
+        return from + (to - from) * fraction;
+    }
+
+    /**
+     * Interpolate between two angles the shorter way around.
+     */
+    private static double lerpAngle(final double from, final double to, final double fraction) {
+        double delta = (to - from) % FULL_REV_ANGLE;
+        if (delta > Math.PI) {
+            delta -= FULL_REV_ANGLE;
+        } else if (delta < -Math.PI) {
+            delta += FULL_REV_ANGLE;
+        }
+        return from + delta * fraction;
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The number of entities, as of the last {@link #interpolate(long)}.
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * @param i The index of an entity. Entities are in increasing order of ID.
+     * @return The ID of the entity. See {@link com.sheaconlon.realcraft.entities.Entity#getId()}.
+     */
+    public synchronized int getId(final int i) {
+        return this.ids[i];
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The x-coordinate of the entity's position.
+     */
+    public synchronized double getPosX(final int i) {
+        return this.posX[i];
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The y-coordinate of the entity's position.
+     */
+    public synchronized double getPosY(final int i) {
+        return this.posY[i];
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The z-coordinate of the entity's position.
+     */
+    public synchronized double getPosZ(final int i) {
+        return this.posZ[i];
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The entity's orientation. In radians.
+     */
+    public synchronized double getOrient(final int i) {
+        return this.orient[i];
+    }
+
+    /**
+     * @param i The index of an entity.
+     * @return The entity's vertical orientation. In radians.
+     */
+    public synchronized double getVertOrient(final int i) {
+        return this.vertOrient[i];
+    }
+
+    /**
+     * Find an entity.
+     * @param id The ID of the entity.
+     * @return The index of the entity, or a negative number if it is not near.
+     */
+    public synchronized int indexOf(final int id) {
+        return Arrays.binarySearch(this.ids, 0, this.size, id);
+    }
+}
@@ -0,0 +1,906 @@
+package com.sheaconlon.realcraft.network;
+
+import com.sheaconlon.realcraft.blocks.Block;
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.entities.EntityStore;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.renderer.Renderer;
+import com.sheaconlon.realcraft.ui.InputSource;
+import com.sheaconlon.realcraft.ui.UserInterface;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.LongHashSet;
+import com.sheaconlon.realcraft.utilities.Vec3d;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkOffsets;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.Deflater;
+
+/**
+ * An authoritative server, which owns the world and streams it to clients over non-blocking sockets.
+ *
+ * Each tick, the server accepts new connections and reads whatever its clients have sent without blocking, moves each
+ * client's player by the controls it last reported, and sends each client the chunks around its player it does not
+ * have yet. Chunks are generated on demand and encoded once, then sent to every client that needs them. The server
+ * never touches {@link com.sheaconlon.realcraft.entities.Player#PLAYER}, so a client can run in the same process.
+ *
+ * Each client has its own send queue. The next chunk to send is picked as late as possible, nearest first but
+ * favoring chunks in front of the player, and only while little is waiting to be written, so that the order follows
+ * the player as it moves and turns. Each client may be sent at most its budget of bytes per tick on average (see
+ * {@link #setSendBudget(long)}). Chunks waiting to be written when the player moves out of reach of them are cancelled,
+ * and a client which already holds a chunk of the current version is told so instead of being sent it again.
+ *
+ * Chunks are kept, and their encodings cached, only while some ticket covers them. Once none has for
+ * {@link #UNLOAD_DELAY}, the server forgets their encodings and unloads them from the world, unless they were edited
+ * since being generated, since the server has nowhere else to keep edits. A chunk whose blocks or light change is
+ * encoded again, as a new version, and sent again to every client which had it.
+ *
+ * Every tick, each client is also sent a snapshot of the entities near its player, as a delta from the newest
+ * snapshot it has acknowledged (see {@link EntitySnapshot}).
+ */
+public class Server extends Worker implements ChunkTickets.Listener {
+    // ##### PACKAGE-PRIVATE STATIC FINAL #####
+    /**
+     * Where new clients' players start unless the server is created with some other spawn point.
+     */
+    static final double DEFAULT_SPAWN_X = 0;
+    static final double DEFAULT_SPAWN_Y = 50;
+    static final double DEFAULT_SPAWN_Z = 0;
+
+    /**
+     * The time a chunk must go uncovered by any ticket before the server forgets it, so that a client which reconnects
+     * soon after leaving is still told which of its chunks are current without their being generated again. In
+     * seconds.
+     */
+    static final double UNLOAD_DELAY = 5;
+
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * A server's return value for {@link #getTargetFreq()}.
+     */
+    private static final double TARGET_FREQ = 30;
+
+    /**
+     * The most chunks to generate and encode for one client on one tick.
+     */
+    private static final int CHUNKS_PER_TICK = 4;
+
+    /**
+     * The most bytes which may be waiting to be written to one client before the server stops queueing chunks for it.
+     * Small, so that the next chunk to send is picked as late as possible.
+     */
+    private static final long SEND_WINDOW_BYTES = 16 * 1024;
+
+    /**
+     * The number of bytes of chunks each client may be sent per tick unless set otherwise.
+     */
+    private static final long DEFAULT_SEND_BUDGET = 64 * 1024;
+
+    /**
+     * How strongly chunks in front of a client's player are favored over nearer chunks behind. See
+     * {@link ChunkOffsets#viewOrder(double, double, double, double, int[])}.
+     */
+    private static final double SEND_VIEW_BIAS = 0.5;
+
+    /**
+     * The distance from a client's player within which entities are sent to it. In blocks.
+     */
+    private static final double ENTITY_DISTANCE = Renderer.RENDER_DISTANCE * Chunk.SIZE;
+
+    /**
+     * The number of snapshots kept per client, any of which may be the baseline of the next once acknowledged.
+     */
+    private static final int SNAPSHOT_HISTORY = 32;
+
+    /**
+     * The archetypes of the entities sent to clients. Players are not entities on the server.
+     */
+    private static final EntityStore.Archetype[] SENT_ARCHETYPES = {EntityStore.Archetype.ENTITY,
+            EntityStore.Archetype.ANIMAL};
+
+    private static final int MILLISECONDS_PER_SECOND = 1_000;
+
+    private static final int STATE_BYTES = Integer.BYTES + 3 * Double.BYTES;
+    private static final int CHUNK_HEADER_BYTES = Long.BYTES + Integer.BYTES + 1 + Integer.BYTES;
+    private static final int CHUNK_CURRENT_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int HELD_CHUNK_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int SNAPSHOT_HEADER_BYTES = 3 * Integer.BYTES;
+
+    private static final Counter CONNECTIONS = Metrics.counter("Server", "connections");
+    private static final Counter CHUNKS_SENT = Metrics.counter("Server", "chunksSent");
+    private static final Counter BYTES_SENT = Metrics.counter("Server", "chunkBytesSent");
+    private static final Counter CHUNKS_CURRENT = Metrics.counter("Server", "chunksCurrent");
+    private static final Counter CHUNKS_CANCELLED = Metrics.counter("Server", "chunksCancelled");
+    private static final Counter CHUNKS_INVALIDATED = Metrics.counter("Server", "chunksInvalidated");
+    private static final Counter CHUNKS_UNLOADED = Metrics.counter("Server", "chunksUnloaded");
+    private static final Counter SNAPSHOTS_SENT = Metrics.counter("Server", "snapshotsSent");
+    private static final Counter SNAPSHOT_BYTES_SENT = Metrics.counter("Server", "snapshotBytesSent");
+
+    /**
+     * A client connected to this server, and the state of its player.
+     */
+    private static class Session {
+        private final Connection connection;
+
+        /**
+         * The chunks sent to this client, or which it was told it holds, by packed position. See {@link ChunkPos}.
+         */
+        private final LongHashSet sent;
+
+        /**
+         * The versions of the chunks this client held on connecting and has not yet been told about, by packed
+         * position.
+         */
+        private final LongHashMap<Integer> held;
+
+        private boolean welcomed;
+        private boolean compress;
+
+        private double x;
+        private double y;
+        private double z;
+        private double orient;
+        private double vertOrient;
+        private int controls;
+        private int lastInputSequence;
+        private boolean moved;
+
+        /**
+         * The chunk the player was in when chunks were last queued.
+         */
+        private long center;
+
+        /**
+         * The ticket on the chunks around {@link #center}, which the client may be sent.
+         */
+        private final ChunkTickets.Ticket ticket;
+
+        /**
+         * The number of bytes of chunks which may still be sent. Negative if a chunk overran the budget.
+         */
+        private long allowance;
+
+        /**
+         * The recent snapshots sent to this client, indexed by sequence number modulo {@link #SNAPSHOT_HISTORY}.
+         */
+        private final EntitySnapshot[] snapshots;
+        private int snapshotSequence;
+        private int ackedSnapshot;
+
+        Session(final Connection connection, final double x, final double y, final double z) {
+            this.connection = connection;
+            this.sent = new LongHashSet();
+            this.held = new LongHashMap<>();
+            this.snapshots = new EntitySnapshot[SNAPSHOT_HISTORY];
+            for (int i = 0; i < SNAPSHOT_HISTORY; i++) {
+                this.snapshots[i] = new EntitySnapshot();
+            }
+            this.snapshotSequence = 0;
+            this.ackedSnapshot = -1;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.center = ChunkPos.containing(x, y, z);
+            this.ticket = ChunkTickets.WORLD.add(ChunkTickets.Type.CLIENT, ChunkTickets.Level.GENERATE, this.center,
+                    Renderer.RENDER_DISTANCE);
+        }
+
+        boolean isPressed(final InputSource.Control control) {
+            return (this.controls & (1 << control.ordinal())) != 0;
+        }
+    }
+
+    // ##### PRIVATE FINAL #####
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final List<Session> sessions;
+    private final Generator generator;
+    private final EntityStore entities;
+    private final ChunkOffsets offsets;
+
+    /**
+     * Scratch space for the order in which to visit the offsets when picking chunks to send.
+     */
+    private final int[] order;
+
+    /**
+     * Where new clients' players start.
+     */
+    private final double spawnX;
+    private final double spawnY;
+    private final double spawnZ;
+
+    /**
+     * The encoded and compressed data of the chunks sent so far, by packed position. See {@link ChunkPos}.
+     */
+    private final LongHashMap<byte[]> encoded;
+    private final LongHashMap<byte[]> compressed;
+    private final LongHashMap<Integer> versions;
+    private final Deflater deflater;
+
+    /**
+     * The chunks no ticket has covered since they were last told of, and those containing blocks put since they were
+     * last told of, by packed position. Filled by other threads, and emptied each tick.
+     */
+    private final LongHashSet released;
+    private final LongHashSet edited;
+
+    /**
+     * The times at which chunks were released, by packed position. See {@link #time}.
+     */
+    private final LongHashMap<Double> releasedAt;
+
+    /**
+     * The chunks edited since this server generated them, which are kept loaded. See {@link ChunkPos}.
+     */
+    private final LongHashSet kept;
+
+    /**
+     * Scratch space for the positions taken from {@link #released} and {@link #edited}, and then for those of the
+     * released chunks due to be unloaded, of which there are {@link #numDue}.
+     */
+    private long[] taken;
+    private int numDue;
+
+    /**
+     * Adds the positions of the released chunks due to be unloaded to {@link #taken}.
+     */
+    private final ObjLongConsumer<Double> collectDue;
+
+    /**
+     * Told of the blocks put in the world. See {@link LightEngine#addEditListener(Consumer)}.
+     */
+    private final Consumer<Block> editListener;
+
+    /**
+     * Scratch space for a player's displacement and the direction it is looking in.
+     */
+    private final Vec3d displacement;
+    private final Vec3d lookDirection;
+
+    /**
+     * The entities of the world as of this tick, and scratch space for encoding snapshots of them.
+     */
+    private final EntitySnapshot allEntities;
+    private final BitWriter snapshotBits;
+
+    // ##### PRIVATE #####
+    /**
+     * The time this server has run for. In seconds.
+     */
+    private double time;
+
+    private long sendBudget;
+
+    /**
+     * The most bytes to write to each client per tick, to simulate a slow link.
+     */
+    private long linkLimit;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a server listening on some port.
+     * @param port The port, or 0 for any free port. See {@link #getPort()}.
+     */
+    public Server(final int port) throws IOException {
+        this(port, DEFAULT_SPAWN_X, DEFAULT_SPAWN_Y, DEFAULT_SPAWN_Z);
+    }
+
+    /**
+     * Create a server whose clients' players start somewhere other than the usual spawn point.
+     * @param port The port, or 0 for any free port. See {@link #getPort()}.
+     * @param spawnX The x-coordinate of the spawn point.
+     * @param spawnY The y-coordinate of the spawn point.
+     * @param spawnZ The z-coordinate of the spawn point.
+     */
+    Server(final int port, final double spawnX, final double spawnY, final double spawnZ) throws IOException {
+        this(port, spawnX, spawnY, spawnZ, EntityStore.WORLD);
+    }
+
+    /**
+     * Create a server whose clients' players start somewhere other than the usual spawn point, and which sends
+     * entities from some store other than the world's.
+     * @param port The port, or 0 for any free port. See {@link #getPort()}.
+     * @param spawnX The x-coordinate of the spawn point.
+     * @param spawnY The y-coordinate of the spawn point.
+     * @param spawnZ The z-coordinate of the spawn point.
+     * @param entities The entity store.
+     */
+    Server(final int port, final double spawnX, final double spawnY, final double spawnZ,
+           final EntityStore entities) throws IOException {
+        this.spawnX = spawnX;
+        this.spawnY = spawnY;
+        this.spawnZ = spawnZ;
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(port));
+        this.serverChannel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        this.sessions = new ArrayList<>();
+        this.generator = new Generator();
+        this.entities = entities;
+        this.allEntities = new EntitySnapshot();
+        this.snapshotBits = new BitWriter();
+        this.time = 0;
+        this.offsets = ChunkOffsets.forRadius(Renderer.RENDER_DISTANCE);
+        this.order = new int[this.offsets.size()];
+        this.encoded = new LongHashMap<>();
+        this.compressed = new LongHashMap<>();
+        this.versions = new LongHashMap<>();
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.released = new LongHashSet();
+        this.releasedAt = new LongHashMap<>();
+        this.edited = new LongHashSet();
+        this.kept = new LongHashSet();
+        this.taken = new long[0];
+        this.collectDue = (releaseTime, pos) -> {
+            if (this.time - releaseTime >= UNLOAD_DELAY) {
+                this.taken[this.numDue] = pos;
+                this.numDue++;
+            }
+        };
+        this.editListener = block -> {
+            synchronized (this.edited) {
+                this.edited.add(ChunkPos.containing(block.getPos().getXInt(), block.getPos().getYInt(),
+                        block.getPos().getZInt()));
+            }
+        };
+        this.displacement = new Vec3d();
+        this.lookDirection = new Vec3d();
+        this.sendBudget = DEFAULT_SEND_BUDGET;
+        this.linkLimit = Long.MAX_VALUE;
+        ChunkTickets.WORLD.addListener(this);
+        LightEngine.WORLD.addEditListener(this.editListener);
+    }
+
+    // ##### WORKER OVERRIDES #####
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.HIGH;
+    }
+
+    @Override
+    public String toString() {
+        return "Server";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return Server.TARGET_FREQ;
+    }
+
+    /**
+     * Serve clients for one tick.
+     */
+    @Override
+    public void tick(final double interval) {
+        this.time += interval;
+        this.invalidateEdited();
+        this.unloadReleased();
+        try {
+            this.selector.selectNow();
+        } catch (final IOException e) {
+            throw new RuntimeException("could not poll server sockets", e);
+        }
+        final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+            if (key.isValid() && key.isAcceptable()) {
+                this.accept();
+            } else if (key.isValid() && key.isReadable()) {
+                this.receive(key);
+            }
+        }
+        if (!this.sessions.isEmpty()) {
+            this.captureEntities();
+        }
+        for (int i = this.sessions.size() - 1; i >= 0; i--) {
+            final Session session = this.sessions.get(i);
+            if (!session.connection.getChannel().isOpen()) {
+                ChunkTickets.WORLD.remove(session.ticket);
+                this.sessions.remove(i);
+                continue;
+            }
+            this.move(session, interval);
+            this.stream(session);
+            this.sendSnapshot(session);
+            try {
+                session.connection.flush();
+            } catch (final IOException e) {
+                this.drop(session);
+            }
+        }
+    }
+
+    // ##### CHUNK TICKETS LISTENER OVERRIDES #####
+    /**
+     * Note that no ticket covers a chunk any longer, so that it is forgotten and unloaded after {@link #UNLOAD_DELAY}.
+     */
+    @Override
+    public void released(final long pos) {
+        synchronized (this.released) {
+            this.released.add(pos);
+        }
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The port this server is listening on.
+     */
+    public int getPort() {
+        try {
+            return ((InetSocketAddress)this.serverChannel.getLocalAddress()).getPort();
+        } catch (final IOException e) {
+            throw new RuntimeException("could not get server address", e);
+        }
+    }
+
+    /**
+     * @return The number of clients connected.
+     */
+    public int getNumClients() {
+        return this.sessions.size();
+    }
+
+    /**
+     * @return The number of bytes queued to send to all clients but not yet written.
+     */
+    public long getPendingBytes() {
+        long pending = 0;
+        for (final Session session : this.sessions) {
+            pending += session.connection.getPendingBytes();
+        }
+        return pending;
+    }
+
+    /**
+     * @return The most bytes queued to send to any one client but not yet written.
+     */
+    public long getMaxPendingBytes() {
+        long max = 0;
+        for (final Session session : this.sessions) {
+            max = Math.max(max, session.connection.getPendingBytes());
+        }
+        return max;
+    }
+
+    /**
+     * @return The number of chunks whose encodings this server holds.
+     */
+    int getNumCachedChunks() {
+        return this.encoded.size();
+    }
+
+    // ##### SETTERS #####
+    /**
+     * Set how many bytes of chunks each client may be sent per tick, on average.
+     * @param bytesPerTick The number of bytes. A chunk bigger than this is still sent, but uses up later ticks' budget.
+     */
+    public void setSendBudget(final long bytesPerTick) {
+        if (bytesPerTick <= 0) {
+            throw new IllegalArgumentException("send budget must be positive");
+        }
+        this.sendBudget = bytesPerTick;
+    }
+
+    /**
+     * Simulate a slow link to every client, by writing at most some number of bytes to each per tick.
+     * @param bytesPerTick The number of bytes.
+     */
+    void setLinkLimit(final long bytesPerTick) {
+        this.linkLimit = bytesPerTick;
+        for (final Session session : this.sessions) {
+            session.connection.setWriteLimit(bytesPerTick);
+        }
+    }
+
+    /**
+     * Stop listening and disconnect every client.
+     */
+    public void close() {
+        ChunkTickets.WORLD.removeListener(this);
+        LightEngine.WORLD.removeEditListener(this.editListener);
+        for (final Session session : this.sessions) {
+            session.connection.close();
+            ChunkTickets.WORLD.remove(session.ticket);
+        }
+        this.sessions.clear();
+        try {
+            this.selector.close();
+            this.serverChannel.close();
+        } catch (final IOException e) {
+            throw new RuntimeException("could not close server", e);
+        }
+        this.deflater.end();
+    }
+
+    // ##### PRIVATE #####
+    private void accept() {
+        try {
+            final SocketChannel channel = this.serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            final Session session = new Session(new Connection(channel), this.spawnX, this.spawnY,
+                    this.spawnZ);
+            session.connection.setWriteLimit(this.linkLimit);
+            channel.register(this.selector, SelectionKey.OP_READ, session);
+            this.sessions.add(session);
+            CONNECTIONS.increment();
+        } catch (final IOException e) {
+            throw new RuntimeException("could not accept client", e);
+        }
+    }
+
+    private void receive(final SelectionKey key) {
+        final Session session = (Session)key.attachment();
+        try {
+            if (!session.connection.read()) {
+                this.drop(session);
+                return;
+            }
+            ByteBuffer frame;
+            while ((frame = session.connection.nextFrame()) != null) {
+                this.handle(session, frame);
+            }
+        } catch (final IOException | RuntimeException e) {
+            // A client which sends garbage is disconnected rather than allowed to stop the server.
+            this.drop(session);
+        }
+    }
+
+    private void handle(final Session session, final ByteBuffer frame) throws IOException {
+        final byte type = frame.get();
+        if (type == Protocol.HELLO) {
+            final int version = frame.getInt();
+            if (version != Protocol.VERSION) {
+                throw new IOException("client speaks protocol version " + version);
+            }
+            session.compress = (frame.get() & Protocol.FLAG_COMPRESS) != 0;
+            final int numHeld = frame.getInt();
+            if (numHeld < 0 || numHeld > frame.remaining() / HELD_CHUNK_BYTES) {
+                throw new IOException("client claims to hold " + numHeld + " chunks");
+            }
+            for (int i = 0; i < numHeld; i++) {
+                final long pos = frame.getLong();
+                session.held.put(pos, frame.getInt());
+            }
+            session.welcomed = true;
+            final ByteBuffer welcome = Protocol.frame(Protocol.WELCOME, 3 * Double.BYTES);
+            welcome.putDouble(session.x).putDouble(session.y).putDouble(session.z);
+            welcome.flip();
+            session.connection.send(welcome);
+        } else if (type == Protocol.INPUT) {
+            session.lastInputSequence = frame.getInt();
+            session.controls = frame.get();
+            session.orient = frame.getFloat();
+            session.vertOrient = frame.getFloat();
+        } else if (type == Protocol.SNAPSHOT_ACK) {
+            final int sequence = frame.getInt();
+            if (sequence > session.ackedSnapshot && sequence < session.snapshotSequence) {
+                session.ackedSnapshot = sequence;
+            }
+        } else {
+            throw new IOException("client sent unknown message type " + type);
+        }
+    }
+
+    /**
+     * Move a client's player by the controls it holds, at the same speed as a local player.
+     */
+    private void move(final Session session, final double interval) {
+        final boolean moving = UserInterface.movementDisplacement(session.isPressed(InputSource.Control.FORWARD),
+                session.isPressed(InputSource.Control.LEFT), session.isPressed(InputSource.Control.BACKWARD),
+                session.isPressed(InputSource.Control.RIGHT), session.orient,
+                UserInterface.SPEED_OF_MOVEMENT * interval, this.displacement);
+        if (moving) {
+            session.x += this.displacement.getX();
+            session.y += this.displacement.getY();
+            session.z += this.displacement.getZ();
+            session.moved = true;
+        }
+        if (session.moved && session.welcomed) {
+            final ByteBuffer state = Protocol.frame(Protocol.PLAYER_STATE, STATE_BYTES);
+            state.putInt(session.lastInputSequence).putDouble(session.x).putDouble(session.y).putDouble(session.z);
+            state.flip();
+            session.connection.send(state);
+            session.moved = false;
+        }
+    }
+
+    /**
+     * Queue the chunks a client does not have yet which are most wanted, as far as its budget allows.
+     */
+    private void stream(final Session session) {
+        if (!session.welcomed) {
+            return;
+        }
+        final long center = ChunkPos.containing(session.x, session.y, session.z);
+        if (center != session.center) {
+            this.cancelOutOfReach(session, center);
+            session.center = center;
+            ChunkTickets.WORLD.move(session.ticket, center);
+        }
+        session.allowance = Math.min(session.allowance + this.sendBudget, this.sendBudget);
+        if (session.allowance <= 0 || session.connection.getPendingBytes() > SEND_WINDOW_BYTES) {
+            return;
+        }
+        this.lookDirection.set(1, 0, 0).rotateVertical(session.vertOrient).rotateHorizontal(session.orient);
+        this.offsets.viewOrder(this.lookDirection.getX(), this.lookDirection.getY(), this.lookDirection.getZ(),
+                Server.SEND_VIEW_BIAS, this.order);
+        int encodedThisTick = 0;
+        for (final int i : this.order) {
+            if (session.allowance <= 0 || session.connection.getPendingBytes() > SEND_WINDOW_BYTES) {
+                return;
+            }
+            final long pos = this.offsets.apply(center, i);
+            if (session.sent.contains(pos)) {
+                continue;
+            }
+            if (!this.encoded.containsKey(pos)) {
+                if (encodedThisTick == CHUNKS_PER_TICK) {
+                    return;
+                }
+                encodedThisTick++;
+            }
+            final ByteBuffer frame = this.chunkFrame(session, pos);
+            session.connection.send(frame);
+            session.sent.add(pos);
+            session.allowance -= frame.remaining();
+        }
+    }
+
+    /**
+     * Make the frame which gives a client a chunk.
+     * @return A {@link Protocol#CHUNK_CURRENT} frame if the client holds the chunk at its current version, or else a
+     * {@link Protocol#CHUNK} frame.
+     */
+    private ByteBuffer chunkFrame(final Session session, final long pos) {
+        final byte[] data = this.encoded(pos);
+        final int version = this.versions.get(pos);
+        final Integer heldVersion = session.held.remove(pos);
+        final ByteBuffer frame;
+        if (heldVersion != null && heldVersion == version) {
+            frame = Protocol.frame(Protocol.CHUNK_CURRENT, CHUNK_CURRENT_BYTES);
+            frame.putLong(pos);
+            frame.putInt(version);
+            CHUNKS_CURRENT.increment();
+        } else {
+            final byte[] payload = session.compress ? this.compressed(pos, data) : data;
+            frame = Protocol.frame(Protocol.CHUNK, CHUNK_HEADER_BYTES + payload.length);
+            frame.putLong(pos);
+            frame.putInt(version);
+            frame.put(session.compress ? ChunkCodec.DEFLATE : ChunkCodec.RAW);
+            frame.putInt(data.length);
+            frame.put(payload);
+            CHUNKS_SENT.increment();
+        }
+        frame.flip();
+        BYTES_SENT.add(frame.remaining());
+        return frame;
+    }
+
+    /**
+     * Take a snapshot of every entity to send.
+     */
+    private void captureEntities() {
+        this.allEntities.clear(-1, (int)(this.time * MILLISECONDS_PER_SECOND));
+        // Entities are only created and destroyed with the store locked, which keeps rows from moving meanwhile.
+        synchronized (this.entities) {
+            for (final EntityStore.Archetype archetype : SENT_ARCHETYPES) {
+                final EntityStore.Table table = this.entities.getTable(archetype);
+                final double[] vertOrient = table.getVertOrient();
+                for (int row = 0; row < table.size(); row++) {
+                    this.allEntities.add(table.getEntities()[row].getId(), table.getPosX()[row],
+                            table.getPosY()[row], table.getPosZ()[row], table.getOrient()[row],
+                            vertOrient == null ? 0 : vertOrient[row]);
+                }
+            }
+        }
+        this.allEntities.sortById();
+    }
+
+    /**
+     * Send a client a snapshot of the entities near its player, as a delta from the newest it has acknowledged.
+     */
+    private void sendSnapshot(final Session session) {
+        if (!session.welcomed) {
+            return;
+        }
+        final int sequence = session.snapshotSequence;
+        final EntitySnapshot baseline = session.ackedSnapshot >= 0
+                && sequence - session.ackedSnapshot < SNAPSHOT_HISTORY
+                ? session.snapshots[session.ackedSnapshot % SNAPSHOT_HISTORY] : null;
+        final EntitySnapshot snapshot = session.snapshots[sequence % SNAPSHOT_HISTORY];
+        snapshot.clear(sequence, this.allEntities.getTime());
+        snapshot.addNear(this.allEntities, session.x, session.y, session.z, ENTITY_DISTANCE);
+        if (baseline != null && baseline.size() == 0 && snapshot.size() == 0) {
+            // The client knows there is nothing near.
+            return;
+        }
+        this.snapshotBits.clear();
+        snapshot.encode(baseline, this.snapshotBits);
+        final ByteBuffer frame = Protocol.frame(Protocol.SNAPSHOT,
+                SNAPSHOT_HEADER_BYTES + this.snapshotBits.getNumBytes());
+        frame.putInt(sequence);
+        frame.putInt(baseline == null ? -1 : baseline.getSequence());
+        frame.putInt(snapshot.getTime());
+        this.snapshotBits.writeTo(frame);
+        frame.flip();
+        session.connection.send(frame);
+        session.snapshotSequence++;
+        SNAPSHOTS_SENT.increment();
+        SNAPSHOT_BYTES_SENT.add(frame.remaining());
+    }
+
+    /**
+     * Cancel the chunks waiting to be written to a client which are out of reach of its player's new chunk, so that
+     * they are sent again only if the player comes back.
+     */
+    private void cancelOutOfReach(final Session session, final long center) {
+        final int cancelled = session.connection.cancel(frame -> {
+            if (frame.get(Integer.BYTES) != Protocol.CHUNK) {
+                return false;
+            }
+            final long pos = frame.getLong(Protocol.HEADER_BYTES);
+            if (this.isWithinReach(center, pos)) {
+                return false;
+            }
+            session.sent.remove(pos);
+            return true;
+        });
+        CHUNKS_CANCELLED.add(cancelled);
+    }
+
+    private boolean isWithinReach(final long center, final long pos) {
+        final int dx = (ChunkPos.anchorX(pos) - ChunkPos.anchorX(center)) / Chunk.BLOCKS;
+        final int dy = (ChunkPos.anchorY(pos) - ChunkPos.anchorY(center)) / Chunk.BLOCKS;
+        final int dz = (ChunkPos.anchorZ(pos) - ChunkPos.anchorZ(center)) / Chunk.BLOCKS;
+        final int radius = this.offsets.getRadius();
+        return dx * dx + dy * dy + dz * dz <= radius * radius;
+    }
+
+    /**
+     * Forget the encodings of the chunks edited since last tick, and of their neighbors, whose light may have changed
+     * with them, and have every client which had them sent them again.
+     */
+    private void invalidateEdited() {
+        final int count;
+        synchronized (this.edited) {
+            count = this.take(this.edited);
+        }
+        for (int i = 0; i < count; i++) {
+            final long pos = this.taken[i];
+            this.kept.add(pos);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        this.invalidate(BlockPos.pack(BlockPos.getX(pos) + dx, BlockPos.getY(pos) + dy,
+                                BlockPos.getZ(pos) + dz));
+                    }
+                }
+            }
+        }
+    }
+
+    private void invalidate(final long pos) {
+        if (this.encoded.remove(pos) == null) {
+            return;
+        }
+        this.compressed.remove(pos);
+        this.versions.remove(pos);
+        for (final Session session : this.sessions) {
+            session.sent.remove(pos);
+        }
+        CHUNKS_INVALIDATED.increment();
+    }
+
+    /**
+     * Forget the encodings of the chunks released at least {@link #UNLOAD_DELAY} ago which no ticket has covered again,
+     * and unload those not edited from the world.
+     */
+    private void unloadReleased() {
+        final int count;
+        synchronized (this.released) {
+            count = this.take(this.released);
+        }
+        for (int i = 0; i < count; i++) {
+            this.releasedAt.put(this.taken[i], this.time);
+        }
+        this.reserveTaken(this.releasedAt.size());
+        this.numDue = 0;
+        this.releasedAt.forEach(this.collectDue);
+        for (int i = 0; i < this.numDue; i++) {
+            final long pos = this.taken[i];
+            this.releasedAt.remove(pos);
+            if (ChunkTickets.WORLD.getLevel(pos) != null) {
+                continue;
+            }
+            this.encoded.remove(pos);
+            this.compressed.remove(pos);
+            this.versions.remove(pos);
+            if (this.kept.contains(pos)) {
+                continue;
+            }
+            // Hold the light engine's lock so that the chunk is not unloaded with its light half-updated.
+            synchronized (LightEngine.WORLD) {
+                if (this.generator.unload(pos) != null) {
+                    CHUNKS_UNLOADED.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the positions in a set to {@link #taken}, and clear the set.
+     * @return The number of positions taken.
+     */
+    private int take(final LongHashSet positions) {
+        final int count = positions.size();
+        this.reserveTaken(count);
+        positions.toArray(this.taken);
+        positions.clear();
+        return count;
+    }
+
+    /**
+     * Make {@link #taken} hold at least some number of positions.
+     */
+    private void reserveTaken(final int count) {
+        if (this.taken.length < count) {
+            this.taken = new long[Math.max(count, 2 * this.taken.length)];
+        }
+    }
+
+    private byte[] encoded(final long pos) {
+        byte[] data = this.encoded.get(pos);
+        if (data == null) {
+            final Chunk chunk = this.generator.generateChunk(pos);
+            data = ChunkCodec.encode(chunk);
+            this.encoded.put(pos, data);
+            this.versions.put(pos, ChunkCodec.version(data));
+        }
+        return data;
+    }
+
+    private byte[] compressed(final long pos, final byte[] data) {
+        byte[] compressedData = this.compressed.get(pos);
+        if (compressedData == null) {
+            compressedData = ChunkCodec.compress(data, this.deflater);
+            this.compressed.put(pos, compressedData);
+        }
+        return compressedData;
+    }
+
+    private void drop(final Session session) {
+        session.connection.close();
+    }
+}
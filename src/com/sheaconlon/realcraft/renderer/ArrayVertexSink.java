@@ -0,0 +1,94 @@
+package com.sheaconlon.realcraft.renderer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A vertex sink which keeps its vertices in ordinary arrays, in the same indexed layout as a {@link VBO}.
+ *
+ * Needs no OpenGL context, so it can stand in for a VBO in benchmarks and tests.
+ */
+public class ArrayVertexSink implements VertexSink {
+    private static final int FLOATS_PER_VERTEX = Vertex.POSITION_SIZE + Vertex.COLOR_SIZE + Vertex.NORMAL_SIZE;
+
+    private final int capacity;
+    private final float[] data;
+    private final int[] indices;
+    private final Map<Vertex, Integer> indicesOfVertices;
+    private int numInstances;
+    private int numVertices;
+
+    /**
+     * Create an empty array vertex sink.
+     * @param capacity The number of vertices which may be written, counting repeats.
+     */
+    public ArrayVertexSink(final int capacity) {
+        this.capacity = capacity;
+        this.data = new float[capacity * FLOATS_PER_VERTEX];
+        this.indices = new int[capacity];
+        this.indicesOfVertices = new HashMap<>();
+        this.numInstances = 0;
+        this.numVertices = 0;
+    }
+
+    @Override
+    public void write(final Vertex vertex) {
+        if (this.isFull()) {
+            throw new RuntimeException("attempted to write to a full vertex sink");
+        }
+        Integer index = this.indicesOfVertices.get(vertex);
+        if (index == null) {
+            index = this.numVertices;
+            this.indicesOfVertices.put(vertex, index);
+            System.arraycopy(vertex.data(), 0, this.data, this.numVertices * FLOATS_PER_VERTEX, FLOATS_PER_VERTEX);
+            this.numVertices++;
+        }
+        this.indices[this.numInstances] = index;
+        this.numInstances++;
+    }
+
+    @Override
+    public boolean isFull() {
+        return this.numInstances >= this.capacity;
+    }
+
+    /**
+     * @return The number of vertices written to this sink, counting repeats.
+     */
+    public int getNumInstances() {
+        return this.numInstances;
+    }
+
+    /**
+     * @return The number of distinct vertices written to this sink.
+     */
+    public int getNumVertices() {
+        return this.numVertices;
+    }
+
+    /**
+     * @return The data of the distinct vertices written to this sink, in the order they were first written. Has
+     * {@link #getNumVertices()} vertices.
+     */
+    public float[] getData() {
+        return Arrays.copyOf(this.data, this.numVertices * FLOATS_PER_VERTEX);
+    }
+
+    /**
+     * @return The index within {@link #getData()} of each vertex written to this sink. Has
+     * {@link #getNumInstances()} indices.
+     */
+    public int[] getIndices() {
+        return Arrays.copyOf(this.indices, this.numInstances);
+    }
+
+    /**
+     * Empty this sink, so that it can be written again.
+     */
+    public void clear() {
+        this.indicesOfVertices.clear();
+        this.numInstances = 0;
+        this.numVertices = 0;
+    }
+}
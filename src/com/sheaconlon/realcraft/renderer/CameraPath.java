@@ -0,0 +1,167 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.entities.Animal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A camera path, which gives the player's pose on each of a sequence of frames, so that the same frames can be
+ * rendered again and again.
+ *
+ * Paths are saved as text, one frame per line, each line holding the x-, y- and z-coordinates of the player's
+ * position and then its orientation and vertical orientation, separated by spaces. Lines starting with {@code #} are
+ * comments.
+ */
+public final class CameraPath {
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * The number of numbers in a pose.
+     */
+    static final int POSE_SIZE = 5;
+    private static final String HEADER = "# realcraft camera path: x y z orient vertOrient";
+    private static final double FULL_REV_ANGLE = 2 * Math.PI;
+
+    // ##### PRIVATE FINAL #####
+    /**
+     * The poses, as consecutive groups of {@link #POSE_SIZE} numbers.
+     */
+    private final double[] poses;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a camera path.
+     * @param poses The poses, as consecutive groups of x-, y- and z-coordinate, orientation and vertical orientation.
+     */
+    CameraPath(final double[] poses) {
+        if (poses.length % POSE_SIZE != 0) {
+            throw new IllegalArgumentException("poses not of correct length");
+        }
+        this.poses = poses;
+    }
+
+    /**
+     * Create a path which circles a point at a fixed height, looking along the circle while nodding up and down.
+     * @param centerX The x-coordinate of the center of the circle.
+     * @param centerY The height of the circle.
+     * @param centerZ The z-coordinate of the center of the circle.
+     * @param radius The radius of the circle.
+     * @param frames The number of frames to take to go around once.
+     * @return The path.
+     */
+    public static CameraPath orbit(final double centerX, final double centerY, final double centerZ,
+                                   final double radius, final int frames) {
+        final double[] poses = new double[frames * POSE_SIZE];
+        for (int i = 0; i < frames; i++) {
+            final double angle = FULL_REV_ANGLE * i / frames;
+            poses[POSE_SIZE * i] = centerX + radius * Math.cos(angle);
+            poses[POSE_SIZE * i + 1] = centerY;
+            poses[POSE_SIZE * i + 2] = centerZ - radius * Math.sin(angle);
+            poses[POSE_SIZE * i + 3] = angle + Math.PI / 2;
+            poses[POSE_SIZE * i + 4] = -0.3 + 0.25 * Math.sin(3 * angle);
+        }
+        return new CameraPath(poses);
+    }
+
+    /**
+     * Load a camera path saved by {@link #save(Path)}.
+     * @param path The path of the file.
+     * @return The camera path.
+     */
+    public static CameraPath load(final Path path) throws IOException {
+        final List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        final double[] poses = new double[lines.size() * POSE_SIZE];
+        int frames = 0;
+        for (final String line : lines) {
+            final String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            final String[] fields = trimmed.split("\\s+");
+            if (fields.length != POSE_SIZE) {
+                throw new IOException("camera path line has " + fields.length + " fields: " + line);
+            }
+            for (int j = 0; j < POSE_SIZE; j++) {
+                poses[POSE_SIZE * frames + j] = Double.parseDouble(fields[j]);
+            }
+            frames++;
+        }
+        return new CameraPath(Arrays.copyOf(poses, frames * POSE_SIZE));
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The number of frames in this path.
+     */
+    public int size() {
+        return this.poses.length / POSE_SIZE;
+    }
+
+    /**
+     * Move an animal, usually the player, into the pose of some frame of this path.
+     * @param frame The index of the frame.
+     * @param animal The animal.
+     */
+    public void apply(final int frame, final Animal animal) {
+        final int base = POSE_SIZE * frame;
+        animal.setPos(this.poses[base], this.poses[base + 1], this.poses[base + 2]);
+        animal.setOrient(this.poses[base + 3]);
+        animal.setVertOrient(this.poses[base + 4]);
+    }
+
+    /**
+     * @param frame The index of a frame.
+     * @return The x-coordinate of the position on the frame.
+     */
+    public double getX(final int frame) {
+        return this.poses[POSE_SIZE * frame];
+    }
+
+    /**
+     * @param frame The index of a frame.
+     * @return The y-coordinate of the position on the frame.
+     */
+    public double getY(final int frame) {
+        return this.poses[POSE_SIZE * frame + 1];
+    }
+
+    /**
+     * @param frame The index of a frame.
+     * @return The z-coordinate of the position on the frame.
+     */
+    public double getZ(final int frame) {
+        return this.poses[POSE_SIZE * frame + 2];
+    }
+
+    /**
+     * @param frame The index of a frame.
+     * @return The orientation on the frame.
+     */
+    public double getOrient(final int frame) {
+        return this.poses[POSE_SIZE * frame + 3];
+    }
+
+    // ##### SAVING #####
+    /**
+     * Save this camera path as text.
+     * @param path The path of the file to write.
+     */
+    public void save(final Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (int i = 0; i < this.size(); i++) {
+                final int base = POSE_SIZE * i;
+                out.write(String.format(Locale.ROOT, "%.4f %.4f %.4f %.5f %.5f", this.poses[base],
+                        this.poses[base + 1], this.poses[base + 2], this.poses[base + 3], this.poses[base + 4]));
+                out.newLine();
+            }
+        }
+    }
+}
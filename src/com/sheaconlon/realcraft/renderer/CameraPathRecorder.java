@@ -0,0 +1,83 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.entities.Player;
+
+import java.util.Arrays;
+
+/**
+ * A camera path recorder, which samples the player's pose at the frame rate so that a play session can be replayed
+ * as a {@link CameraPath}.
+ */
+public class CameraPathRecorder extends Worker {
+    /**
+     * A camera path recorder's return value for {@link #getTargetFreq()}.
+     */
+    private static final double TARGET_FREQ = 60;
+
+    /**
+     * Room for a minute of samples.
+     */
+    private static final int INITIAL_CAPACITY = CameraPath.POSE_SIZE * 60 * 60;
+
+    /**
+     * The poses sampled so far, in the layout of {@link CameraPath}.
+     */
+    private double[] poses;
+    private int size;
+
+    /**
+     * Create a camera path recorder with no samples.
+     */
+    public CameraPathRecorder() {
+        this.poses = new double[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.HIGH;
+    }
+
+    @Override
+    public String toString() {
+        return "CameraPathRecorder";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return CameraPathRecorder.TARGET_FREQ;
+    }
+
+    /**
+     * Sample the player's pose.
+     */
+    @Override
+    protected synchronized void tick(final double interval) {
+        if (this.size + CameraPath.POSE_SIZE > this.poses.length) {
+            this.poses = Arrays.copyOf(this.poses, 2 * this.poses.length);
+        }
+        this.poses[this.size++] = Player.PLAYER.getPosX();
+        this.poses[this.size++] = Player.PLAYER.getPosY();
+        this.poses[this.size++] = Player.PLAYER.getPosZ();
+        this.poses[this.size++] = Player.PLAYER.getOrient();
+        this.poses[this.size++] = Player.PLAYER.getVertOrient();
+    }
+
+    /**
+     * @return The camera path sampled so far.
+     */
+    public synchronized CameraPath getPath() {
+        return new CameraPath(Arrays.copyOf(this.poses, this.size));
+    }
+}
@@ -0,0 +1,125 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.world.Chunk;
+
+/**
+ * The region of space a camera can see, for culling chunks before rendering them.
+ *
+ * Updated once per frame with the camera's position and orientation, after which tests allocate nothing.
+ */
+class Frustum {
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * The positions of the corners of a unit cube.
+     */
+    private static final int[][] CUBE_CORNERS = new int[][]{
+            {0, 0, 0}, {1, 0, 0}, {0, 1, 0}, {1, 1, 0}, {0, 0, 1}, {1, 0, 1}, {0, 1, 1}, {1, 1, 1}
+    };
+
+    // ##### PRIVATE FINAL #####
+    private final double verticalFieldOfView;
+    private final double nearCutoff;
+    private final double farCutoff;
+
+    // ##### PRIVATE #####
+    private double cameraX;
+    private double cameraY;
+    private double cameraZ;
+
+    /**
+     * The cosines and sines of the angles which undo the camera's orientations.
+     */
+    private double horizontalCos;
+    private double horizontalSin;
+    private double verticalCos;
+    private double verticalSin;
+
+    /**
+     * The tangents of half the fields of view, or infinity if a field of view is at least a half-turn.
+     */
+    private double verticalTan;
+    private double horizontalTan;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a frustum.
+     * @param verticalFieldOfView The vertical field of view of the camera. In radians.
+     * @param nearCutoff The distance of the nearest visible points.
+     * @param farCutoff The distance of the furthest visible points.
+     */
+    Frustum(final double verticalFieldOfView, final double nearCutoff, final double farCutoff) {
+        this.verticalFieldOfView = verticalFieldOfView;
+        this.nearCutoff = nearCutoff;
+        this.farCutoff = farCutoff;
+    }
+
+    // ##### UPDATES #####
+    /**
+     * Move this frustum to match a camera.
+     * @param cameraX The x-coordinate of the camera.
+     * @param cameraY The y-coordinate of the camera.
+     * @param cameraZ The z-coordinate of the camera.
+     * @param orient The orientation of the camera. See {@link com.sheaconlon.realcraft.world.WorldObject#getOrient()}.
+     * @param vertOrient The vertical orientation of the camera. See
+     *                   {@link com.sheaconlon.realcraft.entities.Animal#getVertOrient()}.
+     * @param aspectRatio The ratio of the width of the view to its height.
+     */
+    void update(final double cameraX, final double cameraY, final double cameraZ, final double orient,
+                final double vertOrient, final double aspectRatio) {
+        this.cameraX = cameraX;
+        this.cameraY = cameraY;
+        this.cameraZ = cameraZ;
+        this.horizontalCos = Math.cos(-orient);
+        this.horizontalSin = Math.sin(-orient);
+        this.verticalCos = Math.cos(-vertOrient);
+        this.verticalSin = Math.sin(-vertOrient);
+        this.verticalTan = halfAngleTan(this.verticalFieldOfView);
+        this.horizontalTan = halfAngleTan(aspectRatio * this.verticalFieldOfView);
+    }
+
+    // ##### TESTS #####
+    /**
+     * Return whether a point is within this frustum.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param z The z-coordinate of the point.
+     * @return Whether the point is within this frustum.
+     */
+    boolean containsPoint(final double x, final double y, final double z) {
+        final double dx = x - this.cameraX;
+        final double dy = y - this.cameraY;
+        final double dz = z - this.cameraZ;
+        // Turn the displacement into the camera's frame, where the camera looks along the positive x-axis.
+        final double horizontalX = dx * this.horizontalCos + dz * this.horizontalSin;
+        final double forward = horizontalX * this.verticalCos - dy * this.verticalSin;
+        final double up = dy * this.verticalCos + horizontalX * this.verticalSin;
+        final double side = -dx * this.horizontalSin + dz * this.horizontalCos;
+        if (forward < this.nearCutoff || forward > this.farCutoff) {
+            return false;
+        }
+        return Math.abs(up) <= forward * this.verticalTan && Math.abs(side) <= forward * this.horizontalTan;
+    }
+
+    /**
+     * Return whether any corner of a chunk is within this frustum.
+     * @param chunk The chunk.
+     * @return Whether any corner of {@code chunk} is within this frustum.
+     */
+    boolean containsChunkCorner(final Chunk chunk) {
+        final double anchorX = chunk.getAnchor().getX();
+        final double anchorY = chunk.getAnchor().getY();
+        final double anchorZ = chunk.getAnchor().getZ();
+        for (final int[] corner : CUBE_CORNERS) {
+            if (this.containsPoint(anchorX + corner[0] * Chunk.SIZE, anchorY + corner[1] * Chunk.SIZE,
+                    anchorZ + corner[2] * Chunk.SIZE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ##### HELPERS #####
+    private static double halfAngleTan(final double fieldOfView) {
+        return fieldOfView >= Math.PI ? Double.POSITIVE_INFINITY : Math.tan(fieldOfView / 2);
+    }
+}
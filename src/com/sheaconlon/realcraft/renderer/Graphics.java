@@ -0,0 +1,42 @@
+package com.sheaconlon.realcraft.renderer;
+
+import org.joml.Matrix4d;
+
+/**
+ * The layer a renderer draws through.
+ *
+ * All methods are called from the renderer's thread, after {@link #init(double, double, double)}.
+ */
+public interface Graphics {
+    /**
+     * Prepare to draw.
+     * @param verticalFieldOfView The vertical field of view of the camera. In radians.
+     * @param nearCutoff The distance of the nearest visible objects.
+     * @param farCutoff The distance of the furthest visible objects.
+     */
+    void init(double verticalFieldOfView, double nearCutoff, double farCutoff);
+
+    /**
+     * Get the dimensions of the surface being drawn on.
+     * @param dest An array to put the width and height of the surface into.
+     */
+    void getDimensions(int[] dest);
+
+    /**
+     * Create an empty render buffer.
+     * @param capacity The number of vertices which may be written to the buffer, counting repeats.
+     * @return The render buffer.
+     */
+    RenderBuffer createBuffer(int capacity);
+
+    /**
+     * Start a frame, clearing the surface.
+     * @param camera The view matrix of the camera.
+     */
+    void beginFrame(Matrix4d camera);
+
+    /**
+     * Finish a frame, showing what was drawn.
+     */
+    void endFrame();
+}
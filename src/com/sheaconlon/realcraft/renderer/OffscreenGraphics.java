@@ -0,0 +1,125 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.ui.Window;
+import org.joml.Matrix4d;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.glfw.GLFW;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL30;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * A graphics layer which draws with OpenGL into an offscreen framebuffer of a fixed size, so that frames can be
+ * rendered and timed without showing anything.
+ *
+ * The OpenGL context comes from a window which is never shown. On a machine with no GPU or display, run under a
+ * virtual X server with Mesa's software rasterizer, for example {@code xvfb-run -s "-screen 0 1920x1080x24"} with
+ * {@code LIBGL_ALWAYS_SOFTWARE=1}, to get the same frames from llvmpipe.
+ */
+public class OffscreenGraphics implements Graphics {
+    private final int width;
+    private final int height;
+
+    /**
+     * A buffer reused to pass the camera's matrix to OpenGL.
+     */
+    private final DoubleBuffer cameraBuffer;
+
+    /**
+     * The hidden window whose OpenGL context this graphics layer draws with, or null before
+     * {@link #init(double, double, double)}.
+     */
+    private Window window;
+
+    private int framebuffer;
+    private int colorRenderbuffer;
+    private int depthRenderbuffer;
+
+    /**
+     * Create an offscreen graphics layer. Nothing is created in OpenGL until {@link #init(double, double, double)}.
+     * @param width The width of the framebuffer to draw into. In pixels.
+     * @param height The height of the framebuffer to draw into. In pixels.
+     */
+    public OffscreenGraphics(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        this.cameraBuffer = BufferUtils.createDoubleBuffer(16);
+    }
+
+    @Override
+    public void init(final double verticalFieldOfView, final double nearCutoff, final double farCutoff) {
+        this.window = new Window();
+        GLFW.glfwMakeContextCurrent(this.window.getHandle());
+        // Never wait for a screen refresh, since nothing is shown.
+        GLFW.glfwSwapInterval(0);
+        GL.createCapabilities();
+
+        this.framebuffer = GL30.glGenFramebuffers();
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, this.framebuffer);
+        this.colorRenderbuffer = GL30.glGenRenderbuffers();
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, this.colorRenderbuffer);
+        GL30.glRenderbufferStorage(GL30.GL_RENDERBUFFER, GL11.GL_RGBA8, this.width, this.height);
+        GL30.glFramebufferRenderbuffer(GL30.GL_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL30.GL_RENDERBUFFER,
+                this.colorRenderbuffer);
+        this.depthRenderbuffer = GL30.glGenRenderbuffers();
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, this.depthRenderbuffer);
+        GL30.glRenderbufferStorage(GL30.GL_RENDERBUFFER, GL14.GL_DEPTH_COMPONENT24, this.width, this.height);
+        GL30.glFramebufferRenderbuffer(GL30.GL_FRAMEBUFFER, GL30.GL_DEPTH_ATTACHMENT, GL30.GL_RENDERBUFFER,
+                this.depthRenderbuffer);
+        GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+        final int status = GL30.glCheckFramebufferStatus(GL30.GL_FRAMEBUFFER);
+        if (status != GL30.GL_FRAMEBUFFER_COMPLETE) {
+            throw new RuntimeException("offscreen framebuffer is incomplete, status " + Integer.toString(status));
+        }
+        GL11.glViewport(0, 0, this.width, this.height);
+
+        OpenGLGraphics.configureOpenGL();
+        OpenGLGraphics.loadProjection(verticalFieldOfView, (double)this.width / (double)this.height, nearCutoff,
+                farCutoff);
+    }
+
+    @Override
+    public void getDimensions(final int[] dest) {
+        dest[0] = this.width;
+        dest[1] = this.height;
+    }
+
+    @Override
+    public RenderBuffer createBuffer(final int capacity) {
+        final VBO vbo = new VBO(capacity);
+        vbo.link();
+        return vbo;
+    }
+
+    @Override
+    public void beginFrame(final Matrix4d camera) {
+        OpenGLGraphics.clear(camera, this.cameraBuffer);
+    }
+
+    /**
+     * Wait for the frame to finish drawing, so that the time taken to render it includes the time the GPU took.
+     */
+    @Override
+    public void endFrame() {
+        GL11.glFinish();
+    }
+
+    /**
+     * Delete the framebuffer and close the hidden window. Must be called from the thread which called
+     * {@link #init(double, double, double)}.
+     */
+    public void close() {
+        if (this.window == null) {
+            return;
+        }
+        GL30.glBindFramebuffer(GL30.GL_FRAMEBUFFER, 0);
+        GL30.glDeleteRenderbuffers(this.colorRenderbuffer);
+        GL30.glDeleteRenderbuffers(this.depthRenderbuffer);
+        GL30.glDeleteFramebuffers(this.framebuffer);
+        this.window.close();
+        this.window = null;
+    }
+}
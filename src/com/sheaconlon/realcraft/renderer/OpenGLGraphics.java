@@ -0,0 +1,129 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.ui.UserInterface;
+import org.joml.Matrix4d;
+import org.joml.Matrix4f;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.glfw.GLFW;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A graphics layer which draws with OpenGL into the window of a user interface.
+ */
+public class OpenGLGraphics implements Graphics {
+    /**
+     * A vector giving the direction of the sun. The trailing zero indicates to OpenGL that the light is
+     * directional, not positional.
+     */
+    private static final float[] SUN_DIRECTION = new float[]{-1, 3, 1, 0};
+
+    /**
+     * The color of sunlight, in RGBA format.
+     */
+    private static final float[] SUNLIGHT_COLOR = new float[]{1, 0.965f, 0.847f, 1};
+
+    /**
+     * The color of the sky, in RGBA format.
+     */
+    private static final float[] SKY_COLOR = new float[]{0.435f, 0.675f, 0.969f};
+
+    private final UserInterface ui;
+
+    /**
+     * A buffer reused to pass the camera's matrix to OpenGL.
+     */
+    private final DoubleBuffer cameraBuffer;
+
+    /**
+     * Create an OpenGL graphics layer.
+     * @param ui The user interface to draw into the window of.
+     */
+    public OpenGLGraphics(final UserInterface ui) {
+        this.ui = ui;
+        this.cameraBuffer = BufferUtils.createDoubleBuffer(16);
+    }
+
+    @Override
+    public void init(final double verticalFieldOfView, final double nearCutoff, final double farCutoff) {
+        GLFW.glfwMakeContextCurrent(this.ui.getWindowHandle());
+        GLFW.glfwSwapInterval(1);
+        GL.createCapabilities();
+        OpenGLGraphics.configureOpenGL();
+        final int[] dimensions = this.ui.getDimensions();
+        OpenGLGraphics.loadProjection(verticalFieldOfView, (double)dimensions[0] / (double)dimensions[1], nearCutoff,
+                farCutoff);
+    }
+
+    @Override
+    public void getDimensions(final int[] dest) {
+        this.ui.getDimensions(dest);
+    }
+
+    @Override
+    public RenderBuffer createBuffer(final int capacity) {
+        final VBO vbo = new VBO(capacity);
+        vbo.link();
+        return vbo;
+    }
+
+    @Override
+    public void beginFrame(final Matrix4d camera) {
+        OpenGLGraphics.clear(camera, this.cameraBuffer);
+    }
+
+    @Override
+    public void endFrame() {
+        GLFW.glfwSwapBuffers(this.ui.getWindowHandle());
+    }
+
+    /**
+     * Enable the capabilities the renderer draws with. An OpenGL context must be current, with its capabilities
+     * created.
+     */
+    static void configureOpenGL() {
+        GL11.glEnable(GL11.GL_DEPTH_TEST);
+        GL11.glEnable(GL11.GL_CULL_FACE);
+        GL11.glEnable(GL11.GL_LIGHTING);
+        GL11.glEnable(GL11.GL_LIGHT0);
+        GL11.glShadeModel(GL11.GL_SMOOTH);
+        GL11.glColorMaterial(GL11.GL_FRONT, GL11.GL_DIFFUSE);
+        GL11.glEnable(GL11.GL_COLOR_MATERIAL);
+        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+        GL11.glEnableClientState(GL11.GL_NORMAL_ARRAY);
+    }
+
+    /**
+     * Load a perspective projection matrix.
+     * @param verticalFieldOfView The vertical field of view. In radians.
+     * @param aspectRatio The ratio of the surface's width to its height.
+     * @param nearCutoff The distance of the nearest visible objects.
+     * @param farCutoff The distance of the furthest visible objects.
+     */
+    static void loadProjection(final double verticalFieldOfView, final double aspectRatio, final double nearCutoff,
+                               final double farCutoff) {
+        final FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
+        final Matrix4f matrix = new Matrix4f();
+        matrix.setPerspective((float)verticalFieldOfView, (float)aspectRatio, (float)nearCutoff, (float)farCutoff);
+        GL11.glMatrixMode(GL11.GL_PROJECTION);
+        GL11.glLoadMatrixf(matrix.get(buffer));
+    }
+
+    /**
+     * Load the camera's view matrix, light the scene by the sun, and clear the surface to the sky's color.
+     * @param camera The view matrix of the camera.
+     * @param cameraBuffer A buffer of 16 doubles to pass the matrix to OpenGL through.
+     */
+    static void clear(final Matrix4d camera, final DoubleBuffer cameraBuffer) {
+        GL11.glMatrixMode(GL11.GL_MODELVIEW);
+        GL11.glLoadMatrixd(camera.get(cameraBuffer));
+        GL11.glLightfv(GL11.GL_LIGHT0, GL11.GL_POSITION, OpenGLGraphics.SUN_DIRECTION);
+        GL11.glLightfv(GL11.GL_LIGHT0, GL11.GL_DIFFUSE, OpenGLGraphics.SUNLIGHT_COLOR);
+        GL11.glClearColor(OpenGLGraphics.SKY_COLOR[0], OpenGLGraphics.SKY_COLOR[1], OpenGLGraphics.SKY_COLOR[2], 1);
+        GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+    }
+}
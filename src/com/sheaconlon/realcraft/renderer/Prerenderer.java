@@ -3,14 +3,22 @@ package com.sheaconlon.realcraft.renderer;
 import com.sheaconlon.realcraft.blocks.Block;
 import com.sheaconlon.realcraft.concurrency.Worker;
 import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.metrics.ChunkMeshingEvent;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Metrics;
 import com.sheaconlon.realcraft.utilities.ArrayUtilities;
-import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.utilities.Vec3d;
 import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkOffsets;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
 import com.sheaconlon.realcraft.world.WorldObject;
 
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.LongPredicate;
 
 /**
  * A pre-renderer, which prepares VBOs for the renderer.
@@ -26,16 +34,88 @@ public class Prerenderer extends Worker {
      */
     private static final int PRERENDER_DISTANCE = Renderer.RENDER_DISTANCE;
 
+    /**
+     * The most chunks a pre-renderer should pre-render each tick.
+     */
+    private static final int CHUNKS_PER_TICK = 3;
+
+    /**
+     * How strongly pre-renderers favor chunks in front of the player over nearer chunks behind. See
+     * {@link ChunkOffsets#viewOrder(double, double, double, double, int[])}.
+     */
+    private static final double VIEW_BIAS = 0.5;
+
+    /**
+     * The factor by which each light level below the greatest darkens a face.
+     */
+    private static final double LIGHT_FALLOFF = 0.8;
+
+    /**
+     * The factor to shade a face by, indexed by the light level in front of it.
+     */
+    private static final float[] BRIGHTNESS = brightnessTable();
+
+    /**
+     * The number of chunks pre-rendered into VBOs.
+     */
+    private static final Counter CHUNKS_MESHED = Metrics.counter("Prerenderer", "chunksMeshed");
+
     /**
      * The renderer this pre-renderer should load with VBOs.
      */
     private final Renderer renderer;
 
+    /**
+     * Whether a chunk, by packed position, holds its final blocks and may be pre-rendered.
+     */
+    private final LongPredicate isLoaded;
+
+    /**
+     * The offsets of the chunks to pre-render, and the order to visit them in, which is refreshed each tick.
+     */
+    private final ChunkOffsets offsets;
+    private final int[] order;
+
+    /**
+     * Scratch space for the direction the player is looking in.
+     */
+    private final Vec3d lookDirection;
+
+    /**
+     * Scratch space for the player's position.
+     */
+    private final double[] playerPos;
+
+    /**
+     * Scratch space for the tickets whose chunks to mesh.
+     */
+    private final List<ChunkTickets.Ticket> ticketed;
+
+    /**
+     * The ticket this pre-renderer holds on the chunks around the player, or null until it first ticks.
+     */
+    private ChunkTickets.Ticket playerTicket;
+
     /**
      * Create a pre-renderer.
      */
     public Prerenderer(final Renderer renderer) {
+        this(renderer, pos -> true);
+    }
+
+    /**
+     * Create a pre-renderer which only pre-renders loaded chunks, such as those received from a server.
+     * @param renderer The renderer to load with VBOs.
+     * @param isLoaded Whether a chunk, by packed position, holds its final blocks. See {@link ChunkPos}.
+     */
+    public Prerenderer(final Renderer renderer, final LongPredicate isLoaded) {
         this.renderer = renderer;
+        this.isLoaded = isLoaded;
+        this.offsets = ChunkOffsets.forRadius(Prerenderer.PRERENDER_DISTANCE);
+        this.order = new int[this.offsets.size()];
+        this.lookDirection = new Vec3d();
+        this.playerPos = new double[3];
+        this.ticketed = new ArrayList<>();
     }
 
     @Override
@@ -68,36 +148,111 @@ public class Prerenderer extends Worker {
      */
     @Override
     public void tick(final double elapsedTime) {
-        final Vector playerPos = Player.PLAYER.getPos();
-        final Chunk playerChunk = Chunk.containingChunk(playerPos);
+        Player.PLAYER.getPos(this.playerPos);
+        final long playerChunk = ChunkPos.containing(this.playerPos[0], this.playerPos[1], this.playerPos[2]);
+        if (this.playerTicket == null) {
+            this.playerTicket = ChunkTickets.WORLD.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.MESH,
+                    playerChunk, PRERENDER_DISTANCE);
+        } else {
+            ChunkTickets.WORLD.move(this.playerTicket, playerChunk);
+        }
+        this.lookDirection.set(1, 0, 0).rotateVertical(Player.PLAYER.getVertOrient())
+                .rotateHorizontal(Player.PLAYER.getOrient());
+        this.offsets.viewOrder(this.lookDirection.getX(), this.lookDirection.getY(), this.lookDirection.getZ(),
+                Prerenderer.VIEW_BIAS, this.order);
         int numberDone = 0;
-        for (final Chunk chunk : playerChunk.chunksNearby(Prerenderer.PRERENDER_DISTANCE)) {
-            if (!renderer.hasWrittenVBO(chunk)) {
-                final VBO vbo = this.renderer.getEmptyVBO();
-                if (vbo != null) {
-                    this.prerenderChunk(chunk, vbo);
-                    this.renderer.receiveWrittenVBO(chunk, vbo);
-                }
+        for (final int i : this.order) {
+            if (this.prerender(this.offsets.apply(playerChunk, i))) {
                 numberDone++;
-                if (numberDone == 3) {
+                if (numberDone == CHUNKS_PER_TICK) {
                     return;
                 }
             }
         }
+        // Time left over goes to the chunks others have asked to be meshed ahead of the player, such as prefetches.
+        ChunkTickets.WORLD.getTickets(ChunkTickets.Level.MESH, this.ticketed);
+        for (final ChunkTickets.Ticket ticket : this.ticketed) {
+            if (ticket == this.playerTicket) {
+                continue;
+            }
+            final ChunkOffsets ticketOffsets = ChunkOffsets.forRadius(ticket.getRadius());
+            final long center = ticket.getCenter();
+            for (int i = 0; i < ticketOffsets.size(); i++) {
+                if (this.prerender(ticketOffsets.apply(center, i))) {
+                    numberDone++;
+                    if (numberDone == CHUNKS_PER_TICK) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Pre-render a chunk into a VBO for the renderer, unless it already has one or is not loaded.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return Whether the chunk needed pre-rendering, even if there was no empty VBO to pre-render it into.
+     */
+    private boolean prerender(final long pos) {
+        if (!this.isLoaded.test(pos)) {
+            return false;
+        }
+        final Chunk chunk = Chunk.getChunk(pos);
+        if (this.renderer.hasWrittenVBO(chunk)) {
+            return false;
+        }
+        final RenderBuffer vbo = this.renderer.getEmptyVBO();
+        if (vbo != null) {
+            final ChunkMeshingEvent event = new ChunkMeshingEvent(pos);
+            event.begin();
+            final int vertices = Prerenderer.prerenderChunk(chunk, vbo);
+            event.end();
+            if (event.shouldCommit()) {
+                event.setVertices(vertices);
+                event.commit();
+            }
+            this.renderer.receiveWrittenVBO(chunk, vbo);
+            CHUNKS_MESHED.increment();
+        }
+        return true;
     }
 
     /**
-     * Pre-render a chunk into a VBO.
+     * Pre-render a chunk.
      * @param chunk The chunk.
-     * @param vbo The VBO.
-     */
-    private void prerenderChunk(final Chunk chunk, final VBO vbo) {
-        for (final Vector blockAnchor : chunk.blockAnchors()) {
-            final Block block = chunk.getBlock(blockAnchor);
-            for (Vertex vertex : block.getVertices()) {
-                vertex = vertex.translate(block.getPos());
-                vbo.write(vertex);
+     * @param sink The vertex sink to write the chunk's vertices to, usually a VBO.
+     * @return The number of vertices written, counting repeats.
+     */
+    static int prerenderChunk(final Chunk chunk, final VertexSink sink) {
+        int written = 0;
+        final float[] normal = new float[Vertex.NORMAL_SIZE];
+        final int anchorX = chunk.getAnchor().getXInt();
+        final int anchorY = chunk.getAnchor().getYInt();
+        final int anchorZ = chunk.getAnchor().getZInt();
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                    final Block block = chunk.getBlock(x, y, z);
+                    for (Vertex vertex : block.getVertices()) {
+                        // A face is lit by the light in the block it faces.
+                        vertex.getNormal(normal);
+                        final int light = LightEngine.getLight(x + Math.round(normal[0]), y + Math.round(normal[1]),
+                                z + Math.round(normal[2]));
+                        vertex = vertex.translate(block.getPos()).shade(BRIGHTNESS[light]);
+                        sink.write(vertex);
+                        written++;
+                    }
+                }
             }
         }
+        return written;
+    }
+
+    private static float[] brightnessTable() {
+        final float[] table = new float[LightEngine.MAX_LEVEL + 1];
+        for (int level = 0; level <= LightEngine.MAX_LEVEL; level++) {
+            table[level] = (float)Math.pow(LIGHT_FALLOFF, LightEngine.MAX_LEVEL - level);
+        }
+        return table;
     }
 }
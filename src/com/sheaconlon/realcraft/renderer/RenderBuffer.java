@@ -0,0 +1,27 @@
+package com.sheaconlon.realcraft.renderer;
+
+/**
+ * A buffer of vertices which can be written by any thread, then sent to and drawn by the graphics layer.
+ */
+public interface RenderBuffer extends VertexSink {
+    /**
+     * Send this buffer's vertices to the graphics layer. This can be done only once, after all writes.
+     * @return Whether this buffer was sent successfully.
+     */
+    boolean send();
+
+    /**
+     * @return The number of vertices written to this buffer, counting repeats.
+     */
+    int getNumInstances();
+
+    /**
+     * @return The number of bytes of vertex data and indices which {@link #send()} sends to the graphics layer.
+     */
+    int getNumBytes();
+
+    /**
+     * Draw this buffer. Can be called only after {@link #send()}.
+     */
+    void render();
+}
@@ -2,18 +2,18 @@ package com.sheaconlon.realcraft.renderer;
 
 import com.sheaconlon.realcraft.concurrency.Worker;
 import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.metrics.BufferSendEvent;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.FrameEvent;
+import com.sheaconlon.realcraft.metrics.Metrics;
 import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkOffsets;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.utilities.Vec3d;
 import com.sheaconlon.realcraft.utilities.Vector;
 import com.sheaconlon.realcraft.ui.UserInterface;
 import org.joml.Matrix4d;
-import org.joml.Matrix4f;
-import org.lwjgl.BufferUtils;
-import org.lwjgl.glfw.GLFW;
-import org.lwjgl.opengl.GL;
-import org.lwjgl.opengl.GL11;
-
-import java.nio.DoubleBuffer;
-import java.nio.FloatBuffer;
+
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
@@ -27,6 +27,16 @@ public class Renderer extends Worker {
      */
     private static final int SEND_INTERVAL = 3;
 
+    /**
+     * The number of chunks whose VBOs have been sent to the GPU.
+     */
+    private static final Counter CHUNKS_UPLOADED = Metrics.counter("Renderer", "chunksUploaded");
+
+    /**
+     * The number of chunk draws, summed over frames.
+     */
+    private static final Counter CHUNKS_DRAWN = Metrics.counter("Renderer", "chunksDrawn");
+
     /**
      * A renderer's return value for {@link #getTargetFreq()}.
      *
@@ -55,17 +65,6 @@ public class Renderer extends Worker {
      */
     private static final float FAR_CUTOFF = 1000;
 
-    /**
-     * A vector giving the direction of the sun. The trailing zero indicates to OpenGL that the light is
-     * directional, not positional.
-     */
-    private static final float[] SUN_DIRECTION = new float[]{-1, 3, 1, 0};
-
-    /**
-     * The color of sunlight, in RGBA format.
-     */
-    private static final float[] SUNLIGHT_COLOR = new float[]{1, 0.965f, 0.847f, 1};
-
     /**
      * The position of the player's eye, relative to the player's anchor point.
      */
@@ -77,90 +76,83 @@ public class Renderer extends Worker {
     public static final int RENDER_DISTANCE = 4;
 
     /**
-     * The color of the sky, in RGBA format.
+     * The graphics layer this renderer draws through.
      */
-    private static final float[] SKY_COLOR = new float[]{0.435f, 0.675f, 0.969f};
+    private final Graphics graphics;
 
     /**
-     * Configure OpenGL hints and enable certain capabilities.
+     * The empty VBOs that this renderer has.
      */
-    private static void configureOpenGL() {
-        GLFW.glfwSwapInterval(1);
-        GL.createCapabilities();
-        GL11.glEnable(GL11.GL_DEPTH_TEST);
-        GL11.glEnable(GL11.GL_CULL_FACE);
-        GL11.glEnable(GL11.GL_LIGHTING);
-        GL11.glEnable(GL11.GL_LIGHT0);
-        GL11.glShadeModel(GL11.GL_SMOOTH);
-        GL11.glColorMaterial(GL11.GL_FRONT, GL11.GL_DIFFUSE);
-        GL11.glEnable(GL11.GL_COLOR_MATERIAL);
-        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
-        GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
-        GL11.glEnableClientState(GL11.GL_NORMAL_ARRAY);
-    }
+    private final Deque<RenderBuffer> emptyVBOs;
 
     /**
-     * Set up a perspective projection.
-     * @param windowDimensions The width and height of the window to render in.
+     * The written VBOs that this renderer has.
      */
-    private static void setProjection(final int[] windowDimensions) {
-        final FloatBuffer buffer = BufferUtils.createFloatBuffer(16);
-        final Matrix4f matrix = new Matrix4f();
-        final float aspectRatio = (float)((double)windowDimensions[0] / (double)windowDimensions[1]);
-        matrix.setPerspective(Renderer.VERTICAL_FIELD_OF_VIEW, aspectRatio, Renderer.NEAR_CUTOFF,
-                Renderer.FAR_CUTOFF);
-        GL11.glMatrixMode(GL11.GL_PROJECTION);
-        GL11.glLoadMatrixf(matrix.get(buffer));
-    }
+    private final Map<Chunk, RenderBuffer> writtenVBOs;
 
     /**
-     * Set the lighting to match the state of the Sun.
+     * The sent VBOs that this renderer has.
      */
-    private static void setLighting() {
-        GL11.glLightfv(GL11.GL_LIGHT0, GL11.GL_POSITION, Renderer.SUN_DIRECTION);
-        GL11.glLightfv(GL11.GL_LIGHT0, GL11.GL_DIFFUSE, Renderer.SUNLIGHT_COLOR);
-    }
+    private final Map<Chunk, RenderBuffer> sentVBOs;
 
     /**
-     * Clear the screen with the sky color.
+     * The number of frames that have been shown since the last VBO was sent.
      */
-    private static void clear() {
-        GL11.glClearColor(Renderer.SKY_COLOR[0], Renderer.SKY_COLOR[1], Renderer.SKY_COLOR[2], 1);
-        GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
-    }
+    private int framesSinceVBOSend;
 
-    private final UserInterface ui;
+    /**
+     * The number of chunks, and of vertices counting repeats, drawn by the last call to {@link #drawVisibleChunks()},
+     * and the number of chunks with sent VBOs which it skipped because they were outside the view frustum.
+     */
+    private int chunksDrawn;
+    private int verticesDrawn;
+    private int chunksCulled;
 
     /**
-     * The empty VBOs that this renderer has.
+     * The number of bytes sent to the graphics layer by the last call to {@link #sendVBO()}.
      */
-    private final Deque<VBO> emptyVBOs;
+    private int bytesUploaded;
 
     /**
-     * The written VBOs that this renderer has.
+     * The player's view frustum, updated at the start of each frame.
      */
-    private final Map<Chunk, VBO> writtenVBOs;
+    private final Frustum frustum;
 
     /**
-     * The sent VBOs that this renderer has.
+     * Scratch space for the dimensions of the window.
      */
-    private final Map<Chunk, VBO> sentVBOs;
+    private final int[] dimensions;
 
     /**
-     * The number of frames that have been shown since the last VBO was sent.
+     * Scratch space for setting the camera.
      */
-    private int framesSinceVBOSend;
+    private final Matrix4d lookAtMatrix;
+    private final Vec3d lookDisplacement;
+    private final Vec3d upDirection;
 
     /**
-     * Create a renderer.
+     * Create a renderer which draws with OpenGL.
      * @param ui The user interface to render into.
      */
     public Renderer(final UserInterface ui) {
-        this.ui = ui;
+        this(new OpenGLGraphics(ui));
+    }
+
+    /**
+     * Create a renderer.
+     * @param graphics The graphics layer to draw through.
+     */
+    public Renderer(final Graphics graphics) {
+        this.graphics = graphics;
         this.emptyVBOs = new ConcurrentLinkedDeque<>();
         this.writtenVBOs = new ConcurrentHashMap<>();
         this.sentVBOs = new ConcurrentHashMap<>();
         this.framesSinceVBOSend = Renderer.SEND_INTERVAL;
+        this.frustum = new Frustum(Renderer.VERTICAL_FIELD_OF_VIEW, Renderer.NEAR_CUTOFF, Renderer.FAR_CUTOFF);
+        this.dimensions = new int[2];
+        this.lookAtMatrix = new Matrix4d();
+        this.lookDisplacement = new Vec3d();
+        this.upDirection = new Vec3d();
     }
 
     @Override
@@ -192,7 +184,7 @@ public class Renderer extends Worker {
      * Return an empty VBO created by this renderer, or null if there is none.
      * @return An empty VBO created by this renderer, or null if there is none.
      */
-    public VBO getEmptyVBO() {
+    public RenderBuffer getEmptyVBO() {
         return this.emptyVBOs.pollFirst();
     }
 
@@ -201,7 +193,7 @@ public class Renderer extends Worker {
      * @param chunk The chunk.
      * @param vbo The VBO.
      */
-    public void receiveWrittenVBO(final Chunk chunk, final VBO vbo) {
+    public void receiveWrittenVBO(final Chunk chunk, final RenderBuffer vbo) {
         this.writtenVBOs.put(chunk, vbo);
     }
 
@@ -214,11 +206,38 @@ public class Renderer extends Worker {
         return this.sentVBOs.containsKey(chunk) || this.writtenVBOs.containsKey(chunk);
     }
 
+    /**
+     * @return The number of chunks drawn in the last frame, which is also the number of draw calls.
+     */
+    int getChunksDrawn() {
+        return this.chunksDrawn;
+    }
+
+    /**
+     * @return The number of vertices drawn in the last frame, counting repeats.
+     */
+    int getVerticesDrawn() {
+        return this.verticesDrawn;
+    }
+
+    /**
+     * @return The number of chunks with sent VBOs skipped in the last frame because they were outside the view
+     * frustum.
+     */
+    int getChunksCulled() {
+        return this.chunksCulled;
+    }
+
+    /**
+     * @return The number of bytes of VBO data sent to the graphics layer in the last frame.
+     */
+    int getBytesUploaded() {
+        return this.bytesUploaded;
+    }
+
     @Override
     public void initInThread() {
-        GLFW.glfwMakeContextCurrent(this.ui.getWindowHandle());
-        Renderer.configureOpenGL();
-        Renderer.setProjection(this.ui.getDimensions());
+        this.graphics.init(Renderer.VERTICAL_FIELD_OF_VIEW, Renderer.NEAR_CUTOFF, Renderer.FAR_CUTOFF);
         this.refillEmptyVBOs();
     }
 
@@ -226,137 +245,128 @@ public class Renderer extends Worker {
      * Render the world.
      */
     public void tick(final double elapsedTime) {
+        final FrameEvent event = new FrameEvent();
+        event.begin();
         this.refillEmptyVBOs();
         this.setPerspective();
-        Renderer.setLighting();
-        Renderer.clear();
+        this.graphics.beginFrame(this.lookAtMatrix);
         this.sendVBO();
-        final Vector playerPos = Player.PLAYER.getPos();
-        final Chunk playerChunk = Chunk.containingChunk(playerPos);
-        for (final Chunk renderChunk : playerChunk.chunksNearby(Renderer.RENDER_DISTANCE)) {
-            if (this.sentVBOs.containsKey(renderChunk)) {
-                if (this.chunkIsWithinFrustum(renderChunk)) {
-                    final VBO vbo = this.sentVBOs.get(renderChunk);
-                    vbo.render();
-                }
+        this.updateFrustum();
+        this.drawVisibleChunks();
+        this.graphics.endFrame();
+        this.framesSinceVBOSend++;
+        event.end();
+        if (event.shouldCommit()) {
+            event.setDrawn(this.chunksDrawn, this.verticesDrawn);
+            event.commit();
+        }
+    }
+
+    /**
+     * Draw the sent VBOs of the chunks within the view frustum.
+     */
+    void drawVisibleChunks() {
+        final long playerChunk = Renderer.playerChunk();
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(Renderer.RENDER_DISTANCE);
+        this.chunksDrawn = 0;
+        this.verticesDrawn = 0;
+        this.chunksCulled = 0;
+        // Draw nearest-first, so that the depth test discards more of the hidden fragments.
+        for (int i = 0; i < offsets.size(); i++) {
+            final Chunk renderChunk = Chunk.getChunk(offsets.apply(playerChunk, i));
+            final RenderBuffer vbo = this.sentVBOs.get(renderChunk);
+            if (vbo == null) {
+                continue;
+            }
+            if (this.frustum.containsChunkCorner(renderChunk)) {
+                vbo.render();
+                CHUNKS_DRAWN.increment();
+                this.chunksDrawn++;
+                this.verticesDrawn += vbo.getNumInstances();
+            } else {
+                this.chunksCulled++;
             }
         }
-        GLFW.glfwSwapBuffers(this.ui.getWindowHandle());
-        this.framesSinceVBOSend++;
     }
 
     /**
-     * Set the camera to match the player's perspective.
-     */
-    private void setPerspective() {
-        final Vector position = Player.PLAYER.getPos();
-        final double xzCrossOrientation = Player.PLAYER.getVertOrient();
-        final Vector eyePosition = Vector.add(position, Renderer.PLAYER_EYE_POSITION);
-        final Vector lookDisplacement =
-                Vector.rotateHorizontal(
-                    Vector.rotateVertical(
-                        new Vector(1, 0, 0),
-                        Player.PLAYER.getVertOrient()
-                    ),
-                    Player.PLAYER.getOrient()
-                );
-        final Vector lookPosition = Vector.add(eyePosition, lookDisplacement);
-        final Vector upDirection =
-                Vector.rotateHorizontal(
-                        Vector.rotateVertical(
-                                new Vector(0, 1, 0),
-                                Player.PLAYER.getVertOrient()
-                        ),
-                        Player.PLAYER.getOrient()
-                );
-        final DoubleBuffer buffer = BufferUtils.createDoubleBuffer(16);
-        final Matrix4d matrix = new Matrix4d();
-        matrix.setLookAt(eyePosition.getX(), eyePosition.getY(), eyePosition.getZ(),
-                lookPosition.getX(), lookPosition.getY(), lookPosition.getZ(),
-                upDirection.getX(), upDirection.getY(), upDirection.getZ());
-        GL11.glMatrixMode(GL11.GL_MODELVIEW);
-        GL11.glLoadMatrixd(matrix.get(buffer));
+     * Point the camera's view matrix along the player's line of sight.
+     */
+    void setPerspective() {
+        final double orient = Player.PLAYER.getOrient();
+        final double vertOrient = Player.PLAYER.getVertOrient();
+        final double eyeX = Player.PLAYER.getPosX() + Renderer.PLAYER_EYE_POSITION.getX();
+        final double eyeY = Player.PLAYER.getPosY() + Renderer.PLAYER_EYE_POSITION.getY();
+        final double eyeZ = Player.PLAYER.getPosZ() + Renderer.PLAYER_EYE_POSITION.getZ();
+        this.lookDisplacement.set(1, 0, 0).rotateVertical(vertOrient).rotateHorizontal(orient);
+        this.upDirection.set(0, 1, 0).rotateVertical(vertOrient).rotateHorizontal(orient);
+        this.lookAtMatrix.setLookAt(eyeX, eyeY, eyeZ,
+                eyeX + this.lookDisplacement.getX(), eyeY + this.lookDisplacement.getY(),
+                eyeZ + this.lookDisplacement.getZ(),
+                this.upDirection.getX(), this.upDirection.getY(), this.upDirection.getZ());
+    }
+
+    /**
+     * Move the view frustum to match the player's perspective and the window's current dimensions.
+     */
+    void updateFrustum() {
+        this.graphics.getDimensions(this.dimensions);
+        final double aspectRatio = (double)this.dimensions[0] / (double)this.dimensions[1];
+        this.frustum.update(
+                Player.PLAYER.getPosX() + Renderer.PLAYER_EYE_POSITION.getX(),
+                Player.PLAYER.getPosY() + Renderer.PLAYER_EYE_POSITION.getY(),
+                Player.PLAYER.getPosZ() + Renderer.PLAYER_EYE_POSITION.getZ(),
+                Player.PLAYER.getOrient(), Player.PLAYER.getVertOrient(), aspectRatio);
+    }
+
+    /**
+     * @return The packed position of the chunk containing the player. See {@link ChunkPos}.
+     */
+    private static long playerChunk() {
+        return ChunkPos.containing(Player.PLAYER.getPosX(), Player.PLAYER.getPosY(), Player.PLAYER.getPosZ());
     }
 
     /**
      * Refill this renderer's empty VBO list.
      */
-    private void refillEmptyVBOs() {
+    void refillEmptyVBOs() {
         while (this.emptyVBOs.size() < Renderer.TARGET_NUM_EMPTY_VBOS) {
             // TODO: Possibly different capacity + splitting over multiple VBOs
-            final VBO vbo = new VBO(Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS * 6 * 4);
-            vbo.link();
-            this.emptyVBOs.addLast(vbo);
+            this.emptyVBOs.addLast(this.graphics.createBuffer(Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS * 6 * 4));
         }
     }
 
     /**
      * Possibly send a VBO, depending on how many frames have passed since a VBO was last sent.
      */
-    private void sendVBO() {
+    void sendVBO() {
+        this.bytesUploaded = 0;
         if (this.framesSinceVBOSend < Renderer.SEND_INTERVAL) {
             return;
         }
-        final Vector playerPos = Player.PLAYER.getPos();
-        final Chunk playerChunk = Chunk.containingChunk(playerPos);
-        for (final Chunk chunk : playerChunk.chunksNearby(Renderer.RENDER_DISTANCE)) {
+        final long playerChunk = Renderer.playerChunk();
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(Renderer.RENDER_DISTANCE);
+        for (int i = 0; i < offsets.size(); i++) {
+            final Chunk chunk = Chunk.getChunk(offsets.apply(playerChunk, i));
             if (this.writtenVBOs.containsKey(chunk)) {
-                final VBO vbo = this.writtenVBOs.remove(chunk);
+                final RenderBuffer vbo = this.writtenVBOs.remove(chunk);
+                final BufferSendEvent event = new BufferSendEvent(chunk.getPos());
+                event.begin();
                 final boolean success = vbo.send();
+                event.end();
+                if (event.shouldCommit()) {
+                    event.setVertices(vbo.getNumInstances());
+                    event.setSuccess(success);
+                    event.commit();
+                }
                 if (success) {
                     this.sentVBOs.put(chunk, vbo);
+                    CHUNKS_UPLOADED.increment();
+                    this.bytesUploaded = vbo.getNumBytes();
                 }
                 this.framesSinceVBOSend = 0;
                 return;
             }
         }
     }
-
-    private boolean chunkIsWithinFrustum(final Chunk chunk) {
-        for (final Vector unitCubeVertex : Vector.UNIT_CUBE_VERTICES) {
-            final Vector corner = Vector.add(chunk.getAnchor(), Vector.scale(unitCubeVertex, Chunk.SIZE));
-            if (posIsWithinFrustum(corner)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private boolean posIsWithinFrustum(final Vector p) {
-        final Vector camera = Vector.add(Player.PLAYER.getPos(), PLAYER_EYE_POSITION);
-        final Vector dispToP = Vector.subtract(p, camera);
-        final Vector orientedDispToP =
-                Vector.rotateVertical(
-                    Vector.rotateHorizontal(dispToP, -Player.PLAYER.getOrient()),
-                    -Player.PLAYER.getVertOrient()
-                );
-        // If p is too near to (or is behind) the camera, then it can be immediately rejected.
-        if (orientedDispToP.getX() < NEAR_CUTOFF) {
-            return false;
-        }
-        // If p is too far from the camera, then it can be immediately rejected.
-        if (orientedDispToP.getX() > FAR_CUTOFF) {
-            return false;
-        }
-        // If p is not within the camera's vertical field of view, then it can be rejected.
-        final double vertDir = Math.atan(orientedDispToP.getY() / orientedDispToP.getX());
-        if (vertDir < -VERTICAL_FIELD_OF_VIEW / 2) {
-            return false;
-        }
-        if (vertDir > VERTICAL_FIELD_OF_VIEW / 2) {
-            return false;
-        }
-        // If p is not within the camera's horizontal field of view, then it can be rejected.
-        final int[] dims = this.ui.getDimensions();
-        final double horizFOV = (double)dims[0] / (double)dims[1] * VERTICAL_FIELD_OF_VIEW;
-        final double horizDir = Math.atan(orientedDispToP.getZ() / orientedDispToP.getX());
-        if (horizDir < -horizFOV / 2) {
-            return false;
-        }
-        if (horizDir > horizFOV / 2) {
-            return false;
-        }
-        // p is within the view frustum.
-        return true;
-    }
 }
@@ -15,7 +15,7 @@ import org.lwjgl.opengl.GL30;
 /**
  * A wrapper for an OpenGL indexed vertex buffer object.
  */
-public class VBO {
+public class VBO implements RenderBuffer {
     private static final int BYTES_PER_FLOAT = 4;
     private static final int BYTES_PER_INT = 4;
     private static final int BYTES_PER_POSITION = Vertex.POSITION_SIZE * BYTES_PER_FLOAT;
@@ -102,6 +102,7 @@ public class VBO {
      * Can be called only after {@link #link()} and before {@link #send()}.
      * @param vertex The vertex.
      */
+    @Override
     public void write(final Vertex vertex) {
         if (this.state.equals(State.NOT_LINKED)) {
             throw new RuntimeException("attempted to write to a VBO before linking it");
@@ -128,10 +129,21 @@ public class VBO {
      * Return whether this VBO has reached its capacity.
      * @return Whether this VBO has reached its capacity.
      */
+    @Override
     public boolean isFull() {
         return this.numInstances >= this.capacity;
     }
 
+    @Override
+    public int getNumInstances() {
+        return this.numInstances;
+    }
+
+    @Override
+    public int getNumBytes() {
+        return this.currIndex * BYTES_PER_VERTEX + this.numInstances * BYTES_PER_INT;
+    }
+
     /**
      * Send this VBO's data to the GPU.
      *
@@ -139,6 +151,7 @@ public class VBO {
      * done only once. An OpenGL context must be current.
      * @return Whether this VBO was sent successfully.
      */
+    @Override
     public boolean send() {
         if (this.state.equals(State.NOT_LINKED)) {
             throw new RuntimeException("attempted to send a VBO before linking it");
@@ -180,6 +193,7 @@ public class VBO {
      * Can be called only by the thread which called {@link #link()}. Can be called only after {@link #send()}. An OpenGL
      * context must be current.
      */
+    @Override
     public void render() {
         if (!this.state.equals(State.SENT)) {
             throw new RuntimeException("attempted to render a VBO that was not sent");
@@ -105,6 +105,28 @@ public class Vertex {
         return new Vertex(newData);
     }
 
+    /**
+     * Get the normal vector of this vertex.
+     * @param dest The array to put the components of the normal vector in. Must have a length of at least
+     *             {@link #NORMAL_SIZE}.
+     */
+    public void getNormal(final float[] dest) {
+        System.arraycopy(this.data, POSITION_SIZE + COLOR_SIZE, dest, 0, NORMAL_SIZE);
+    }
+
+    /**
+     * Get this vertex with its color darkened or brightened.
+     * @param factor The factor to multiply each component of the color by.
+     * @return A new vertex which is like this vertex, with its color multiplied by {@code factor}.
+     */
+    public Vertex shade(final float factor) {
+        final float[] newData = Arrays.copyOf(this.data, this.data.length);
+        for (int i = 0; i < COLOR_SIZE; i++) {
+            newData[POSITION_SIZE + i] *= factor;
+        }
+        return new Vertex(newData);
+    }
+
     private Vertex(final float[] data) {
         this.data = Arrays.copyOf(data, data.length);
     }
@@ -0,0 +1,18 @@
+package com.sheaconlon.realcraft.renderer;
+
+/**
+ * A destination for the vertices of pre-rendered geometry.
+ */
+public interface VertexSink {
+    /**
+     * Write a vertex to this sink.
+     * @param vertex The vertex.
+     */
+    void write(Vertex vertex);
+
+    /**
+     * Return whether this sink has reached its capacity.
+     * @return Whether this sink has reached its capacity.
+     */
+    boolean isFull();
+}
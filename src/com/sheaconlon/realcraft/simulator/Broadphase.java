@@ -0,0 +1,512 @@
+package com.sheaconlon.realcraft.simulator;
+
+import com.sheaconlon.realcraft.utilities.LongHashSet;
+import com.sheaconlon.realcraft.world.WorldObject;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sweep-and-prune broadphase, which finds the pairs of world objects whose bounds may overlap.
+ *
+ * Keeps the endpoints of the objects' bounds sorted along each axis in primitive arrays. Objects move only a little
+ * between updates, so the arrays stay nearly sorted and are re-sorted with an insertion sort in close to linear time.
+ * A pair starts or stops overlapping exactly when the insertion sort swaps the minimum of one object's bounds past
+ * the maximum of the other's, so the set of overlapping pairs is maintained from those swaps alone, without sweeping.
+ * After many objects are added at once, everything is re-sorted and re-swept from scratch instead.
+ * The candidate pairs found are meant to be passed to a narrowphase such as
+ * {@link Hitbox#minTranslation(double[], double[], double[], double[], double[])}.
+ */
+public class Broadphase {
+    // ##### PRIVATE STATIC FINAL #####
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The number of additions since the last update beyond which the next update rebuilds from scratch, as a
+     * fraction of the number of objects. Appended endpoints are far from their sorted positions, so inserting many
+     * of them one swap at a time would take quadratic time.
+     */
+    private static final double REBUILD_FRACTION = 0.1;
+
+    /**
+     * The value stored as the object of an unused ID.
+     */
+    private static final WorldObject NO_OBJECT = null;
+
+    // ##### PRIVATE #####
+    /**
+     * The objects, indexed by ID.
+     */
+    private WorldObject[] objects;
+
+    /**
+     * The bounds of the objects, indexed by 3 times ID plus axis.
+     */
+    private double[] mins;
+    private double[] maxs;
+
+    /**
+     * For each axis, the endpoints of the objects' bounds, sorted by their values. An endpoint is encoded as 2 times
+     * the ID of its object, plus 1 if it is a maximum.
+     */
+    private final int[][] endpoints;
+
+    /**
+     * For each axis, the values of the endpoints in {@link #endpoints}.
+     */
+    private final double[][] values;
+
+    /**
+     * The number of endpoints along each axis.
+     */
+    private int endpointCount;
+
+    /**
+     * IDs which have been released by {@link #remove(int)} and may be reused, as a stack.
+     */
+    private int[] freeIDs;
+    private int freeIDCount;
+
+    /**
+     * The number of IDs that have ever been handed out.
+     */
+    private int idCount;
+
+    /**
+     * The IDs of the objects whose bounds contain the sweep's current position along the sweep axis.
+     */
+    private int[] active;
+    private int activeCount;
+
+    /**
+     * For each ID, the index of its object in {@link #active}.
+     */
+    private int[] activeIndices;
+
+    /**
+     * The number of objects added since the last update.
+     */
+    private int addedCount;
+
+    /**
+     * The pairs of IDs of objects whose bounds overlap. A pair is encoded with the smaller ID in the high 32 bits
+     * and the larger ID in the low 32 bits.
+     */
+    private final LongHashSet pairSet;
+
+    /**
+     * The contents of {@link #pairSet} as of the last update.
+     */
+    private long[] pairs;
+    private int pairCount;
+
+    /**
+     * Scratch space for merge sorting.
+     */
+    private int[] sortEndpoints;
+    private double[] sortValues;
+
+    /**
+     * Scratch space for bounds.
+     */
+    private final double[] hitboxMins;
+    private final double[] hitboxMaxs;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a broadphase.
+     */
+    public Broadphase() {
+        this.objects = new WorldObject[INITIAL_CAPACITY];
+        this.mins = new double[3 * INITIAL_CAPACITY];
+        this.maxs = new double[3 * INITIAL_CAPACITY];
+        this.endpoints = new int[3][2 * INITIAL_CAPACITY];
+        this.values = new double[3][2 * INITIAL_CAPACITY];
+        this.endpointCount = 0;
+        this.freeIDs = new int[INITIAL_CAPACITY];
+        this.freeIDCount = 0;
+        this.idCount = 0;
+        this.active = new int[INITIAL_CAPACITY];
+        this.activeCount = 0;
+        this.activeIndices = new int[INITIAL_CAPACITY];
+        this.addedCount = 0;
+        this.pairSet = new LongHashSet();
+        this.pairs = new long[INITIAL_CAPACITY];
+        this.pairCount = 0;
+        this.sortEndpoints = new int[2 * INITIAL_CAPACITY];
+        this.sortValues = new double[2 * INITIAL_CAPACITY];
+        this.hitboxMins = new double[3];
+        this.hitboxMaxs = new double[3];
+    }
+
+    // ##### OBJECTS #####
+    /**
+     * Start tracking a world object.
+     * @param object The world object. Must have at least one hitbox.
+     * @return The ID of the world object within this broadphase.
+     */
+    public int add(final WorldObject object) {
+        final int id;
+        if (this.freeIDCount > 0) {
+            this.freeIDCount--;
+            id = this.freeIDs[this.freeIDCount];
+        } else {
+            id = this.idCount;
+            this.idCount++;
+            this.ensureCapacity(this.idCount);
+        }
+        this.objects[id] = object;
+        this.computeBounds(id);
+        // Append the new endpoints. The next update sorts them into place.
+        for (int axis = 0; axis < 3; axis++) {
+            this.endpoints[axis][this.endpointCount] = 2 * id;
+            this.endpoints[axis][this.endpointCount + 1] = 2 * id + 1;
+        }
+        this.endpointCount += 2;
+        this.addedCount++;
+        return id;
+    }
+
+    /**
+     * Stop tracking a world object.
+     * @param id The ID of the world object, as returned by {@link #add(WorldObject)}.
+     */
+    public void remove(final int id) {
+        if (this.objects[id] == NO_OBJECT) {
+            throw new IllegalArgumentException("attempted to remove an ID that is not in use");
+        }
+        this.objects[id] = NO_OBJECT;
+        for (int axis = 0; axis < 3; axis++) {
+            final int[] axisEndpoints = this.endpoints[axis];
+            final double[] axisValues = this.values[axis];
+            int kept = 0;
+            for (int i = 0; i < this.endpointCount; i++) {
+                if (axisEndpoints[i] >> 1 != id) {
+                    axisEndpoints[kept] = axisEndpoints[i];
+                    axisValues[kept] = axisValues[i];
+                    kept++;
+                }
+            }
+        }
+        this.endpointCount -= 2;
+        if (this.pairSet.size() > this.pairs.length) {
+            this.pairs = new long[2 * this.pairSet.size()];
+        }
+        this.pairSet.toArray(this.pairs);
+        for (int i = this.pairSet.size() - 1; i >= 0; i--) {
+            if (pairFirst(this.pairs[i]) == id || pairSecond(this.pairs[i]) == id) {
+                this.pairSet.remove(this.pairs[i]);
+            }
+        }
+        this.pairCount = 0;
+        this.freeIDs[this.freeIDCount] = id;
+        this.freeIDCount++;
+    }
+
+    /**
+     * Get the world object with some ID.
+     * @param id The ID.
+     * @return The world object with ID {@code id}.
+     */
+    public WorldObject getObject(final int id) {
+        return this.objects[id];
+    }
+
+    /**
+     * @return The number of world objects being tracked.
+     */
+    public int size() {
+        return this.endpointCount / 2;
+    }
+
+    // ##### UPDATES #####
+    /**
+     * Recompute the bounds of the world objects and find the candidate pairs.
+     */
+    public void update() {
+        for (int id = 0; id < this.idCount; id++) {
+            if (this.objects[id] != NO_OBJECT) {
+                this.computeBounds(id);
+            }
+        }
+        if (this.addedCount > REBUILD_FRACTION * this.size()) {
+            this.rebuild();
+        } else {
+            for (int axis = 0; axis < 3; axis++) {
+                this.refreshValues(axis);
+                this.insertionSort(axis);
+            }
+        }
+        this.addedCount = 0;
+        if (this.pairSet.size() > this.pairs.length) {
+            this.pairs = new long[2 * this.pairSet.size()];
+        }
+        this.pairSet.toArray(this.pairs);
+        this.pairCount = this.pairSet.size();
+    }
+
+    /**
+     * @return The number of candidate pairs found by the last call to {@link #update()}.
+     */
+    public int pairCount() {
+        return this.pairCount;
+    }
+
+    /**
+     * Get the ID of the first world object in a candidate pair.
+     * @param pair The index of the pair. Less than {@link #pairCount()}.
+     * @return The ID of the first world object in the pair.
+     */
+    public int pairFirst(final int pair) {
+        return pairFirst(this.pairs[pair]);
+    }
+
+    /**
+     * Get the ID of the second world object in a candidate pair.
+     * @param pair The index of the pair. Less than {@link #pairCount()}.
+     * @return The ID of the second world object in the pair.
+     */
+    public int pairSecond(final int pair) {
+        return pairSecond(this.pairs[pair]);
+    }
+
+    /**
+     * Copy the bounds of a world object, as computed by the last update, into some arrays.
+     * @param id The ID of the world object.
+     * @param mins An array of length 3 to write the minimal coordinate values into.
+     * @param maxs An array of length 3 to write the maximal coordinate values into.
+     */
+    public void getBounds(final int id, final double[] mins, final double[] maxs) {
+        System.arraycopy(this.mins, 3 * id, mins, 0, 3);
+        System.arraycopy(this.maxs, 3 * id, maxs, 0, 3);
+    }
+
+    // ##### PRIVATE #####
+    /**
+     * Compute the bounds of the union of the hitboxes of a world object.
+     * @param id The ID of the world object.
+     */
+    private void computeBounds(final int id) {
+        final WorldObject object = this.objects[id];
+        final List<Hitbox> hitboxes = object.getHitboxes();
+        final int base = 3 * id;
+        for (int axis = 0; axis < 3; axis++) {
+            this.mins[base + axis] = Double.POSITIVE_INFINITY;
+            this.maxs[base + axis] = Double.NEGATIVE_INFINITY;
+        }
+        for (int h = 0; h < hitboxes.size(); h++) {
+            hitboxes.get(h).getBounds(object, this.hitboxMins, this.hitboxMaxs);
+            for (int axis = 0; axis < 3; axis++) {
+                this.mins[base + axis] = Math.min(this.mins[base + axis], this.hitboxMins[axis]);
+                this.maxs[base + axis] = Math.max(this.maxs[base + axis], this.hitboxMaxs[axis]);
+            }
+        }
+    }
+
+    /**
+     * Refresh the values of the endpoints along an axis from the bounds of their objects.
+     * @param axis The axis.
+     */
+    private void refreshValues(final int axis) {
+        final int[] axisEndpoints = this.endpoints[axis];
+        final double[] axisValues = this.values[axis];
+        for (int i = 0; i < this.endpointCount; i++) {
+            final int endpoint = axisEndpoints[i];
+            final int index = 3 * (endpoint >> 1) + axis;
+            axisValues[i] = (endpoint & 1) == 0 ? this.mins[index] : this.maxs[index];
+        }
+    }
+
+    /**
+     * Return whether one endpoint belongs before another.
+     *
+     * Endpoints with equal values are ordered with maxima first, so that bounds which merely touch do not overlap.
+     */
+    private static boolean before(final double value, final int endpoint, final double otherValue,
+                                  final int otherEndpoint) {
+        return value < otherValue || (value == otherValue && (endpoint & 1) == 1 && (otherEndpoint & 1) == 0);
+    }
+
+    /**
+     * Insertion sort the endpoints along an axis, updating {@link #pairSet} as endpoints pass each other.
+     * @param axis The axis.
+     */
+    private void insertionSort(final int axis) {
+        final int[] axisEndpoints = this.endpoints[axis];
+        final double[] axisValues = this.values[axis];
+        for (int i = 1; i < this.endpointCount; i++) {
+            final int endpoint = axisEndpoints[i];
+            final double value = axisValues[i];
+            final int id = endpoint >> 1;
+            int j = i - 1;
+            while (j >= 0 && before(value, endpoint, axisValues[j], axisEndpoints[j])) {
+                final int passed = axisEndpoints[j];
+                final int passedID = passed >> 1;
+                if ((endpoint & 1) == 0 && (passed & 1) == 1) {
+                    // A minimum passed a maximum, so the objects may have started overlapping.
+                    if (this.overlap(id, passedID, 0) && this.overlap(id, passedID, 1)
+                            && this.overlap(id, passedID, 2)) {
+                        this.pairSet.add(pairKey(id, passedID));
+                    }
+                } else if ((endpoint & 1) == 1 && (passed & 1) == 0) {
+                    // A maximum passed a minimum, so the objects stopped overlapping.
+                    this.pairSet.remove(pairKey(id, passedID));
+                }
+                axisEndpoints[j + 1] = passed;
+                axisValues[j + 1] = axisValues[j];
+                j--;
+            }
+            axisEndpoints[j + 1] = endpoint;
+            axisValues[j + 1] = value;
+        }
+    }
+
+    /**
+     * Re-sort every axis with a merge sort and find the overlapping pairs with a sweep.
+     */
+    private void rebuild() {
+        for (int axis = 0; axis < 3; axis++) {
+            this.refreshValues(axis);
+            this.mergeSort(axis);
+        }
+        this.pairSet.clear();
+        this.sweep(this.chooseSweepAxis());
+    }
+
+    /**
+     * Merge sort the endpoints along an axis.
+     * @param axis The axis.
+     */
+    private void mergeSort(final int axis) {
+        if (this.sortEndpoints.length < this.endpointCount) {
+            this.sortEndpoints = new int[this.endpoints[axis].length];
+            this.sortValues = new double[this.endpoints[axis].length];
+        }
+        int[] fromEndpoints = this.endpoints[axis];
+        double[] fromValues = this.values[axis];
+        int[] toEndpoints = this.sortEndpoints;
+        double[] toValues = this.sortValues;
+        for (int width = 1; width < this.endpointCount; width *= 2) {
+            for (int low = 0; low < this.endpointCount; low += 2 * width) {
+                final int middle = Math.min(low + width, this.endpointCount);
+                final int high = Math.min(low + 2 * width, this.endpointCount);
+                int i = low;
+                int j = middle;
+                for (int k = low; k < high; k++) {
+                    if (i < middle && (j >= high
+                            || !before(fromValues[j], fromEndpoints[j], fromValues[i], fromEndpoints[i]))) {
+                        toEndpoints[k] = fromEndpoints[i];
+                        toValues[k] = fromValues[i];
+                        i++;
+                    } else {
+                        toEndpoints[k] = fromEndpoints[j];
+                        toValues[k] = fromValues[j];
+                        j++;
+                    }
+                }
+            }
+            final int[] swapEndpoints = fromEndpoints;
+            fromEndpoints = toEndpoints;
+            toEndpoints = swapEndpoints;
+            final double[] swapValues = fromValues;
+            fromValues = toValues;
+            toValues = swapValues;
+        }
+        if (fromEndpoints != this.endpoints[axis]) {
+            System.arraycopy(fromEndpoints, 0, this.endpoints[axis], 0, this.endpointCount);
+            System.arraycopy(fromValues, 0, this.values[axis], 0, this.endpointCount);
+        }
+    }
+
+    /**
+     * Choose the axis along which the world objects are most spread out, so that the sweep along it keeps the
+     * fewest objects active at once.
+     * @return The axis.
+     */
+    private int chooseSweepAxis() {
+        int bestAxis = 0;
+        double bestSpread = Double.NEGATIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            if (this.endpointCount == 0) {
+                break;
+            }
+            final double spread = this.values[axis][this.endpointCount - 1] - this.values[axis][0];
+            if (spread > bestSpread) {
+                bestSpread = spread;
+                bestAxis = axis;
+            }
+        }
+        return bestAxis;
+    }
+
+    /**
+     * Sweep along an axis, adding the pairs of world objects whose bounds overlap along all axes to
+     * {@link #pairSet}.
+     * @param axis The axis.
+     */
+    private void sweep(final int axis) {
+        final int b = (axis + 1) % 3;
+        final int c = (axis + 2) % 3;
+        final int[] axisEndpoints = this.endpoints[axis];
+        this.activeCount = 0;
+        for (int i = 0; i < this.endpointCount; i++) {
+            final int endpoint = axisEndpoints[i];
+            final int id = endpoint >> 1;
+            if ((endpoint & 1) == 1) {
+                final int index = this.activeIndices[id];
+                this.activeCount--;
+                final int last = this.active[this.activeCount];
+                this.active[index] = last;
+                this.activeIndices[last] = index;
+                continue;
+            }
+            for (int j = 0; j < this.activeCount; j++) {
+                final int other = this.active[j];
+                if (this.overlap(id, other, b) && this.overlap(id, other, c)) {
+                    this.pairSet.add(pairKey(id, other));
+                }
+            }
+            this.active[this.activeCount] = id;
+            this.activeIndices[id] = this.activeCount;
+            this.activeCount++;
+        }
+    }
+
+    private boolean overlap(final int first, final int second, final int axis) {
+        return this.mins[3 * first + axis] < this.maxs[3 * second + axis]
+                && this.mins[3 * second + axis] < this.maxs[3 * first + axis];
+    }
+
+    private static long pairKey(final int first, final int second) {
+        return ((long)Math.min(first, second) << 32) | Math.max(first, second);
+    }
+
+    private static int pairFirst(final long pairKey) {
+        return (int)(pairKey >>> 32);
+    }
+
+    private static int pairSecond(final long pairKey) {
+        return (int)pairKey;
+    }
+
+    /**
+     * Grow the arrays indexed by ID so that they can hold some number of IDs.
+     * @param ids The number of IDs.
+     */
+    private void ensureCapacity(final int ids) {
+        if (ids <= this.objects.length) {
+            return;
+        }
+        final int capacity = Math.max(ids, 2 * this.objects.length);
+        this.objects = Arrays.copyOf(this.objects, capacity);
+        this.mins = Arrays.copyOf(this.mins, 3 * capacity);
+        this.maxs = Arrays.copyOf(this.maxs, 3 * capacity);
+        for (int axis = 0; axis < 3; axis++) {
+            this.endpoints[axis] = Arrays.copyOf(this.endpoints[axis], 2 * capacity);
+            this.values[axis] = Arrays.copyOf(this.values[axis], 2 * capacity);
+        }
+        this.freeIDs = Arrays.copyOf(this.freeIDs, capacity);
+        this.active = Arrays.copyOf(this.active, capacity);
+        this.activeIndices = Arrays.copyOf(this.activeIndices, capacity);
+    }
+}
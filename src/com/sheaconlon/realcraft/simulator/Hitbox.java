@@ -1,5 +1,6 @@
 package com.sheaconlon.realcraft.simulator;
 
+import com.sheaconlon.realcraft.world.BlockPos;
 import com.sheaconlon.realcraft.world.WorldObject;
 import com.sheaconlon.realcraft.utilities.Vector;
 
@@ -38,30 +39,40 @@ public class Hitbox {
      *         over the corners of this hitbox.
      */
     Vector[] getBounds() {
-        // Lacking rotation and translation. Relative to anchor. Does not account for height.
-        final Vector[] bottomFaceCorners = new Vector[]{
-                new Vector(0, 0, 0),
-                new Vector(this.dims.getX(), 0, 0),
-                new Vector(this.dims.getX(), 0, this.dims.getZ()),
-                new Vector(0, 0, this.dims.getZ())
-        };
-        // Lacking rotation. Relative to anchor. Does not account for height.
-        for (int i = 0; i < bottomFaceCorners.length; i++) {
-            bottomFaceCorners[i] = Vector.add(bottomFaceCorners[i], this.position);
-        }
-        // Relative to anchor. Does not account for height.
-        for (int i = 0; i < bottomFaceCorners.length; i++) {
-            bottomFaceCorners[i] =
-                    Vector.rotateHorizontal(bottomFaceCorners[i], this.object.getOrient());
-        }
-        // Does not account for height.
-        final Vector[] bounds = Vector.bounds(bottomFaceCorners);
-        bounds[0] = Vector.add(bounds[0], this.object.getPos());
-        bounds[1] = Vector.add(bounds[1], this.object.getPos());
-        // Correct.
-        final Vector verticalDisp = new Vector(0, this.dims.getY(), 0);
-        bounds[1] = Vector.add(bounds[1], verticalDisp);
-        return bounds;
+        final double[] mins = new double[3];
+        final double[] maxs = new double[3];
+        this.getBounds(this.object, mins, maxs);
+        return new Vector[]{new Vector(mins), new Vector(maxs)};
+    }
+
+    /**
+     * Get the bounds of this hitbox as if it were attached to some object, without allocating.
+     *
+     * Agrees with {@link #getBounds()} when {@code object} is this hitbox's object.
+     * @param object The object. Its position and orientation are used in place of this hitbox's object's.
+     * @param mins An array of length 3 to write the minimal coordinate values over the corners into.
+     * @param maxs An array of length 3 to write the maximal coordinate values over the corners into.
+     */
+    void getBounds(final WorldObject object, final double[] mins, final double[] maxs) {
+        final double cos = Math.cos(object.getOrient());
+        final double sin = Math.sin(object.getOrient());
+        final double lowX = this.position.getX();
+        final double highX = lowX + this.dims.getX();
+        final double lowZ = this.position.getZ();
+        final double highZ = lowZ + this.dims.getZ();
+        // Rotate the corners of the bottom face as in Vector#rotateHorizontal(Vector, double).
+        final double x0 = lowX * cos + lowZ * sin, z0 = -lowX * sin + lowZ * cos;
+        final double x1 = highX * cos + lowZ * sin, z1 = -highX * sin + lowZ * cos;
+        final double x2 = highX * cos + highZ * sin, z2 = -highX * sin + highZ * cos;
+        final double x3 = lowX * cos + highZ * sin, z3 = -lowX * sin + highZ * cos;
+        final double posX = object.getPosX();
+        final double posZ = object.getPosZ();
+        mins[0] = Math.min(Math.min(x0, x1), Math.min(x2, x3)) + posX;
+        maxs[0] = Math.max(Math.max(x0, x1), Math.max(x2, x3)) + posX;
+        mins[1] = this.position.getY() + object.getPosY();
+        maxs[1] = mins[1] + this.dims.getY();
+        mins[2] = Math.min(Math.min(z0, z1), Math.min(z2, z3)) + posZ;
+        maxs[2] = Math.max(Math.max(z0, z1), Math.max(z2, z3)) + posZ;
     }
 
     /**
@@ -74,38 +85,58 @@ public class Hitbox {
      * @return The minimum translation vector for this hitbox and {@code other}.
      */
      Vector minTranslation(final Hitbox other) {
-        Vector minTrans = new Vector(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
-        final boolean[] overlap = new boolean[]{false, false, false};
-        final Vector[] thisBounds = this.getBounds();
-        final double[] thisMins = thisBounds[0].toArray();
-        final double[] thisMaxs = thisBounds[1].toArray();
-        final Vector[] otherBounds = other.getBounds();
-        final double[] otherMins = otherBounds[0].toArray();
-        final double[] otherMaxs = otherBounds[1].toArray();
+        final double[] thisMins = new double[3];
+        final double[] thisMaxs = new double[3];
+        this.getBounds(this.object, thisMins, thisMaxs);
+        final double[] otherMins = new double[3];
+        final double[] otherMaxs = new double[3];
+        other.getBounds(other.object, otherMins, otherMaxs);
+        final double[] minTrans = new double[3];
+        minTranslation(thisMins, thisMaxs, otherMins, otherMaxs, minTrans);
+        return new Vector(minTrans);
+    }
+
+    /**
+     * Get the minimum translation vector for some bounds and some other bounds they may be overlapping, without
+     * allocating. See {@link #minTranslation(Hitbox)}.
+     * @param thisMins The minimal coordinate values of the bounds to be translated.
+     * @param thisMaxs The maximal coordinate values of the bounds to be translated.
+     * @param otherMins The minimal coordinate values of the other bounds.
+     * @param otherMaxs The maximal coordinate values of the other bounds.
+     * @param minTrans An array of length 3 to write the minimum translation vector into.
+     */
+    static void minTranslation(final double[] thisMins, final double[] thisMaxs, final double[] otherMins,
+                               final double[] otherMaxs, final double[] minTrans) {
+        int minAxis = -1;
+        double minAxisTrans = Double.POSITIVE_INFINITY;
+        int overlaps = 0;
         for (int i = 0; i < 3; i++) {
+            boolean overlap = false;
             if (thisMaxs[i] > otherMins[i] && thisMaxs[i] <= otherMaxs[i]) {
-                overlap[i] = true;
-                final double[] trans = new double[3];
-                trans[i] = -(thisMaxs[i] - otherMins[i]);
-                final Vector transVec = new Vector(trans);
-                if (transVec.sqMag() < minTrans.sqMag()) {
-                    minTrans = transVec;
+                overlap = true;
+                final double trans = -(thisMaxs[i] - otherMins[i]);
+                if (trans * trans < minAxisTrans * minAxisTrans) {
+                    minAxis = i;
+                    minAxisTrans = trans;
                 }
             }
             if (thisMins[i] < otherMaxs[i] && thisMins[i] >= otherMins[i]) {
-                overlap[i] = true;
-                final double[] trans = new double[3];
-                trans[i] = otherMaxs[i] - thisMins[i];
-                final Vector transVec = new Vector(trans);
-                if (transVec.sqMag() < minTrans.sqMag()) {
-                    minTrans = transVec;
+                overlap = true;
+                final double trans = otherMaxs[i] - thisMins[i];
+                if (trans * trans < minAxisTrans * minAxisTrans) {
+                    minAxis = i;
+                    minAxisTrans = trans;
                 }
             }
+            if (overlap) {
+                overlaps++;
+            }
         }
-        if (overlap[0] && overlap[1] && overlap[2]) {
-            return minTrans;
-        } else {
-            return Vector.ZERO;
+        minTrans[0] = 0;
+        minTrans[1] = 0;
+        minTrans[2] = 0;
+        if (overlaps == 3) {
+            minTrans[minAxis] = minAxisTrans;
         }
     }
 
@@ -123,6 +154,36 @@ public class Hitbox {
          return intersectingBlockAnchors.toArray(new Vector[0]);
     }
 
+    /**
+     * Get the packed positions of the blocks which intersect this hitbox.
+     *
+     * Unlike {@link #intersectingBlockAnchors()}, does not allocate.
+     * @param mins An array to hold the least coordinates of this hitbox. Must have a length of at least 3.
+     * @param maxs An array to hold the greatest coordinates of this hitbox. Must have a length of at least 3.
+     * @param dest The array to put the packed positions in. See {@link BlockPos}. If there are more blocks than
+     *             fit, the rest are left out.
+     * @return The number of packed positions put into {@code dest}.
+     */
+    public int intersectingBlocks(final double[] mins, final double[] maxs, final long[] dest) {
+        this.getBounds(this.object, mins, maxs);
+        final int maxX = (int)Math.floor(maxs[0]);
+        final int maxY = (int)Math.floor(maxs[1]);
+        final int maxZ = (int)Math.floor(maxs[2]);
+        int count = 0;
+        for (int z = (int)Math.floor(mins[2]); z <= maxZ; z++) {
+            for (int y = (int)Math.floor(mins[1]); y <= maxY; y++) {
+                for (int x = (int)Math.floor(mins[0]); x <= maxX; x++) {
+                    if (count == dest.length) {
+                        return count;
+                    }
+                    dest[count] = BlockPos.pack(x, y, z);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     /**
      * Make a hitbox for some object.
      * @param hitbox The prototype hitbox.
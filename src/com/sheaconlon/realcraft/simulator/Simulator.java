@@ -0,0 +1,587 @@
+package com.sheaconlon.realcraft.simulator;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+import com.sheaconlon.realcraft.world.WorldObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongPredicate;
+
+/**
+ * A simulator, which moves world objects according to their velocities and keeps them out of solid blocks.
+ *
+ * The simulation advances in steps of a fixed length. The time that elapses between ticks is accumulated and
+ * consumed in whole steps, so that the simulation behaves the same no matter how often it is ticked.
+ *
+ * Only chunks which hold their final blocks are simulated against. A world object touching a chunk which does not yet
+ * is frozen until it does, and blocks in such chunks are taken to be solid, so that nothing falls through terrain
+ * which has not been generated yet. The simulator holds a {@link ChunkTickets.Level#TICK} ticket on the chunks around
+ * each world object it simulates, so that they are generated and kept loaded.
+ */
+public class Simulator extends Worker {
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * A simulator's return value for {@link #getTargetFreq()}.
+     */
+    private static final double TARGET_FREQ = 60;
+
+    /**
+     * The length of a step of the simulation. In seconds.
+     */
+    static final double TIMESTEP = 1.0 / 60;
+
+    /**
+     * The maximum number of steps to take in one tick. Time beyond what these steps consume is dropped, so that a
+     * simulator that falls behind does not spend ever longer catching up.
+     */
+    static final int MAX_STEPS_PER_TICK = 5;
+
+    /**
+     * The acceleration due to gravity. In blocks per second squared.
+     */
+    static final double GRAVITY = 9.8;
+
+    /**
+     * The number of steps taken, summed over simulators.
+     */
+    private static final Counter STEPS = Metrics.counter("Simulator", "steps");
+
+    /**
+     * The tolerance used when deciding which blocks a hitbox touches, so that a hitbox resting exactly on a block
+     * face is not considered to overlap the block.
+     */
+    private static final double EPSILON = 1e-7;
+
+    /**
+     * The farthest that a world object found inside solid blocks is pushed out of them in one step. In blocks.
+     */
+    private static final double MAX_PUSH_DISTANCE = Chunk.BLOCKS;
+
+    /**
+     * The radius of the tickets held around each world object. In chunks. A world object's hitboxes reach at most into
+     * the chunks next to its own.
+     */
+    private static final int TICKET_RADIUS = 1;
+
+    // ##### PRIVATE FINAL #####
+    /**
+     * Whether a chunk, by packed position, holds its final blocks and may be simulated against.
+     */
+    private final LongPredicate isLoaded;
+
+    /**
+     * The tickets to hold tickets in, and the ticket held around each world object.
+     */
+    private final ChunkTickets tickets;
+    private final Map<WorldObject, ChunkTickets.Ticket> bodyTickets;
+
+    private final List<WorldObject> bodies;
+    private final Queue<WorldObject> added;
+    private final Queue<WorldObject> removed;
+
+    /**
+     * The broadphase tracking the bodies that have hitboxes, and their IDs within it.
+     */
+    private final Broadphase broadphase;
+    private final Map<WorldObject, Integer> broadphaseIDs;
+
+    /**
+     * Scratch space for the bounds of the body being stepped.
+     */
+    private final double[] mins;
+    private final double[] maxs;
+    private final double[] hitboxMins;
+    private final double[] hitboxMaxs;
+
+    /**
+     * Scratch space for the bounds of the other body in a pair being separated, and the translation separating
+     * them.
+     */
+    private final double[] otherMins;
+    private final double[] otherMaxs;
+    private final double[] translation;
+
+    /**
+     * Scratch space for the position of the block being tested.
+     */
+    private final int[] blockPos;
+
+    /**
+     * Scratch space for the position of a world object.
+     */
+    private final double[] bodyPos;
+
+    // ##### PRIVATE #####
+    /**
+     * The time that has elapsed but has not yet been consumed by a step. In seconds.
+     */
+    private double accumulator;
+
+    /**
+     * The chunk that the last block tested belonged to. Nearby blocks usually share a chunk, so this saves a chunk
+     * lookup for most blocks tested.
+     */
+    private Chunk cachedChunk;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a simulator of a world whose chunks all hold their final blocks, which holds its tickets in a set of its
+     * own.
+     */
+    public Simulator() {
+        this(pos -> true, new ChunkTickets());
+    }
+
+    /**
+     * Create a simulator which only simulates against loaded chunks, such as those a generator has generated.
+     * @param isLoaded Whether a chunk, by packed position, holds its final blocks. See {@link ChunkPos}.
+     * @param tickets The tickets to hold tickets on the chunks around each world object in.
+     */
+    public Simulator(final LongPredicate isLoaded, final ChunkTickets tickets) {
+        this.isLoaded = isLoaded;
+        this.tickets = tickets;
+        this.bodyTickets = new HashMap<>();
+        this.bodies = new ArrayList<>();
+        this.added = new ConcurrentLinkedQueue<>();
+        this.removed = new ConcurrentLinkedQueue<>();
+        this.broadphase = new Broadphase();
+        this.broadphaseIDs = new HashMap<>();
+        this.mins = new double[3];
+        this.maxs = new double[3];
+        this.hitboxMins = new double[3];
+        this.hitboxMaxs = new double[3];
+        this.otherMins = new double[3];
+        this.otherMaxs = new double[3];
+        this.translation = new double[3];
+        this.blockPos = new int[3];
+        this.bodyPos = new double[3];
+        this.accumulator = 0;
+        this.cachedChunk = null;
+    }
+
+    // ##### BODIES #####
+    /**
+     * Start simulating a world object. Takes effect at the start of the next tick. May be called from any thread.
+     * @param object The world object.
+     */
+    public void add(final WorldObject object) {
+        this.added.add(object);
+    }
+
+    /**
+     * Stop simulating a world object. Takes effect at the start of the next tick. May be called from any thread.
+     * @param object The world object.
+     */
+    public void remove(final WorldObject object) {
+        this.removed.add(object);
+    }
+
+    // ##### WORKER OVERRIDES #####
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.MEDIUM;
+    }
+
+    @Override
+    public String toString() {
+        return "Simulator";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return Simulator.TARGET_FREQ;
+    }
+
+    /**
+     * Take as many steps as the elapsed time calls for.
+     */
+    @Override
+    protected void tick(final double interval) {
+        this.accumulator += interval;
+        int steps = 0;
+        while (this.accumulator >= Simulator.TIMESTEP && steps < Simulator.MAX_STEPS_PER_TICK) {
+            this.step(Simulator.TIMESTEP);
+            this.accumulator -= Simulator.TIMESTEP;
+            steps++;
+        }
+        if (steps == Simulator.MAX_STEPS_PER_TICK) {
+            this.accumulator = Math.min(this.accumulator, Simulator.TIMESTEP);
+        }
+        STEPS.add(steps);
+    }
+
+    // ##### SIMULATION #####
+    /**
+     * Advance the simulation.
+     * @param dt The length of time to advance it by. In seconds.
+     */
+    void step(final double dt) {
+        // Chunks may have been unloaded since the last step.
+        this.cachedChunk = null;
+        WorldObject body;
+        while ((body = this.added.poll()) != null) {
+            this.bodies.add(body);
+            body.getPos(this.bodyPos);
+            this.bodyTickets.put(body, this.tickets.add(ChunkTickets.Type.SIMULATION, ChunkTickets.Level.TICK,
+                    ChunkPos.containing(this.bodyPos[0], this.bodyPos[1], this.bodyPos[2]), TICKET_RADIUS));
+            final List<Hitbox> hitboxes = body.getHitboxes();
+            if (hitboxes != null && !hitboxes.isEmpty()) {
+                this.broadphaseIDs.put(body, this.broadphase.add(body));
+            }
+        }
+        while ((body = this.removed.poll()) != null) {
+            this.bodies.remove(body);
+            final ChunkTickets.Ticket ticket = this.bodyTickets.remove(body);
+            if (ticket != null) {
+                this.tickets.remove(ticket);
+            }
+            final Integer id = this.broadphaseIDs.remove(body);
+            if (id != null) {
+                this.broadphase.remove(id);
+            }
+        }
+        for (int i = 0; i < this.bodies.size(); i++) {
+            body = this.bodies.get(i);
+            // So that a change made by another thread, such as a jump, is not overwritten by this step's.
+            synchronized (body.getLock()) {
+                this.step(body, dt);
+            }
+        }
+        this.separate();
+        for (int i = 0; i < this.bodies.size(); i++) {
+            body = this.bodies.get(i);
+            body.getPos(this.bodyPos);
+            this.tickets.move(this.bodyTickets.get(body),
+                    ChunkPos.containing(this.bodyPos[0], this.bodyPos[1], this.bodyPos[2]));
+        }
+    }
+
+    /**
+     * Push apart the bodies whose hitboxes overlap.
+     *
+     * The broadphase finds the candidate pairs and {@link Hitbox#minTranslation(double[], double[], double[],
+     * double[], double[])} finds the translation separating each pair. Each body of a pair is moved half of the way.
+     */
+    private void separate() {
+        this.broadphase.update();
+        for (int pair = 0; pair < this.broadphase.pairCount(); pair++) {
+            final int first = this.broadphase.pairFirst(pair);
+            final int second = this.broadphase.pairSecond(pair);
+            this.broadphase.getBounds(first, this.mins, this.maxs);
+            this.broadphase.getBounds(second, this.otherMins, this.otherMaxs);
+            Hitbox.minTranslation(this.mins, this.maxs, this.otherMins, this.otherMaxs, this.translation);
+            if (this.translation[0] == 0 && this.translation[1] == 0 && this.translation[2] == 0) {
+                continue;
+            }
+            final double halfX = this.translation[0] / 2;
+            final double halfY = this.translation[1] / 2;
+            final double halfZ = this.translation[2] / 2;
+            this.broadphase.getObject(first).changePos(halfX, halfY, halfZ);
+            this.broadphase.getObject(second).changePos(-halfX, -halfY, -halfZ);
+        }
+    }
+
+    /**
+     * Advance the simulation of a single world object.
+     * @param body The world object.
+     * @param dt The length of time to advance it by. In seconds.
+     */
+    private void step(final WorldObject body, final double dt) {
+        if (!this.isLoaded.test(ChunkPos.containing(body.getPosX(), body.getPosY(), body.getPosZ()))) {
+            return;
+        }
+        final double oldVx = body.getVelocityX();
+        final double oldVy = body.getVelocityY();
+        final double oldVz = body.getVelocityZ();
+        double vx = oldVx;
+        double vy = oldVy - Simulator.GRAVITY * dt;
+        double vz = oldVz;
+        double dx = vx * dt;
+        double dy = vy * dt;
+        double dz = vz * dt;
+        if (this.computeBounds(body)) {
+            if (!this.boundsLoaded()) {
+                return;
+            }
+            if (this.boundsOverlapSolid()) {
+                final double oldMinX = this.mins[0];
+                final double oldMinY = this.mins[1];
+                final double oldMinZ = this.mins[2];
+                this.pushOutOfSolid();
+                dx = this.mins[0] - oldMinX;
+                dy = this.mins[1] - oldMinY;
+                dz = this.mins[2] - oldMinZ;
+                vx = dx == 0 ? vx : 0;
+                vy = dy == 0 ? vy : 0;
+                vz = dz == 0 ? vz : 0;
+            } else {
+                // Resolve vertical motion first so that a world object lands before sliding into a wall.
+                final double allowedDy = this.sweep(1, dy);
+                if (allowedDy != dy) {
+                    vy = 0;
+                }
+                dy = allowedDy;
+                final double allowedDx = this.sweep(0, dx);
+                if (allowedDx != dx) {
+                    vx = 0;
+                }
+                dx = allowedDx;
+                final double allowedDz = this.sweep(2, dz);
+                if (allowedDz != dz) {
+                    vz = 0;
+                }
+                dz = allowedDz;
+            }
+        }
+        if (dx != 0 || dy != 0 || dz != 0) {
+            body.changePos(dx, dy, dz);
+        }
+        if (vx != oldVx || vy != oldVy || vz != oldVz) {
+            body.setVelocity(vx, vy, vz);
+        }
+    }
+
+    /**
+     * Compute the bounds of the union of a world object's hitboxes into {@link #mins} and {@link #maxs}.
+     * @param body The world object.
+     * @return Whether the world object has any hitboxes.
+     */
+    private boolean computeBounds(final WorldObject body) {
+        final List<Hitbox> hitboxes = body.getHitboxes();
+        if (hitboxes == null || hitboxes.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            this.mins[i] = Double.POSITIVE_INFINITY;
+            this.maxs[i] = Double.NEGATIVE_INFINITY;
+        }
+        for (int h = 0; h < hitboxes.size(); h++) {
+            hitboxes.get(h).getBounds(body, this.hitboxMins, this.hitboxMaxs);
+            for (int i = 0; i < 3; i++) {
+                this.mins[i] = Math.min(this.mins[i], this.hitboxMins[i]);
+                this.maxs[i] = Math.max(this.maxs[i], this.hitboxMaxs[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sweep the bounds in {@link #mins} and {@link #maxs} along an axis, stopping at the first solid block.
+     *
+     * Moves the bounds by the distance allowed.
+     * @param axis The axis. 0, 1, or 2 for the x-, y-, or z-axis.
+     * @param delta The desired displacement along the axis.
+     * @return The displacement along the axis that can be made without entering a solid block. Has the same sign
+     *         as {@code delta} and a magnitude no greater than {@code delta}'s.
+     */
+    private double sweep(final int axis, final double delta) {
+        double allowed = delta;
+        if (delta > 0) {
+            final int first = (int)Math.ceil(this.maxs[axis] - Simulator.EPSILON);
+            final int last = (int)Math.ceil(this.maxs[axis] + delta - Simulator.EPSILON) - 1;
+            for (int layer = first; layer <= last; layer++) {
+                if (this.layerIsSolid(axis, layer)) {
+                    allowed = Math.max(0, layer - this.maxs[axis]);
+                    break;
+                }
+            }
+        } else if (delta < 0) {
+            final int first = (int)Math.floor(this.mins[axis] + Simulator.EPSILON) - 1;
+            final int last = (int)Math.floor(this.mins[axis] + delta + Simulator.EPSILON);
+            for (int layer = first; layer >= last; layer--) {
+                if (this.layerIsSolid(axis, layer)) {
+                    allowed = Math.min(0, layer + 1 - this.mins[axis]);
+                    break;
+                }
+            }
+        }
+        this.mins[axis] += allowed;
+        this.maxs[axis] += allowed;
+        return allowed;
+    }
+
+    /**
+     * Return whether any solid block lies in some layer of blocks, within the extent of the bounds in
+     * {@link #mins} and {@link #maxs} along the other two axes.
+     * @param axis The axis perpendicular to the layer. 0, 1, or 2 for the x-, y-, or z-axis.
+     * @param layer The coordinate of the layer along {@code axis}.
+     * @return Whether any such block is solid.
+     */
+    private boolean layerIsSolid(final int axis, final int layer) {
+        final int b = (axis + 1) % 3;
+        final int c = (axis + 2) % 3;
+        final int bLow = (int)Math.floor(this.mins[b] + Simulator.EPSILON);
+        final int bHigh = (int)Math.ceil(this.maxs[b] - Simulator.EPSILON) - 1;
+        final int cLow = (int)Math.floor(this.mins[c] + Simulator.EPSILON);
+        final int cHigh = (int)Math.ceil(this.maxs[c] - Simulator.EPSILON) - 1;
+        this.blockPos[axis] = layer;
+        for (int i = bLow; i <= bHigh; i++) {
+            this.blockPos[b] = i;
+            for (int j = cLow; j <= cHigh; j++) {
+                this.blockPos[c] = j;
+                if (this.isSolid(this.blockPos[0], this.blockPos[1], this.blockPos[2])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return whether every chunk the bounds in {@link #mins} and {@link #maxs} overlap holds its final blocks. The
+     * bounds are smaller than a chunk, so those are the chunks containing their corners.
+     * @return Whether they do.
+     */
+    private boolean boundsLoaded() {
+        for (int corner = 0; corner < 8; corner++) {
+            final double x = (corner & 1) == 0 ? this.mins[0] : this.maxs[0] - Simulator.EPSILON;
+            final double y = (corner & 2) == 0 ? this.mins[1] : this.maxs[1] - Simulator.EPSILON;
+            final double z = (corner & 4) == 0 ? this.mins[2] : this.maxs[2] - Simulator.EPSILON;
+            if (!this.isLoaded.test(ChunkPos.containing(x, y, z))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return whether the bounds in {@link #mins} and {@link #maxs} overlap any solid block.
+     * @return Whether they do.
+     */
+    private boolean boundsOverlapSolid() {
+        final int low = (int)Math.floor(this.mins[1] + Simulator.EPSILON);
+        final int high = (int)Math.ceil(this.maxs[1] - Simulator.EPSILON) - 1;
+        for (int layer = low; layer <= high; layer++) {
+            if (this.layerIsSolid(1, layer)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move the bounds in {@link #mins} and {@link #maxs} out of the solid blocks they overlap, by the shortest
+     * translation along one axis which clears them all. This is {@link Hitbox#minTranslation(double[], double[],
+     * double[], double[], double[])} against all the solid blocks at once, so that a world object is not pushed out of
+     * one block into the next. Bounds which cannot be cleared within {@link #MAX_PUSH_DISTANCE} are left where they
+     * are.
+     */
+    private void pushOutOfSolid() {
+        int bestAxis = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int axis = 0; axis < 3; axis++) {
+            for (int sign = -1; sign <= 1; sign += 2) {
+                final double distance = this.clearance(axis, sign);
+                if (distance < Math.abs(best)) {
+                    bestAxis = axis;
+                    best = sign * distance;
+                }
+            }
+        }
+        if (bestAxis != -1) {
+            this.mins[bestAxis] += best;
+            this.maxs[bestAxis] += best;
+        }
+    }
+
+    /**
+     * Find how far the bounds in {@link #mins} and {@link #maxs} must move in some direction to overlap no solid
+     * block.
+     * @param axis The axis to move along. 0, 1, or 2 for the x-, y-, or z-axis.
+     * @param sign 1 to move in the positive direction, or -1 in the negative.
+     * @return The distance, or infinity if it is more than {@link #MAX_PUSH_DISTANCE}.
+     */
+    private double clearance(final int axis, final int sign) {
+        double distance = 0;
+        while (distance <= Simulator.MAX_PUSH_DISTANCE) {
+            for (int i = 0; i < 3; i++) {
+                this.otherMins[i] = this.mins[i];
+                this.otherMaxs[i] = this.maxs[i];
+            }
+            this.otherMins[axis] += sign * distance;
+            this.otherMaxs[axis] += sign * distance;
+            // The distance to clear the farthest solid block overlapped, found by the scan of the moved bounds.
+            final double needed = this.farthestExit(axis, sign);
+            if (needed <= distance) {
+                return distance;
+            }
+            distance = needed;
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Find how far the bounds in {@link #mins} and {@link #maxs} must move in some direction to clear the solid
+     * blocks that the bounds in {@link #otherMins} and {@link #otherMaxs} overlap.
+     * @param axis The axis to move along. 0, 1, or 2 for the x-, y-, or z-axis.
+     * @param sign 1 to move in the positive direction, or -1 in the negative.
+     * @return The distance, or 0 if the bounds in {@link #otherMins} and {@link #otherMaxs} overlap no solid block.
+     */
+    private double farthestExit(final int axis, final int sign) {
+        final int xLow = (int)Math.floor(this.otherMins[0] + Simulator.EPSILON);
+        final int xHigh = (int)Math.ceil(this.otherMaxs[0] - Simulator.EPSILON) - 1;
+        final int yLow = (int)Math.floor(this.otherMins[1] + Simulator.EPSILON);
+        final int yHigh = (int)Math.ceil(this.otherMaxs[1] - Simulator.EPSILON) - 1;
+        final int zLow = (int)Math.floor(this.otherMins[2] + Simulator.EPSILON);
+        final int zHigh = (int)Math.ceil(this.otherMaxs[2] - Simulator.EPSILON) - 1;
+        double farthest = 0;
+        for (int x = xLow; x <= xHigh; x++) {
+            for (int y = yLow; y <= yHigh; y++) {
+                for (int z = zLow; z <= zHigh; z++) {
+                    if (this.isSolid(x, y, z)) {
+                        this.blockPos[0] = x;
+                        this.blockPos[1] = y;
+                        this.blockPos[2] = z;
+                        final double exit = sign > 0 ? this.blockPos[axis] + 1 - this.mins[axis]
+                                : this.maxs[axis] - this.blockPos[axis];
+                        farthest = Math.max(farthest, exit);
+                    }
+                }
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Return whether the block with some anchor point is solid.
+     * @param x The x-coordinate of the anchor point.
+     * @param y The y-coordinate of the anchor point.
+     * @param z The z-coordinate of the anchor point.
+     * @return Whether the block is solid, meaning that it has hitboxes. Blocks in chunks which do not hold their final
+     * blocks yet are taken to be solid.
+     */
+    private boolean isSolid(final int x, final int y, final int z) {
+        if (this.cachedChunk == null || !this.cachedChunk.contains(x, y, z)) {
+            final long pos = ChunkPos.containing(x, y, z);
+            if (!this.isLoaded.test(pos)) {
+                return true;
+            }
+            final Chunk chunk = Chunk.existingChunk(pos);
+            if (chunk == null) {
+                // A loaded chunk which was never created holds only air.
+                return false;
+            }
+            this.cachedChunk = chunk;
+        }
+        return !this.cachedChunk.getBlock(x, y, z).getHitboxes().isEmpty();
+    }
+}
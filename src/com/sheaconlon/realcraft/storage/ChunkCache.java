@@ -0,0 +1,471 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.network.ChunkCodec;
+import com.sheaconlon.realcraft.renderer.Renderer;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.LongHashSet;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.function.ObjLongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A cache of the chunks a generator has generated, in three tiers.
+ *
+ * Hot chunks are in the world, with their blocks expanded. Once no ticket has covered a chunk for a while (see
+ * {@link ChunkTickets}), it is unloaded from the world and kept warm: encoded and deflated in memory, a few kilobytes
+ * each instead of hundreds. Warm chunks farther than the warm distance from the player are spilled to region files on
+ * disk, and are cold. When the player comes back, cold chunks within the warm distance are read back into memory ahead
+ * of time, and the generator restores chunks it needs again from the cache, which is much faster than loading or
+ * generating them and does not relight them.
+ *
+ * Chunks are unloaded only some time after their last ticket left them, and spilled a little beyond the distance at
+ * which they are read back, so that a player pacing along a boundary does not move chunks back and forth. Chunks
+ * holding entities stay hot.
+ */
+public class ChunkCache extends Worker implements ChunkTickets.Listener {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The default time a chunk must go uncovered by any ticket before it is unloaded. In seconds.
+     */
+    public static final double DEFAULT_UNLOAD_DELAY = 5;
+
+    /**
+     * The default distance within which chunks are warm. In chunks.
+     */
+    public static final int DEFAULT_WARM_DISTANCE = 3 * Renderer.RENDER_DISTANCE;
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final double TARGET_FREQ = 2;
+
+    /**
+     * How much farther than the warm distance a chunk must be to be spilled. In chunks.
+     */
+    private static final int HYSTERESIS = 1;
+
+    private static final double NANOSECONDS_PER_SECOND = 1e9;
+
+    /**
+     * The most chunks to move to a colder tier, and to read back from disk, per tick.
+     */
+    private static final int DEMOTIONS_PER_TICK = 16;
+    private static final int SPILLS_PER_TICK = 64;
+    private static final int PREFETCHES_PER_TICK = 16;
+
+    private static final Counter CHUNKS_DEMOTED = Metrics.counter("ChunkCache", "chunksDemoted");
+    private static final Counter CHUNKS_SPILLED = Metrics.counter("ChunkCache", "chunksSpilled");
+    private static final Counter CHUNKS_PREFETCHED = Metrics.counter("ChunkCache", "chunksPrefetched");
+
+    /**
+     * How long restoring a chunk from each tier takes.
+     */
+    private static final Histogram WARM_RESTORE_DURATION = Metrics.histogram("ChunkCache", "warmRestoreDuration");
+    private static final Histogram COLD_RESTORE_DURATION = Metrics.histogram("ChunkCache", "coldRestoreDuration");
+
+    // ##### PRIVATE FINAL #####
+    private final Generator generator;
+    private final long unloadDelay;
+    private final int warmDistance;
+
+    /**
+     * The time each chunk no ticket covers was last released by one, by packed position. In nanoseconds, as
+     * {@link System#nanoTime()}. Has its own lock, so that releasing a chunk never waits for a demotion.
+     */
+    private final LongHashMap<Long> releasedAt;
+
+    /**
+     * The warm chunks, by packed position: the length of the encoded chunk, then the encoded chunk deflated.
+     */
+    private final LongHashMap<byte[]> warm;
+
+    /**
+     * The packed positions of the cold chunks, and their store on disk, which holds them as {@link #warm} does.
+     */
+    private final LongHashSet cold;
+    private final RegionStore spill;
+    private final Path spillDir;
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+
+    /**
+     * Scratch space for the player's position.
+     */
+    private final double[] playerPos;
+
+    /**
+     * Scratch space for {@link #update(long)}: the positions of the chunks due to be demoted, of which there are
+     * {@link #numDue}, the warm chunks to spill, and the positions of the cold chunks and of those to prefetch.
+     */
+    private final long[] due;
+    private final LongHashMap<byte[]> spilled;
+    private final long[] near;
+
+    /**
+     * Add the chunks released long enough before {@link #now} to {@link #due}, add the warm chunks too far from
+     * {@link #center} to {@link #spilled}, and move the chunks in {@link #spilled} from warm to cold.
+     */
+    private final ObjLongConsumer<Long> collectDue;
+    private final ObjLongConsumer<byte[]> collectSpilled;
+    private final ObjLongConsumer<byte[]> moveSpilled;
+
+    // ##### PRIVATE #####
+    /**
+     * Scratch space for {@link #update(long)}, as {@link #due} is.
+     */
+    private long[] coldPositions;
+    private int numDue;
+    private long now;
+    private long center;
+
+    /**
+     * The total size of the warm and of the cold chunks. In bytes.
+     */
+    private long warmBytes;
+    private long coldBytes;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a cache of a generator's chunks with the default delay and distance, and have the generator restore
+     * chunks from it.
+     * @param generator The generator.
+     * @param spillDir The directory to spill cold chunks to, which is deleted when the cache is closed.
+     */
+    public ChunkCache(final Generator generator, final Path spillDir) throws IOException {
+        this(generator, spillDir, DEFAULT_UNLOAD_DELAY, DEFAULT_WARM_DISTANCE);
+    }
+
+    /**
+     * Create a cache of a generator's chunks, and have the generator restore chunks from it. The cache unloads the
+     * chunks which the world's tickets release.
+     * @param generator The generator.
+     * @param spillDir The directory to spill cold chunks to, which is deleted when the cache is closed.
+     * @param unloadDelay The time a chunk must go uncovered by any ticket before it is unloaded. In seconds.
+     * @param warmDistance The distance from the player within which chunks are warm. In chunks.
+     */
+    public ChunkCache(final Generator generator, final Path spillDir, final double unloadDelay,
+                      final int warmDistance) throws IOException {
+        if (unloadDelay < 0) {
+            throw new IllegalArgumentException("unload delay must be nonnegative");
+        }
+        this.generator = generator;
+        this.unloadDelay = (long)(unloadDelay * NANOSECONDS_PER_SECOND);
+        this.warmDistance = warmDistance;
+        this.releasedAt = new LongHashMap<>();
+        this.warm = new LongHashMap<>();
+        this.cold = new LongHashSet();
+        this.spillDir = spillDir;
+        this.spill = new RegionStore(spillDir);
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.inflater = new Inflater();
+        this.playerPos = new double[3];
+        this.due = new long[DEMOTIONS_PER_TICK];
+        this.spilled = new LongHashMap<>(SPILLS_PER_TICK);
+        this.near = new long[PREFETCHES_PER_TICK];
+        this.coldPositions = new long[0];
+        this.collectDue = (time, pos) -> {
+            if (this.numDue < DEMOTIONS_PER_TICK && this.now - time >= this.unloadDelay) {
+                this.due[this.numDue] = pos;
+                this.numDue++;
+            }
+        };
+        this.collectSpilled = (cached, pos) -> {
+            if (this.spilled.size() < SPILLS_PER_TICK && isBeyond(this.center, pos,
+                    this.warmDistance + HYSTERESIS)) {
+                this.spilled.put(pos, cached);
+            }
+        };
+        this.moveSpilled = (cached, pos) -> {
+            this.warm.remove(pos);
+            this.warmBytes -= cached.length;
+            this.cold.add(pos);
+            this.coldBytes += cached.length;
+        };
+        generator.setCache(this);
+        ChunkTickets.WORLD.addListener(this);
+    }
+
+    // ##### WORKER OVERRIDES #####
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.LOW;
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkCache";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return TARGET_FREQ;
+    }
+
+    /**
+     * Unload the chunks released long enough ago, and move chunks between the warm and cold tiers by their distance
+     * from the player.
+     */
+    @Override
+    protected void tick(final double interval) {
+        try {
+            Player.PLAYER.getPos(this.playerPos);
+            this.update(ChunkPos.containing(this.playerPos[0], this.playerPos[1], this.playerPos[2]));
+        } catch (final IOException e) {
+            throw new RuntimeException("could not cache chunks", e);
+        }
+    }
+
+    // ##### CHUNK TICKETS LISTENER #####
+    @Override
+    public void released(final long pos) {
+        synchronized (this.releasedAt) {
+            this.releasedAt.put(pos, System.nanoTime());
+        }
+    }
+
+    // ##### TIERS #####
+    /**
+     * Move a few chunks between tiers: hot chunks which no ticket has covered for the unload delay to warm, warm
+     * chunks which are too far from some chunk to cold, and cold chunks which are near enough to it back to warm.
+     * @param center The packed position of the chunk. See {@link ChunkPos}.
+     */
+    public void update(final long center) throws IOException {
+        this.demoteReleased(System.nanoTime());
+        this.spill(center);
+        this.prefetch(center);
+    }
+
+    /**
+     * Restore a chunk from this cache, if this cache holds it, removing it from this cache.
+     * @param chunk The chunk to restore into, which must hold only air.
+     * @return Whether this cache held the chunk.
+     */
+    public synchronized boolean restore(final Chunk chunk) {
+        final long start = System.nanoTime();
+        final long pos = chunk.getPos();
+        final boolean wasCold = this.cold.contains(pos);
+        final byte[] cached = wasCold ? this.readCold(pos) : this.warm.remove(pos);
+        if (cached == null) {
+            return false;
+        }
+        if (wasCold) {
+            this.coldBytes -= cached.length;
+        } else {
+            this.warmBytes -= cached.length;
+        }
+        final ByteBuffer src = ByteBuffer.wrap(cached);
+        final int encodedLength = src.getInt();
+        ChunkCodec.decode(ChunkCodec.decompress(src, encodedLength, this.inflater), chunk);
+        (wasCold ? COLD_RESTORE_DURATION : WARM_RESTORE_DURATION).record(System.nanoTime() - start);
+        return true;
+    }
+
+    // ##### REPORTING #####
+    /**
+     * @return The number of warm chunks.
+     */
+    public synchronized int getWarmChunks() {
+        return this.warm.size();
+    }
+
+    /**
+     * @return The memory the warm chunks take up. In bytes, not counting the map holding them.
+     */
+    public synchronized long getWarmBytes() {
+        return this.warmBytes;
+    }
+
+    /**
+     * @return The number of cold chunks.
+     */
+    public synchronized int getColdChunks() {
+        return this.cold.size();
+    }
+
+    /**
+     * @return The disk the cold chunks take up. In bytes, not counting space left behind by chunks since restored.
+     */
+    public synchronized long getColdBytes() {
+        return this.coldBytes;
+    }
+
+    /**
+     * @return A report of the chunks in each tier, what they take up, and how long restoring them took.
+     */
+    public String format() {
+        return String.format("chunk cache: %d hot, %d warm (%d bytes in memory), %d cold (%d bytes on disk)%n"
+                        + "  restored %d warm (p50 %.3f ms, p99 %.3f ms), %d cold (p50 %.3f ms, p99 %.3f ms)%n",
+                this.generator.getGenerated().length, this.getWarmChunks(), this.getWarmBytes(),
+                this.getColdChunks(), this.getColdBytes(), WARM_RESTORE_DURATION.getCount(),
+                WARM_RESTORE_DURATION.getP50(), WARM_RESTORE_DURATION.getP99(), COLD_RESTORE_DURATION.getCount(),
+                COLD_RESTORE_DURATION.getP50(), COLD_RESTORE_DURATION.getP99());
+    }
+
+    /**
+     * Close this cache, forgetting the warm and cold chunks and deleting its directory. The generator stops restoring
+     * chunks from it.
+     */
+    public synchronized void close() throws IOException {
+        ChunkTickets.WORLD.removeListener(this);
+        this.generator.setCache(null);
+        synchronized (this.releasedAt) {
+            this.releasedAt.clear();
+        }
+        this.warm.clear();
+        this.cold.clear();
+        this.warmBytes = 0;
+        this.coldBytes = 0;
+        this.spill.close();
+        this.deflater.end();
+        this.inflater.end();
+        try (Stream<Path> files = Files.walk(this.spillDir)) {
+            for (final Path file : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    // ##### PRIVATE #####
+    /**
+     * Demote a few of the chunks released at least the unload delay before some time.
+     * @param now The time. In nanoseconds, as {@link System#nanoTime()}.
+     */
+    private void demoteReleased(final long now) {
+        synchronized (this.releasedAt) {
+            this.now = now;
+            this.numDue = 0;
+            this.releasedAt.forEach(this.collectDue);
+            for (int i = 0; i < this.numDue; i++) {
+                this.releasedAt.remove(this.due[i]);
+            }
+        }
+        for (int i = 0; i < this.numDue; i++) {
+            this.demote(this.due[i]);
+        }
+    }
+
+    /**
+     * Unload a hot chunk from the world and keep it warm, unless a ticket covers it again. A chunk holding entities is
+     * kept hot, and tried again after the unload delay.
+     * @param pos The packed position of the chunk.
+     */
+    private synchronized void demote(final long pos) {
+        if (ChunkTickets.WORLD.getLevel(pos) != null) {
+            return;
+        }
+        final Chunk chunk;
+        // Hold the light engine's lock so that the chunk is not unloaded with its light half-updated.
+        synchronized (LightEngine.WORLD) {
+            final Chunk loaded = Chunk.existingChunk(pos);
+            if (loaded == null) {
+                return;
+            }
+            if (!loaded.getEntities().isEmpty()) {
+                this.released(pos);
+                return;
+            }
+            chunk = this.generator.unload(pos);
+        }
+        if (chunk == null) {
+            return;
+        }
+        // Nothing can see the chunk once unloaded, and the generator waits for this cache's lock to restore it.
+        final byte[] encoded = ChunkCodec.encode(chunk);
+        final byte[] compressed = ChunkCodec.compress(encoded, this.deflater);
+        final byte[] cached = ByteBuffer.allocate(Integer.BYTES + compressed.length).putInt(encoded.length)
+                .put(compressed).array();
+        this.warm.put(pos, cached);
+        this.warmBytes += cached.length;
+        CHUNKS_DEMOTED.increment();
+    }
+
+    /**
+     * Spill a few warm chunks which are too far from some chunk to disk.
+     */
+    private synchronized void spill(final long center) throws IOException {
+        this.center = center;
+        this.spilled.clear();
+        this.warm.forEach(this.collectSpilled);
+        if (this.spilled.size() == 0) {
+            return;
+        }
+        this.spill.write(this.spilled);
+        this.spilled.forEach(this.moveSpilled);
+        CHUNKS_SPILLED.add(this.spilled.size());
+        this.spilled.clear();
+    }
+
+    /**
+     * Read a few cold chunks which are near enough to some chunk back into memory.
+     */
+    private synchronized void prefetch(final long center) {
+        if (this.coldPositions.length < this.cold.size()) {
+            this.coldPositions = new long[Math.max(this.cold.size(), 2 * this.coldPositions.length)];
+        }
+        this.cold.toArray(this.coldPositions);
+        int numNear = 0;
+        for (int i = 0; i < this.cold.size() && numNear < PREFETCHES_PER_TICK; i++) {
+            if (!isBeyond(center, this.coldPositions[i], this.warmDistance)) {
+                this.near[numNear] = this.coldPositions[i];
+                numNear++;
+            }
+        }
+        for (int i = 0; i < numNear; i++) {
+            final long pos = this.near[i];
+            final byte[] cached = this.readCold(pos);
+            this.coldBytes -= cached.length;
+            this.warm.put(pos, cached);
+            this.warmBytes += cached.length;
+            CHUNKS_PREFETCHED.increment();
+        }
+    }
+
+    /**
+     * Read a cold chunk back from disk. It is no longer cold.
+     */
+    private byte[] readCold(final long pos) {
+        this.cold.remove(pos);
+        try {
+            return this.spill.read(pos);
+        } catch (final IOException e) {
+            throw new RuntimeException("could not read cached chunk", e);
+        }
+    }
+
+    /**
+     * @return Whether two chunks are farther apart than some distance, in chunks.
+     */
+    private static boolean isBeyond(final long a, final long b, final int distance) {
+        final long dx = BlockPos.getX(a) - BlockPos.getX(b);
+        final long dy = BlockPos.getY(a) - BlockPos.getY(b);
+        final long dz = BlockPos.getZ(a) - BlockPos.getZ(b);
+        return dx * dx + dy * dy + dz * dz > (long)distance * distance;
+    }
+}
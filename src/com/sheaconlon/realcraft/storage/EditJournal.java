@@ -0,0 +1,428 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A write-ahead journal of block edits, so that edits made since a world was last saved survive the process dying.
+ *
+ * Edits are appended to memory, and written and forced to disk together every tick of this worker, so that one
+ * {@link FileChannel#force(boolean)} covers every edit made in the interval: an edit is durable at most one interval
+ * after it is made. The journal is a series of segment files, each a header and then batches of edits, one batch per
+ * commit. Each batch starts with its length and checksum, so that a batch torn by a crash is recognized and dropped.
+ *
+ * The edits of every segment still on disk are also kept in memory, by chunk, so that chunks loaded later have them
+ * applied. Once a segment's edits are in region storage, {@link #rotate()} and {@link #delete(long)} retire it.
+ */
+public class EditJournal extends Worker {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The default time between commits. In seconds.
+     */
+    public static final double DEFAULT_COMMIT_INTERVAL = 0.02;
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final String PREFIX = "journal.";
+    private static final String SUFFIX = ".log";
+    private static final int MAGIC = 0x52434A4E;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int BATCH_HEADER_BYTES = 2 * Integer.BYTES;
+
+    /**
+     * The bytes of an edit: the packed position of its chunk, the block's index within the chunk, and its type.
+     */
+    private static final int EDIT_BYTES = Long.BYTES + Short.BYTES + 1;
+
+    /**
+     * The bytes of an edit as kept in memory and returned by {@link #edits(long)}: the index and the type.
+     */
+    private static final int CHUNK_EDIT_BYTES = Short.BYTES + 1;
+
+    private static final int INITIAL_PENDING_EDITS = 1024;
+
+    private static final Counter EDITS_JOURNALED = Metrics.counter("EditJournal", "editsJournaled");
+    private static final Counter EDITS_REPLAYED = Metrics.counter("EditJournal", "editsReplayed");
+    private static final Counter COMMITS = Metrics.counter("EditJournal", "commits");
+    private static final Histogram COMMIT_DURATION = Metrics.histogram("EditJournal", "commitDuration");
+
+    // ##### PRIVATE FINAL #####
+    private final Path dir;
+    private final double commitInterval;
+
+    /**
+     * Held while writing to {@link #channel}, so that commits happen one at a time and in order.
+     */
+    private final Object commitLock;
+
+    /**
+     * The edits of each segment still on disk, by segment number and then by packed chunk position, as a block index
+     * and type per edit, oldest first. Guarded by this journal's lock.
+     */
+    private final TreeMap<Long, LongHashMap<ByteArrayOutputStream>> segments;
+
+    /**
+     * Reused for each commit's checksum. Guarded by {@link #commitLock}.
+     */
+    private final CRC32 crc;
+
+    // ##### PRIVATE #####
+    /**
+     * The number of the segment being appended to, and its file. Guarded by {@link #commitLock}.
+     */
+    private long segment;
+    private FileChannel channel;
+
+    /**
+     * The edits appended since the last commit. Guarded by this journal's lock.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * The buffer to swap in for {@link #pending} at the next commit. Guarded by {@link #commitLock}.
+     */
+    private ByteBuffer spare;
+
+    /**
+     * The bytes of the segments still on disk. Guarded by this journal's lock.
+     */
+    private long diskBytes;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Open the journal in some directory, reading the edits of the segments already there, and begin a new segment.
+     * @param dir The directory.
+     * @param commitInterval The time between commits. In seconds.
+     */
+    public EditJournal(final Path dir, final double commitInterval) throws IOException {
+        this.dir = dir;
+        this.commitInterval = commitInterval;
+        this.commitLock = new Object();
+        this.segments = new TreeMap<>();
+        this.crc = new CRC32();
+        this.pending = ByteBuffer.allocate(INITIAL_PENDING_EDITS * EDIT_BYTES);
+        this.spare = ByteBuffer.allocate(INITIAL_PENDING_EDITS * EDIT_BYTES);
+        long last = -1;
+        for (final long number : this.listSegments()) {
+            this.replay(number);
+            last = number;
+        }
+        this.segment = last + 1;
+        this.segments.put(this.segment, new LongHashMap<>());
+        this.channel = this.openSegment(this.segment);
+    }
+
+    // ##### WORKER OVERRIDES #####
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.MEDIUM;
+    }
+
+    @Override
+    public String toString() {
+        return "EditJournal";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return 1 / this.commitInterval;
+    }
+
+    /**
+     * Commit the edits appended since the last commit.
+     */
+    @Override
+    protected void tick(final double interval) {
+        try {
+            this.commit();
+        } catch (final IOException e) {
+            throw new RuntimeException("could not commit edit journal", e);
+        }
+    }
+
+    // ##### JOURNALING #####
+    /**
+     * Append an edit. It is durable once the next commit finishes.
+     * @param pos The packed position of the edited block's chunk. See {@link ChunkPos}.
+     * @param index The index of the block within its chunk. See
+     *              {@link com.sheaconlon.realcraft.world.Chunk#lightIndex(int, int, int)}.
+     * @param type The new type of the block. See {@link com.sheaconlon.realcraft.network.ChunkCodec#typeOf}.
+     */
+    public synchronized void append(final long pos, final int index, final int type) {
+        if (this.pending.remaining() < EDIT_BYTES) {
+            final ByteBuffer grown = ByteBuffer.allocate(2 * this.pending.capacity());
+            this.pending.flip();
+            grown.put(this.pending);
+            this.pending = grown;
+        }
+        this.pending.putLong(pos).putShort((short)index).put((byte)type);
+        this.remember(this.segments.lastEntry().getValue(), pos, index, type);
+        EDITS_JOURNALED.increment();
+    }
+
+    /**
+     * Write the edits appended since the last commit, and wait until they are on disk.
+     */
+    public void commit() throws IOException {
+        synchronized (this.commitLock) {
+            final ByteBuffer batch;
+            synchronized (this) {
+                if (this.pending.position() == 0) {
+                    return;
+                }
+                batch = this.pending;
+                this.pending = this.spare;
+            }
+            this.write(batch);
+            batch.clear();
+            this.spare = batch;
+        }
+    }
+
+    /**
+     * Commit, and begin a new segment, so that the segments before it can be retired once their edits are in region
+     * storage.
+     * @return The number of the last segment before the new one. Every edit appended before this call is in it or
+     * in an earlier segment.
+     */
+    public long rotate() throws IOException {
+        synchronized (this.commitLock) {
+            final long last = this.segment;
+            final ByteBuffer batch;
+            synchronized (this) {
+                batch = this.pending;
+                this.pending = this.spare;
+                // Edits appended from now on belong to the new segment, and are committed once it is open.
+                this.segments.put(last + 1, new LongHashMap<>());
+            }
+            this.write(batch);
+            batch.clear();
+            this.spare = batch;
+            this.channel.close();
+            this.segment = last + 1;
+            this.channel = this.openSegment(this.segment);
+            return last;
+        }
+    }
+
+    /**
+     * Delete the segments up to some segment, whose edits must be in region storage.
+     * @param through The number of the last segment to delete. Must be before the segment being appended to.
+     */
+    public synchronized void delete(final long through) throws IOException {
+        while (!this.segments.isEmpty() && this.segments.firstKey() <= through) {
+            final Path file = this.fileOf(this.segments.pollFirstEntry().getKey());
+            this.diskBytes -= Files.size(file);
+            Files.delete(file);
+        }
+    }
+
+    // ##### QUERYING #####
+    /**
+     * Get the journaled edits of a chunk.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return A block index, as a short, and a type, as a byte, per edit, oldest first, or null if it has none.
+     */
+    public synchronized byte[] edits(final long pos) {
+        ByteArrayOutputStream all = null;
+        for (final LongHashMap<ByteArrayOutputStream> segmentEdits : this.segments.values()) {
+            final ByteArrayOutputStream chunkEdits = segmentEdits.get(pos);
+            if (chunkEdits != null) {
+                if (all == null) {
+                    all = new ByteArrayOutputStream();
+                }
+                all.write(chunkEdits.toByteArray(), 0, chunkEdits.size());
+            }
+        }
+        return all == null ? null : all.toByteArray();
+    }
+
+    /**
+     * Get the journaled edits of every chunk in the segments up to some segment.
+     * @param through The number of the last segment.
+     * @return The edits, by packed chunk position, as returned by {@link #edits(long)}.
+     */
+    public synchronized LongHashMap<byte[]> editsThrough(final long through) {
+        final LongHashMap<ByteArrayOutputStream> merged = new LongHashMap<>();
+        for (final Map.Entry<Long, LongHashMap<ByteArrayOutputStream>> entry
+                : this.segments.headMap(through, true).entrySet()) {
+            entry.getValue().forEach((chunkEdits, pos) -> {
+                ByteArrayOutputStream all = merged.get(pos);
+                if (all == null) {
+                    all = new ByteArrayOutputStream();
+                    merged.put(pos, all);
+                }
+                all.write(chunkEdits.toByteArray(), 0, chunkEdits.size());
+            });
+        }
+        final LongHashMap<byte[]> edits = new LongHashMap<>(merged.size());
+        merged.forEach((all, pos) -> edits.put(pos, all.toByteArray()));
+        return edits;
+    }
+
+    /**
+     * @return The number of bytes the segments on disk take up.
+     */
+    public synchronized long getDiskBytes() {
+        return this.diskBytes;
+    }
+
+    /**
+     * Commit, and close the segment being appended to.
+     */
+    public void close() throws IOException {
+        synchronized (this.commitLock) {
+            this.commit();
+            this.channel.close();
+        }
+    }
+
+    // ##### PRIVATE #####
+    /**
+     * Write a batch of edits to the segment being appended to, and force it to disk. {@link #commitLock} must be held.
+     * @param batch The edits, from the start of the buffer to its position.
+     */
+    private void write(final ByteBuffer batch) throws IOException {
+        if (batch.position() == 0) {
+            return;
+        }
+        final long start = System.nanoTime();
+        batch.flip();
+        this.crc.reset();
+        this.crc.update(batch.duplicate());
+        final ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_BYTES);
+        header.putInt(batch.remaining()).putInt((int)this.crc.getValue()).flip();
+        final long bytes = header.remaining() + batch.remaining();
+        final ByteBuffer[] buffers = new ByteBuffer[]{header, batch};
+        while (batch.hasRemaining()) {
+            this.channel.write(buffers);
+        }
+        this.channel.force(false);
+        synchronized (this) {
+            this.diskBytes += bytes;
+        }
+        COMMITS.increment();
+        COMMIT_DURATION.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Read the edits of a segment into memory, up to the end of its last whole batch.
+     * @param number The number of the segment.
+     */
+    private void replay(final long number) throws IOException {
+        final Path file = this.fileOf(number);
+        final ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        final LongHashMap<ByteArrayOutputStream> segmentEdits = new LongHashMap<>();
+        this.segments.put(number, segmentEdits);
+        this.diskBytes += data.remaining();
+        // A segment shorter than its header was being created when the process died, and holds no edits.
+        if (data.remaining() < HEADER_BYTES) {
+            return;
+        }
+        if (data.getInt() != MAGIC) {
+            throw new IOException("not an edit journal: " + file);
+        }
+        final int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported edit journal version " + version);
+        }
+        while (data.remaining() >= BATCH_HEADER_BYTES) {
+            final int length = data.getInt();
+            final int checksum = data.getInt();
+            if (length <= 0 || length % EDIT_BYTES != 0 || length > data.remaining()) {
+                return;
+            }
+            final ByteBuffer batch = data.slice();
+            batch.limit(length);
+            this.crc.reset();
+            this.crc.update(batch.duplicate());
+            if ((int)this.crc.getValue() != checksum) {
+                return;
+            }
+            while (batch.hasRemaining()) {
+                this.remember(segmentEdits, batch.getLong(), batch.getShort(), batch.get());
+                EDITS_REPLAYED.increment();
+            }
+            data.position(data.position() + length);
+        }
+    }
+
+    private void remember(final LongHashMap<ByteArrayOutputStream> segmentEdits, final long pos, final int index,
+                          final int type) {
+        ByteArrayOutputStream chunkEdits = segmentEdits.get(pos);
+        if (chunkEdits == null) {
+            chunkEdits = new ByteArrayOutputStream(CHUNK_EDIT_BYTES);
+            segmentEdits.put(pos, chunkEdits);
+        }
+        chunkEdits.write(index >> 8);
+        chunkEdits.write(index);
+        chunkEdits.write(type);
+    }
+
+    /**
+     * Create a segment file, and write its header.
+     */
+    private FileChannel openSegment(final long number) throws IOException {
+        final FileChannel channel = FileChannel.open(this.fileOf(number), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        channel.force(false);
+        synchronized (this) {
+            this.diskBytes += HEADER_BYTES;
+        }
+        return channel;
+    }
+
+    /**
+     * @return The numbers of the segment files in the directory, in order.
+     */
+    private List<Long> listSegments() throws IOException {
+        final List<Long> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(this.dir)) {
+            for (final Path file : (Iterable<Path>)files::iterator) {
+                final String name = file.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    numbers.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    private Path fileOf(final long number) {
+        return this.dir.resolve(PREFIX + number + SUFFIX);
+    }
+}
@@ -0,0 +1,275 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A store of one record of bytes per chunk, grouped into region files on disk.
+ *
+ * Each region is a cube of {@link #REGION_CHUNKS} chunks along each axis, stored in one file: a header giving the
+ * offset and length of each chunk's record, then the records back to back. Reading a record takes one positioned read
+ * once the region's header is cached. Writing records rewrites their regions whole, to a temporary file which then
+ * replaces the old one, so that a region on disk is always either the old one or the new one.
+ */
+public class RegionStore {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The number of chunks along each axis of a region.
+     */
+    public static final int REGION_CHUNKS = 8;
+
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * The base 2 logarithm of {@link #REGION_CHUNKS}.
+     */
+    private static final int REGION_BITS = 3;
+    private static final int CHUNKS_PER_REGION = REGION_CHUNKS * REGION_CHUNKS * REGION_CHUNKS;
+    private static final int MAGIC = 0x52435247;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + CHUNKS_PER_REGION * 2 * Integer.BYTES;
+    private static final String SUFFIX = ".region";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    // ##### PRIVATE FINAL #####
+    private final Path dir;
+
+    /**
+     * The headers of the regions read so far, by packed region position: the offset and then the length of each
+     * chunk's record, or zeroes if it has none.
+     */
+    private final LongHashMap<int[]> headers;
+
+    /**
+     * The open files of the regions read so far, by packed region position.
+     */
+    private final LongHashMap<FileChannel> channels;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a store in some directory, creating the directory if needed.
+     * @param dir The directory.
+     */
+    public RegionStore(final Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        this.headers = new LongHashMap<>();
+        this.channels = new LongHashMap<>();
+    }
+
+    // ##### READING #####
+    /**
+     * Read the record of a chunk.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return The record, or null if the chunk has none.
+     */
+    public synchronized byte[] read(final long pos) throws IOException {
+        final long region = regionOf(pos);
+        final int[] header = this.header(region);
+        final int index = indexOf(pos);
+        final int length = header[2 * index + 1];
+        if (length == 0) {
+            return null;
+        }
+        return this.readAt(region, header[2 * index], length);
+    }
+
+    // ##### WRITING #####
+    /**
+     * Write the records of some chunks, replacing any they had.
+     * @param records The records, by packed chunk position. See {@link ChunkPos}. An empty record removes the chunk's
+     *                record.
+     */
+    public synchronized void write(final LongHashMap<byte[]> records) throws IOException {
+        final LongHashMap<List<Long>> byRegion = new LongHashMap<>();
+        records.forEach((record, pos) -> {
+            final long region = regionOf(pos);
+            List<Long> positions = byRegion.get(region);
+            if (positions == null) {
+                positions = new ArrayList<>();
+                byRegion.put(region, positions);
+            }
+            positions.add(pos);
+        });
+        final List<Long> regions = new ArrayList<>(byRegion.size());
+        byRegion.forEach((positions, region) -> regions.add(region));
+        for (final long region : regions) {
+            this.writeRegion(region, byRegion.get(region), records);
+        }
+    }
+
+    /**
+     * @return The number of bytes the region files take up.
+     */
+    public synchronized long getDiskBytes() throws IOException {
+        long bytes = 0;
+        try (Stream<Path> files = Files.list(this.dir)) {
+            for (final Path file : (Iterable<Path>)files::iterator) {
+                if (file.getFileName().toString().endsWith(SUFFIX)) {
+                    bytes += Files.size(file);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Close the files of this store. It may still be used afterwards, and reopens them as needed.
+     */
+    public synchronized void close() throws IOException {
+        final List<FileChannel> open = new ArrayList<>(this.channels.size());
+        this.channels.forEachValue(open::add);
+        for (final FileChannel channel : open) {
+            channel.close();
+        }
+        this.channels.clear();
+        this.headers.clear();
+    }
+
+    // ##### PRIVATE #####
+    private void writeRegion(final long region, final List<Long> positions, final LongHashMap<byte[]> records)
+            throws IOException {
+        final byte[][] contents = new byte[CHUNKS_PER_REGION][];
+        final int[] header = this.header(region);
+        for (int index = 0; index < CHUNKS_PER_REGION; index++) {
+            if (header[2 * index + 1] != 0) {
+                contents[index] = this.readAt(region, header[2 * index], header[2 * index + 1]);
+            }
+        }
+        for (final long pos : positions) {
+            final byte[] record = records.get(pos);
+            contents[indexOf(pos)] = record.length == 0 ? null : record;
+        }
+        int offset = HEADER_BYTES;
+        final int[] newHeader = new int[2 * CHUNKS_PER_REGION];
+        for (int index = 0; index < CHUNKS_PER_REGION; index++) {
+            if (contents[index] != null) {
+                newHeader[2 * index] = offset;
+                newHeader[2 * index + 1] = contents[index].length;
+                offset += contents[index].length;
+            }
+        }
+        final ByteBuffer data = ByteBuffer.allocate(offset);
+        data.putInt(MAGIC).putInt(VERSION);
+        for (final int entry : newHeader) {
+            data.putInt(entry);
+        }
+        for (final byte[] record : contents) {
+            if (record != null) {
+                data.put(record);
+            }
+        }
+        data.flip();
+
+        final FileChannel old = this.channels.remove(region);
+        if (old != null) {
+            old.close();
+        }
+        this.headers.remove(region);
+        final Path file = this.fileOf(region);
+        if (offset == HEADER_BYTES) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        final Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Get the header of a region, reading it and opening the region's file if needed.
+     * @return The header. All zeroes if the region has no file.
+     */
+    private int[] header(final long region) throws IOException {
+        int[] header = this.headers.get(region);
+        if (header != null) {
+            return header;
+        }
+        header = new int[2 * CHUNKS_PER_REGION];
+        final FileChannel channel;
+        try {
+            channel = FileChannel.open(this.fileOf(region), StandardOpenOption.READ);
+        } catch (final NoSuchFileException e) {
+            return header;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) == -1) {
+                channel.close();
+                throw new IOException("region file is truncated");
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC) {
+            channel.close();
+            throw new IOException("not a region file");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            channel.close();
+            throw new IOException("unsupported region file version " + version);
+        }
+        for (int i = 0; i < header.length; i++) {
+            header[i] = buffer.getInt();
+        }
+        this.headers.put(region, header);
+        this.channels.put(region, channel);
+        return header;
+    }
+
+    private byte[] readAt(final long region, final long offset, final int length) throws IOException {
+        final ByteBuffer record = ByteBuffer.allocate(length);
+        final FileChannel channel = this.channels.get(region);
+        long position = offset;
+        while (record.hasRemaining()) {
+            final int read = channel.read(record, position);
+            if (read == -1) {
+                throw new IOException("region file is truncated");
+            }
+            position += read;
+        }
+        return record.array();
+    }
+
+    private Path fileOf(final long region) {
+        return this.dir.resolve("r." + BlockPos.getX(region) + "." + BlockPos.getY(region) + "."
+                + BlockPos.getZ(region) + SUFFIX);
+    }
+
+    /**
+     * @param pos The packed position of a chunk.
+     * @return The packed position of the region containing the chunk, in units of regions.
+     */
+    private static long regionOf(final long pos) {
+        return BlockPos.pack(BlockPos.getX(pos) >> REGION_BITS, BlockPos.getY(pos) >> REGION_BITS,
+                BlockPos.getZ(pos) >> REGION_BITS);
+    }
+
+    /**
+     * @param pos The packed position of a chunk.
+     * @return The index of the chunk within its region.
+     */
+    private static int indexOf(final long pos) {
+        final int mask = REGION_CHUNKS - 1;
+        return ((BlockPos.getX(pos) & mask) * REGION_CHUNKS + (BlockPos.getY(pos) & mask)) * REGION_CHUNKS
+                + (BlockPos.getZ(pos) & mask);
+    }
+}
@@ -0,0 +1,264 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.world.Chunk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A save worker, which periodically saves the chunks a generator has generated or loaded, in the background, and in
+ * between folds the edit journal into region storage whenever it grows large.
+ *
+ * A save begins by taking a snapshot of every chunk (see {@link Chunk#snapshot()}), which is cheap, so that the saved
+ * world is as it was at one moment however long the save takes, and no chunk is saved half-changed. The snapshots are
+ * then encoded a few per tick, and written once all are encoded, while the game keeps changing the chunks.
+ *
+ * Either way, the journal is rotated as the work begins, and the segments before the rotation are deleted once their
+ * edits are written: chunks not snapshotted are re-encoded from region storage with their journaled edits applied.
+ * Compacting the journal alone does only that, for just the chunks edited.
+ */
+public class SaveWorker extends Worker {
+    // ##### PRIVATE STATIC FINAL #####
+    private static final int CHUNKS_PER_TICK = 8;
+    private static final double TARGET_FREQ = 20;
+
+    /**
+     * The size of the journal at which it is compacted. In bytes.
+     */
+    private static final long COMPACTION_BYTES = 1 << 20;
+
+    /**
+     * How long beginning a save takes, snapshotting every chunk.
+     */
+    private static final Histogram SNAPSHOT_DURATION = Metrics.histogram("SaveWorker", "snapshotDuration");
+
+    /**
+     * How long saves and compactions take, from beginning to writing.
+     */
+    private static final Histogram SAVE_DURATION = Metrics.histogram("SaveWorker", "saveDuration");
+    private static final Histogram COMPACTION_DURATION = Metrics.histogram("SaveWorker", "compactionDuration");
+
+    // ##### PRIVATE FINAL #####
+    private final WorldStorage storage;
+    private final Generator generator;
+
+    /**
+     * The time between the end of one save and the beginning of the next. In seconds.
+     */
+    private final double interval;
+
+    // ##### PRIVATE #####
+    /**
+     * The snapshots of the save in progress, or null if no save or compaction is in progress.
+     */
+    private List<Chunk> snapshots;
+
+    /**
+     * The packed positions of the chunks not snapshotted which have journaled edits to write, and their edits.
+     */
+    private List<Long> folded;
+    private LongHashMap<byte[]> foldedEdits;
+
+    /**
+     * The last journal segment whose edits the work in progress writes.
+     */
+    private long journalSegment;
+
+    /**
+     * The number of {@link #snapshots} and then {@link #folded} chunks encoded so far, and their records.
+     */
+    private int encoded;
+    private LongHashMap<byte[]> records;
+
+    /**
+     * The time at which the work in progress began. As given by {@link System#nanoTime()}.
+     */
+    private long start;
+
+    /**
+     * The time since the last save ended. In seconds.
+     */
+    private double sinceSave;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a save worker. Its first save will begin once {@code interval} has passed.
+     * @param storage The saved world to save chunks in.
+     * @param generator The generator whose chunks to save.
+     * @param interval The time between the end of one save and the beginning of the next. In seconds.
+     */
+    public SaveWorker(final WorldStorage storage, final Generator generator, final double interval) {
+        this.storage = storage;
+        this.generator = generator;
+        this.interval = interval;
+    }
+
+    // ##### WORKER OVERRIDES #####
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.LOW;
+    }
+
+    @Override
+    public String toString() {
+        return "SaveWorker";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return TARGET_FREQ;
+    }
+
+    /**
+     * Continue the save or compaction in progress, or else begin a save if one is due, or a compaction if the journal
+     * is large.
+     */
+    @Override
+    protected void tick(final double interval) {
+        try {
+            if (this.snapshots != null) {
+                this.step();
+                return;
+            }
+            this.sinceSave += interval;
+            if (this.sinceSave >= this.interval) {
+                this.begin();
+            } else if (this.storage.getJournal().getDiskBytes() >= COMPACTION_BYTES) {
+                this.beginCompaction();
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException("could not save world", e);
+        }
+    }
+
+    // ##### SAVING #####
+    /**
+     * Begin a save, snapshotting every chunk. The work in progress, if any, is abandoned.
+     */
+    public void begin() throws IOException {
+        this.beginWork();
+        final long[] positions = this.generator.getGenerated();
+        this.snapshots = new ArrayList<>(positions.length);
+        for (final long pos : positions) {
+            // Hold the light engine's lock so that no chunk is snapshotted with its light half-updated.
+            synchronized (LightEngine.WORLD) {
+                final Chunk chunk = Chunk.existingChunk(pos);
+                // A chunk unloaded since is as stored, with its journaled edits, which are folded in below.
+                if (chunk == null) {
+                    continue;
+                }
+                this.snapshots.add(chunk.snapshot());
+            }
+            // The chunk had its journaled edits applied when it was loaded, so its snapshot has them.
+            this.foldedEdits.remove(pos);
+        }
+        this.foldedEdits.forEach((edits, pos) -> this.folded.add(pos));
+        SNAPSHOT_DURATION.record(System.nanoTime() - this.start);
+    }
+
+    /**
+     * Begin compacting the journal, writing the journaled edits of the chunks edited into region storage. The work in
+     * progress, if any, is abandoned.
+     */
+    public void beginCompaction() throws IOException {
+        this.beginWork();
+        this.snapshots = new ArrayList<>();
+        this.foldedEdits.forEach((edits, pos) -> this.folded.add(pos));
+    }
+
+    /**
+     * Encode the next few chunks of the save or compaction in progress, and write them if they were the last.
+     * @return Whether the save or compaction is finished.
+     */
+    public boolean step() throws IOException {
+        final int total = this.snapshots.size() + this.folded.size();
+        final int end = Math.min(this.encoded + CHUNKS_PER_TICK, total);
+        for (; this.encoded < end; this.encoded++) {
+            if (this.encoded < this.snapshots.size()) {
+                final Chunk snapshot = this.snapshots.get(this.encoded);
+                this.records.put(snapshot.getPos(), this.storage.encode(snapshot));
+            } else {
+                final long pos = this.folded.get(this.encoded - this.snapshots.size());
+                this.records.put(pos, this.storage.encodeWithEdits(pos, this.foldedEdits.get(pos)));
+            }
+        }
+        if (this.encoded < total) {
+            return false;
+        }
+        this.storage.write(this.records);
+        this.storage.getJournal().delete(this.journalSegment);
+        final boolean compaction = this.snapshots.isEmpty();
+        this.snapshots = null;
+        this.folded = null;
+        this.foldedEdits = null;
+        this.records = null;
+        if (compaction) {
+            COMPACTION_DURATION.record(System.nanoTime() - this.start);
+        } else {
+            this.sinceSave = 0;
+            SAVE_DURATION.record(System.nanoTime() - this.start);
+        }
+        return true;
+    }
+
+    /**
+     * Save every chunk, waiting until they are written. The work in progress, if any, is abandoned, since this save
+     * supersedes it.
+     */
+    public void saveNow() throws IOException {
+        this.begin();
+        this.finish();
+    }
+
+    /**
+     * Compact the journal, waiting until the edits are written. The work in progress, if any, is abandoned.
+     */
+    public void compactNow() throws IOException {
+        this.beginCompaction();
+        this.finish();
+    }
+
+    /**
+     * @return Whether a save or compaction is in progress.
+     */
+    public boolean isSaving() {
+        return this.snapshots != null;
+    }
+
+    // ##### PRIVATE #####
+    /**
+     * Rotate the journal and take the edits of the segments before the rotation.
+     */
+    private void beginWork() throws IOException {
+        this.start = System.nanoTime();
+        this.journalSegment = this.storage.getJournal().rotate();
+        this.foldedEdits = this.storage.getJournal().editsThrough(this.journalSegment);
+        this.folded = new ArrayList<>(this.foldedEdits.size());
+        this.encoded = 0;
+        this.records = new LongHashMap<>();
+    }
+
+    private void finish() throws IOException {
+        boolean finished = false;
+        while (!finished) {
+            finished = this.step();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.blocks.Block;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.network.ChunkCodec;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A world saved on disk: its seed, and its chunks, in a {@link RegionStore}.
+ *
+ * The terrain a {@link Generator} makes depends only on its seed, so in {@link Mode#DELTA} mode a chunk is stored
+ * only as the blocks which differ from the terrain its seed generates: each block's index within the chunk and its
+ * type. Chunks which have not been edited are not stored at all. Loading a chunk regenerates it and then applies its
+ * edits. In {@link Mode#FULL} mode, every chunk saved is instead stored whole, encoded and compressed as for the
+ * network (see {@link ChunkCodec}), which costs far more disk but no generation to load.
+ *
+ * Light is not stored in delta mode, so chunks should be lit after loading, as {@link Generator#generateChunk(long)}
+ * does.
+ *
+ * Edits made since chunks were last saved are kept in an {@link EditJournal}, whose edits are applied to chunks as they
+ * are loaded, so that they survive the process dying. See {@link SaveWorker} for how they reach region storage.
+ */
+public class WorldStorage {
+    /**
+     * How chunks are stored.
+     */
+    public enum Mode {
+        /**
+         * Chunks are stored whole.
+         */
+        FULL,
+
+        /**
+         * Chunks are stored as their edits to the terrain generated from the seed.
+         */
+        DELTA
+    }
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final String WORLD_FILE = "world.dat";
+    private static final String REGIONS_DIR = "regions";
+    private static final int MAGIC = 0x52435744;
+    private static final int VERSION = 1;
+    private static final int WORLD_FILE_BYTES = 2 * Integer.BYTES + 1 + Long.BYTES;
+
+    private static final int BLOCKS = Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS;
+    private static final int EDIT_BYTES = Short.BYTES + 1;
+
+    private static final Counter CHUNKS_SAVED = Metrics.counter("WorldStorage", "chunksSaved");
+    private static final Counter BYTES_SAVED = Metrics.counter("WorldStorage", "bytesSaved");
+    private static final Counter CHUNKS_LOADED = Metrics.counter("WorldStorage", "chunksLoaded");
+    private static final Histogram LOAD_DURATION = Metrics.histogram("WorldStorage", "loadDuration");
+
+    // ##### PRIVATE FINAL #####
+    private final Path dir;
+    private final Mode mode;
+    private final long seed;
+    private final RegionStore regions;
+    private final EditJournal journal;
+
+    /**
+     * The generator of the terrain chunks' edits are relative to.
+     */
+    private final Generator generator;
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+
+    /**
+     * Scratch space for a chunk's edits as block indices and types.
+     */
+    private final short[] editIndices;
+    private final byte[] editTypes;
+
+    // ##### CONSTRUCTORS #####
+    private WorldStorage(final Path dir, final Mode mode, final long seed) throws IOException {
+        this.dir = dir;
+        this.mode = mode;
+        this.seed = seed;
+        this.regions = new RegionStore(dir.resolve(REGIONS_DIR));
+        this.journal = new EditJournal(dir, EditJournal.DEFAULT_COMMIT_INTERVAL);
+        this.generator = new Generator(seed);
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.inflater = new Inflater();
+        this.editIndices = new short[BLOCKS];
+        this.editTypes = new byte[BLOCKS];
+    }
+
+    /**
+     * Create a new saved world.
+     * @param dir The directory to save it in, which is created if needed and must not hold a saved world already.
+     * @param mode How to store chunks.
+     * @param seed The seed of the world's terrain.
+     * @return The saved world, with no chunks.
+     */
+    public static WorldStorage create(final Path dir, final Mode mode, final long seed) throws IOException {
+        if (WorldStorage.exists(dir)) {
+            throw new IOException("a world is already saved in " + dir);
+        }
+        Files.createDirectories(dir);
+        final ByteBuffer header = ByteBuffer.allocate(WORLD_FILE_BYTES);
+        header.putInt(MAGIC).putInt(VERSION).put((byte)mode.ordinal()).putLong(seed);
+        Files.write(dir.resolve(WORLD_FILE), header.array());
+        return new WorldStorage(dir, mode, seed);
+    }
+
+    /**
+     * Open a saved world.
+     * @param dir The directory it is saved in.
+     * @return The saved world.
+     */
+    public static WorldStorage open(final Path dir) throws IOException {
+        final ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(dir.resolve(WORLD_FILE)));
+        if (header.remaining() != WORLD_FILE_BYTES || header.getInt() != MAGIC) {
+            throw new IOException("not a saved world");
+        }
+        final int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported saved world version " + version);
+        }
+        final int mode = header.get();
+        if (mode < 0 || mode >= Mode.values().length) {
+            throw new IOException("saved world has unknown storage mode " + mode);
+        }
+        return new WorldStorage(dir, Mode.values()[mode], header.getLong());
+    }
+
+    /**
+     * Return whether a world is saved in some directory.
+     * @param dir The directory.
+     * @return Whether a world is saved in {@code dir}.
+     */
+    public static boolean exists(final Path dir) {
+        return Files.exists(dir.resolve(WORLD_FILE));
+    }
+
+    // ##### LOADING #####
+    /**
+     * Fill a chunk with its saved blocks, or with generated terrain if it has never been saved, and then apply its
+     * journaled edits.
+     * @param chunk The chunk, which must hold only air.
+     */
+    public synchronized void load(final Chunk chunk) throws IOException {
+        final long start = System.nanoTime();
+        this.loadSaved(chunk);
+        final byte[] edits = this.journal.edits(chunk.getPos());
+        if (edits != null) {
+            this.putEdits(ByteBuffer.wrap(edits), edits.length / EDIT_BYTES, chunk);
+        }
+        CHUNKS_LOADED.increment();
+        LOAD_DURATION.record(System.nanoTime() - start);
+    }
+
+    // ##### JOURNALING #####
+    /**
+     * Journal an edit which has been made to a chunk. See {@link EditJournal}.
+     * @param block The block which was put.
+     */
+    public void journal(final Block block) {
+        final int x = block.getPos().getXInt();
+        final int y = block.getPos().getYInt();
+        final int z = block.getPos().getZInt();
+        final long pos = ChunkPos.containing(x, y, z);
+        final int index = ((x - ChunkPos.anchorX(pos)) * Chunk.BLOCKS + (y - ChunkPos.anchorY(pos))) * Chunk.BLOCKS
+                + (z - ChunkPos.anchorZ(pos));
+        this.journal.append(pos, index, ChunkCodec.typeOf(block));
+    }
+
+    /**
+     * @return The journal of edits made since chunks were saved.
+     */
+    public EditJournal getJournal() {
+        return this.journal;
+    }
+
+    // ##### SAVING #####
+    /**
+     * Save some chunks, replacing what was saved of them before.
+     * @param chunks The chunks.
+     */
+    public synchronized void save(final Iterable<Chunk> chunks) throws IOException {
+        final LongHashMap<byte[]> records = new LongHashMap<>();
+        for (final Chunk chunk : chunks) {
+            records.put(chunk.getPos(), this.encode(chunk));
+        }
+        this.write(records);
+    }
+
+    /**
+     * Encode a chunk for saving, as {@link #save(Iterable)} does. Saving in two steps lets the encoding, which is
+     * most of the work, be spread out.
+     * @param chunk The chunk. It must not change while it is encoded. See {@link Chunk#snapshot()}.
+     * @return The chunk's record, to pass to {@link #write(LongHashMap)}.
+     */
+    public synchronized byte[] encode(final Chunk chunk) {
+        final byte[] record = this.mode == Mode.FULL ? this.encodeFull(chunk) : this.encodeEdits(chunk);
+        CHUNKS_SAVED.increment();
+        BYTES_SAVED.add(record.length);
+        return record;
+    }
+
+    /**
+     * Encode a chunk as it is saved with some edits applied, ignoring the journal, for folding journaled edits into
+     * region storage without the chunk being loaded.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @param edits The edits, as returned by {@link EditJournal#edits(long)}.
+     * @return The chunk's record, to pass to {@link #write(LongHashMap)}.
+     */
+    public synchronized byte[] encodeWithEdits(final long pos, final byte[] edits) throws IOException {
+        final Chunk chunk = Chunk.detached(pos);
+        this.loadSaved(chunk);
+        this.putEdits(ByteBuffer.wrap(edits), edits.length / EDIT_BYTES, chunk);
+        return this.encode(chunk);
+    }
+
+    /**
+     * Save chunks encoded by {@link #encode(Chunk)}, replacing what was saved of them before.
+     * @param records The chunks' records, by packed chunk position. See {@link ChunkPos}.
+     */
+    public synchronized void write(final LongHashMap<byte[]> records) throws IOException {
+        this.regions.write(records);
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return How chunks are stored.
+     */
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * @return The seed of the world's terrain.
+     */
+    public long getSeed() {
+        return this.seed;
+    }
+
+    /**
+     * @return The number of bytes the saved world takes up.
+     */
+    public long getDiskBytes() throws IOException {
+        return Files.size(this.dir.resolve(WORLD_FILE)) + this.regions.getDiskBytes() + this.journal.getDiskBytes();
+    }
+
+    /**
+     * Close the files of this saved world.
+     */
+    public synchronized void close() throws IOException {
+        this.journal.close();
+        this.regions.close();
+        this.deflater.end();
+        this.inflater.end();
+    }
+
+    // ##### PRIVATE #####
+    /**
+     * Fill a chunk with its saved blocks, or with generated terrain if it has never been saved.
+     * @param chunk The chunk, which must hold only air.
+     */
+    private void loadSaved(final Chunk chunk) throws IOException {
+        final byte[] record = this.regions.read(chunk.getPos());
+        if (this.mode == Mode.FULL && record != null) {
+            final ByteBuffer src = ByteBuffer.wrap(record);
+            final int decodedLength = src.getInt();
+            ChunkCodec.decode(ChunkCodec.decompress(src, decodedLength, this.inflater), chunk);
+        } else {
+            this.generator.generate(chunk);
+            if (record != null) {
+                this.applyEdits(ByteBuffer.wrap(record), chunk);
+            }
+        }
+    }
+
+    private byte[] encodeFull(final Chunk chunk) {
+        final byte[] data = ChunkCodec.encode(chunk);
+        final byte[] compressed = ChunkCodec.compress(data, this.deflater);
+        return ByteBuffer.allocate(Integer.BYTES + compressed.length).putInt(data.length).put(compressed).array();
+    }
+
+    /**
+     * Encode the blocks of a chunk which differ from the generated terrain.
+     * @return The edits, or an empty array if there are none.
+     */
+    private byte[] encodeEdits(final Chunk chunk) {
+        final Chunk baseline = Chunk.detached(chunk.getPos());
+        this.generator.generate(baseline);
+        final int anchorX = ChunkPos.anchorX(chunk.getPos());
+        final int anchorY = ChunkPos.anchorY(chunk.getPos());
+        final int anchorZ = ChunkPos.anchorZ(chunk.getPos());
+        int numEdits = 0;
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                    final int type = ChunkCodec.typeOf(chunk.getBlock(x, y, z));
+                    if (type != ChunkCodec.typeOf(baseline.getBlock(x, y, z))) {
+                        this.editIndices[numEdits] = (short)chunk.lightIndex(x, y, z);
+                        this.editTypes[numEdits] = (byte)type;
+                        numEdits++;
+                    }
+                }
+            }
+        }
+        if (numEdits == 0) {
+            return new byte[0];
+        }
+        final ByteBuffer record = ByteBuffer.allocate(Short.BYTES + numEdits * EDIT_BYTES);
+        record.putShort((short)numEdits);
+        for (int i = 0; i < numEdits; i++) {
+            record.putShort(this.editIndices[i]).put(this.editTypes[i]);
+        }
+        return record.array();
+    }
+
+    private void applyEdits(final ByteBuffer record, final Chunk chunk) throws IOException {
+        final int numEdits = record.getShort();
+        if (numEdits <= 0 || numEdits > BLOCKS || record.remaining() != numEdits * EDIT_BYTES) {
+            throw new IOException("saved chunk has a corrupt edit list");
+        }
+        this.putEdits(record, numEdits, chunk);
+    }
+
+    /**
+     * Apply edits, each a block index as a short and a type as a byte, to a chunk.
+     */
+    private void putEdits(final ByteBuffer edits, final int numEdits, final Chunk chunk) throws IOException {
+        final int anchorX = ChunkPos.anchorX(chunk.getPos());
+        final int anchorY = ChunkPos.anchorY(chunk.getPos());
+        final int anchorZ = ChunkPos.anchorZ(chunk.getPos());
+        for (int i = 0; i < numEdits; i++) {
+            final int index = edits.getShort();
+            final int type = edits.get();
+            if (index < 0 || index >= BLOCKS) {
+                throw new IOException("saved chunk has an edit outside it");
+            }
+            final int x = anchorX + index / (Chunk.BLOCKS * Chunk.BLOCKS);
+            final int y = anchorY + index / Chunk.BLOCKS % Chunk.BLOCKS;
+            final int z = anchorZ + index % Chunk.BLOCKS;
+            chunk.putBlock(ChunkCodec.newBlock(type, new Vector(x, y, z)));
+        }
+    }
+}
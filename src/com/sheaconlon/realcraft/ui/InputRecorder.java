@@ -0,0 +1,78 @@
+package com.sheaconlon.realcraft.ui;
+
+import com.sheaconlon.realcraft.entities.Player;
+
+import java.io.IOException;
+
+/**
+ * A source of input which passes on the input of another source while writing it to an input trace, along with the
+ * player's state, so that the session can be replayed by an {@link InputReplayer}.
+ *
+ * A record is written on each poll, before the user interface responds to the input, so each record holds the
+ * player's state as of the end of the previous tick.
+ */
+public class InputRecorder implements InputSource {
+    private final InputSource source;
+    private final InputTraceWriter writer;
+
+    /**
+     * The cursor's position at the last poll, and scratch space for its current position.
+     */
+    private final double[] lastCursorPosition;
+    private final double[] cursorPosition;
+
+    /**
+     * The time of the last poll, as given by {@link System#nanoTime()}, or 0 before the first.
+     */
+    private long lastPollTime;
+
+    /**
+     * Create an input recorder.
+     * @param source The source of input to record.
+     * @param writer The writer to write the trace with. Closed by {@link #close()}.
+     */
+    public InputRecorder(final InputSource source, final InputTraceWriter writer) {
+        this.source = source;
+        this.writer = writer;
+        this.lastCursorPosition = new double[2];
+        this.cursorPosition = new double[2];
+        this.source.getCursorPosition(this.lastCursorPosition);
+        this.lastPollTime = 0;
+    }
+
+    @Override
+    public void poll() {
+        this.source.poll();
+        final long now = System.nanoTime();
+        this.source.getCursorPosition(this.cursorPosition);
+        try {
+            this.writer.write(this.lastPollTime == 0 ? 0 : now - this.lastPollTime, this.source,
+                    this.cursorPosition[0] - this.lastCursorPosition[0],
+                    this.cursorPosition[1] - this.lastCursorPosition[1],
+                    Player.PLAYER.getPosX(), Player.PLAYER.getPosY(), Player.PLAYER.getPosZ(),
+                    Player.PLAYER.getOrient(), Player.PLAYER.getVertOrient());
+        } catch (final IOException e) {
+            throw new RuntimeException("could not write input trace", e);
+        }
+        this.lastPollTime = now;
+        this.lastCursorPosition[0] = this.cursorPosition[0];
+        this.lastCursorPosition[1] = this.cursorPosition[1];
+    }
+
+    @Override
+    public boolean isPressed(final Control control) {
+        return this.source.isPressed(control);
+    }
+
+    @Override
+    public void getCursorPosition(final double[] dest) {
+        this.source.getCursorPosition(dest);
+    }
+
+    /**
+     * Finish the trace.
+     */
+    public void close() throws IOException {
+        this.writer.close();
+    }
+}
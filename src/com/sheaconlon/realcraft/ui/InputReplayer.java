@@ -0,0 +1,115 @@
+package com.sheaconlon.realcraft.ui;
+
+import com.sheaconlon.realcraft.entities.Player;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A source of input which replays an input trace written by an {@link InputRecorder}, one record per poll.
+ *
+ * On each poll the player is put back into the state recorded for that tick before the recorded input is reported,
+ * so the player follows the same flight on every replay however the ticks are timed and whatever the simulator does
+ * between them. Once the trace runs out, no controls are held and the cursor stays still.
+ */
+public class InputReplayer implements InputSource {
+    private final InputTraceReader reader;
+
+    /**
+     * The source polled alongside the trace, such as a window whose events must still be handled, or null if none.
+     * Its input is ignored.
+     */
+    private final InputSource events;
+
+    private final CountDownLatch finished;
+
+    /**
+     * The cursor's position, as the sum of the recorded changes so far.
+     */
+    private double cursorX;
+    private double cursorY;
+
+    /**
+     * The number of records replayed so far.
+     */
+    private long ticks;
+
+    /**
+     * Create an input replayer.
+     * @param reader The reader of the trace to replay. Closed by {@link #close()}.
+     * @param events A source to poll alongside the trace, whose input is ignored, or null.
+     */
+    public InputReplayer(final InputTraceReader reader, final InputSource events) {
+        this.reader = reader;
+        this.events = events;
+        this.finished = new CountDownLatch(1);
+        this.cursorX = 0;
+        this.cursorY = 0;
+        this.ticks = 0;
+    }
+
+    @Override
+    public void poll() {
+        if (this.events != null) {
+            this.events.poll();
+        }
+        if (this.isFinished()) {
+            return;
+        }
+        final boolean read;
+        try {
+            read = this.reader.next();
+        } catch (final IOException e) {
+            throw new RuntimeException("could not read input trace", e);
+        }
+        if (!read) {
+            this.finished.countDown();
+            return;
+        }
+        this.ticks++;
+        Player.PLAYER.setPos(this.reader.getX(), this.reader.getY(), this.reader.getZ());
+        Player.PLAYER.setOrient(this.reader.getOrient());
+        Player.PLAYER.setVertOrient(this.reader.getVertOrient());
+        this.cursorX += this.reader.getCursorDeltaX();
+        this.cursorY += this.reader.getCursorDeltaY();
+    }
+
+    @Override
+    public boolean isPressed(final Control control) {
+        return !this.isFinished() && this.reader.isPressed(control);
+    }
+
+    @Override
+    public void getCursorPosition(final double[] dest) {
+        dest[0] = this.cursorX;
+        dest[1] = this.cursorY;
+    }
+
+    /**
+     * @return Whether the trace has run out.
+     */
+    public boolean isFinished() {
+        return this.finished.getCount() == 0;
+    }
+
+    /**
+     * Wait for the trace to run out.
+     */
+    public void awaitFinished() throws InterruptedException {
+        this.finished.await();
+    }
+
+    /**
+     * @return The number of records replayed so far.
+     */
+    public long getTicks() {
+        return this.ticks;
+    }
+
+    /**
+     * Close the trace.
+     */
+    public void close() throws IOException {
+        this.reader.close();
+    }
+}
@@ -0,0 +1,31 @@
+package com.sheaconlon.realcraft.ui;
+
+/**
+ * A source of the input which drives a user interface, such as a window's keyboard and cursor.
+ */
+public interface InputSource {
+    /**
+     * The controls a user can hold down.
+     */
+    enum Control {
+        FORWARD, LEFT, BACKWARD, RIGHT, JUMP
+    }
+
+    /**
+     * Take in the input which has arrived since the last call to this method.
+     */
+    void poll();
+
+    /**
+     * Return whether a control is being held down, as of the last call to {@link #poll()}.
+     * @param control The control.
+     * @return Whether {@code control} is being held down.
+     */
+    boolean isPressed(Control control);
+
+    /**
+     * Get the position of the cursor, without allocating.
+     * @param dest An array to put the x- and y-coordinates of the cursor into.
+     */
+    void getCursorPosition(double[] dest);
+}
@@ -0,0 +1,48 @@
+package com.sheaconlon.realcraft.ui;
+
+/**
+ * The binary format of input traces, which record what a user interface's input was on each tick and where the
+ * player was, so that a session can be replayed. See {@link InputTraceWriter} and {@link InputTraceReader}.
+ *
+ * A trace is a header followed by one record per tick, all big-endian. The header is the int {@link #MAGIC}, the
+ * byte {@link #VERSION}, and the player's starting x-, y- and z-coordinates, orientation and vertical orientation as
+ * doubles. Each record is:
+ * <ul>
+ *     <li>the nanoseconds since the previous record, as an unsigned variable-length long of 7 bits per byte;</li>
+ *     <li>a byte of flags, whose low bits say which controls were held, one bit per {@link InputSource.Control} in
+ *     order, and whose high bits say which of the following groups are present;</li>
+ *     <li>if {@link #CURSOR_MOVED}, the change in the cursor's x- and y-coordinates as floats;</li>
+ *     <li>if {@link #POSITION_CHANGED}, the change in the player's x-, y- and z-coordinates as floats;</li>
+ *     <li>if {@link #ORIENTATION_CHANGED}, the change in the player's orientation and vertical orientation as
+ *     floats.</li>
+ * </ul>
+ * So a tick on which nothing happened takes two or three bytes.
+ *
+ * The changes in the player's state are relative to the state rebuilt by adding up the earlier changes as doubles,
+ * not to the true earlier state, so rounding to floats never accumulates.
+ */
+final class InputTrace {
+    static final int MAGIC = 0x52435452;
+    static final byte VERSION = 1;
+
+    static final int CURSOR_MOVED = 1 << 5;
+    static final int POSITION_CHANGED = 1 << 6;
+    static final int ORIENTATION_CHANGED = 1 << 7;
+
+    static {
+        if (InputSource.Control.values().length > 5) {
+            throw new RuntimeException("too many controls to fit in an input trace's flags");
+        }
+    }
+
+    private InputTrace() {
+    }
+
+    /**
+     * @param control A control.
+     * @return The flag bit of {@code control}.
+     */
+    static int flag(final InputSource.Control control) {
+        return 1 << control.ordinal();
+    }
+}
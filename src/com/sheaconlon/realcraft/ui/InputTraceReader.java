@@ -0,0 +1,186 @@
+package com.sheaconlon.realcraft.ui;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A reader of input traces, which steps through their records one at a time without allocating. See
+ * {@link InputTrace} for the format.
+ */
+public class InputTraceReader implements Closeable {
+    private final DataInputStream in;
+
+    /**
+     * Whether the header has been read.
+     */
+    private boolean started;
+
+    /**
+     * The contents of the current record, with the player's state rebuilt.
+     */
+    private long interval;
+    private int flags;
+    private double cursorDeltaX;
+    private double cursorDeltaY;
+    private double x;
+    private double y;
+    private double z;
+    private double orient;
+    private double vertOrient;
+
+    /**
+     * Create an input trace reader.
+     * @param in The stream to read from.
+     */
+    public InputTraceReader(final InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * Create an input trace reader which reads from a file.
+     * @param path The path of the file.
+     * @return The reader.
+     */
+    public static InputTraceReader open(final Path path) throws IOException {
+        return new InputTraceReader(Files.newInputStream(path));
+    }
+
+    /**
+     * Move to the next record.
+     * @return Whether there was a next record. If not, the getters keep returning the contents of the last one.
+     */
+    public boolean next() throws IOException {
+        if (!this.started) {
+            final int magic;
+            try {
+                magic = this.in.readInt();
+            } catch (final EOFException e) {
+                return false;
+            }
+            if (magic != InputTrace.MAGIC) {
+                throw new IOException("not an input trace");
+            }
+            final byte version = this.in.readByte();
+            if (version != InputTrace.VERSION) {
+                throw new IOException("unsupported input trace version " + version);
+            }
+            this.x = this.in.readDouble();
+            this.y = this.in.readDouble();
+            this.z = this.in.readDouble();
+            this.orient = this.in.readDouble();
+            this.vertOrient = this.in.readDouble();
+            this.started = true;
+        }
+        final int first = this.in.read();
+        if (first == -1) {
+            return false;
+        }
+        this.interval = this.readVarLong(first);
+        this.flags = this.in.readUnsignedByte();
+        this.cursorDeltaX = 0;
+        this.cursorDeltaY = 0;
+        if ((this.flags & InputTrace.CURSOR_MOVED) != 0) {
+            this.cursorDeltaX = this.in.readFloat();
+            this.cursorDeltaY = this.in.readFloat();
+        }
+        if ((this.flags & InputTrace.POSITION_CHANGED) != 0) {
+            this.x += this.in.readFloat();
+            this.y += this.in.readFloat();
+            this.z += this.in.readFloat();
+        }
+        if ((this.flags & InputTrace.ORIENTATION_CHANGED) != 0) {
+            this.orient += this.in.readFloat();
+            this.vertOrient += this.in.readFloat();
+        }
+        return true;
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The time between the previous record and the current one. In nanoseconds.
+     */
+    public long getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * @param control A control.
+     * @return Whether {@code control} was held down in the current record.
+     */
+    public boolean isPressed(final InputSource.Control control) {
+        return (this.flags & InputTrace.flag(control)) != 0;
+    }
+
+    /**
+     * @return The change in the cursor's x-coordinate in the current record. In pixels.
+     */
+    public double getCursorDeltaX() {
+        return this.cursorDeltaX;
+    }
+
+    /**
+     * @return The change in the cursor's y-coordinate in the current record. In pixels.
+     */
+    public double getCursorDeltaY() {
+        return this.cursorDeltaY;
+    }
+
+    /**
+     * @return The x-coordinate of the player in the current record.
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * @return The y-coordinate of the player in the current record.
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     * @return The z-coordinate of the player in the current record.
+     */
+    public double getZ() {
+        return this.z;
+    }
+
+    /**
+     * @return The orientation of the player in the current record.
+     */
+    public double getOrient() {
+        return this.orient;
+    }
+
+    /**
+     * @return The vertical orientation of the player in the current record.
+     */
+    public double getVertOrient() {
+        return this.vertOrient;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.in.close();
+    }
+
+    // ##### PRIVATE #####
+    private long readVarLong(final int first) throws IOException {
+        long value = first & 0x7F;
+        int b = first;
+        int shift = 7;
+        while ((b & 0x80) != 0) {
+            b = this.in.readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,137 @@
+package com.sheaconlon.realcraft.ui;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A writer of input traces. See {@link InputTrace} for the format.
+ */
+public class InputTraceWriter implements Closeable {
+    private final DataOutputStream out;
+
+    /**
+     * Whether the header has been written.
+     */
+    private boolean started;
+
+    /**
+     * The player's state as a reader will rebuild it from what has been written so far.
+     */
+    private double x;
+    private double y;
+    private double z;
+    private double orient;
+    private double vertOrient;
+
+    /**
+     * Create an input trace writer. Nothing is written until the first record.
+     * @param out The stream to write to.
+     */
+    public InputTraceWriter(final OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    /**
+     * Create an input trace writer which writes to a new file, replacing any file already there.
+     * @param path The path of the file.
+     * @return The writer.
+     */
+    public static InputTraceWriter create(final Path path) throws IOException {
+        return new InputTraceWriter(Files.newOutputStream(path));
+    }
+
+    /**
+     * Write a record of one tick.
+     * @param interval The time since the last record. In nanoseconds.
+     * @param input The source of the input on the tick, already polled.
+     * @param cursorDeltaX The change in the cursor's x-coordinate since the last record. In pixels.
+     * @param cursorDeltaY The change in the cursor's y-coordinate since the last record. In pixels.
+     * @param x The x-coordinate of the player.
+     * @param y The y-coordinate of the player.
+     * @param z The z-coordinate of the player.
+     * @param orient The orientation of the player.
+     * @param vertOrient The vertical orientation of the player.
+     */
+    public void write(final long interval, final InputSource input, final double cursorDeltaX,
+                      final double cursorDeltaY, final double x, final double y, final double z,
+                      final double orient, final double vertOrient) throws IOException {
+        if (!this.started) {
+            this.out.writeInt(InputTrace.MAGIC);
+            this.out.writeByte(InputTrace.VERSION);
+            this.out.writeDouble(x);
+            this.out.writeDouble(y);
+            this.out.writeDouble(z);
+            this.out.writeDouble(orient);
+            this.out.writeDouble(vertOrient);
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.orient = orient;
+            this.vertOrient = vertOrient;
+            this.started = true;
+        }
+        final float dx = (float)(x - this.x);
+        final float dy = (float)(y - this.y);
+        final float dz = (float)(z - this.z);
+        final float dOrient = (float)(orient - this.orient);
+        final float dVertOrient = (float)(vertOrient - this.vertOrient);
+        int flags = 0;
+        for (final InputSource.Control control : InputSource.Control.values()) {
+            if (input.isPressed(control)) {
+                flags |= InputTrace.flag(control);
+            }
+        }
+        if (cursorDeltaX != 0 || cursorDeltaY != 0) {
+            flags |= InputTrace.CURSOR_MOVED;
+        }
+        if (dx != 0 || dy != 0 || dz != 0) {
+            flags |= InputTrace.POSITION_CHANGED;
+        }
+        if (dOrient != 0 || dVertOrient != 0) {
+            flags |= InputTrace.ORIENTATION_CHANGED;
+        }
+
+        InputTraceWriter.writeVarLong(this.out, Math.max(interval, 0));
+        this.out.writeByte(flags);
+        if ((flags & InputTrace.CURSOR_MOVED) != 0) {
+            this.out.writeFloat((float)cursorDeltaX);
+            this.out.writeFloat((float)cursorDeltaY);
+        }
+        if ((flags & InputTrace.POSITION_CHANGED) != 0) {
+            this.out.writeFloat(dx);
+            this.out.writeFloat(dy);
+            this.out.writeFloat(dz);
+            this.x += dx;
+            this.y += dy;
+            this.z += dz;
+        }
+        if ((flags & InputTrace.ORIENTATION_CHANGED) != 0) {
+            this.out.writeFloat(dOrient);
+            this.out.writeFloat(dVertOrient);
+            this.orient += dOrient;
+            this.vertOrient += dVertOrient;
+        }
+    }
+
+    /**
+     * Flush everything written to the underlying stream and close it.
+     */
+    @Override
+    public void close() throws IOException {
+        this.out.close();
+    }
+
+    // ##### PRIVATE #####
+    private static void writeVarLong(final DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int)(value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+}
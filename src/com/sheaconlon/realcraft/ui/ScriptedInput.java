@@ -0,0 +1,58 @@
+package com.sheaconlon.realcraft.ui;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A source of input for a virtual player, which holds down a fixed set of controls and moves the cursor at a fixed
+ * rate, so that a user interface can drive the player without a window.
+ *
+ * Holding {@link InputSource.Control#FORWARD} while moving the cursor sideways walks the player in a circle, which
+ * keeps the chunk pipeline busy with chunks coming into and going out of range.
+ */
+public class ScriptedInput implements InputSource {
+    private final Set<Control> held;
+
+    /**
+     * The distance the cursor moves along each axis on each call to {@link #poll()}. In pixels.
+     */
+    private final double cursorStepX;
+    private final double cursorStepY;
+
+    private double cursorX;
+    private double cursorY;
+
+    /**
+     * Create a scripted input source.
+     * @param cursorStepX The distance the cursor should move along the x-axis on each poll. In pixels.
+     * @param cursorStepY The distance the cursor should move along the y-axis on each poll. In pixels.
+     * @param held The controls to hold down.
+     */
+    public ScriptedInput(final double cursorStepX, final double cursorStepY, final Control... held) {
+        this.held = EnumSet.noneOf(Control.class);
+        for (final Control control : held) {
+            this.held.add(control);
+        }
+        this.cursorStepX = cursorStepX;
+        this.cursorStepY = cursorStepY;
+        this.cursorX = 0;
+        this.cursorY = 0;
+    }
+
+    @Override
+    public void poll() {
+        this.cursorX += this.cursorStepX;
+        this.cursorY += this.cursorStepY;
+    }
+
+    @Override
+    public boolean isPressed(final Control control) {
+        return this.held.contains(control);
+    }
+
+    @Override
+    public void getCursorPosition(final double[] dest) {
+        dest[0] = this.cursorX;
+        dest[1] = this.cursorY;
+    }
+}
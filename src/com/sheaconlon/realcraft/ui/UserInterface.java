@@ -2,7 +2,7 @@ package com.sheaconlon.realcraft.ui;
 
 import com.sheaconlon.realcraft.concurrency.Worker;
 import com.sheaconlon.realcraft.entities.Player;
-import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.utilities.Vec3d;
 
 import org.lwjgl.glfw.GLFW;
 import org.lwjgl.glfw.GLFWWindowCloseCallbackI;
@@ -31,7 +31,7 @@ public class UserInterface extends Worker {
     /**
      * The desired speed of the user's movement, in blocks per second.
      */
-    private static final double SPEED_OF_MOVEMENT = 2;
+    public static final double SPEED_OF_MOVEMENT = 2;
 
     /**
      * The user interface's callback for window close events.
@@ -62,10 +62,15 @@ public class UserInterface extends Worker {
     }
 
     /**
-     * The window this user interface is displayed in.
+     * The window this user interface is displayed in, or null if it has none.
      */
     private final Window window;
 
+    /**
+     * The source of this user interface's input, usually its window.
+     */
+    private final InputSource input;
+
     /**
      * The user interface's callback for window close events.
      *
@@ -85,20 +90,58 @@ public class UserInterface extends Worker {
     /**
      * The most recently recorded cursor position, as an array with x- and y-coordinates.
      */
-    private double[] cursorPosition;
+    private final double[] cursorPosition;
+
+    /**
+     * Scratch space for the current cursor position and the change in the cursor's position.
+     */
+    private final double[] currentCursorPosition;
+    private final double[] cursorPositionDelta;
+
+    /**
+     * Scratch space for the displacement requested by movement input.
+     */
+    private final Vec3d displacement;
 
     /**
      * Construct a user interface.
      */
     public UserInterface() {
-        this.window = new Window();
-        // Save a strong reference to the callback so that it is not garbage collected.
+        this(new Window(), null);
+    }
+
+    /**
+     * Construct a user interface without a window, driven by some source of input. Its window-related methods must
+     * not be called.
+     * @param input The source of input.
+     */
+    public UserInterface(final InputSource input) {
+        this(null, input);
+    }
+
+    /**
+     * Construct a user interface.
+     * @param window The window to display the user interface in, which is shown, or null for none. If null, the
+     *               user interface's window-related methods must not be called.
+     * @param input The source of input, or null to take input from {@code window}. May be a source which polls
+     *              {@code window} for its events but takes input from elsewhere, such as an {@link InputReplayer}.
+     */
+    public UserInterface(final Window window, final InputSource input) {
+        this.window = window;
+        this.input = input == null ? window : input;
         this.windowCloseCallback = new UserInterface.WindowCloseCallback();
         this.keyCallback = new UserInterface.KeyCallback();
-        this.window.setWindowCloseCallback(this.windowCloseCallback);
-        this.window.setKeyCallback(this.keyCallback);
-        this.cursorPosition = this.window.getCursorPosition();
-        this.window.show();
+        this.cursorPosition = new double[2];
+        this.input.getCursorPosition(this.cursorPosition);
+        this.currentCursorPosition = new double[2];
+        this.cursorPositionDelta = new double[2];
+        this.displacement = new Vec3d();
+        if (this.window != null) {
+            // Save a strong reference to the callback so that it is not garbage collected.
+            this.window.setWindowCloseCallback(this.windowCloseCallback);
+            this.window.setKeyCallback(this.keyCallback);
+            this.window.show();
+        }
     }
 
     @Override
@@ -135,6 +178,14 @@ public class UserInterface extends Worker {
         return this.window.getDimensions();
     }
 
+    /**
+     * Get the dimensions of this user interface, without allocating.
+     * @param dest An array to put the width and height of this user interface in screen coordinates into.
+     */
+    public void getDimensions(final int[] dest) {
+        this.window.getDimensions(dest);
+    }
+
     /**
      * Get the handle of the window for this user interface.
      * @return The handle of the window for this user interface.
@@ -146,23 +197,22 @@ public class UserInterface extends Worker {
     /**
      * Get the change in the cursor's position since the last call to this method.
      * @return The change in the cursor's position since the last call to this method, as an array of changes
-     * in x- and y-coordinate.
+     * in x- and y-coordinate. Overwritten by the next call.
      */
     private double[] getCursorPositionDelta() {
-        final double[] currentCursorPosition = this.window.getCursorPosition();
-        final double[] delta = new double[]{
-                currentCursorPosition[0] - this.cursorPosition[0],
-                currentCursorPosition[1] - this.cursorPosition[1]
-        };
-        this.cursorPosition = currentCursorPosition;
-        return delta;
+        this.input.getCursorPosition(this.currentCursorPosition);
+        this.cursorPositionDelta[0] = this.currentCursorPosition[0] - this.cursorPosition[0];
+        this.cursorPositionDelta[1] = this.currentCursorPosition[1] - this.cursorPosition[1];
+        this.cursorPosition[0] = this.currentCursorPosition[0];
+        this.cursorPosition[1] = this.currentCursorPosition[1];
+        return this.cursorPositionDelta;
     }
 
     /**
      * Respond to input.
      */
     public void tick(final double elapsedTime) {
-        window.runCallbacks();
+        this.input.poll();
         this.respondToMovement(elapsedTime);
         this.respondToLooking(elapsedTime);
     }
@@ -171,7 +221,9 @@ public class UserInterface extends Worker {
      * Close the user interface.
      */
     public void close() {
-        this.window.close();
+        if (this.window != null) {
+            this.window.close();
+        }
     }
 
     /**
@@ -179,33 +231,40 @@ public class UserInterface extends Worker {
      * @param elapsedTime The estimated amount of time that has elapsed since the last call to this method, in
      *                    seconds.
      */
-    private void respondToMovement(final double elapsedTime) {
-        Vector displacement = new Vector(0, 0, 0);
-        if (this.window.wKeyIsPressed()) {
-            // towards positive x
-            displacement = Vector.add(displacement, new Vector(1, 0, 0));
+    void respondToMovement(final double elapsedTime) {
+        if (this.input.isPressed(InputSource.Control.JUMP)) {
+            Player.PLAYER.changeVelocity(0, 15 * elapsedTime, 0);
         }
-        if (this.window.aKeyIsPressed()) {
-            // towards negative z
-            displacement = Vector.add(displacement, new Vector(0, 0, -1));
+        final boolean moving = UserInterface.movementDisplacement(this.input.isPressed(InputSource.Control.FORWARD),
+                this.input.isPressed(InputSource.Control.LEFT), this.input.isPressed(InputSource.Control.BACKWARD),
+                this.input.isPressed(InputSource.Control.RIGHT),
+                Player.PLAYER.getOrient(), UserInterface.SPEED_OF_MOVEMENT * elapsedTime, this.displacement);
+        if (moving) {
+            Player.PLAYER.changePos(this.displacement.getX(), this.displacement.getY(), this.displacement.getZ());
         }
-        if (this.window.sKeyIsPressed()) {
-            // towards negative x
-            displacement = Vector.add(displacement, new Vector(-1, 0, 0));
-        }
-        if (this.window.dKeyIsPressed()) {
-            // towards positive z
-            displacement = Vector.add(displacement, new Vector(0, 0, 1));
-        }
-        if (this.window.spaceKeyIsPressed()) {
-            Player.PLAYER.changeVelocity(new Vector(0, 15 * elapsedTime, 0));
-        }
-        if (!displacement.equals(Vector.ZERO)) {
-            displacement = Vector.rotateHorizontal(displacement, Player.PLAYER.getOrient());
-            final double distance = UserInterface.SPEED_OF_MOVEMENT * elapsedTime;
-            displacement = Vector.scale(displacement, distance / displacement.mag());
-            Player.PLAYER.changePos(displacement);
+    }
+
+    /**
+     * Compute the displacement requested by movement keys.
+     * @param forward Whether the key for moving forward (towards positive x before rotation) is pressed.
+     * @param left Whether the key for moving left (towards negative z before rotation) is pressed.
+     * @param backward Whether the key for moving backward (towards negative x before rotation) is pressed.
+     * @param right Whether the key for moving right (towards positive z before rotation) is pressed.
+     * @param orient The orientation of the mover. See {@link com.sheaconlon.realcraft.world.WorldObject#getOrient()}.
+     * @param distance The distance to move.
+     * @param dest A vector to put the displacement into.
+     * @return Whether the displacement is nonzero. If not, {@code dest} is left zero.
+     */
+    public static boolean movementDisplacement(final boolean forward, final boolean left, final boolean backward,
+                                               final boolean right, final double orient, final double distance,
+                                               final Vec3d dest) {
+        dest.set((forward ? 1 : 0) - (backward ? 1 : 0), 0, (right ? 1 : 0) - (left ? 1 : 0));
+        if (dest.getX() == 0 && dest.getZ() == 0) {
+            return false;
         }
+        dest.rotateHorizontal(orient);
+        dest.scale(distance / dest.mag());
+        return true;
     }
 
     /**
@@ -213,7 +272,7 @@ public class UserInterface extends Worker {
      * @param elapsedTime The estimated amount of time that has elapsed since the last call to this method, in
      *                    seconds.
      */
-    private void respondToLooking(final double elapsedTime) {
+    void respondToLooking(final double elapsedTime) {
         final double[] cursorPositionDelta = this.getCursorPositionDelta();
         double orientDelta = -cursorPositionDelta[0] * UserInterface.LOOKING_FACTOR;
         double vertOrientDelta = -cursorPositionDelta[1] * UserInterface.LOOKING_FACTOR;
@@ -13,7 +13,7 @@ import java.nio.IntBuffer;
 /**
  * A wrapper for a GLFW window object.
  */
-public class Window {
+public class Window implements InputSource {
     /**
      * The window's callback for GLFW error events.
      */
@@ -55,17 +55,25 @@ public class Window {
      */
     private final Window.ErrorCallback errorCallback;
 
+    /**
+     * Buffers reused by {@link #getCursorPosition(double[])} to receive the cursor's coordinates.
+     */
+    private final DoubleBuffer cursorXBuffer;
+    private final DoubleBuffer cursorYBuffer;
+
     /**
      * Construct a window.
      *
      * The window will not be visible, but can be made visible by a call to {@link #show()}.
      */
-    Window() {
+    public Window() {
         final boolean initSuccess = GLFW.glfwInit();
         if (!initSuccess) {
             throw new RuntimeException("GLFW#glfwInit() returned false");
         }
         this.errorCallback = new ErrorCallback();
+        this.cursorXBuffer = BufferUtils.createDoubleBuffer(1);
+        this.cursorYBuffer = BufferUtils.createDoubleBuffer(1);
         GLFW.glfwSetErrorCallback(this.errorCallback);
         GLFW.glfwDefaultWindowHints();
         GLFW.glfwWindowHint(GLFW.GLFW_VISIBLE, GLFW.GLFW_FALSE);
@@ -141,6 +149,20 @@ public class Window {
         }
     }
 
+    /**
+     * Get the dimensions of this window, without allocating.
+     * @param dest An array to put the width and height of this window in screen coordinates into.
+     */
+    public void getDimensions(final int[] dest) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer widthBuffer = stack.mallocInt(1);
+            IntBuffer heightBuffer = stack.mallocInt(1);
+            GLFW.glfwGetWindowSize(handle, widthBuffer, heightBuffer);
+            dest[0] = widthBuffer.get();
+            dest[1] = heightBuffer.get();
+        }
+    }
+
     /**
      * Get the handle of this window.
      * @return The handle of this window.
@@ -150,17 +172,17 @@ public class Window {
     }
 
     /**
-     * Get the position of the cursor.
-     * @return The position of the cursor, as an array with x- and y-coordinates.
+     * {@inheritDoc}
+     *
+     * Must only be called from the thread which handles input.
      */
-    double[] getCursorPosition() {
-        final DoubleBuffer widthBuffer = BufferUtils.createDoubleBuffer(1);
-        final DoubleBuffer heightBuffer = BufferUtils.createDoubleBuffer(1);
-        GLFW.glfwGetCursorPos(this.getHandle(), widthBuffer, heightBuffer);
-        return new double[]{
-                widthBuffer.get(),
-                heightBuffer.get()
-        };
+    @Override
+    public void getCursorPosition(final double[] dest) {
+        this.cursorXBuffer.clear();
+        this.cursorYBuffer.clear();
+        GLFW.glfwGetCursorPos(this.getHandle(), this.cursorXBuffer, this.cursorYBuffer);
+        dest[0] = this.cursorXBuffer.get(0);
+        dest[1] = this.cursorYBuffer.get(0);
     }
 
     /**
@@ -177,10 +199,33 @@ public class Window {
         GLFW.glfwPollEvents();
     }
 
+    @Override
+    public void poll() {
+        this.runCallbacks();
+    }
+
+    @Override
+    public boolean isPressed(final Control control) {
+        switch (control) {
+            case FORWARD:
+                return this.wKeyIsPressed();
+            case LEFT:
+                return this.aKeyIsPressed();
+            case BACKWARD:
+                return this.sKeyIsPressed();
+            case RIGHT:
+                return this.dKeyIsPressed();
+            case JUMP:
+                return this.spaceKeyIsPressed();
+            default:
+                throw new IllegalArgumentException("unknown control " + control);
+        }
+    }
+
     /**
      * Close the window.
      */
-    void close() {
+    public void close() {
         // Sets all callbacks for this window to MemoryUtil#NULL and frees the old callbacks.
         Callbacks.glfwFreeCallbacks(this.handle);
         // Close the GLFW window.
@@ -0,0 +1,78 @@
+package com.sheaconlon.realcraft.utilities;
+
+/**
+ * A first-in, first-out queue of {@code int}s, stored without boxing in a ring buffer which grows as needed.
+ */
+public class IntQueue {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] contents;
+    private int head;
+    private int size;
+
+    /**
+     * Create an empty queue.
+     */
+    public IntQueue() {
+        this.contents = new int[INITIAL_CAPACITY];
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * @return The number of elements in this queue.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return Whether this queue is empty.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Add an element to the back of this queue.
+     * @param value The element.
+     */
+    public void add(final int value) {
+        if (this.size == this.contents.length) {
+            this.grow();
+        }
+        this.contents[(this.head + this.size) & (this.contents.length - 1)] = value;
+        this.size++;
+    }
+
+    /**
+     * Remove the element at the front of this queue.
+     * @return The element. This queue must not be empty.
+     */
+    public int remove() {
+        if (this.size == 0) {
+            throw new IllegalStateException("attempted to remove from an empty queue");
+        }
+        final int value = this.contents[this.head];
+        this.head = (this.head + 1) & (this.contents.length - 1);
+        this.size--;
+        return value;
+    }
+
+    /**
+     * Remove every element.
+     */
+    public void clear() {
+        this.head = 0;
+        this.size = 0;
+    }
+
+    private void grow() {
+        final int[] contents = new int[2 * this.contents.length];
+        final int firstPart = Math.min(this.size, this.contents.length - this.head);
+        System.arraycopy(this.contents, this.head, contents, 0, firstPart);
+        System.arraycopy(this.contents, 0, contents, firstPart, this.size - firstPart);
+        this.contents = contents;
+        this.head = 0;
+    }
+}
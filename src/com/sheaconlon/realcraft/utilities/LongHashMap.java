@@ -0,0 +1,194 @@
+package com.sheaconlon.realcraft.utilities;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A map from {@code long}s to objects, which stores its keys without boxing.
+ *
+ * Uses open addressing with linear probing, with keys scrambled by {@link LongHashSet#mix(long)}. Does not permit
+ * null values.
+ * @param <V> The type of the values.
+ */
+public class LongHashMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.5;
+
+    private long[] keys;
+    private V[] values;
+    private int size;
+    private int mask;
+
+    /**
+     * Create an empty map.
+     */
+    public LongHashMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Create an empty map with room for some number of entries before it must grow.
+     * @param expectedSize The number of entries.
+     */
+    @SuppressWarnings("unchecked")
+    public LongHashMap(final int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity * MAX_LOAD < expectedSize) {
+            capacity *= 2;
+        }
+        this.keys = new long[capacity];
+        this.values = (V[])new Object[capacity];
+        this.size = 0;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return The number of entries in this map.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get the value for some key.
+     * @param key The key.
+     * @return The value for {@code key}, or null if there is none.
+     */
+    public V get(final long key) {
+        int slot = (int)LongHashSet.mix(key) & this.mask;
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) {
+                return this.values[slot];
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return null;
+    }
+
+    /**
+     * Return whether this map has a value for some key.
+     * @param key The key.
+     * @return Whether this map has a value for {@code key}.
+     */
+    public boolean containsKey(final long key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Set the value for some key.
+     * @param key The key.
+     * @param value The value. Not null.
+     * @return The old value for {@code key}, or null if there was none.
+     */
+    public V put(final long key, final V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("cannot put a null value");
+        }
+        int slot = (int)LongHashSet.mix(key) & this.mask;
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) {
+                final V old = this.values[slot];
+                this.values[slot] = value;
+                return old;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+        if (this.size > this.keys.length * MAX_LOAD) {
+            this.resize(2 * this.keys.length);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the value for some key.
+     * @param key The key.
+     * @return The removed value, or null if there was none.
+     */
+    public V remove(final long key) {
+        int slot = (int)LongHashSet.mix(key) & this.mask;
+        while (this.values[slot] != null) {
+            if (this.keys[slot] == key) {
+                final V old = this.values[slot];
+                this.size--;
+                this.shiftBack(slot);
+                return old;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return null;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    /**
+     * Perform some action on each value, in no particular order. The map must not be modified meanwhile.
+     * @param action The action.
+     */
+    public void forEachValue(final Consumer<? super V> action) {
+        for (int slot = 0; slot < this.values.length; slot++) {
+            if (this.values[slot] != null) {
+                action.accept(this.values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Perform some action on each entry, in no particular order. The map must not be modified meanwhile.
+     * @param action The action, which is given each value and its key.
+     */
+    public void forEach(final ObjLongConsumer<? super V> action) {
+        for (int slot = 0; slot < this.values.length; slot++) {
+            if (this.values[slot] != null) {
+                action.accept(this.values[slot], this.keys[slot]);
+            }
+        }
+    }
+
+    /**
+     * Empty a slot, moving later entries of its probe run back so that they stay reachable.
+     * @param slot The slot.
+     */
+    private void shiftBack(int slot) {
+        int next = (slot + 1) & this.mask;
+        while (this.values[next] != null) {
+            final int home = (int)LongHashSet.mix(this.keys[next]) & this.mask;
+            // Move the entry at next into slot unless its home lies cyclically within (slot, next].
+            if (((next - home) & this.mask) >= ((next - slot) & this.mask)) {
+                this.keys[slot] = this.keys[next];
+                this.values[slot] = this.values[next];
+                slot = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+        this.values[slot] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void resize(final int capacity) {
+        final long[] oldKeys = this.keys;
+        final V[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = (V[])new Object[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = (int)LongHashSet.mix(oldKeys[i]) & this.mask;
+                while (this.values[slot] != null) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+}
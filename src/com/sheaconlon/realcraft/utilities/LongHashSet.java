@@ -0,0 +1,166 @@
+package com.sheaconlon.realcraft.utilities;
+
+import java.util.Arrays;
+
+/**
+ * A set of {@code long}s, stored without boxing.
+ *
+ * Uses open addressing with linear probing. Keys are scrambled by {@link #mix(long)} before probing, so that keys
+ * which differ only in a few bits still spread over the whole table.
+ */
+public class LongHashSet {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double MAX_LOAD = 0.5;
+
+    private long[] keys;
+    private boolean[] occupied;
+    private int size;
+    private int mask;
+
+    /**
+     * Create an empty set.
+     */
+    public LongHashSet() {
+        this.keys = new long[INITIAL_CAPACITY];
+        this.occupied = new boolean[INITIAL_CAPACITY];
+        this.size = 0;
+        this.mask = INITIAL_CAPACITY - 1;
+    }
+
+    /**
+     * @return The number of keys in this set.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Return whether this set contains some key.
+     * @param key The key.
+     * @return Whether this set contains {@code key}.
+     */
+    public boolean contains(final long key) {
+        int slot = (int)mix(key) & this.mask;
+        while (this.occupied[slot]) {
+            if (this.keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return false;
+    }
+
+    /**
+     * Add a key.
+     * @param key The key.
+     * @return Whether the key was not already in this set.
+     */
+    public boolean add(final long key) {
+        int slot = (int)mix(key) & this.mask;
+        while (this.occupied[slot]) {
+            if (this.keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.occupied[slot] = true;
+        this.size++;
+        if (this.size > this.keys.length * MAX_LOAD) {
+            this.resize(2 * this.keys.length);
+        }
+        return true;
+    }
+
+    /**
+     * Remove a key.
+     * @param key The key.
+     * @return Whether the key was in this set.
+     */
+    public boolean remove(final long key) {
+        int slot = (int)mix(key) & this.mask;
+        while (this.occupied[slot]) {
+            if (this.keys[slot] == key) {
+                this.size--;
+                this.shiftBack(slot);
+                return true;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return false;
+    }
+
+    /**
+     * Remove all keys.
+     */
+    public void clear() {
+        Arrays.fill(this.occupied, false);
+        this.size = 0;
+    }
+
+    /**
+     * Copy the keys of this set into an array, in no particular order.
+     * @param dest The array. Must have a length of at least {@link #size()}.
+     */
+    public void toArray(final long[] dest) {
+        int i = 0;
+        for (int slot = 0; slot < this.keys.length; slot++) {
+            if (this.occupied[slot]) {
+                dest[i] = this.keys[slot];
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Scramble the bits of a key.
+     *
+     * The finalizer of MurmurHash3's 64-bit variant. Every bit of the input affects every bit of the output.
+     * @param key The key.
+     * @return The scrambled key.
+     */
+    public static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Empty a slot, moving later keys of its probe run back so that they stay reachable.
+     * @param slot The slot.
+     */
+    private void shiftBack(int slot) {
+        int next = (slot + 1) & this.mask;
+        while (this.occupied[next]) {
+            final int home = (int)mix(this.keys[next]) & this.mask;
+            // Move the key at next into slot unless its home lies cyclically within (slot, next].
+            if (((next - home) & this.mask) >= ((next - slot) & this.mask)) {
+                this.keys[slot] = this.keys[next];
+                slot = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+        this.occupied[slot] = false;
+    }
+
+    private void resize(final int capacity) {
+        final long[] oldKeys = this.keys;
+        final boolean[] oldOccupied = this.occupied;
+        this.keys = new long[capacity];
+        this.occupied = new boolean[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldOccupied[i]) {
+                int slot = (int)mix(oldKeys[i]) & this.mask;
+                while (this.occupied[slot]) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.occupied[slot] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.sheaconlon.realcraft.utilities;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A fixed-length array of 4-bit unsigned integers, packed two to a byte.
+ */
+public class NibbleArray {
+    /**
+     * The greatest value a nibble can hold.
+     */
+    public static final int MAX_VALUE = 15;
+
+    private final byte[] data;
+    private final int length;
+
+    /**
+     * Create a nibble array of zeroes.
+     * @param length The number of nibbles.
+     */
+    public NibbleArray(final int length) {
+        this.data = new byte[(length + 1) / 2];
+        this.length = length;
+    }
+
+    /**
+     * Create a copy of a nibble array.
+     * @param array The nibble array.
+     */
+    public NibbleArray(final NibbleArray array) {
+        this.data = array.data.clone();
+        this.length = array.length;
+    }
+
+    /**
+     * @return The number of nibbles in this array.
+     */
+    public int length() {
+        return this.length;
+    }
+
+    /**
+     * Get a nibble.
+     * @param index The index of the nibble.
+     * @return The nibble at {@code index}.
+     */
+    public int get(final int index) {
+        final int packed = this.data[index >> 1];
+        return (index & 1) == 0 ? packed & 0xF : (packed >> 4) & 0xF;
+    }
+
+    /**
+     * Set a nibble.
+     * @param index The index of the nibble.
+     * @param value The new value of the nibble. Must be between 0 and {@link #MAX_VALUE}.
+     */
+    public void set(final int index, final int value) {
+        final int i = index >> 1;
+        if ((index & 1) == 0) {
+            this.data[i] = (byte)((this.data[i] & 0xF0) | value);
+        } else {
+            this.data[i] = (byte)((this.data[i] & 0x0F) | (value << 4));
+        }
+    }
+
+    /**
+     * Set every nibble to the same value.
+     * @param value The value. Must be between 0 and {@link #MAX_VALUE}.
+     */
+    public void fill(final int value) {
+        Arrays.fill(this.data, (byte)(value | (value << 4)));
+    }
+
+    // ##### PACKED FORM #####
+    /**
+     * @return The number of bytes this array takes up when packed. See {@link #writeTo(ByteBuffer)}.
+     */
+    public int packedLength() {
+        return this.data.length;
+    }
+
+    /**
+     * Write this array in packed form, two nibbles to a byte.
+     * @param dest The buffer to write to. Must have at least {@link #packedLength()} bytes remaining.
+     */
+    public void writeTo(final ByteBuffer dest) {
+        dest.put(this.data);
+    }
+
+    /**
+     * Overwrite this array with one written by {@link #writeTo(ByteBuffer)}.
+     * @param src The buffer to read from. Must have at least {@link #packedLength()} bytes remaining.
+     */
+    public void readFrom(final ByteBuffer src) {
+        src.get(this.data);
+    }
+}
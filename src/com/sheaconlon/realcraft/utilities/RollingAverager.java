@@ -4,9 +4,14 @@ package com.sheaconlon.realcraft.utilities;
  * Something which takes a rolling average.
  */
 public class RollingAverager {
-    private final int samples;
+    /**
+     * The samples, stored without boxing. Once full, the oldest sample is at {@link #curr}.
+     */
+    private final double[] buffer;
+
+    private int curr;
 
-    private RingBuffer<Double> buffer;
+    private int size;
 
     private double sum;
 
@@ -15,8 +20,9 @@ public class RollingAverager {
      * @param samples The number of samples that it should average over.
      */
     public RollingAverager(final int samples) {
-        this.samples = samples;
-        this.buffer = new RingBuffer<>(this.samples);
+        this.buffer = new double[samples];
+        this.curr = 0;
+        this.size = 0;
         this.sum = 0;
     }
 
@@ -25,17 +31,20 @@ public class RollingAverager {
      * @param x The sample.
      */
     public void add(final double x) {
-        final Double old = this.buffer.addFront(x);
-        if (old != null) {
-            this.sum -= old;
+        if (this.size == this.buffer.length) {
+            this.sum -= this.buffer[this.curr];
+        } else {
+            this.size++;
         }
+        this.buffer[this.curr] = x;
         this.sum += x;
+        this.curr = (this.curr + 1) % this.buffer.length;
     }
 
     /**
      * @return The rolling average of the samples.
      */
     public double average() {
-        return this.sum / this.buffer.size();
+        return this.sum / this.size;
     }
 }
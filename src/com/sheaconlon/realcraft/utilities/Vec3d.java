@@ -0,0 +1,281 @@
+package com.sheaconlon.realcraft.utilities;
+
+/**
+ * A mutable 3-vector of doubles.
+ *
+ * The companion of {@link Vector} for hot loops: its operations change it in place and return it, so that a
+ * calculation can be chained without allocating. A loop should create its vectors once, ahead of time, or borrow
+ * them from {@link #scratch(int)}.
+ */
+public final class Vec3d {
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * The number of scratch vectors each thread has.
+     */
+    private static final int SCRATCH_SLOTS = 8;
+
+    private static final ThreadLocal<Vec3d[]> SCRATCH = ThreadLocal.withInitial(() -> {
+        final Vec3d[] vectors = new Vec3d[SCRATCH_SLOTS];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = new Vec3d();
+        }
+        return vectors;
+    });
+
+    // ##### PRIVATE #####
+    private double x;
+    private double y;
+    private double z;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a zero vector.
+     */
+    public Vec3d() {
+        this(0, 0, 0);
+    }
+
+    /**
+     * Create a vector.
+     * @param x The x-component.
+     * @param y The y-component.
+     * @param z The z-component.
+     */
+    public Vec3d(final double x, final double y, final double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    // ##### SCRATCH #####
+    /**
+     * Borrow one of the current thread's scratch vectors.
+     *
+     * A scratch vector holds garbage when borrowed. It must not be kept past the end of the calculation it was
+     * borrowed for, nor used by two calculations at once, so each method which borrows scratch vectors should
+     * document which slots it uses.
+     * @param slot The slot of the vector. Less than 8.
+     * @return The scratch vector in slot {@code slot}.
+     */
+    public static Vec3d scratch(final int slot) {
+        return SCRATCH.get()[slot];
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The x-component of this vector.
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * @return The y-component of this vector.
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     * @return The z-component of this vector.
+     */
+    public double getZ() {
+        return this.z;
+    }
+
+    /**
+     * @return The magnitude of this vector.
+     */
+    public double mag() {
+        return Math.sqrt(this.dot(this));
+    }
+
+    /**
+     * Get the dot product of this vector with another.
+     * @param other The other vector.
+     * @return The dot product.
+     */
+    public double dot(final Vec3d other) {
+        return this.x * other.x + this.y * other.y + this.z * other.z;
+    }
+
+    /**
+     * @return An immutable copy of this vector.
+     */
+    public Vector toVector() {
+        return new Vector(this.x, this.y, this.z);
+    }
+
+    // ##### IN-PLACE OPERATIONS #####
+    /**
+     * Set the components of this vector.
+     * @param x The x-component.
+     * @param y The y-component.
+     * @param z The z-component.
+     * @return This vector.
+     */
+    public Vec3d set(final double x, final double y, final double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    /**
+     * Set this vector to be equal to another.
+     * @param other The other vector.
+     * @return This vector.
+     */
+    public Vec3d set(final Vec3d other) {
+        return this.set(other.x, other.y, other.z);
+    }
+
+    /**
+     * Set this vector to be equal to an immutable vector.
+     * @param other The immutable vector.
+     * @return This vector.
+     */
+    public Vec3d set(final Vector other) {
+        return this.set(other.getX(), other.getY(), other.getZ());
+    }
+
+    /**
+     * Add to this vector.
+     * @param dx The amount to add to the x-component.
+     * @param dy The amount to add to the y-component.
+     * @param dz The amount to add to the z-component.
+     * @return This vector.
+     */
+    public Vec3d add(final double dx, final double dy, final double dz) {
+        return this.set(this.x + dx, this.y + dy, this.z + dz);
+    }
+
+    /**
+     * Add another vector to this vector.
+     * @param other The other vector.
+     * @return This vector.
+     */
+    public Vec3d add(final Vec3d other) {
+        return this.add(other.x, other.y, other.z);
+    }
+
+    /**
+     * Subtract another vector from this vector.
+     * @param other The other vector.
+     * @return This vector.
+     */
+    public Vec3d subtract(final Vec3d other) {
+        return this.add(-other.x, -other.y, -other.z);
+    }
+
+    /**
+     * Scale this vector.
+     * @param c The factor to scale by.
+     * @return This vector.
+     */
+    public Vec3d scale(final double c) {
+        return this.set(this.x * c, this.y * c, this.z * c);
+    }
+
+    /**
+     * Rotate this vector horizontally. See {@link Vector#rotateHorizontal(Vector, double)}.
+     * @param theta The angle to rotate through. In radians.
+     * @return This vector.
+     */
+    public Vec3d rotateHorizontal(final double theta) {
+        return this.rotateHorizontal(Math.cos(theta), Math.sin(theta));
+    }
+
+    /**
+     * Rotate this vector horizontally, given the cosine and sine of the angle, which a loop can compute once.
+     * @param cos The cosine of the angle to rotate through.
+     * @param sin The sine of the angle to rotate through.
+     * @return This vector.
+     */
+    public Vec3d rotateHorizontal(final double cos, final double sin) {
+        return this.set(this.x * cos + this.z * sin, this.y, -this.x * sin + this.z * cos);
+    }
+
+    /**
+     * Rotate this vector vertically. See {@link Vector#rotateVertical(Vector, double)}.
+     * @param theta The angle to rotate through. In radians.
+     * @return This vector.
+     */
+    public Vec3d rotateVertical(final double theta) {
+        return this.rotateVertical(Math.cos(theta), Math.sin(theta));
+    }
+
+    /**
+     * Rotate this vector vertically, given the cosine and sine of the angle, which a loop can compute once.
+     * @param cos The cosine of the angle to rotate through.
+     * @param sin The sine of the angle to rotate through.
+     * @return This vector.
+     */
+    public Vec3d rotateVertical(final double cos, final double sin) {
+        return this.set(this.x * cos - this.y * sin, this.y * cos + this.x * sin, this.z);
+    }
+
+    // ##### BATCH OPERATIONS #####
+    /**
+     * Translate many vectors, stored as consecutive triples of components in an array.
+     * @param components The array.
+     * @param offset The index of the first component of the first vector.
+     * @param count The number of vectors.
+     * @param stride The distance between the first components of consecutive vectors. At least 3.
+     * @param dx The amount to add to each x-component.
+     * @param dy The amount to add to each y-component.
+     * @param dz The amount to add to each z-component.
+     */
+    public static void translateAll(final float[] components, final int offset, final int count, final int stride,
+                                    final double dx, final double dy, final double dz) {
+        for (int i = offset; i < offset + count * stride; i += stride) {
+            components[i] += dx;
+            components[i + 1] += dy;
+            components[i + 2] += dz;
+        }
+    }
+
+    /**
+     * Scale many vectors, stored as consecutive triples of components in an array.
+     * @param components The array.
+     * @param offset The index of the first component of the first vector.
+     * @param count The number of vectors.
+     * @param stride The distance between the first components of consecutive vectors. At least 3.
+     * @param c The factor to scale by.
+     */
+    public static void scaleAll(final float[] components, final int offset, final int count, final int stride,
+                                final double c) {
+        for (int i = offset; i < offset + count * stride; i += stride) {
+            components[i] *= c;
+            components[i + 1] *= c;
+            components[i + 2] *= c;
+        }
+    }
+
+    /**
+     * Rotate many vectors horizontally, stored as consecutive triples of components in an array. The sine and cosine
+     * are computed only once.
+     * @param components The array.
+     * @param offset The index of the first component of the first vector.
+     * @param count The number of vectors.
+     * @param stride The distance between the first components of consecutive vectors. At least 3.
+     * @param theta The angle to rotate through. In radians.
+     */
+    public static void rotateHorizontalAll(final double[] components, final int offset, final int count,
+                                           final int stride, final double theta) {
+        final double cos = Math.cos(theta);
+        final double sin = Math.sin(theta);
+        for (int i = offset; i < offset + count * stride; i += stride) {
+            final double x = components[i];
+            final double z = components[i + 2];
+            components[i] = x * cos + z * sin;
+            components[i + 2] = -x * sin + z * cos;
+        }
+    }
+
+    // ##### OVERRIDES OF OBJECT #####
+    @Override
+    public String toString() {
+        return "(" + this.x + ", " + this.y + ", " + this.z + ")";
+    }
+}
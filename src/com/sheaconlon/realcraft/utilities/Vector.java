@@ -2,7 +2,7 @@ package com.sheaconlon.realcraft.utilities;
 
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.function.UnaryOperator;
+import java.util.function.DoubleUnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -144,7 +144,8 @@ public class Vector {
 
     @Override
     public int hashCode() {
-        return Double.hashCode(this.x) ^ Double.hashCode(this.y) ^ Double.hashCode(this.z);
+        // Combine unsymmetrically, so that permutations of the same components do not collide.
+        return 31 * (31 * Double.hashCode(this.x) + Double.hashCode(this.y)) + Double.hashCode(this.z);
     }
 
     @Override
@@ -382,11 +383,11 @@ public class Vector {
      * @param f The function.
      * @return A new vector which is the component-wise application of {@code f} on {@code v}.
      */
-    public static Vector apply(final Vector v, final UnaryOperator<Double> f) {
+    public static Vector apply(final Vector v, final DoubleUnaryOperator f) {
         return new Vector(
-                f.apply(v.getX()),
-                f.apply(v.getY()),
-                f.apply(v.getZ())
+                f.applyAsDouble(v.getX()),
+                f.applyAsDouble(v.getY()),
+                f.applyAsDouble(v.getZ())
         );
     }
 
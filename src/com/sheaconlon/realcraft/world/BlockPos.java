@@ -0,0 +1,226 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.utilities.LongHashSet;
+
+/**
+ * The integer position of a block, the anchor point of the block.
+ *
+ * A position can be packed into a {@code long}, which can be used as a map key without allocating. The static
+ * methods work on packed positions, so that code which walks over many blocks need never create a position object.
+ * Each coordinate must lie within {@link #MIN_COORD} and {@link #MAX_COORD}.
+ */
+public final class BlockPos {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The number of bits each coordinate takes up in a packed position.
+     */
+    public static final int BITS = 21;
+
+    /**
+     * The least and greatest coordinates a packed position can hold.
+     */
+    public static final int MIN_COORD = -(1 << (BITS - 1));
+    public static final int MAX_COORD = (1 << (BITS - 1)) - 1;
+
+    /**
+     * The directions toward the six neighbors of a block. See {@link #neighbor(long, int)}.
+     */
+    public static final int POS_X = 0;
+    public static final int NEG_X = 1;
+    public static final int POS_Y = 2;
+    public static final int NEG_Y = 3;
+    public static final int POS_Z = 4;
+    public static final int NEG_Z = 5;
+    public static final int DIRECTIONS = 6;
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final long MASK = (1L << BITS) - 1;
+    private static final int X_SHIFT = 2 * BITS;
+    private static final int Y_SHIFT = BITS;
+
+    /**
+     * The displacement toward the neighbor in each direction.
+     */
+    private static final int[] DIRECTION_X = new int[]{1, -1, 0, 0, 0, 0};
+    private static final int[] DIRECTION_Y = new int[]{0, 0, 1, -1, 0, 0};
+    private static final int[] DIRECTION_Z = new int[]{0, 0, 0, 0, 1, -1};
+
+    // ##### PRIVATE FINAL #####
+    private final int x;
+    private final int y;
+    private final int z;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a position.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param z The z-coordinate.
+     */
+    public BlockPos(final int x, final int y, final int z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Create a position from a packed position.
+     * @param packed The packed position.
+     */
+    public BlockPos(final long packed) {
+        this(getX(packed), getY(packed), getZ(packed));
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The x-coordinate of this position.
+     */
+    public int getX() {
+        return this.x;
+    }
+
+    /**
+     * @return The y-coordinate of this position.
+     */
+    public int getY() {
+        return this.y;
+    }
+
+    /**
+     * @return The z-coordinate of this position.
+     */
+    public int getZ() {
+        return this.z;
+    }
+
+    /**
+     * @return This position, packed. See {@link #pack(int, int, int)}.
+     */
+    public long pack() {
+        return pack(this.x, this.y, this.z);
+    }
+
+    // ##### PACKED POSITIONS #####
+    /**
+     * Pack a position into a {@code long}.
+     *
+     * Each coordinate must lie within {@link #MIN_COORD} and {@link #MAX_COORD}, about a million blocks either way
+     * of the origin, which bounds the world. Outside them, positions would wrap around onto others.
+     * @param x The x-coordinate.
+     * @param y The y-coordinate.
+     * @param z The z-coordinate.
+     * @return The packed position.
+     * @throws IllegalArgumentException If a coordinate is out of range.
+     */
+    public static long pack(final int x, final int y, final int z) {
+        if (x < MIN_COORD || x > MAX_COORD || y < MIN_COORD || y > MAX_COORD || z < MIN_COORD || z > MAX_COORD) {
+            throw new IllegalArgumentException("position (" + x + ", " + y + ", " + z + ") is outside the world");
+        }
+        return ((x & MASK) << X_SHIFT) | ((y & MASK) << Y_SHIFT) | (z & MASK);
+    }
+
+    /**
+     * Get the x-coordinate of a packed position.
+     * @param packed The packed position.
+     * @return The x-coordinate.
+     */
+    public static int getX(final long packed) {
+        return (int)(packed << (Long.SIZE - X_SHIFT - BITS) >> (Long.SIZE - BITS));
+    }
+
+    /**
+     * Get the y-coordinate of a packed position.
+     * @param packed The packed position.
+     * @return The y-coordinate.
+     */
+    public static int getY(final long packed) {
+        return (int)(packed << (Long.SIZE - Y_SHIFT - BITS) >> (Long.SIZE - BITS));
+    }
+
+    /**
+     * Get the z-coordinate of a packed position.
+     * @param packed The packed position.
+     * @return The z-coordinate.
+     */
+    public static int getZ(final long packed) {
+        return (int)(packed << (Long.SIZE - BITS) >> (Long.SIZE - BITS));
+    }
+
+    /**
+     * Offset a packed position.
+     * @param packed The packed position.
+     * @param dx The displacement along the x-axis.
+     * @param dy The displacement along the y-axis.
+     * @param dz The displacement along the z-axis.
+     * @return The offset position, packed.
+     */
+    public static long offset(final long packed, final int dx, final int dy, final int dz) {
+        return pack(getX(packed) + dx, getY(packed) + dy, getZ(packed) + dz);
+    }
+
+    /**
+     * Get the packed position of a neighbor of a packed position.
+     * @param packed The packed position.
+     * @param direction The direction toward the neighbor. One of {@link #POS_X} through {@link #NEG_Z}.
+     * @return The neighbor's position, packed.
+     */
+    public static long neighbor(final long packed, final int direction) {
+        return offset(packed, DIRECTION_X[direction], DIRECTION_Y[direction], DIRECTION_Z[direction]);
+    }
+
+    /**
+     * Get the displacement toward a neighbor along the x-axis.
+     * @param direction The direction toward the neighbor.
+     * @return The displacement. Between -1 and 1.
+     */
+    public static int directionX(final int direction) {
+        return DIRECTION_X[direction];
+    }
+
+    /**
+     * Get the displacement toward a neighbor along the y-axis.
+     * @param direction The direction toward the neighbor.
+     * @return The displacement. Between -1 and 1.
+     */
+    public static int directionY(final int direction) {
+        return DIRECTION_Y[direction];
+    }
+
+    /**
+     * Get the displacement toward a neighbor along the z-axis.
+     * @param direction The direction toward the neighbor.
+     * @return The displacement. Between -1 and 1.
+     */
+    public static int directionZ(final int direction) {
+        return DIRECTION_Z[direction];
+    }
+
+    /**
+     * Hash a packed position, so that nearby positions get unrelated hashes.
+     * @param packed The packed position.
+     * @return The hash.
+     */
+    public static int hash(final long packed) {
+        return (int)LongHashSet.mix(packed);
+    }
+
+    // ##### OVERRIDES OF OBJECT #####
+    @Override
+    public int hashCode() {
+        return hash(this.pack());
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof BlockPos)) {
+            return false;
+        }
+        final BlockPos pos = (BlockPos)other;
+        return this.x == pos.x && this.y == pos.y && this.z == pos.z;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + this.x + ", " + this.y + ", " + this.z + ")";
+    }
+}
@@ -3,17 +3,24 @@ package com.sheaconlon.realcraft.world;
 import com.sheaconlon.realcraft.blocks.AirBlock;
 import com.sheaconlon.realcraft.blocks.Block;
 import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.NibbleArray;
 import com.sheaconlon.realcraft.utilities.Vector;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.Map;
-import java.util.HashMap;
 import java.util.Collection;
 
 /**
  * A cubical subset of the world.
+ *
+ * A chunk's blocks are stored in sections, one per x-coordinate, so that {@link #snapshot()} can share them with the
+ * snapshot instead of copying them. A section shared with a snapshot is copied the first time either chunk puts a
+ * block in it, so that neither sees the other's changes.
  */
 public class Chunk {
     // ##### PUBLIC STATIC FINAL #####
@@ -21,27 +28,93 @@ public class Chunk {
     public static final double SIZE = BLOCKS * Block.SIZE;
 
     // ##### PRIVATE STATIC FINAL #####
-    private static final Map<Vector, Chunk> chunks = new HashMap<>();
+    /**
+     * The bits of {@link #sharedSections} which mean every section is shared.
+     */
+    private static final int ALL_SECTIONS = (1 << BLOCKS) - 1;
+
+    private static final Counter SECTIONS_COPIED = Metrics.counter("Chunk", "sectionsCopied");
+
+    /**
+     * The chunks, keyed by packed chunk position. See {@link ChunkPos}. Guarded by its own lock.
+     */
+    private static final LongHashMap<Chunk> chunks = new LongHashMap<>();
 
     // ##### PRIVATE FINAL #####
+    private final long pos;
     private final Vector anchor;
+    private final int anchorX;
+    private final int anchorY;
+    private final int anchorZ;
     private final Block[][][] blocks;
     private final Set<Entity> entities;
+    private final NibbleArray skyLight;
+    private final NibbleArray blockLight;
+
+    // ##### PRIVATE #####
+    /**
+     * Which sections of {@link #blocks} are shared with a snapshot or with the chunk this is a snapshot of, one bit
+     * per section. Guarded by this chunk's lock.
+     */
+    private int sharedSections;
 
     // ##### CONSTRUCTORS #####
     /**
      * Create a chunk.
-     * @param anchor Its anchor point.
+     * @param pos Its packed position. See {@link ChunkPos}.
      */
-    private Chunk(final Vector anchor) {
-        this.anchor = anchor;
+    private Chunk(final long pos) {
+        this.pos = pos;
+        this.anchorX = ChunkPos.anchorX(pos);
+        this.anchorY = ChunkPos.anchorY(pos);
+        this.anchorZ = ChunkPos.anchorZ(pos);
+        this.anchor = new Vector(this.anchorX, this.anchorY, this.anchorZ);
         this.blocks = new Block[BLOCKS][BLOCKS][BLOCKS];
         this.entities = new HashSet<>();
-        for (final Vector position : this.blockAnchors()) {
-            this.putBlock(new AirBlock(position));
+        this.skyLight = new NibbleArray(BLOCKS * BLOCKS * BLOCKS);
+        this.blockLight = new NibbleArray(BLOCKS * BLOCKS * BLOCKS);
+        // A new chunk holds only air, so it is open to the sky.
+        this.skyLight.fill(NibbleArray.MAX_VALUE);
+        // No sections are shared yet, so the blocks can be put without taking this chunk's lock.
+        for (int x = 0; x < BLOCKS; x++) {
+            for (int y = 0; y < BLOCKS; y++) {
+                for (int z = 0; z < BLOCKS; z++) {
+                    this.blocks[x][y][z] = new AirBlock(new Vector(this.anchorX + x, this.anchorY + y,
+                            this.anchorZ + z));
+                }
+            }
         }
     }
 
+    /**
+     * Create a snapshot of a chunk, sharing its sections.
+     * @param chunk The chunk. Its lock must be held.
+     */
+    private Chunk(final Chunk chunk) {
+        this.pos = chunk.pos;
+        this.anchorX = chunk.anchorX;
+        this.anchorY = chunk.anchorY;
+        this.anchorZ = chunk.anchorZ;
+        this.anchor = chunk.anchor;
+        this.blocks = new Block[BLOCKS][][];
+        System.arraycopy(chunk.blocks, 0, this.blocks, 0, BLOCKS);
+        this.entities = new HashSet<>();
+        this.skyLight = new NibbleArray(chunk.skyLight);
+        this.blockLight = new NibbleArray(chunk.blockLight);
+        this.sharedSections = ALL_SECTIONS;
+        chunk.sharedSections = ALL_SECTIONS;
+    }
+
+    /**
+     * Create a chunk which is not part of the world, so that {@link #getChunk(long)} will never return it. Useful
+     * for holding a copy of a chunk, such as one decoded from the network in a test.
+     * @param pos Its packed position. See {@link ChunkPos}.
+     * @return The chunk, which holds only air.
+     */
+    public static Chunk detached(final long pos) {
+        return new Chunk(pos);
+    }
+
     // ##### BLOCKS #####
     /**
      * Get the block with some anchor point.
@@ -49,17 +122,103 @@ public class Chunk {
      * @return The block with anchor point {@code anchor}.
      */
     public Block getBlock(final Vector anchor) {
-        final Vector relativePosition = Vector.subtract(anchor, this.anchor);
-        return this.blocks[relativePosition.getXInt()][relativePosition.getYInt()][relativePosition.getZInt()];
+        return this.getBlock(anchor.getXInt(), anchor.getYInt(), anchor.getZInt());
+    }
+
+    /**
+     * Get the block with some integer anchor point.
+     *
+     * Unlike {@link #getBlock(Vector)}, does not allocate.
+     * @param x The x-coordinate of the anchor point.
+     * @param y The y-coordinate of the anchor point.
+     * @param z The z-coordinate of the anchor point.
+     * @return The block with anchor point {@code (x, y, z)}. Must be within this chunk.
+     */
+    public Block getBlock(final int x, final int y, final int z) {
+        return this.blocks[x - this.anchorX][y - this.anchorY][z - this.anchorZ];
+    }
+
+    /**
+     * Return whether some integer anchor point is within this chunk.
+     * @param x The x-coordinate of the anchor point.
+     * @param y The y-coordinate of the anchor point.
+     * @param z The z-coordinate of the anchor point.
+     * @return Whether the block with anchor point {@code (x, y, z)} belongs to this chunk.
+     */
+    public boolean contains(final int x, final int y, final int z) {
+        return x >= this.anchorX && x < this.anchorX + BLOCKS
+                && y >= this.anchorY && y < this.anchorY + BLOCKS
+                && z >= this.anchorZ && z < this.anchorZ + BLOCKS;
     }
 
     /**
      * Put a block.
      * @param block The block.
      */
-    public void putBlock(final Block block) {
-        final Vector relativePosition = Vector.subtract(block.getPos(), this.anchor);
-        this.blocks[relativePosition.getXInt()][relativePosition.getYInt()][relativePosition.getZInt()] = block;
+    public synchronized void putBlock(final Block block) {
+        final Vector pos = block.getPos();
+        final int section = pos.getXInt() - this.anchorX;
+        if ((this.sharedSections & (1 << section)) != 0) {
+            this.blocks[section] = copySection(this.blocks[section]);
+            this.sharedSections &= ~(1 << section);
+            SECTIONS_COPIED.increment();
+        }
+        this.blocks[section][pos.getYInt() - this.anchorY][pos.getZInt() - this.anchorZ] = block;
+    }
+
+    // ##### SNAPSHOTS #####
+    /**
+     * Take a snapshot of this chunk: a detached chunk holding its blocks and light as they are now.
+     *
+     * Takes time proportional to the number of sections, not blocks, since the snapshot shares this chunk's sections
+     * until either puts a block in them. Light is copied. Neither this chunk nor the snapshot sees blocks the other
+     * puts afterwards, so the snapshot may be read at leisure on another thread, as when saving, while this chunk
+     * keeps changing.
+     * @return The snapshot. It has no entities.
+     */
+    public synchronized Chunk snapshot() {
+        return new Chunk(this);
+    }
+
+    // ##### LIGHT #####
+    /**
+     * Get the index of the light level of some block within the light arrays of this chunk.
+     * @param x The x-coordinate of the anchor point of the block.
+     * @param y The y-coordinate of the anchor point of the block.
+     * @param z The z-coordinate of the anchor point of the block.
+     * @return The index. The block must be within this chunk.
+     */
+    public int lightIndex(final int x, final int y, final int z) {
+        return ((x - this.anchorX) * BLOCKS + (y - this.anchorY)) * BLOCKS + (z - this.anchorZ);
+    }
+
+    /**
+     * Get the levels of light from the sky at the blocks of this chunk, indexed by {@link #lightIndex(int, int, int)}.
+     * @return The levels of sky light. Between 0 and 15.
+     */
+    public NibbleArray getSkyLight() {
+        return this.skyLight;
+    }
+
+    /**
+     * Get the levels of light from light-emitting blocks at the blocks of this chunk, indexed by
+     * {@link #lightIndex(int, int, int)}.
+     * @return The levels of block light. Between 0 and 15.
+     */
+    public NibbleArray getBlockLight() {
+        return this.blockLight;
+    }
+
+    /**
+     * Get the level of light at some block, the brighter of its sky light and block light.
+     * @param x The x-coordinate of the anchor point of the block.
+     * @param y The y-coordinate of the anchor point of the block.
+     * @param z The z-coordinate of the anchor point of the block.
+     * @return The level of light at the block. Between 0 and 15. The block must be within this chunk.
+     */
+    public int getLight(final int x, final int y, final int z) {
+        final int index = this.lightIndex(x, y, z);
+        return Math.max(this.skyLight.get(index), this.blockLight.get(index));
     }
 
     // ##### ENTITIES #####
@@ -135,6 +294,13 @@ public class Chunk {
         return this.anchor;
     }
 
+    /**
+     * @return The packed position of this chunk. See {@link ChunkPos}.
+     */
+    public long getPos() {
+        return this.pos;
+    }
+
     // ##### CHUNKS #####
     /**
      * Return the chunk containing some position.
@@ -142,38 +308,109 @@ public class Chunk {
      * @return The chunk containing {@code pos}.
      */
     public static Chunk containingChunk(final Vector position) {
-        final Vector anchor = Vector.scale(
-            Vector.round(
-                Vector.scale(position, 1 / SIZE)
-            ),
-            SIZE
-        );
-        return getChunk(anchor);
+        return containingChunk(position.getXInt(), position.getYInt(), position.getZInt());
+    }
+
+    /**
+     * Return the chunk containing some integer position.
+     * @param x The x-coordinate of the position.
+     * @param y The y-coordinate of the position.
+     * @param z The z-coordinate of the position.
+     * @return The chunk containing {@code (x, y, z)}.
+     */
+    public static Chunk containingChunk(final int x, final int y, final int z) {
+        return getChunk(ChunkPos.containing(x, y, z));
+    }
+
+    /**
+     * Return the chunk containing some integer position, if that chunk exists.
+     *
+     * Unlike {@link #containingChunk(int, int, int)}, does not create the chunk if it does not exist.
+     * @param x The x-coordinate of the position.
+     * @param y The y-coordinate of the position.
+     * @param z The z-coordinate of the position.
+     * @return The chunk containing {@code (x, y, z)}, or null if it does not exist.
+     */
+    public static Chunk existingChunk(final int x, final int y, final int z) {
+        return existingChunk(ChunkPos.containing(x, y, z));
+    }
+
+    /**
+     * Return the chunk at some position, creating it if it does not exist.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return The chunk at {@code pos}.
+     */
+    public static Chunk getChunk(final long pos) {
+        synchronized (chunks) {
+            final Chunk chunk = chunks.get(pos);
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        // Fill the new chunk outside the lock, and keep whichever chunk was put first if another thread raced us.
+        final Chunk chunk = new Chunk(pos);
+        synchronized (chunks) {
+            final Chunk existing = chunks.get(pos);
+            if (existing != null) {
+                return existing;
+            }
+            chunks.put(pos, chunk);
+            return chunk;
+        }
+    }
+
+    /**
+     * Return the chunk at some position, if that chunk exists.
+     *
+     * Unlike {@link #getChunk(long)}, does not create the chunk if it does not exist.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return The chunk at {@code pos}, or null if it does not exist.
+     */
+    public static Chunk existingChunk(final long pos) {
+        synchronized (chunks) {
+            return chunks.get(pos);
+        }
+    }
+
+    /**
+     * Remove the chunk at some position from the world, so that {@link #getChunk(long)} creates a new one.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return The chunk removed, or null if it did not exist.
+     */
+    public static Chunk unload(final long pos) {
+        synchronized (chunks) {
+            return chunks.remove(pos);
+        }
     }
 
     private class ChunksNearby implements Iterable<Chunk> {
         private class ChunksNearbyIterator implements Iterator<Chunk> {
-            private Iterator<Vector> displacements;
+            private int index;
 
             ChunksNearbyIterator() {
-                this.displacements = Vector.around(Vector.ZERO, ChunksNearby.this.distance).iterator();
+                this.index = 0;
             }
 
             @Override
             public boolean hasNext() {
-                return this.displacements.hasNext();
+                return this.index < ChunksNearby.this.offsets.size();
             }
 
             @Override
             public Chunk next() {
-                return getChunk(Vector.add(Chunk.this.anchor, Vector.scale(this.displacements.next(), Chunk.SIZE)));
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final Chunk chunk = getChunk(ChunksNearby.this.offsets.apply(Chunk.this.pos, this.index));
+                this.index++;
+                return chunk;
             }
         }
 
-        private final int distance;
+        private final ChunkOffsets offsets;
 
         ChunksNearby(final int distance) {
-            this.distance = distance;
+            this.offsets = ChunkOffsets.forRadius(distance);
         }
 
         @Override
@@ -185,7 +422,9 @@ public class Chunk {
     /**
      * Get the chunks nearby this chunk.
      *
-     * The distance between chunks is measured between their anchor points.
+     * The distance between chunks is measured between their anchor points. The nearest chunks come first. Code which
+     * runs often should walk a {@link ChunkOffsets} table with {@link #getChunk(long)} instead, which does not
+     * allocate.
      * @param distance The maximum distance at which a chunk should be included.
      * @return The chunks nearby this chunk.
      */
@@ -196,7 +435,7 @@ public class Chunk {
     // ##### OVERRIDES OF OBJECT #####
     @Override
     public int hashCode() {
-        return this.anchor.hashCode();
+        return BlockPos.hash(this.pos);
     }
 
     @Override
@@ -205,19 +444,22 @@ public class Chunk {
             return false;
         }
         final Chunk otherChunk = (Chunk)object;
-        return this.anchor.equals(otherChunk.anchor);
+        return this.pos == otherChunk.pos;
     }
 
     // ##### PRIVATE STATIC #####
+    private static Block[][] copySection(final Block[][] section) {
+        final Block[][] copy = new Block[BLOCKS][];
+        for (int y = 0; y < BLOCKS; y++) {
+            copy[y] = section[y].clone();
+        }
+        return copy;
+    }
+
     private static Chunk getChunk(final Vector anchor) {
         if (!Vector.scale(anchor, 1 / SIZE).isInt()) {
             throw new IllegalArgumentException("Anchor point given is not the anchor point of any chunk.");
         }
-        Chunk chunk = chunks.get(anchor);
-        if (chunk == null) {
-            chunk = new Chunk(anchor);
-            chunks.put(anchor, chunk);
-        }
-        return chunk;
+        return getChunk(ChunkPos.containing(anchor.getXInt(), anchor.getYInt(), anchor.getZInt()));
     }
 }
@@ -0,0 +1,183 @@
+package com.sheaconlon.realcraft.world;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The integer offsets within some radius of the origin, sorted nearest-first.
+ *
+ * Used to walk over the chunks around a chunk so that the nearest are visited first, without allocating. Tables are
+ * built once per radius and shared.
+ */
+public final class ChunkOffsets {
+    // ##### PRIVATE STATIC FINAL #####
+    private static final ConcurrentMap<Integer, ChunkOffsets> TABLES = new ConcurrentHashMap<>();
+
+    // ##### PRIVATE FINAL #####
+    private final int radius;
+
+    /**
+     * The offsets, as consecutive triples of x-, y-, and z-components.
+     */
+    private final int[] offsets;
+
+    /**
+     * The length of each offset.
+     */
+    private final double[] distances;
+
+    // ##### CONSTRUCTORS #####
+    private ChunkOffsets(final int radius) {
+        this.radius = radius;
+        final int side = 2 * radius + 1;
+        final int[][] candidates = new int[side * side * side][];
+        int count = 0;
+        for (int x = -radius; x <= radius; x++) {
+            for (int y = -radius; y <= radius; y++) {
+                for (int z = -radius; z <= radius; z++) {
+                    if (x * x + y * y + z * z <= radius * radius) {
+                        candidates[count] = new int[]{x, y, z};
+                        count++;
+                    }
+                }
+            }
+        }
+        final int[][] sorted = Arrays.copyOf(candidates, count);
+        // Break ties between equally distant offsets by height, so that horizontal neighbors come first.
+        Arrays.sort(sorted, (a, b) -> {
+            final int bySquaredDistance = Integer.compare(squaredLength(a), squaredLength(b));
+            if (bySquaredDistance != 0) {
+                return bySquaredDistance;
+            }
+            final int byHeight = Integer.compare(Math.abs(a[1]), Math.abs(b[1]));
+            if (byHeight != 0) {
+                return byHeight;
+            }
+            for (int i = 0; i < 3; i++) {
+                final int byComponent = Integer.compare(a[i], b[i]);
+                if (byComponent != 0) {
+                    return byComponent;
+                }
+            }
+            return 0;
+        });
+        this.offsets = new int[3 * count];
+        this.distances = new double[count];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(sorted[i], 0, this.offsets, 3 * i, 3);
+            this.distances[i] = Math.sqrt(squaredLength(sorted[i]));
+        }
+    }
+
+    /**
+     * Get the table of offsets within some radius.
+     * @param radius The radius. Offsets on the surface of the sphere are included.
+     * @return The table of offsets within {@code radius}.
+     */
+    public static ChunkOffsets forRadius(final int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must be nonnegative");
+        }
+        return TABLES.computeIfAbsent(radius, ChunkOffsets::new);
+    }
+
+    // ##### GETTERS #####
+    /**
+     * @return The radius of this table.
+     */
+    public int getRadius() {
+        return this.radius;
+    }
+
+    /**
+     * @return The number of offsets in this table.
+     */
+    public int size() {
+        return this.distances.length;
+    }
+
+    /**
+     * @param i The index of an offset. Offsets are ordered by nondecreasing length.
+     * @return The x-component of the offset.
+     */
+    public int getX(final int i) {
+        return this.offsets[3 * i];
+    }
+
+    /**
+     * @param i The index of an offset. Offsets are ordered by nondecreasing length.
+     * @return The y-component of the offset.
+     */
+    public int getY(final int i) {
+        return this.offsets[3 * i + 1];
+    }
+
+    /**
+     * @param i The index of an offset. Offsets are ordered by nondecreasing length.
+     * @return The z-component of the offset.
+     */
+    public int getZ(final int i) {
+        return this.offsets[3 * i + 2];
+    }
+
+    /**
+     * @param i The index of an offset. Offsets are ordered by nondecreasing length.
+     * @return The length of the offset.
+     */
+    public double getDistance(final int i) {
+        return this.distances[i];
+    }
+
+    /**
+     * Apply an offset to a packed position.
+     * @param packed The packed position. See {@link BlockPos}.
+     * @param i The index of the offset.
+     * @return The packed position {@code packed} moved by offset {@code i}.
+     */
+    public long apply(final long packed, final int i) {
+        return BlockPos.offset(packed, this.offsets[3 * i], this.offsets[3 * i + 1], this.offsets[3 * i + 2]);
+    }
+
+    // ##### VIEW BIAS #####
+    /**
+     * Order the offsets so that those in some direction come earlier, without allocating.
+     *
+     * Offsets are ordered by their length minus {@code bias} times their component along the direction, so a bias of
+     * 0 keeps the nearest-first order, and with any bias below 1 no offset comes before one less than
+     * {@code 1 - bias} times as long.
+     * @param dirX The x-component of the direction.
+     * @param dirY The y-component of the direction.
+     * @param dirZ The z-component of the direction.
+     * @param bias The strength of the bias. At least 0 and less than 1.
+     * @param dest An array of length at least {@link #size()} to put the indices of the offsets into, in order.
+     */
+    public void viewOrder(final double dirX, final double dirY, final double dirZ, final double bias,
+                          final int[] dest) {
+        final double length = Math.sqrt(dirX * dirX + dirY * dirY + dirZ * dirZ);
+        final double scale = length == 0 ? 0 : bias / length;
+        final double biasX = dirX * scale;
+        final double biasY = dirY * scale;
+        final double biasZ = dirZ * scale;
+        // The nearest-first order is already close to the biased order, so insertion sort does little work.
+        for (int i = 0; i < this.size(); i++) {
+            final double key = this.biasedDistance(i, biasX, biasY, biasZ);
+            int j = i;
+            while (j > 0 && this.biasedDistance(dest[j - 1], biasX, biasY, biasZ) > key) {
+                dest[j] = dest[j - 1];
+                j--;
+            }
+            dest[j] = i;
+        }
+    }
+
+    // ##### PRIVATE #####
+    private double biasedDistance(final int i, final double biasX, final double biasY, final double biasZ) {
+        return this.distances[i]
+                - (this.offsets[3 * i] * biasX + this.offsets[3 * i + 1] * biasY + this.offsets[3 * i + 2] * biasZ);
+    }
+
+    private static int squaredLength(final int[] offset) {
+        return offset[0] * offset[0] + offset[1] * offset[1] + offset[2] * offset[2];
+    }
+}
@@ -0,0 +1,62 @@
+package com.sheaconlon.realcraft.world;
+
+/**
+ * Helpers for the integer positions of chunks.
+ *
+ * A chunk's position is its anchor point divided by {@link Chunk#BLOCKS}. Chunk positions are packed into
+ * {@code long}s in the same way as {@link BlockPos block positions}.
+ */
+public final class ChunkPos {
+    private ChunkPos() {
+    }
+
+    /**
+     * Get the packed position of the chunk containing a block.
+     * @param x The x-coordinate of the anchor point of the block.
+     * @param y The y-coordinate of the anchor point of the block.
+     * @param z The z-coordinate of the anchor point of the block.
+     * @return The packed position of the chunk containing the block.
+     */
+    public static long containing(final int x, final int y, final int z) {
+        return BlockPos.pack(Math.floorDiv(x, Chunk.BLOCKS), Math.floorDiv(y, Chunk.BLOCKS),
+                Math.floorDiv(z, Chunk.BLOCKS));
+    }
+
+    /**
+     * Get the packed position of the chunk containing a point.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param z The z-coordinate of the point.
+     * @return The packed position of the chunk containing the point.
+     */
+    public static long containing(final double x, final double y, final double z) {
+        return containing((int)Math.floor(x), (int)Math.floor(y), (int)Math.floor(z));
+    }
+
+    /**
+     * Get the x-coordinate of the anchor point of a chunk.
+     * @param packed The packed position of the chunk.
+     * @return The x-coordinate of the chunk's anchor point.
+     */
+    public static int anchorX(final long packed) {
+        return BlockPos.getX(packed) * Chunk.BLOCKS;
+    }
+
+    /**
+     * Get the y-coordinate of the anchor point of a chunk.
+     * @param packed The packed position of the chunk.
+     * @return The y-coordinate of the chunk's anchor point.
+     */
+    public static int anchorY(final long packed) {
+        return BlockPos.getY(packed) * Chunk.BLOCKS;
+    }
+
+    /**
+     * Get the z-coordinate of the anchor point of a chunk.
+     * @param packed The packed position of the chunk.
+     * @return The z-coordinate of the chunk's anchor point.
+     */
+    public static int anchorZ(final long packed) {
+        return BlockPos.getZ(packed) * Chunk.BLOCKS;
+    }
+}
@@ -0,0 +1,419 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The tickets held on chunks by the parts of the game which need them, which say which chunks must be kept loaded and
+ * what work each needs.
+ *
+ * A ticket covers the chunks within some radius of a center chunk, at some level, and has a type saying who holds it.
+ * Each chunk counts the tickets covering it at each level, so that tickets may overlap and be moved and removed
+ * independently: a chunk needs the work of the highest level any ticket covers it at, and may be unloaded once no
+ * ticket covers it. Holders move their tickets as what they need moves, rather than each walking the chunks near the
+ * player on its own. Listeners are told when a chunk's count falls to zero, so that it can be unloaded.
+ */
+public class ChunkTickets {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The tickets held on the chunks of the world.
+     */
+    public static final ChunkTickets WORLD = new ChunkTickets();
+
+    /**
+     * What a ticket needs done to the chunks it covers. Each level needs the work of the levels before it too.
+     */
+    public enum Level {
+        /**
+         * The chunk must be generated or loaded, and kept loaded.
+         */
+        GENERATE,
+
+        /**
+         * The chunk must be meshed for rendering.
+         */
+        MESH,
+
+        /**
+         * The chunk's entities must be simulated.
+         */
+        TICK
+    }
+
+    /**
+     * Who holds a ticket. Tickets of earlier types are served first; see {@link #getTickets(Level, List)}.
+     */
+    public enum Type {
+        /**
+         * The local player's view of the world.
+         */
+        PLAYER,
+
+        /**
+         * A client connected to a server.
+         */
+        CLIENT,
+
+        /**
+         * The simulation of world objects and entities.
+         */
+        SIMULATION,
+
+        /**
+         * A guess at where the local player is headed. See {@link PrefetchPlanner}.
+         */
+        PREFETCH
+    }
+
+    /**
+     * A ticket on the chunks within some radius of a center chunk.
+     */
+    public static final class Ticket {
+        private final Type type;
+        private final Level level;
+        private final int radius;
+        private volatile long center;
+
+        private Ticket(final Type type, final Level level, final long center, final int radius) {
+            this.type = type;
+            this.level = level;
+            this.center = center;
+            this.radius = radius;
+        }
+
+        /**
+         * @return Who holds this ticket.
+         */
+        public Type getType() {
+            return this.type;
+        }
+
+        /**
+         * @return What this ticket needs done to the chunks it covers.
+         */
+        public Level getLevel() {
+            return this.level;
+        }
+
+        /**
+         * @return The packed position of the chunk at the center of this ticket. See {@link ChunkPos}.
+         */
+        public long getCenter() {
+            return this.center;
+        }
+
+        /**
+         * @return The radius of this ticket, in chunks. See {@link ChunkOffsets#forRadius(int)}.
+         */
+        public int getRadius() {
+            return this.radius;
+        }
+    }
+
+    /**
+     * A listener for chunks which no ticket covers any more.
+     */
+    public interface Listener {
+        /**
+         * Respond to a chunk no longer being covered by any ticket.
+         *
+         * Called on whatever thread changed the tickets, after they are unlocked, so the chunk may have been covered
+         * again since.
+         * @param pos The packed position of the chunk. See {@link ChunkPos}.
+         */
+        void released(long pos);
+    }
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final Level[] LEVELS = Level.values();
+    private static final Type[] TYPES = Type.values();
+    private static final long[] NONE = new long[0];
+
+    // ##### PRIVATE FINAL #####
+    /**
+     * The tickets held.
+     */
+    private final List<Ticket> tickets;
+
+    /**
+     * The number of tickets covering each chunk at each level, indexed by level, by packed chunk position. Chunks no
+     * ticket covers have no entry.
+     */
+    private final LongHashMap<int[]> counts;
+
+    /**
+     * The number of chunks covered at each level or higher, indexed by level.
+     */
+    private final int[] chunksAtLevel;
+
+    /**
+     * Scratch space for the chunks which a change to the tickets has uncovered, by packed position.
+     */
+    private final LongHashSet uncovered;
+
+    // ##### PRIVATE #####
+    /**
+     * The listeners. Replaced rather than modified, so that it can be read without locking.
+     */
+    private volatile Listener[] listeners;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create an empty set of tickets.
+     */
+    public ChunkTickets() {
+        this.tickets = new ArrayList<>();
+        this.counts = new LongHashMap<>();
+        this.chunksAtLevel = new int[Level.values().length];
+        this.uncovered = new LongHashSet();
+        this.listeners = new Listener[0];
+    }
+
+    // ##### TICKETS #####
+    /**
+     * Add a ticket.
+     * @param type Who holds the ticket.
+     * @param level What the ticket needs done to the chunks it covers.
+     * @param center The packed position of the chunk at its center. See {@link ChunkPos}.
+     * @param radius The radius of the ticket, in chunks.
+     * @return The ticket.
+     */
+    public synchronized Ticket add(final Type type, final Level level, final long center, final int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must be nonnegative");
+        }
+        final Ticket ticket = new Ticket(type, level, center, radius);
+        this.tickets.add(ticket);
+        this.count(ticket, center, 1);
+        return ticket;
+    }
+
+    /**
+     * Move a ticket to a new center.
+     * @param ticket The ticket.
+     * @param center The packed position of the chunk at its new center. See {@link ChunkPos}.
+     */
+    public void move(final Ticket ticket, final long center) {
+        final long[] released;
+        synchronized (this) {
+            if (ticket.center == center) {
+                return;
+            }
+            this.checkHeld(ticket);
+            // Cover the new chunks before uncovering the old, so that those covered by both never drop to zero.
+            final long oldCenter = ticket.center;
+            ticket.center = center;
+            this.count(ticket, center, 1);
+            this.count(ticket, oldCenter, -1);
+            released = this.takeReleased();
+        }
+        this.notifyReleased(released);
+    }
+
+    /**
+     * Remove a ticket.
+     * @param ticket The ticket.
+     */
+    public void remove(final Ticket ticket) {
+        final long[] released;
+        synchronized (this) {
+            this.checkHeld(ticket);
+            this.tickets.remove(ticket);
+            this.count(ticket, ticket.center, -1);
+            released = this.takeReleased();
+        }
+        this.notifyReleased(released);
+    }
+
+    /**
+     * Get the tickets at or above some level, in the order their chunks should be served: by type, and then oldest
+     * first.
+     * @param level The level.
+     * @param dest The list to put the tickets in, replacing what it holds. Later changes to the tickets held do not
+     *             change it.
+     */
+    public synchronized void getTickets(final Level level, final List<Ticket> dest) {
+        dest.clear();
+        for (final Type type : TYPES) {
+            for (int i = 0; i < this.tickets.size(); i++) {
+                final Ticket ticket = this.tickets.get(i);
+                if (ticket.type == type && ticket.level.compareTo(level) >= 0) {
+                    dest.add(ticket);
+                }
+            }
+        }
+    }
+
+    // ##### CHUNKS #####
+    /**
+     * Get the highest level any ticket covers a chunk at.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @return The level, or null if no ticket covers the chunk.
+     */
+    public synchronized Level getLevel(final long pos) {
+        final int[] levelCounts = this.counts.get(pos);
+        final int level = levelCounts == null ? -1 : highestLevel(levelCounts);
+        return level < 0 ? null : LEVELS[level];
+    }
+
+    /**
+     * Return whether a chunk is covered by a ticket at or above some level.
+     * @param pos The packed position of the chunk. See {@link ChunkPos}.
+     * @param level The level.
+     * @return Whether the chunk needs the work of {@code level}.
+     */
+    public boolean isTicketed(final long pos, final Level level) {
+        final Level chunkLevel = this.getLevel(pos);
+        return chunkLevel != null && chunkLevel.compareTo(level) >= 0;
+    }
+
+    // ##### LISTENERS #####
+    /**
+     * Add a listener.
+     * @param listener The listener.
+     */
+    public synchronized void addListener(final Listener listener) {
+        final Listener[] listeners = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Remove a listener.
+     * @param listener The listener.
+     */
+    public synchronized void removeListener(final Listener listener) {
+        final Listener[] listeners = new Listener[this.listeners.length];
+        int count = 0;
+        for (final Listener other : this.listeners) {
+            if (other != listener) {
+                listeners[count] = other;
+                count++;
+            }
+        }
+        this.listeners = Arrays.copyOf(listeners, count);
+    }
+
+    // ##### INTROSPECTION #####
+    /**
+     * @param type A type of ticket.
+     * @return The number of tickets of that type held.
+     */
+    public synchronized int getTicketCount(final Type type) {
+        int count = 0;
+        for (final Ticket ticket : this.tickets) {
+            if (ticket.type == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param level A level.
+     * @return The number of chunks covered at that level or higher.
+     */
+    public synchronized int getChunkCount(final Level level) {
+        return this.chunksAtLevel[level.ordinal()];
+    }
+
+    /**
+     * @return A report of the tickets held of each type, and the chunks covered at each level.
+     */
+    public synchronized String format() {
+        final StringBuilder builder = new StringBuilder("chunk tickets:");
+        for (final Type type : TYPES) {
+            builder.append(' ').append(type.name().toLowerCase()).append(' ').append(this.getTicketCount(type));
+        }
+        builder.append("; chunks:");
+        for (final Level level : LEVELS) {
+            builder.append(' ').append(level.name().toLowerCase()).append(' ').append(this.getChunkCount(level));
+        }
+        return builder.append(System.lineSeparator()).toString();
+    }
+
+    // ##### PRIVATE #####
+    /**
+     * Add to the count of tickets covering each chunk a ticket covers when at some center, at the ticket's level.
+     * @param ticket The ticket.
+     * @param center The packed position of the chunk at the ticket's center. See {@link ChunkPos}.
+     * @param delta 1 to add the ticket, or -1 to remove it.
+     */
+    private void count(final Ticket ticket, final long center, final int delta) {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(ticket.radius);
+        final int level = ticket.level.ordinal();
+        for (int i = 0; i < offsets.size(); i++) {
+            final long pos = offsets.apply(center, i);
+            int[] levelCounts = this.counts.get(pos);
+            if (levelCounts == null) {
+                levelCounts = new int[LEVELS.length];
+                this.counts.put(pos, levelCounts);
+            }
+            final int before = highestLevel(levelCounts);
+            levelCounts[level] += delta;
+            final int after = highestLevel(levelCounts);
+            // The chunk is covered at every level up to its highest.
+            for (int l = after + 1; l <= before; l++) {
+                this.chunksAtLevel[l]--;
+            }
+            for (int l = before + 1; l <= after; l++) {
+                this.chunksAtLevel[l]++;
+            }
+            if (after < 0) {
+                this.counts.remove(pos);
+                this.uncovered.add(pos);
+            }
+        }
+    }
+
+    /**
+     * Take the chunks uncovered since this was last called which no ticket has covered again.
+     * @return Their packed positions.
+     */
+    private long[] takeReleased() {
+        if (this.uncovered.size() == 0) {
+            return NONE;
+        }
+        final long[] uncovered = new long[this.uncovered.size()];
+        this.uncovered.toArray(uncovered);
+        this.uncovered.clear();
+        int count = 0;
+        for (final long pos : uncovered) {
+            if (!this.counts.containsKey(pos)) {
+                uncovered[count] = pos;
+                count++;
+            }
+        }
+        return Arrays.copyOf(uncovered, count);
+    }
+
+    private void notifyReleased(final long[] released) {
+        for (final Listener listener : this.listeners) {
+            for (final long pos : released) {
+                listener.released(pos);
+            }
+        }
+    }
+
+    private void checkHeld(final Ticket ticket) {
+        if (!this.tickets.contains(ticket)) {
+            throw new IllegalArgumentException("ticket is not held");
+        }
+    }
+
+    /**
+     * @return The highest level with a nonzero count, or -1 if there is none.
+     */
+    private static int highestLevel(final int[] levelCounts) {
+        for (int level = levelCounts.length - 1; level >= 0; level--) {
+            if (levelCounts[level] > 0) {
+                return level;
+            }
+        }
+        return -1;
+    }
+}
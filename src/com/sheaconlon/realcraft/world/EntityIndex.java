@@ -0,0 +1,429 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.entities.EntityStore;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+
+import java.util.Arrays;
+
+/**
+ * A spatial hash of the entities of an entity store, for finding the entities near a point.
+ *
+ * Space is divided into cubical cells, and each entity is filed under the cell containing its position. Moves made
+ * through {@link Entity#setPos(double, double, double)} are queued and applied in one batch before the next query;
+ * moves made by systems are found by checking every row of a table after a system has run over it. Queries write
+ * their results into arrays supplied by the caller, so they allocate nothing.
+ */
+public class EntityIndex implements EntityStore.Listener {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The length of a side of a cell of the world's entity index.
+     */
+    public static final double CELL_SIZE = 8;
+
+    /**
+     * The index of the entities of the world.
+     */
+    public static final EntityIndex WORLD = new EntityIndex(EntityStore.WORLD, CELL_SIZE);
+
+    // ##### PRIVATE STATIC FINAL #####
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The entities filed under one cell.
+     */
+    private static class Cell {
+        private long key;
+        private int[] handles;
+        private int size;
+
+        private Cell() {
+            this.handles = new int[INITIAL_CAPACITY];
+            this.size = 0;
+        }
+    }
+
+    // ##### PRIVATE FINAL #####
+    private final EntityStore store;
+    private final double cellSize;
+    private final LongHashMap<Cell> cells;
+
+    // ##### PRIVATE #####
+    /**
+     * The cell of each handle, or null if it is not filed, and its place within that cell. Indexed by handle.
+     */
+    private Cell[] handleCells;
+    private int[] handleSlots;
+
+    /**
+     * Handles whose positions have changed since the last batch of moves, and whether each handle is among them.
+     */
+    private int[] pending;
+    private int pendingCount;
+    private boolean[] handlePending;
+
+    /**
+     * Empty cells which may be reused, as a stack.
+     */
+    private Cell[] freeCells;
+    private int freeCellCount;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create an index of the entities of some entity store. It files the entities already in the store, and is
+     * updated as the store changes.
+     * @param store The entity store.
+     * @param cellSize The length of a side of a cell.
+     */
+    public EntityIndex(final EntityStore store, final double cellSize) {
+        this.store = store;
+        this.cellSize = cellSize;
+        this.cells = new LongHashMap<>();
+        this.handleCells = new Cell[INITIAL_CAPACITY];
+        this.handleSlots = new int[INITIAL_CAPACITY];
+        this.pending = new int[INITIAL_CAPACITY];
+        this.pendingCount = 0;
+        this.handlePending = new boolean[INITIAL_CAPACITY];
+        this.freeCells = new Cell[INITIAL_CAPACITY];
+        this.freeCellCount = 0;
+        store.addListener(this);
+    }
+
+    // ##### QUERIES #####
+    /**
+     * Find the entities within some distance of a point.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param z The z-coordinate of the point.
+     * @param radius The distance.
+     * @param dest The array to put the entities in, in no particular order. If there are more entities than fit,
+     *             the rest are left out.
+     * @return The number of entities put into {@code dest}.
+     */
+    public synchronized int withinRadius(final double x, final double y, final double z, final double radius,
+                                         final Entity[] dest) {
+        this.applyMoves();
+        final double radiusSquared = radius * radius;
+        final int minCellX = this.cellCoord(x - radius);
+        final int minCellY = this.cellCoord(y - radius);
+        final int minCellZ = this.cellCoord(z - radius);
+        final int maxCellX = this.cellCoord(x + radius);
+        final int maxCellY = this.cellCoord(y + radius);
+        final int maxCellZ = this.cellCoord(z + radius);
+        int count = 0;
+        for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+            for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                    final Cell cell = this.cells.get(BlockPos.pack(cellX, cellY, cellZ));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size; i++) {
+                        final Entity entity = this.store.getEntity(cell.handles[i]);
+                        if (squaredDistance(entity, x, y, z) <= radiusSquared) {
+                            if (count == dest.length) {
+                                return count;
+                            }
+                            dest[count] = entity;
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Find the entities within an axis-aligned box.
+     * @param minX The least x-coordinate of the box.
+     * @param minY The least y-coordinate of the box.
+     * @param minZ The least z-coordinate of the box.
+     * @param maxX The greatest x-coordinate of the box.
+     * @param maxY The greatest y-coordinate of the box.
+     * @param maxZ The greatest z-coordinate of the box.
+     * @param dest The array to put the entities in, in no particular order. If there are more entities than fit,
+     *             the rest are left out.
+     * @return The number of entities put into {@code dest}.
+     */
+    public synchronized int withinBox(final double minX, final double minY, final double minZ,
+                                      final double maxX, final double maxY, final double maxZ, final Entity[] dest) {
+        this.applyMoves();
+        final int maxCellX = this.cellCoord(maxX);
+        final int maxCellY = this.cellCoord(maxY);
+        final int maxCellZ = this.cellCoord(maxZ);
+        int count = 0;
+        for (int cellX = this.cellCoord(minX); cellX <= maxCellX; cellX++) {
+            for (int cellY = this.cellCoord(minY); cellY <= maxCellY; cellY++) {
+                for (int cellZ = this.cellCoord(minZ); cellZ <= maxCellZ; cellZ++) {
+                    final Cell cell = this.cells.get(BlockPos.pack(cellX, cellY, cellZ));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size; i++) {
+                        final Entity entity = this.store.getEntity(cell.handles[i]);
+                        final double x = entity.getPosX();
+                        final double y = entity.getPosY();
+                        final double z = entity.getPosZ();
+                        if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                            if (count == dest.length) {
+                                return count;
+                            }
+                            dest[count] = entity;
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Find the entities nearest to a point.
+     *
+     * Searches outward from the cell containing the point one shell of cells at a time, stopping once no unsearched
+     * cell could hold an entity nearer than the farthest one found.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param z The z-coordinate of the point.
+     * @param maxDistance The distance beyond which entities are not considered.
+     * @param dest The array to put the entities in, nearest first. Its length is the number of entities to find.
+     * @param squaredDistances The array to put the squared distances of the entities from the point in. Must be at
+     *                         least as long as {@code dest}.
+     * @return The number of entities put into {@code dest}, which is less than its length only if there are not
+     *         enough entities within {@code maxDistance}.
+     */
+    public synchronized int nearest(final double x, final double y, final double z, final double maxDistance,
+                                    final Entity[] dest, final double[] squaredDistances) {
+        this.applyMoves();
+        final int k = dest.length;
+        if (k == 0) {
+            return 0;
+        }
+        final double maxSquaredDistance = maxDistance * maxDistance;
+        final int centerX = this.cellCoord(x);
+        final int centerY = this.cellCoord(y);
+        final int centerZ = this.cellCoord(z);
+        final int maxShell = (int)Math.ceil(maxDistance / this.cellSize);
+        int count = 0;
+        for (int shell = 0; shell <= maxShell; shell++) {
+            for (int dx = -shell; dx <= shell; dx++) {
+                for (int dy = -shell; dy <= shell; dy++) {
+                    final boolean onFace = Math.abs(dx) == shell || Math.abs(dy) == shell;
+                    // Off the faces perpendicular to x and y, only the two z-faces belong to this shell.
+                    final int stepZ = onFace || shell == 0 ? 1 : 2 * shell;
+                    for (int dz = -shell; dz <= shell; dz += stepZ) {
+                        final Cell cell = this.cells.get(BlockPos.pack(centerX + dx, centerY + dy, centerZ + dz));
+                        if (cell == null) {
+                            continue;
+                        }
+                        for (int i = 0; i < cell.size; i++) {
+                            final Entity entity = this.store.getEntity(cell.handles[i]);
+                            final double squaredDistance = squaredDistance(entity, x, y, z);
+                            if (squaredDistance > maxSquaredDistance
+                                    || (count == k && squaredDistance >= squaredDistances[k - 1])) {
+                                continue;
+                            }
+                            // Insert in order of distance, dropping the farthest if full.
+                            int place = count == k ? k - 1 : count;
+                            while (place > 0 && squaredDistances[place - 1] > squaredDistance) {
+                                dest[place] = dest[place - 1];
+                                squaredDistances[place] = squaredDistances[place - 1];
+                                place--;
+                            }
+                            dest[place] = entity;
+                            squaredDistances[place] = squaredDistance;
+                            if (count < k) {
+                                count++;
+                            }
+                        }
+                    }
+                }
+            }
+            // Every cell beyond this shell is at least shell cell sizes from the point.
+            final double searched = shell * this.cellSize;
+            if (count == k && squaredDistances[k - 1] <= searched * searched) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of entities filed in this index, once pending moves are applied.
+     */
+    public synchronized int size() {
+        this.applyMoves();
+        int size = 0;
+        for (int handle = 0; handle < this.handleCells.length; handle++) {
+            if (this.handleCells[handle] != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    // ##### LISTENER #####
+    @Override
+    public synchronized void created(final int handle) {
+        this.ensureCapacity(handle + 1);
+        this.queue(handle);
+    }
+
+    @Override
+    public synchronized void moved(final int handle) {
+        this.queue(handle);
+    }
+
+    @Override
+    public synchronized void destroyed(final int handle) {
+        this.handlePending[handle] = false;
+        if (this.handleCells[handle] != null) {
+            this.unfile(handle);
+        }
+    }
+
+    @Override
+    public synchronized void updated(final EntityStore.Table table) {
+        final double[] posX = table.getPosX();
+        final double[] posY = table.getPosY();
+        final double[] posZ = table.getPosZ();
+        final int[] handles = table.getHandles();
+        for (int row = 0; row < table.size(); row++) {
+            final int handle = handles[row];
+            this.refile(handle, this.key(posX[row], posY[row], posZ[row]));
+        }
+    }
+
+    // ##### HELPERS #####
+    /**
+     * Queue a handle to be refiled in the next batch of moves.
+     * @param handle The handle.
+     */
+    private void queue(final int handle) {
+        if (this.handlePending[handle]) {
+            return;
+        }
+        this.handlePending[handle] = true;
+        if (this.pendingCount == this.pending.length) {
+            this.pending = Arrays.copyOf(this.pending, 2 * this.pending.length);
+        }
+        this.pending[this.pendingCount] = handle;
+        this.pendingCount++;
+    }
+
+    /**
+     * Refile every handle whose position has changed since the last batch of moves.
+     */
+    private void applyMoves() {
+        for (int i = 0; i < this.pendingCount; i++) {
+            final int handle = this.pending[i];
+            // Destroyed handles stay in the queue but are no longer marked.
+            if (!this.handlePending[handle]) {
+                continue;
+            }
+            this.handlePending[handle] = false;
+            final Entity entity = this.store.getEntity(handle);
+            this.refile(handle, this.key(entity.getPosX(), entity.getPosY(), entity.getPosZ()));
+        }
+        this.pendingCount = 0;
+    }
+
+    /**
+     * File a handle under some cell, moving it out of the cell it was filed under, if any.
+     * @param handle The handle.
+     * @param key The key of the cell.
+     */
+    private void refile(final int handle, final long key) {
+        final Cell current = this.handleCells[handle];
+        if (current != null) {
+            if (current.key == key) {
+                return;
+            }
+            this.unfile(handle);
+        }
+        Cell cell = this.cells.get(key);
+        if (cell == null) {
+            if (this.freeCellCount > 0) {
+                this.freeCellCount--;
+                cell = this.freeCells[this.freeCellCount];
+                this.freeCells[this.freeCellCount] = null;
+            } else {
+                cell = new Cell();
+            }
+            cell.key = key;
+            this.cells.put(key, cell);
+        }
+        if (cell.size == cell.handles.length) {
+            cell.handles = Arrays.copyOf(cell.handles, 2 * cell.handles.length);
+        }
+        cell.handles[cell.size] = handle;
+        this.handleCells[handle] = cell;
+        this.handleSlots[handle] = cell.size;
+        cell.size++;
+    }
+
+    /**
+     * Remove a handle from the cell it is filed under, moving the cell's last handle into its place.
+     * @param handle The handle.
+     */
+    private void unfile(final int handle) {
+        final Cell cell = this.handleCells[handle];
+        final int slot = this.handleSlots[handle];
+        final int last = cell.size - 1;
+        if (slot != last) {
+            final int moved = cell.handles[last];
+            cell.handles[slot] = moved;
+            this.handleSlots[moved] = slot;
+        }
+        cell.size--;
+        this.handleCells[handle] = null;
+        if (cell.size == 0) {
+            this.cells.remove(cell.key);
+            if (this.freeCellCount == this.freeCells.length) {
+                this.freeCells = Arrays.copyOf(this.freeCells, 2 * this.freeCells.length);
+            }
+            this.freeCells[this.freeCellCount] = cell;
+            this.freeCellCount++;
+        }
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity <= this.handleCells.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, 2 * this.handleCells.length);
+        this.handleCells = Arrays.copyOf(this.handleCells, newCapacity);
+        this.handleSlots = Arrays.copyOf(this.handleSlots, newCapacity);
+        this.handlePending = Arrays.copyOf(this.handlePending, newCapacity);
+    }
+
+    /**
+     * Get the coordinate of the cell containing a coordinate.
+     * @param coord The coordinate.
+     * @return The coordinate of the cell containing {@code coord}.
+     */
+    private int cellCoord(final double coord) {
+        return (int)Math.floor(coord / this.cellSize);
+    }
+
+    /**
+     * Get the key of the cell containing a point.
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param z The z-coordinate of the point.
+     * @return The key of the cell containing the point, its coordinates packed as by
+     *         {@link BlockPos#pack(int, int, int)}.
+     */
+    private long key(final double x, final double y, final double z) {
+        return BlockPos.pack(this.cellCoord(x), this.cellCoord(y), this.cellCoord(z));
+    }
+
+    private static double squaredDistance(final Entity entity, final double x, final double y, final double z) {
+        final double dx = entity.getPosX() - x;
+        final double dy = entity.getPosY() - y;
+        final double dz = entity.getPosZ() - z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,360 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.concurrency.Worker;
+import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A planner of which chunks to prepare before the player reaches them, by guessing where the player is headed.
+ *
+ * The planner smooths the player's velocity from the history of its position, and how fast it is turning from the
+ * history of its orientation, and extrapolates both: the player is taken to keep its speed, climb or fall at the same
+ * rate, and keep turning at the same rate, which follows a straight line while it flies straight and an arc while it
+ * circles. It holds {@link ChunkTickets.Type#PREFETCH} tickets at {@link ChunkTickets.Level#MESH} on points along the
+ * predicted path, up to some horizon ahead, so that the chunks there are generated and meshed before the player's own
+ * tickets reach them. Prefetch tickets are served after every other ticket, so they only use time left over.
+ *
+ * A guess costs nothing to take back before its chunks are prepared, since tickets are just moved or removed, but a
+ * chunk prepared and never reached wasted the work. The planner keeps score: a chunk which a prefetch ticket first
+ * covered before the player's own radius did is a hit if the player's radius covers it within twice the horizon, and
+ * a miss otherwise. The less often its guesses pay off, the shorter the horizon it looks ahead, down to nothing once
+ * the hit rate falls to the break-even point, where the work wasted on misses outweighs the pop-in saved by hits. See
+ * {@link #WASTE_COST}. Without outcomes to go on, its estimate drifts back up, so that it tries again.
+ */
+public class PrefetchPlanner extends Worker {
+    // ##### PUBLIC STATIC FINAL #####
+    /**
+     * The default for how far ahead to predict the player's path. In seconds.
+     */
+    public static final double DEFAULT_HORIZON = 2;
+
+    // ##### PRIVATE STATIC FINAL #####
+    /**
+     * A prefetch planner's return value for {@link #getTargetFreq()}.
+     */
+    private static final double TARGET_FREQ = 10;
+
+    /**
+     * The time over which the player's velocity and turn rate are smoothed. In seconds.
+     */
+    private static final double SMOOTHING_TIME = 0.3;
+
+    /**
+     * The cost of preparing a chunk the player never reaches, relative to the cost of a chunk popping in because it
+     * was not prepared in time. Prefetching pays off while the hit rate is above {@code c / (1 + c)}.
+     */
+    private static final double WASTE_COST = 0.5;
+
+    private static final double BREAK_EVEN_HIT_RATE = WASTE_COST / (1 + WASTE_COST);
+
+    /**
+     * The weight of each outcome in the estimate of the hit rate.
+     */
+    private static final double OUTCOME_WEIGHT = 0.01;
+
+    /**
+     * The time over which the estimate of the hit rate drifts back up without outcomes. In seconds.
+     */
+    private static final double RECOVERY_TIME = 10;
+
+    /**
+     * The most tickets to place along the predicted path.
+     */
+    private static final int MAX_TICKETS = 4;
+
+    /**
+     * A turn rate slower than this is taken to be flying straight. In radians per second.
+     */
+    private static final double MIN_TURN_RATE = 1e-6;
+
+    private static final double FULL_REV_ANGLE = 2 * Math.PI;
+
+    private static final Counter HITS = Metrics.counter("PrefetchPlanner", "hits");
+    private static final Counter MISSES = Metrics.counter("PrefetchPlanner", "misses");
+
+    // ##### PRIVATE FINAL #####
+    /**
+     * The tickets to hold prefetch tickets in.
+     */
+    private final ChunkTickets tickets;
+
+    /**
+     * The longest time ahead to predict the player's path. In seconds.
+     */
+    private final double horizon;
+
+    /**
+     * The radius of the prefetch tickets, and of the player's own tickets. In chunks.
+     */
+    private final int radius;
+
+    /**
+     * The prefetch tickets held, nearest the player first.
+     */
+    private final List<ChunkTickets.Ticket> held;
+
+    /**
+     * The time at which each chunk was first covered by a prefetch ticket but not by the player's radius, by packed
+     * position, for chunks whose outcome is not known yet. In seconds since this planner began observing.
+     */
+    private final LongHashMap<Double> pending;
+
+    /**
+     * Scratch space for the positions of the chunks whose outcomes are known.
+     */
+    private final List<Long> resolved;
+
+    /**
+     * Scratch space for the player's position.
+     */
+    private final double[] playerPos;
+
+    // ##### PRIVATE #####
+    private boolean observed;
+    private double time;
+    private double lastX, lastY, lastZ, lastOrient;
+    private double velX, velY, velZ, turnRate;
+
+    /**
+     * The estimate of the hit rate.
+     */
+    private double hitRate;
+
+    private long hits;
+    private long misses;
+
+    // ##### CONSTRUCTORS #####
+    /**
+     * Create a prefetch planner.
+     * @param tickets The tickets to hold prefetch tickets in.
+     * @param horizon The longest time ahead to predict the player's path. In seconds.
+     * @param radius The radius of the prefetch tickets, which should be that of the player's own tickets. In chunks.
+     */
+    public PrefetchPlanner(final ChunkTickets tickets, final double horizon, final int radius) {
+        if (horizon <= 0) {
+            throw new IllegalArgumentException("horizon must be positive");
+        }
+        this.tickets = tickets;
+        this.horizon = horizon;
+        this.radius = radius;
+        this.held = new ArrayList<>();
+        this.pending = new LongHashMap<>();
+        this.resolved = new ArrayList<>();
+        this.playerPos = new double[3];
+        this.hitRate = 1;
+    }
+
+    // ##### WORKER #####
+    @Override
+    public PRIORITY_LEVEL getPriorityLevel() {
+        return PRIORITY_LEVEL.MEDIUM;
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchPlanner";
+    }
+
+    @Override
+    public boolean needsMainThread() {
+        return false;
+    }
+
+    @Override
+    public boolean needsDedicatedThread() {
+        return false;
+    }
+
+    @Override
+    protected double getTargetFreq() {
+        return PrefetchPlanner.TARGET_FREQ;
+    }
+
+    /**
+     * Observe the player, and move the prefetch tickets along its predicted path.
+     */
+    @Override
+    protected void tick(final double interval) {
+        Player.PLAYER.getPos(this.playerPos);
+        this.observe(this.playerPos[0], this.playerPos[1], this.playerPos[2], Player.PLAYER.getOrient(), interval);
+    }
+
+    // ##### PLANNING #####
+    /**
+     * Observe the player's pose, score the guesses it settles, and move the prefetch tickets along the player's
+     * predicted path.
+     * @param x The x-coordinate of the player's position.
+     * @param y The y-coordinate of the player's position.
+     * @param z The z-coordinate of the player's position.
+     * @param orient The player's orientation. See {@link WorldObject#getOrient()}.
+     * @param interval The time since the last observation. In seconds.
+     */
+    public void observe(final double x, final double y, final double z, final double orient,
+                        final double interval) {
+        if (this.observed && interval > 0) {
+            final double weight = 1 - Math.exp(-interval / SMOOTHING_TIME);
+            final double turned = Math.IEEEremainder(orient - this.lastOrient, FULL_REV_ANGLE);
+            this.turnRate += weight * (turned / interval - this.turnRate);
+            // Turn the smoothed velocity with the player, so that smoothing does not make it lag behind on arcs. The
+            // velocity between the last two positions is that of halfway between them, so it is turned half as far.
+            final double turn = this.turnRate * interval;
+            final double oldVelX = this.velX;
+            this.velX = oldVelX * Math.cos(turn) + this.velZ * Math.sin(turn);
+            this.velZ = -oldVelX * Math.sin(turn) + this.velZ * Math.cos(turn);
+            final double stepX = (x - this.lastX) / interval;
+            final double stepZ = (z - this.lastZ) / interval;
+            final double cos = Math.cos(turn / 2);
+            final double sin = Math.sin(turn / 2);
+            this.velX += weight * (stepX * cos + stepZ * sin - this.velX);
+            this.velY += weight * ((y - this.lastY) / interval - this.velY);
+            this.velZ += weight * (-stepX * sin + stepZ * cos - this.velZ);
+            this.time += interval;
+            this.hitRate += (1 - this.hitRate) * Math.min(1, interval / RECOVERY_TIME);
+        }
+        this.observed = true;
+        this.lastX = x;
+        this.lastY = y;
+        this.lastZ = z;
+        this.lastOrient = orient;
+        final long playerChunk = ChunkPos.containing(x, y, z);
+        this.score(playerChunk);
+        this.plan(playerChunk);
+    }
+
+    /**
+     * Predict where the player will be some time from its last observed pose.
+     * @param time The time. In seconds.
+     * @param dest The array to write the predicted x-, y- and z-coordinates to.
+     */
+    public void predict(final double time, final double[] dest) {
+        // Orientation theta faces (cos theta, -sin theta) in the xz-plane. See Vec3d#rotateHorizontal.
+        final double speed = Math.hypot(this.velX, this.velZ);
+        final double heading = Math.atan2(-this.velZ, this.velX);
+        if (Math.abs(this.turnRate) < MIN_TURN_RATE) {
+            dest[0] = this.lastX + this.velX * time;
+            dest[2] = this.lastZ + this.velZ * time;
+        } else {
+            final double turned = heading + this.turnRate * time;
+            dest[0] = this.lastX + speed / this.turnRate * (Math.sin(turned) - Math.sin(heading));
+            dest[2] = this.lastZ + speed / this.turnRate * (Math.cos(turned) - Math.cos(heading));
+        }
+        dest[1] = this.lastY + this.velY * time;
+    }
+
+    /**
+     * Move the prefetch tickets to points spaced along the player's predicted path, about a ticket's radius apart.
+     * @param playerChunk The packed position of the player's chunk. See {@link ChunkPos}.
+     */
+    private void plan(final long playerChunk) {
+        final double horizon = this.getHorizon();
+        final double[] point = new double[3];
+        this.predict(horizon, point);
+        final double distance = Math.sqrt(this.velX * this.velX + this.velY * this.velY + this.velZ * this.velZ)
+                * horizon;
+        final int wanted = ChunkPos.containing(point[0], point[1], point[2]) == playerChunk ? 0
+                : Math.min(MAX_TICKETS, (int)Math.ceil(distance / (this.radius * Chunk.SIZE)));
+        while (this.held.size() > wanted) {
+            this.tickets.remove(this.held.remove(this.held.size() - 1));
+        }
+        for (int i = 0; i < wanted; i++) {
+            this.predict(horizon * (i + 1) / wanted, point);
+            final long center = ChunkPos.containing(point[0], point[1], point[2]);
+            if (i == this.held.size()) {
+                this.held.add(this.tickets.add(ChunkTickets.Type.PREFETCH, ChunkTickets.Level.MESH, center,
+                        this.radius));
+            } else if (this.held.get(i).getCenter() != center) {
+                this.tickets.move(this.held.get(i), center);
+            } else {
+                continue;
+            }
+            this.track(center, playerChunk);
+        }
+    }
+
+    /**
+     * Start keeping score of the chunks a prefetch ticket newly covers which the player's radius does not.
+     * @param center The packed position of the chunk at the center of the ticket. See {@link ChunkPos}.
+     * @param playerChunk The packed position of the player's chunk. See {@link ChunkPos}.
+     */
+    private void track(final long center, final long playerChunk) {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(this.radius);
+        for (int i = 0; i < offsets.size(); i++) {
+            final long pos = offsets.apply(center, i);
+            if (!this.isNear(pos, playerChunk) && !this.pending.containsKey(pos)) {
+                this.pending.put(pos, this.time);
+            }
+        }
+    }
+
+    /**
+     * Settle the guesses the player has now reached, or has not reached in time.
+     * @param playerChunk The packed position of the player's chunk. See {@link ChunkPos}.
+     */
+    private void score(final long playerChunk) {
+        final double deadline = this.time - 2 * this.horizon;
+        this.pending.forEach((added, pos) -> {
+            if (this.isNear(pos, playerChunk)) {
+                this.hits++;
+                HITS.increment();
+                this.hitRate += (1 - this.hitRate) * OUTCOME_WEIGHT;
+                this.resolved.add(pos);
+            } else if (added < deadline) {
+                this.misses++;
+                MISSES.increment();
+                this.hitRate -= this.hitRate * OUTCOME_WEIGHT;
+                this.resolved.add(pos);
+            }
+        });
+        for (final long pos : this.resolved) {
+            this.pending.remove(pos);
+        }
+        this.resolved.clear();
+    }
+
+    /**
+     * @return Whether a chunk is within the player's radius of the player's chunk.
+     */
+    private boolean isNear(final long pos, final long playerChunk) {
+        final int dx = BlockPos.getX(pos) - BlockPos.getX(playerChunk);
+        final int dy = BlockPos.getY(pos) - BlockPos.getY(playerChunk);
+        final int dz = BlockPos.getZ(pos) - BlockPos.getZ(playerChunk);
+        return dx * dx + dy * dy + dz * dz <= this.radius * this.radius;
+    }
+
+    // ##### INTROSPECTION #####
+    /**
+     * @return How far ahead this planner currently predicts the player's path, shortened from the longest by how
+     * little its guesses pay off. In seconds.
+     */
+    public double getHorizon() {
+        final double payoff = (this.hitRate - BREAK_EVEN_HIT_RATE) / (1 - BREAK_EVEN_HIT_RATE);
+        return this.horizon * Math.max(0, Math.min(1, payoff));
+    }
+
+    /**
+     * @return The number of chunks prefetched which the player went on to reach.
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return The number of chunks prefetched which the player did not reach in time.
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return The fraction of the chunks prefetched whose outcome is known which the player went on to reach, or NaN
+     * if none are known yet.
+     */
+    public double getHitRate() {
+        return (double)this.hits / (this.hits + this.misses);
+    }
+}
@@ -8,6 +8,10 @@ import java.util.List;
 
 /**
  * A world object.
+ *
+ * A world object may be moved from several threads at once, by the simulator and the user interface say. Each change
+ * made relative to its current state, such as by {@link #changePos(double, double, double)}, holds its lock, as must
+ * any other code which reads its state and then writes back to it. See {@link #getLock()}.
  */
 public abstract class WorldObject {
     private static final double FULL_REV_ANGLE = 2 * Math.PI;
@@ -29,6 +33,28 @@ public abstract class WorldObject {
         this.velocity = velocity;
     }
 
+    /**
+     * Create a world object which stores its position, orientation, and velocity elsewhere.
+     *
+     * Subclasses using this constructor must override every accessor and mutator of position, orientation, and
+     * velocity which does not delegate to another.
+     */
+    protected WorldObject() {
+        this.pos = null;
+        this.orient = 0;
+        this.velocity = null;
+    }
+
+    /**
+     * Get the lock guarding this world object's state. See {@link WorldObject}.
+     *
+     * The default implementation returns this world object.
+     * @return The lock guarding this world object's state.
+     */
+    public Object getLock() {
+        return this;
+    }
+
     /**
      * Get the vertices of this world object, with positions relative to this world object's anchor point.
      * @return The vertices of this world object, with positions relative to this world object's anchor point.
@@ -57,12 +83,57 @@ public abstract class WorldObject {
         return this.pos;
     }
 
+    /**
+     * Get the position of the anchor point of this world object, all three coordinates from the same moment.
+     * @param dest An array to put the x-, y-, and z-coordinates in.
+     */
+    public void getPos(final double[] dest) {
+        synchronized (this.getLock()) {
+            dest[0] = this.getPosX();
+            dest[1] = this.getPosY();
+            dest[2] = this.getPosZ();
+        }
+    }
+
+    /**
+     * @return The x-coordinate of {@link #getPos()}.
+     */
+    public double getPosX() {
+        return this.getPos().getX();
+    }
+
+    /**
+     * @return The y-coordinate of {@link #getPos()}.
+     */
+    public double getPosY() {
+        return this.getPos().getY();
+    }
+
+    /**
+     * @return The z-coordinate of {@link #getPos()}.
+     */
+    public double getPosZ() {
+        return this.getPos().getZ();
+    }
+
     /**
      * Change this world object's position. See {@link #getPos()}.
      * @param disp The displacement to add to the position.
      */
     public void changePos(final Vector disp) {
-        this.setPos(Vector.add(this.getPos(), disp));
+        this.changePos(disp.getX(), disp.getY(), disp.getZ());
+    }
+
+    /**
+     * Change this world object's position. See {@link #getPos()}.
+     * @param dx The displacement to add to the x-coordinate.
+     * @param dy The displacement to add to the y-coordinate.
+     * @param dz The displacement to add to the z-coordinate.
+     */
+    public void changePos(final double dx, final double dy, final double dz) {
+        synchronized (this.getLock()) {
+            this.setPos(this.getPosX() + dx, this.getPosY() + dy, this.getPosZ() + dz);
+        }
     }
 
     /**
@@ -73,6 +144,16 @@ public abstract class WorldObject {
         this.pos = pos;
     }
 
+    /**
+     * Set this world object's position. See {@link #getPos()}.
+     * @param x The new x-coordinate.
+     * @param y The new y-coordinate.
+     * @param z The new z-coordinate.
+     */
+    public void setPos(final double x, final double y, final double z) {
+        this.setPos(new Vector(x, y, z));
+    }
+
     /**
      * Get the direction this world object faces in the xz-plane.
      * @return The direction this world object faces in the xz-plane, as an angle from the positive x-axis
@@ -87,7 +168,9 @@ public abstract class WorldObject {
      * @param delta The change in the direction this world object faces. In radians.
      */
     public void changeOrient(final double delta) {
-        this.setOrient(this.getOrient() + delta);
+        synchronized (this.getLock()) {
+            this.setOrient(this.getOrient() + delta);
+        }
     }
 
     /**
@@ -95,7 +178,16 @@ public abstract class WorldObject {
      * @param orient The direction this world object should face. In radians.
      */
     public void setOrient(final double orient) {
-        this.orient = orient % FULL_REV_ANGLE;
+        this.orient = wrapOrient(orient);
+    }
+
+    /**
+     * Wrap a horizontal orientation into a single revolution. See {@link #getOrient()}.
+     * @param orient The orientation. In radians.
+     * @return {@code orient}, less whole revolutions. In radians.
+     */
+    protected static double wrapOrient(final double orient) {
+        return orient % FULL_REV_ANGLE;
     }
 
     /**
@@ -105,12 +197,45 @@ public abstract class WorldObject {
         return this.velocity;
     }
 
+    /**
+     * @return The x-component of {@link #getVelocity()}.
+     */
+    public double getVelocityX() {
+        return this.getVelocity().getX();
+    }
+
+    /**
+     * @return The y-component of {@link #getVelocity()}.
+     */
+    public double getVelocityY() {
+        return this.getVelocity().getY();
+    }
+
+    /**
+     * @return The z-component of {@link #getVelocity()}.
+     */
+    public double getVelocityZ() {
+        return this.getVelocity().getZ();
+    }
+
     /**
      * Change the velocity of this world object.
      * @param disp The displacement to add to the velocity.
      */
     public void changeVelocity(final Vector disp) {
-        this.setVelocity(Vector.add(this.getVelocity(), disp));
+        this.changeVelocity(disp.getX(), disp.getY(), disp.getZ());
+    }
+
+    /**
+     * Change the velocity of this world object.
+     * @param dx The displacement to add to the x-component.
+     * @param dy The displacement to add to the y-component.
+     * @param dz The displacement to add to the z-component.
+     */
+    public void changeVelocity(final double dx, final double dy, final double dz) {
+        synchronized (this.getLock()) {
+            this.setVelocity(this.getVelocityX() + dx, this.getVelocityY() + dy, this.getVelocityZ() + dz);
+        }
     }
 
     /**
@@ -120,4 +245,14 @@ public abstract class WorldObject {
     public void setVelocity(final Vector velocity) {
         this.velocity = velocity;
     }
+
+    /**
+     * Set the velocity of this world object.
+     * @param x The new x-component.
+     * @param y The new y-component.
+     * @param z The new z-component.
+     */
+    public void setVelocity(final double x, final double y, final double z) {
+        this.setVelocity(new Vector(x, y, z));
+    }
 }
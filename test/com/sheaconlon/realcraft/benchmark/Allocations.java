@@ -0,0 +1,122 @@
+package com.sheaconlon.realcraft.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A measurer of how much memory operations allocate.
+ */
+public class Allocations {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    /**
+     * A breakdown of the memory allocated by the current thread, by code path.
+     *
+     * Paths may be measured inside other paths. Each path is charged only for the bytes not charged to the paths
+     * measured inside it, so the bytes of all the paths add up to the total.
+     */
+    public static class Report {
+        private final String title;
+
+        /**
+         * The bytes charged to each path, in the order the paths were first measured.
+         */
+        private final Map<String, long[]> bytes;
+
+        /**
+         * The bytes allocated by paths measured inside the innermost path being measured.
+         */
+        private long nestedBytes;
+
+        /**
+         * Create an empty report.
+         * @param title The title to print the report under.
+         */
+        public Report(final String title) {
+            this.title = title;
+            this.bytes = new LinkedHashMap<>();
+            this.nestedBytes = 0;
+        }
+
+        /**
+         * Run an operation, charging what it allocates to some path.
+         * @param path The name of the path.
+         * @param operation The operation.
+         */
+        public void measure(final String path, final Runnable operation) {
+            // Look up the path first, so that the first measurement of a path is not charged for the entry.
+            final long[] pathBytes = this.bytes.computeIfAbsent(path, p -> new long[1]);
+            final long outerNestedBytes = this.nestedBytes;
+            this.nestedBytes = 0;
+            final long threadID = Thread.currentThread().getId();
+            final long start = THREADS.getThreadAllocatedBytes(threadID);
+            operation.run();
+            final long allocated = THREADS.getThreadAllocatedBytes(threadID) - start;
+            pathBytes[0] += allocated - this.nestedBytes;
+            this.nestedBytes = outerNestedBytes + allocated;
+        }
+
+        /**
+         * @param path The name of a path.
+         * @return The bytes charged to the path, or 0 if it was never measured.
+         */
+        public long getBytes(final String path) {
+            final long[] pathBytes = this.bytes.get(path);
+            return pathBytes == null ? 0 : pathBytes[0];
+        }
+
+        /**
+         * @return The bytes charged to all paths.
+         */
+        public long getTotalBytes() {
+            long total = 0;
+            for (final long[] pathBytes : this.bytes.values()) {
+                total += pathBytes[0];
+            }
+            return total;
+        }
+
+        /**
+         * Format this report as a table of the bytes charged to each path per unit of work.
+         * @param units The number of units of work done while measuring, such as chunks or frames.
+         * @param unit The name of a unit of work.
+         * @return The table.
+         */
+        public String format(final int units, final String unit) {
+            final StringBuilder table = new StringBuilder();
+            final long total = this.getTotalBytes();
+            table.append(String.format("%s (bytes per %s)%n", this.title, unit));
+            for (final Map.Entry<String, long[]> entry : this.bytes.entrySet()) {
+                final long pathBytes = entry.getValue()[0];
+                table.append(String.format("  %-28s %14.1f %6.1f%%%n", entry.getKey(), (double)pathBytes / units,
+                        total == 0 ? 0 : 100.0 * pathBytes / total));
+            }
+            table.append(String.format("  %-28s %14.1f%n", "total", (double)total / units));
+            return table.toString();
+        }
+    }
+
+    /**
+     * Measure how many bytes an operation allocates on the heap.
+     *
+     * Runs the operation some number of times so that the JIT compiler can warm it up, then measures the bytes
+     * allocated by the current thread over some further runs.
+     * @param warmupRuns The number of unmeasured runs.
+     * @param runs The number of measured runs.
+     * @param operation The operation.
+     * @return The mean number of bytes allocated per measured run.
+     */
+    public static double perRun(final int warmupRuns, final int runs, final Runnable operation) {
+        for (int i = 0; i < warmupRuns; i++) {
+            operation.run();
+        }
+        final long threadID = Thread.currentThread().getId();
+        final long start = THREADS.getThreadAllocatedBytes(threadID);
+        for (int i = 0; i < runs; i++) {
+            operation.run();
+        }
+        return (double)(THREADS.getThreadAllocatedBytes(threadID) - start) / runs;
+    }
+}
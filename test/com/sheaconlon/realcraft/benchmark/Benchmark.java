@@ -0,0 +1,161 @@
+package com.sheaconlon.realcraft.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A simple benchmark runner, which times repeated runs of some operation.
+ */
+public class Benchmark {
+    private static final double NANOSECONDS_PER_MICROSECOND = 1_000;
+
+    /**
+     * The number of batches the timed runs are split into, to estimate how much the time per run varies.
+     */
+    private static final int BATCHES = 5;
+
+    /**
+     * A named operation to time, with the number of runs to time it over.
+     */
+    public static class Case {
+        private final String name;
+        private final int warmupRuns;
+        private final int runs;
+        private final Runnable operation;
+
+        /**
+         * Create a case.
+         * @param name The name of the case. Should be unique within a suite, and stable across commits.
+         * @param warmupRuns The number of untimed runs.
+         * @param runs The number of timed runs.
+         * @param operation The operation.
+         */
+        public Case(final String name, final int warmupRuns, final int runs, final Runnable operation) {
+            this.name = name;
+            this.warmupRuns = warmupRuns;
+            this.runs = runs;
+            this.operation = operation;
+        }
+
+        /**
+         * @return The name of this case.
+         */
+        public String getName() {
+            return this.name;
+        }
+    }
+
+    /**
+     * The timing of a case.
+     */
+    public static class Result {
+        private final String name;
+        private final int runs;
+        private final double mean;
+        private final double error;
+
+        Result(final String name, final int runs, final double mean, final double error) {
+            this.name = name;
+            this.runs = runs;
+            this.mean = mean;
+            this.error = error;
+        }
+
+        /**
+         * @return The name of the case.
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * @return The number of timed runs.
+         */
+        public int getRuns() {
+            return this.runs;
+        }
+
+        /**
+         * @return The mean time per timed run. In microseconds.
+         */
+        public double getMean() {
+            return this.mean;
+        }
+
+        /**
+         * @return The standard deviation of the mean times per run of the batches of timed runs. In microseconds.
+         */
+        public double getError() {
+            return this.error;
+        }
+    }
+
+    /**
+     * Time an operation.
+     *
+     * Runs the operation some number of times so that the JIT compiler can warm it up, then times some further runs
+     * and prints the mean time per run.
+     * @param name The name to print the result under.
+     * @param warmupRuns The number of untimed runs.
+     * @param runs The number of timed runs.
+     * @param operation The operation.
+     * @return The mean time per timed run. In microseconds.
+     */
+    public static double run(final String name, final int warmupRuns, final int runs, final Runnable operation) {
+        final Result result = measure(new Case(name, warmupRuns, runs, operation));
+        System.out.printf("%s: %.3f us/op (%d runs)%n", name, result.getMean(), runs);
+        return result.getMean();
+    }
+
+    /**
+     * Time some cases in turn, printing the mean time per run of each.
+     * @param cases The cases.
+     * @return The timings of the cases, in the same order.
+     */
+    public static List<Result> runAll(final List<Case> cases) {
+        final List<Result> results = new ArrayList<>();
+        for (final Case benchmarkCase : cases) {
+            final Result result = measure(benchmarkCase);
+            System.out.printf("%s: %.3f +- %.3f us/op (%d runs)%n", result.getName(), result.getMean(),
+                    result.getError(), result.getRuns());
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Time a case, without printing anything.
+     *
+     * Runs the operation {@code warmupRuns} times so that the JIT compiler can warm it up, then times the further
+     * runs in batches.
+     * @param benchmarkCase The case.
+     * @return The timing of the case.
+     */
+    public static Result measure(final Case benchmarkCase) {
+        for (int i = 0; i < benchmarkCase.warmupRuns; i++) {
+            benchmarkCase.operation.run();
+        }
+        final int batches = Math.min(BATCHES, benchmarkCase.runs);
+        final double[] batchMeans = new double[batches];
+        long total = 0;
+        int done = 0;
+        for (int batch = 0; batch < batches; batch++) {
+            final int batchRuns = (benchmarkCase.runs - done) / (batches - batch);
+            final long start = System.nanoTime();
+            for (int i = 0; i < batchRuns; i++) {
+                benchmarkCase.operation.run();
+            }
+            final long elapsed = System.nanoTime() - start;
+            batchMeans[batch] = elapsed / NANOSECONDS_PER_MICROSECOND / batchRuns;
+            total += elapsed;
+            done += batchRuns;
+        }
+        final double mean = total / NANOSECONDS_PER_MICROSECOND / done;
+        double squaredDeviations = 0;
+        for (final double batchMean : batchMeans) {
+            squaredDeviations += (batchMean - mean) * (batchMean - mean);
+        }
+        final double error = batches > 1 ? Math.sqrt(squaredDeviations / (batches - 1)) : 0;
+        return new Result(benchmarkCase.name, done, mean, error);
+    }
+}
@@ -0,0 +1,152 @@
+package com.sheaconlon.realcraft.benchmark;
+
+import com.sheaconlon.realcraft.generator.GeneratorBenchmark;
+import com.sheaconlon.realcraft.renderer.PrerendererBenchmark;
+import com.sheaconlon.realcraft.simulator.HitboxBenchmark;
+import com.sheaconlon.realcraft.utilities.VectorBenchmark;
+import com.sheaconlon.realcraft.world.ChunkBenchmark;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The suite of hot-path benchmarks, which runs headless and writes its results in machine-readable form.
+ *
+ * Usage:
+ * <pre>
+ * BenchmarkSuite [--out PREFIX] [--filter SUBSTRING]
+ * BenchmarkSuite --compare BASE.csv HEAD.csv
+ * </pre>
+ * A run writes {@code PREFIX.json} and {@code PREFIX.csv}, by default {@code benchmark-results.*}, with one row per
+ * case sorted by name, so that results from two commits can be diffed or compared.
+ */
+public class BenchmarkSuite {
+    private static final String DEFAULT_PREFIX = "benchmark-results";
+    private static final String CSV_HEADER = "name,runs,mean_us,error_us";
+
+    /**
+     * @return All the cases of the suite.
+     */
+    public static List<Benchmark.Case> cases() {
+        final List<Benchmark.Case> cases = new ArrayList<>();
+        cases.addAll(ChunkBenchmark.cases());
+        cases.addAll(GeneratorBenchmark.cases());
+        cases.addAll(HitboxBenchmark.cases());
+        cases.addAll(PrerendererBenchmark.cases());
+        cases.addAll(VectorBenchmark.cases());
+        cases.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return cases;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("--compare")) {
+            compare(Paths.get(args[1]), Paths.get(args[2]));
+            return;
+        }
+        String prefix = DEFAULT_PREFIX;
+        String filter = "";
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--out")) {
+                prefix = args[i + 1];
+            } else if (args[i].equals("--filter")) {
+                filter = args[i + 1];
+            } else {
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        final List<Benchmark.Case> cases = new ArrayList<>();
+        for (final Benchmark.Case benchmarkCase : cases()) {
+            if (benchmarkCase.getName().contains(filter)) {
+                cases.add(benchmarkCase);
+            }
+        }
+        final List<Benchmark.Result> results = Benchmark.runAll(cases);
+        writeCSV(Paths.get(prefix + ".csv"), results);
+        writeJSON(Paths.get(prefix + ".json"), results);
+    }
+
+    /**
+     * Write results as CSV, with a header row.
+     * @param path The path of the file to write.
+     * @param results The results.
+     */
+    static void writeCSV(final Path path, final List<Benchmark.Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.println(CSV_HEADER);
+            for (final Benchmark.Result result : results) {
+                out.println(String.format(Locale.ROOT, "%s,%d,%.4f,%.4f", result.getName(), result.getRuns(),
+                        result.getMean(), result.getError()));
+            }
+        }
+    }
+
+    /**
+     * Write results as JSON, together with the Java version and processor count they were measured under.
+     * @param path The path of the file to write.
+     * @param results The results.
+     */
+    static void writeJSON(final Path path, final List<Benchmark.Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.println("{");
+            out.println("  \"javaVersion\": \"" + System.getProperty("java.version") + "\",");
+            out.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            out.println("  \"unit\": \"us/op\",");
+            out.println("  \"results\": [");
+            for (int i = 0; i < results.size(); i++) {
+                final Benchmark.Result result = results.get(i);
+                out.println(String.format(Locale.ROOT,
+                        "    {\"name\": \"%s\", \"runs\": %d, \"mean\": %.4f, \"error\": %.4f}%s",
+                        result.getName(), result.getRuns(), result.getMean(), result.getError(),
+                        i + 1 < results.size() ? "," : ""));
+            }
+            out.println("  ]");
+            out.println("}");
+        }
+    }
+
+    /**
+     * Read the mean time per run of each case from a CSV file written by {@link #writeCSV(Path, List)}.
+     * @param path The path of the file.
+     * @return The mean time per run of each case, by name, in the order of the file.
+     */
+    static Map<String, Double> readCSV(final Path path) throws IOException {
+        final Map<String, Double> means = new LinkedHashMap<>();
+        for (final String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.equals(CSV_HEADER)) {
+                continue;
+            }
+            final String[] fields = line.split(",");
+            means.put(fields[0], Double.parseDouble(fields[2]));
+        }
+        return means;
+    }
+
+    /**
+     * Print, for each case in both of two CSV files, the ratio of its mean time in the second to that in the first.
+     * @param base The path of the first file.
+     * @param head The path of the second file.
+     */
+    private static void compare(final Path base, final Path head) throws IOException {
+        final Map<String, Double> baseMeans = readCSV(base);
+        final Map<String, Double> headMeans = readCSV(head);
+        System.out.printf("%-40s %12s %12s %8s%n", "name", "base us/op", "head us/op", "ratio");
+        for (final Map.Entry<String, Double> entry : headMeans.entrySet()) {
+            final Double baseMean = baseMeans.get(entry.getKey());
+            if (baseMean == null) {
+                System.out.printf("%-40s %12s %12.3f %8s%n", entry.getKey(), "-", entry.getValue(), "new");
+            } else {
+                System.out.printf("%-40s %12.3f %12.3f %8.2f%n", entry.getKey(), baseMean, entry.getValue(),
+                        entry.getValue() / baseMean);
+            }
+        }
+    }
+}
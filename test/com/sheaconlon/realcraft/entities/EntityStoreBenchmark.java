@@ -0,0 +1,55 @@
+package com.sheaconlon.realcraft.entities;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.simulator.Hitbox;
+import com.sheaconlon.realcraft.utilities.Vector;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A benchmark of ticking the movement and wandering of many animals, in parallel and in a single thread.
+ */
+public class EntityStoreBenchmark {
+    private static final int[] ANIMAL_COUNTS = new int[]{10_000, 50_000, 100_000};
+    private static final double INTERVAL = 1.0 / 20;
+    private static final int WARMUP_TICKS = 200;
+    private static final int TICKS = 500;
+
+    private static class Critter extends Animal {
+        Critter(final EntityStore store, final Vector pos) {
+            super(store, EntityStore.Archetype.ANIMAL, pos, Vector.ZERO, 0, 0);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    public static void main(final String[] args) {
+        final EntitySystem wander = new WanderSystem();
+        final EntitySystem movement = new MovementSystem();
+        for (final int count : ANIMAL_COUNTS) {
+            final EntityStore store = new EntityStore();
+            for (int i = 0; i < count; i++) {
+                new Critter(store, Vector.normal(0, 100));
+            }
+            final EntityStore.Table table = store.getTable(EntityStore.Archetype.ANIMAL);
+            Benchmark.run("wander and move, sequential, " + count + " animals", WARMUP_TICKS, TICKS, () -> {
+                wander.update(table, 0, table.size(), INTERVAL);
+                movement.update(table, 0, table.size(), INTERVAL);
+            });
+            Benchmark.run("wander and move, parallel, " + count + " animals", WARMUP_TICKS, TICKS, () -> {
+                store.runParallel(EntityStore.Archetype.ANIMAL, wander, INTERVAL);
+                store.runParallel(EntityStore.Archetype.ANIMAL, movement, INTERVAL);
+            });
+        }
+    }
+}
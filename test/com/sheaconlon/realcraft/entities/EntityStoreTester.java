@@ -0,0 +1,124 @@
+package com.sheaconlon.realcraft.entities;
+
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.simulator.Hitbox;
+import com.sheaconlon.realcraft.utilities.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * A tester of entity stores.
+ */
+class EntityStoreTester {
+    private class DummyAnimal extends Animal {
+        public DummyAnimal(final EntityStore store, final Vector pos, final Vector velocity) {
+            super(store, EntityStore.Archetype.ANIMAL, pos, velocity, 0, 0);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    @Test
+    void testViewReflectsStore() {
+        final EntityStore store = new EntityStore();
+        final Animal animal = new DummyAnimal(store, new Vector(1, 2, 3), new Vector(4, 5, 6));
+        animal.changePos(1, 1, 1);
+        animal.setVertOrient(Math.PI);
+        final EntityStore.Table table = store.getTable(EntityStore.Archetype.ANIMAL);
+        assertEquals(1, table.size());
+        assertEquals(2, table.getPosX()[0]);
+        assertEquals(3, table.getPosY()[0]);
+        assertEquals(4, table.getPosZ()[0]);
+        assertEquals(5, animal.getVelocityY());
+        assertNotEquals(Math.PI, table.getVertOrient()[0]);
+    }
+
+    @Test
+    void testHandlesSurviveDestroy() {
+        final EntityStore store = new EntityStore();
+        final Animal[] animals = new Animal[5];
+        for (int i = 0; i < animals.length; i++) {
+            animals[i] = new DummyAnimal(store, new Vector(i, 0, 0), Vector.ZERO);
+        }
+        animals[1].destroy();
+        assertEquals(4, store.getTable(EntityStore.Archetype.ANIMAL).size());
+        for (int i = 0; i < animals.length; i++) {
+            if (i != 1) {
+                assertEquals(i, animals[i].getPosX());
+            }
+        }
+        final Animal replacement = new DummyAnimal(store, new Vector(10, 0, 0), Vector.ZERO);
+        assertEquals(animals[1].getHandle(), replacement.getHandle());
+        assertEquals(10, replacement.getPosX());
+        assertEquals(4, animals[4].getPosX());
+    }
+
+    @Test
+    void testRunParallel() {
+        final EntityStore store = new EntityStore();
+        final Animal[] animals = new Animal[10_000];
+        for (int i = 0; i < animals.length; i++) {
+            animals[i] = new DummyAnimal(store, new Vector(i, 0, 0), new Vector(1, 2, 3));
+        }
+        store.runParallel(EntityStore.Archetype.ANIMAL, new MovementSystem(), 0.5);
+        for (int i = 0; i < animals.length; i++) {
+            assertEquals(i + 0.5, animals[i].getPosX());
+            assertEquals(1, animals[i].getPosY());
+            assertEquals(1.5, animals[i].getPosZ());
+        }
+    }
+
+    @Test
+    void testConcurrentChangesAreNotLost() throws InterruptedException {
+        final EntityStore store = new EntityStore();
+        final Animal animal = new DummyAnimal(store, Vector.ZERO, Vector.ZERO);
+        final int changes = 100_000;
+        final Thread other = new Thread(() -> {
+            for (int i = 0; i < changes; i++) {
+                animal.changeVelocity(0, 1, 0);
+            }
+        });
+        other.start();
+        for (int i = 0; i < changes; i++) {
+            // As the simulator does, reading the velocity and writing it back under the lock.
+            synchronized (animal.getLock()) {
+                animal.setVelocity(0, animal.getVelocityY() + 1, 0);
+            }
+        }
+        other.join();
+        assertEquals(2 * changes, animal.getVelocityY());
+    }
+
+    @Test
+    void testWritesDuringGrowthAreNotLost() throws InterruptedException {
+        final EntityStore store = new EntityStore();
+        final Animal animal = new DummyAnimal(store, Vector.ZERO, Vector.ZERO);
+        final Thread other = new Thread(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                new DummyAnimal(store, Vector.ZERO, Vector.ZERO);
+            }
+        });
+        other.start();
+        int writes = 0;
+        while (other.isAlive()) {
+            writes++;
+            animal.setPos(writes, 0, 0);
+            assertEquals(writes, animal.getPosX());
+        }
+        other.join();
+        assertEquals(writes, animal.getPosX());
+    }
+}
@@ -0,0 +1,61 @@
+package com.sheaconlon.realcraft.entities;
+
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.simulator.Hitbox;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * A tester of entity tickers.
+ */
+class EntityTickerTester {
+    private class DummyAnimal extends Animal {
+        public DummyAnimal(final EntityStore store, final Vector pos, final Vector velocity) {
+            super(store, EntityStore.Archetype.ANIMAL, pos, velocity, 0, 0);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    @Test
+    void testTicketsFollowEntities() {
+        final EntityStore store = new EntityStore();
+        final ChunkTickets tickets = new ChunkTickets();
+        final EntityTicker ticker = new EntityTicker(store, tickets);
+        ticker.add(EntityStore.Archetype.ANIMAL, new MovementSystem());
+        final Animal still = new DummyAnimal(store, new Vector(0.5, 0.5, 0.5), Vector.ZERO);
+        final Animal moving = new DummyAnimal(store, new Vector(0.5, 0.5, 0.5), new Vector(Chunk.SIZE, 0, 0));
+        final long start = ChunkPos.containing(0.5, 0.5, 0.5);
+
+        ticker.tick(0);
+        assertEquals(1, tickets.getTicketCount(ChunkTickets.Type.SIMULATION));
+        assertEquals(ChunkTickets.Level.TICK, tickets.getLevel(start));
+
+        ticker.tick(1);
+        final long end = ChunkPos.containing(moving.getPosX(), moving.getPosY(), moving.getPosZ());
+        assertEquals(2, tickets.getTicketCount(ChunkTickets.Type.SIMULATION));
+        assertEquals(ChunkTickets.Level.TICK, tickets.getLevel(end));
+
+        still.destroy();
+        ticker.tick(0);
+        assertEquals(1, tickets.getTicketCount(ChunkTickets.Type.SIMULATION));
+        assertNull(tickets.getLevel(start));
+    }
+}
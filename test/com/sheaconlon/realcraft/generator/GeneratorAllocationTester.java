@@ -0,0 +1,47 @@
+package com.sheaconlon.realcraft.generator;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of how much memory generating chunks allocates.
+ *
+ * The budget is set a little above what the code allocated when it was last lowered. A test failing here means
+ * something started allocating on a hot path; the printed report says which path.
+ */
+class GeneratorAllocationTester {
+    /**
+     * The most bytes generating and lighting a chunk may allocate.
+     */
+    private static final double CHUNK_BUDGET = 1_400_000;
+
+    private static final int WARMUP_CHUNKS = 8;
+    private static final int CHUNKS = 24;
+
+    @Test
+    void testGenerateAllocation() {
+        final Generator generator = new Generator();
+        final Allocations.Report report = new Allocations.Report("generating a chunk");
+        final Chunk[] chunk = new Chunk[1];
+        for (int i = 0; i < WARMUP_CHUNKS + CHUNKS; i++) {
+            // Columns of chunks through the surface, so that chunks are full, partly full and empty.
+            final long pos = BlockPos.pack(500 + i / 4, i % 4, 500);
+            if (i < WARMUP_CHUNKS) {
+                generator.generate(Chunk.getChunk(pos));
+                LightEngine.WORLD.lightChunk(Chunk.getChunk(pos));
+            } else {
+                report.measure("Chunk.getChunk", () -> chunk[0] = Chunk.getChunk(pos));
+                report.measure("Generator.generate", () -> generator.generate(chunk[0]));
+                report.measure("LightEngine.lightChunk", () -> LightEngine.WORLD.lightChunk(chunk[0]));
+            }
+        }
+        final double perChunk = (double)report.getTotalBytes() / CHUNKS;
+        assertTrue(perChunk <= CHUNK_BUDGET, "generating allocated " + perChunk + " bytes per chunk\n"
+                + report.format(CHUNKS, "chunk"));
+    }
+}
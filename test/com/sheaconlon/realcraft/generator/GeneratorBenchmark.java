@@ -0,0 +1,43 @@
+package com.sheaconlon.realcraft.generator;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A benchmark of Perlin noise and of generating the terrain of a chunk.
+ */
+public class GeneratorBenchmark {
+    private static final int NOISE_WARMUP_RUNS = 100_000;
+    private static final int NOISE_RUNS = 1_000_000;
+    private static final int GENERATE_WARMUP_RUNS = 50;
+    private static final int GENERATE_RUNS = 200;
+
+    /**
+     * @return The cases of this benchmark.
+     */
+    public static List<Benchmark.Case> cases() {
+        final PerlinNoiseGenerator noise = new PerlinNoiseGenerator(0.005, 3, x -> (x + 1) / 2);
+        final double[] x = new double[1];
+        final double[] sink = new double[1];
+        final Generator generator = new Generator();
+        // Low enough that the terrain reaches into the chunk. Each run generates into a new chunk, holding only air,
+        // as the game does, rather than one already full of terrain.
+        final long pos = BlockPos.pack(31_000, 3, 31_000);
+        return Arrays.asList(
+                new Benchmark.Case("generator.noise", NOISE_WARMUP_RUNS, NOISE_RUNS, () -> {
+                    sink[0] += noise.noise(x[0], 0, 0.5 * x[0]);
+                    x[0] += 0.37;
+                }),
+                new Benchmark.Case("generator.generateChunk", GENERATE_WARMUP_RUNS, GENERATE_RUNS, () ->
+                        generator.generate(Chunk.detached(pos)))
+        );
+    }
+
+    public static void main(final String[] args) {
+        Benchmark.runAll(cases());
+    }
+}
@@ -0,0 +1,55 @@
+package com.sheaconlon.realcraft.generator;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import com.sheaconlon.realcraft.utilities.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of Perlin noise generators.
+ */
+class PerlinNoiseGeneratorTester {
+    @Test
+    void testRange() {
+        final PerlinNoiseGenerator generator = new PerlinNoiseGenerator(0.05, 1, x -> x);
+        final Random random = new Random(32);
+        for (int i = 0; i < 1000; i++) {
+            final double x = random.nextDouble() * 1000;
+            final double z = random.nextDouble() * 1000;
+            final double noise = generator.noise(x, 0, z);
+            assertEquals(noise, generator.noise(new Vector(x, 0, z)));
+            assertTrue(Math.abs(noise) <= 3);
+        }
+    }
+
+    @Test
+    void testSeeds() {
+        final PerlinNoiseGenerator unseeded = new PerlinNoiseGenerator(0.05, 1, x -> x);
+        final PerlinNoiseGenerator zero = new PerlinNoiseGenerator(0, 0.05, 1, x -> x);
+        final PerlinNoiseGenerator seeded = new PerlinNoiseGenerator(7, 0.05, 1, x -> x);
+        final PerlinNoiseGenerator reseeded = new PerlinNoiseGenerator(7, 0.05, 1, x -> x);
+        final Random random = new Random(33);
+        int differing = 0;
+        for (int i = 0; i < 1000; i++) {
+            final double x = random.nextDouble() * 1000;
+            final double z = random.nextDouble() * 1000;
+            assertEquals(unseeded.noise(x, 0, z), zero.noise(x, 0, z));
+            assertEquals(seeded.noise(x, 0, z), reseeded.noise(x, 0, z));
+            if (seeded.noise(x, 0, z) != unseeded.noise(x, 0, z)) {
+                differing++;
+            }
+        }
+        assertTrue(differing > 900);
+    }
+
+    @Test
+    void testNoiseDoesNotAllocate() {
+        final PerlinNoiseGenerator generator = new PerlinNoiseGenerator(0.005, 3, x -> (x + 1) / 2);
+        final double bytes = Allocations.perRun(100_000, 100_000, () -> generator.noise(123.4, 0, -56.7));
+        assertTrue(bytes < 1, "allocated " + bytes + " bytes per run");
+    }
+}
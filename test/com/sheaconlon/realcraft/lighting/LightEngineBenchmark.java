@@ -0,0 +1,80 @@
+package com.sheaconlon.realcraft.lighting;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.blocks.AirBlock;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.generator.PerlinNoiseGenerator;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A benchmark of lighting a generated region from scratch, and of updating its light after single-block edits.
+ */
+public class LightEngineBenchmark {
+    /**
+     * The size of the region, in chunks along x and z. The region is {@link #REGION_HEIGHT} chunks tall.
+     */
+    private static final int REGION_WIDTH = 8;
+    private static final int REGION_HEIGHT = 3;
+    private static final double HEIGHT_MAP_RANGE = REGION_HEIGHT * Chunk.BLOCKS * 0.8;
+    private static final int WARMUP_RUNS = 3;
+    private static final int RUNS = 10;
+    private static final int EDIT_WARMUP_RUNS = 2_000;
+    private static final int EDIT_RUNS = 10_000;
+
+    public static void main(final String[] args) {
+        final PerlinNoiseGenerator heightMap = new PerlinNoiseGenerator(0.05, 1, x -> (x + 1) / 2);
+        final List<Chunk> chunks = new ArrayList<>();
+        final int size = REGION_WIDTH * Chunk.BLOCKS;
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                final int height = (int)(heightMap.noise(x, 0, z) * HEIGHT_MAP_RANGE);
+                for (int y = 0; y < REGION_HEIGHT * Chunk.BLOCKS; y++) {
+                    final Chunk chunk = Chunk.containingChunk(x, y, z);
+                    if (y == chunk.getAnchor().getY() && x == chunk.getAnchor().getX()
+                            && z == chunk.getAnchor().getZ()) {
+                        chunks.add(chunk);
+                    }
+                    if (y <= height) {
+                        chunk.putBlock(new DirtBlock(new Vector(x, y, z)));
+                    }
+                }
+            }
+        }
+        final LightEngine engine = new LightEngine();
+        Benchmark.run("light " + chunks.size() + " generated chunks", WARMUP_RUNS, RUNS, () -> {
+            for (final Chunk chunk : chunks) {
+                engine.lightChunk(chunk);
+            }
+        });
+
+        // Dig out and refill a block just below the surface near the middle, which lets sky light into the ground.
+        final int middle = size / 2;
+        int surface = 0;
+        while (!(Chunk.containingChunk(middle, surface + 1, middle).getBlock(middle, surface + 1, middle)
+                instanceof AirBlock)) {
+            surface++;
+        }
+        final Vector dug = new Vector(middle, surface, middle);
+        final AirBlock air = new AirBlock(dug);
+        final DirtBlock dirt = new DirtBlock(dug);
+        final boolean[] isDug = new boolean[]{false};
+        Benchmark.run("dig or fill one block", EDIT_WARMUP_RUNS, EDIT_RUNS, () -> {
+            engine.putBlock(isDug[0] ? dirt : air);
+            isDug[0] = !isDug[0];
+        });
+
+        // Put and remove a roof block in open air, which casts a shadow down to the ground.
+        final Vector roof = new Vector(middle, REGION_HEIGHT * Chunk.BLOCKS - 1, middle);
+        final AirBlock open = new AirBlock(roof);
+        final DirtBlock covered = new DirtBlock(roof);
+        final boolean[] isCovered = new boolean[]{false};
+        Benchmark.run("put or remove one roof block", EDIT_WARMUP_RUNS, EDIT_RUNS, () -> {
+            engine.putBlock(isCovered[0] ? open : covered);
+            isCovered[0] = !isCovered[0];
+        });
+    }
+}
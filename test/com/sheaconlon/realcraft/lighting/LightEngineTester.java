@@ -0,0 +1,175 @@
+package com.sheaconlon.realcraft.lighting;
+
+import com.sheaconlon.realcraft.blocks.AirBlock;
+import com.sheaconlon.realcraft.blocks.Block;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.blocks.LeafBlock;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A tester of light engines.
+ *
+ * Chunks are global, so each test builds its region far from those of the others.
+ */
+class LightEngineTester {
+    /**
+     * The width of each test's region, in chunks along x and z. Regions are one chunk tall.
+     */
+    private static final int REGION_CHUNKS = 3;
+    private static final int EDITS = 200;
+
+    private static class LampBlock extends Block {
+        private static final int LIGHT_EMISSION = 14;
+
+        LampBlock(final Vector pos) {
+            super(pos);
+        }
+
+        @Override
+        protected List<float[]> getFaceColors() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int getLightEmission() {
+            return LIGHT_EMISSION;
+        }
+    }
+
+    /**
+     * Create the chunks of a region and fill their bottom layer with dirt, without lighting them.
+     * @return The chunks.
+     */
+    private static List<Chunk> buildRegion(final int x, final int y, final int z) {
+        final List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < REGION_CHUNKS; i++) {
+            for (int k = 0; k < REGION_CHUNKS; k++) {
+                final Chunk chunk = Chunk.containingChunk(x + i * Chunk.BLOCKS, y, z + k * Chunk.BLOCKS);
+                chunks.add(chunk);
+            }
+        }
+        for (int bx = x; bx < x + REGION_CHUNKS * Chunk.BLOCKS; bx++) {
+            for (int bz = z; bz < z + REGION_CHUNKS * Chunk.BLOCKS; bz++) {
+                Chunk.containingChunk(bx, y, bz).putBlock(new DirtBlock(new Vector(bx, y, bz)));
+            }
+        }
+        return chunks;
+    }
+
+    @Test
+    void testSkyLightUnderRoof() {
+        final LightEngine engine = new LightEngine();
+        final int x = 6990;
+        final int y = 6990;
+        final int z = 6990;
+        final List<Chunk> chunks = buildRegion(x, y, z);
+        for (final Chunk chunk : chunks) {
+            engine.lightChunk(chunk);
+        }
+        assertEquals(LightEngine.MAX_LEVEL, LightEngine.getLight(x + 20, y + 1, z + 20));
+        assertEquals(0, LightEngine.getLight(x + 20, y, z + 20));
+        // A roof over the middle of the region, crossing chunk borders, and four blocks above the floor.
+        for (int bx = x + 10; bx < x + 35; bx++) {
+            for (int bz = z + 10; bz < z + 35; bz++) {
+                engine.putBlock(new DirtBlock(new Vector(bx, y + 4, bz)));
+            }
+        }
+        assertEquals(LightEngine.MAX_LEVEL, LightEngine.getLight(x + 9, y + 1, z + 20));
+        // Beneath the roof, light falls off with distance from its edge.
+        assertEquals(LightEngine.MAX_LEVEL - 1, LightEngine.getLight(x + 10, y + 1, z + 20));
+        assertEquals(LightEngine.MAX_LEVEL - 6, LightEngine.getLight(x + 15, y + 1, z + 20));
+        assertEquals(LightEngine.MAX_LEVEL - 13, LightEngine.getLight(x + 22, y + 1, z + 22));
+        // Leaves let light through, dimmed.
+        engine.putBlock(new LeafBlock(new Vector(x + 22, y + 4, z + 22)));
+        assertEquals(LightEngine.MAX_LEVEL - 3, LightEngine.getLight(x + 22, y + 3, z + 22));
+        engine.putBlock(new DirtBlock(new Vector(x + 22, y + 4, z + 22)));
+        assertEquals(LightEngine.MAX_LEVEL - 13, LightEngine.getLight(x + 22, y + 3, z + 22));
+    }
+
+    @Test
+    void testLightsChunkLoadedAgain() {
+        final LightEngine engine = new LightEngine();
+        final int x = 6990;
+        final int y = -6990;
+        final int z = 6990;
+        final Chunk unloaded = Chunk.containingChunk(x, y, z);
+        engine.lightChunk(unloaded);
+        Chunk.unload(unloaded.getPos());
+        engine.lightChunk(Chunk.containingChunk(x, y, z));
+        engine.putBlock(new DirtBlock(new Vector(x + 5, y + 10, z + 5)));
+        assertEquals(0, LightEngine.getLight(x + 5, y + 10, z + 5));
+        assertEquals(LightEngine.MAX_LEVEL - 1, LightEngine.getLight(x + 5, y + 9, z + 5));
+    }
+
+    @Test
+    void testBlockLight() {
+        final LightEngine engine = new LightEngine();
+        final int x = -6990;
+        final int y = 6990;
+        final int z = 6990;
+        for (final Chunk chunk : buildRegion(x, y, z)) {
+            engine.lightChunk(chunk);
+        }
+        // A lamp on a chunk border.
+        final Vector lamp = new Vector(x + Chunk.BLOCKS, y + 1, z + 20);
+        engine.putBlock(new LampBlock(lamp));
+        final Chunk chunk = Chunk.containingChunk(x, y, z + 20);
+        assertEquals(LampBlock.LIGHT_EMISSION - 1,
+                chunk.getBlockLight().get(chunk.lightIndex(x + Chunk.BLOCKS - 1, y + 1, z + 20)));
+        assertEquals(LampBlock.LIGHT_EMISSION - 5,
+                chunk.getBlockLight().get(chunk.lightIndex(x + Chunk.BLOCKS - 3, y + 3, z + 20)));
+        engine.putBlock(new AirBlock(lamp));
+        assertEquals(0, chunk.getBlockLight().get(chunk.lightIndex(x + Chunk.BLOCKS - 1, y + 1, z + 20)));
+    }
+
+    @Test
+    void testEditsMatchRelighting() {
+        final LightEngine engine = new LightEngine();
+        final int x = 6990;
+        final int y = -6990;
+        final int z = 6990;
+        final List<Chunk> chunks = buildRegion(x, y, z);
+        for (final Chunk chunk : chunks) {
+            engine.lightChunk(chunk);
+        }
+        final Random random = new Random(0);
+        for (int i = 0; i < EDITS; i++) {
+            final Vector pos = new Vector(x + random.nextInt(REGION_CHUNKS * Chunk.BLOCKS),
+                    y + random.nextInt(Chunk.BLOCKS), z + random.nextInt(REGION_CHUNKS * Chunk.BLOCKS));
+            final int kind = random.nextInt(4);
+            engine.putBlock(kind == 0 ? new AirBlock(pos) : kind == 1 ? new DirtBlock(pos)
+                    : kind == 2 ? new LeafBlock(pos) : new LampBlock(pos));
+        }
+        final List<byte[]> incremental = snapshot(chunks);
+        for (final Chunk chunk : chunks) {
+            engine.lightChunk(chunk);
+        }
+        final List<byte[]> relit = snapshot(chunks);
+        for (int i = 0; i < chunks.size(); i++) {
+            assertArrayEquals(relit.get(i), incremental.get(i));
+        }
+    }
+
+    private static List<byte[]> snapshot(final List<Chunk> chunks) {
+        final List<byte[]> levels = new ArrayList<>();
+        for (final Chunk chunk : chunks) {
+            final byte[] chunkLevels = new byte[2 * chunk.getSkyLight().length()];
+            for (int i = 0; i < chunk.getSkyLight().length(); i++) {
+                chunkLevels[2 * i] = (byte)chunk.getSkyLight().get(i);
+                chunkLevels[2 * i + 1] = (byte)chunk.getBlockLight().get(i);
+            }
+            levels.add(chunkLevels);
+        }
+        return levels;
+    }
+}
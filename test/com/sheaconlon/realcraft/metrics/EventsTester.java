@@ -0,0 +1,72 @@
+package com.sheaconlon.realcraft.metrics;
+
+import com.sheaconlon.realcraft.world.BlockPos;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the Flight Recorder events and the recording profile.
+ */
+class EventsTester {
+    private static final Path PROFILE = Paths.get("jfr", "realcraft.jfc");
+
+    @Test
+    void testProfileEnablesEvents() throws Exception {
+        final Configuration configuration = Configuration.create(PROFILE);
+        for (final String event : new String[]{"ChunkGeneration", "ChunkMeshing", "BufferSend", "Frame",
+                "WorkerTick", "SchedulerWait"}) {
+            assertEquals("true", configuration.getSettings().get("realcraft." + event + "#enabled"), event);
+        }
+    }
+
+    @Test
+    void testEventsCarryFields() throws Exception {
+        final Path file = Files.createTempFile("realcraft", ".jfr");
+        try (Recording recording = new Recording(Configuration.create(PROFILE))) {
+            recording.start();
+            final ChunkMeshingEvent meshing = new ChunkMeshingEvent(BlockPos.pack(3, -4, 5));
+            meshing.begin();
+            meshing.setVertices(1234);
+            meshing.commit();
+            final FrameEvent frame = new FrameEvent();
+            frame.begin();
+            frame.setDrawn(7, 5678);
+            frame.commit();
+            recording.stop();
+            recording.dump(file);
+        }
+        final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+        boolean sawMeshing = false;
+        boolean sawFrame = false;
+        for (final RecordedEvent event : events) {
+            final String name = event.getEventType().getName();
+            if (name.equals("realcraft.ChunkMeshing")) {
+                assertEquals(3, event.getInt("chunkX"));
+                assertEquals(-4, event.getInt("chunkY"));
+                assertEquals(5, event.getInt("chunkZ"));
+                assertEquals(1234, event.getInt("vertices"));
+                assertFalse(event.getDuration().isNegative());
+                sawMeshing = true;
+            } else if (name.equals("realcraft.Frame")) {
+                assertEquals(7, event.getInt("chunksDrawn"));
+                assertEquals(5678, event.getInt("verticesDrawn"));
+                sawFrame = true;
+            }
+        }
+        assertTrue(sawMeshing);
+        assertTrue(sawFrame);
+    }
+}
@@ -0,0 +1,74 @@
+package com.sheaconlon.realcraft.metrics;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of histograms.
+ */
+class HistogramTester {
+    /**
+     * The most a percentile may be off by, relative to the exact value.
+     */
+    private static final double PRECISION = 1.0 / 16;
+
+    private static final int SAMPLES = 100_000;
+
+    @Test
+    void testBucketsAreContiguous() {
+        long expectedLowerBound = 0;
+        for (int bucket = 0; Histogram.upperBound(bucket) != Long.MAX_VALUE; bucket++) {
+            assertEquals(expectedLowerBound, Histogram.lowerBound(bucket));
+            assertEquals(bucket, Histogram.bucket(Histogram.lowerBound(bucket)));
+            assertEquals(bucket, Histogram.bucket(Histogram.upperBound(bucket)));
+            expectedLowerBound = Histogram.upperBound(bucket) + 1;
+        }
+        assertTrue(Histogram.bucket(Long.MAX_VALUE) >= 0);
+    }
+
+    @Test
+    void testPercentiles() {
+        final Histogram histogram = new Histogram();
+        final long[] values = new long[SAMPLES];
+        final Random random = new Random(0);
+        for (int i = 0; i < SAMPLES; i++) {
+            // Log-uniform between 1 us and 100 ms, like tick durations.
+            values[i] = (long)Math.pow(10, 3 + 5 * random.nextDouble());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        assertEquals(SAMPLES, histogram.getCount());
+        assertEquals(values[SAMPLES - 1], histogram.percentile(1));
+        for (final double fraction : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            final long exact = values[(int)Math.ceil(fraction * SAMPLES) - 1];
+            final long reported = histogram.percentile(fraction);
+            assertTrue(reported >= exact, fraction + ": " + reported + " < " + exact);
+            assertTrue(reported <= exact * (1 + PRECISION), fraction + ": " + reported + " >> " + exact);
+        }
+        assertEquals(values[SAMPLES - 1] / 1e6, histogram.getMax());
+    }
+
+    @Test
+    void testEmptyAndNegative() {
+        final Histogram histogram = new Histogram();
+        assertEquals(0, histogram.percentile(0.99));
+        assertEquals(0, histogram.getMean());
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.percentile(0.5));
+    }
+
+    @Test
+    void testRecordDoesNotAllocate() {
+        final Histogram histogram = new Histogram();
+        final long[] value = {0};
+        final double bytes = Allocations.perRun(100_000, 100_000, () -> histogram.record(value[0]++));
+        assertTrue(bytes < 1, "recording allocated " + bytes + " bytes");
+    }
+}
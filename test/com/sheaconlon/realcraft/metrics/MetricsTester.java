@@ -0,0 +1,37 @@
+package com.sheaconlon.realcraft.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the metrics registry.
+ */
+class MetricsTester {
+    @Test
+    void testCounterIsSharedAndExposed() throws Exception {
+        final Counter counter = Metrics.counter("MetricsTester Group", "things");
+        assertSame(counter, Metrics.counter("MetricsTester Group", "things"));
+        counter.add(41);
+        counter.increment();
+        final ObjectName name = new ObjectName("realcraft:type=" + ObjectName.quote("MetricsTester Group")
+                + ",name=" + ObjectName.quote("things"));
+        assertEquals(42L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+        assertTrue(Metrics.format().contains("MetricsTester Group.things"));
+    }
+
+    @Test
+    void testHistogramIsExposed() throws Exception {
+        final Histogram histogram = Metrics.histogram("MetricsTester", "latency");
+        histogram.record(2_000_000);
+        final ObjectName name = new ObjectName("realcraft:type=" + ObjectName.quote("MetricsTester")
+                + ",name=" + ObjectName.quote("latency"));
+        assertEquals((Object)2.0, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Max"));
+        assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Count"));
+    }
+}
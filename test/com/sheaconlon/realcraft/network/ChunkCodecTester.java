@@ -0,0 +1,112 @@
+package com.sheaconlon.realcraft.network;
+
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.blocks.LeafBlock;
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of encoding chunks for the network.
+ */
+class ChunkCodecTester {
+    private static final long POS = ChunkPos.containing(-61_000, 30, 61_000);
+
+    @Test
+    void testRoundTrip() {
+        final Chunk chunk = ChunkCodecTester.sampleChunk();
+        final byte[] data = ChunkCodec.encode(chunk);
+        final Chunk decoded = Chunk.detached(POS);
+        ChunkCodec.decode(ByteBuffer.wrap(data), decoded);
+        ChunkCodecTester.assertSameChunk(chunk, decoded);
+    }
+
+    @Test
+    void testCompressedRoundTrip() {
+        final Chunk chunk = ChunkCodecTester.sampleChunk();
+        final byte[] data = ChunkCodec.encode(chunk);
+        final byte[] compressed = ChunkCodec.compress(data, new Deflater(Deflater.BEST_SPEED));
+        assertTrue(compressed.length < data.length);
+        final Chunk decoded = Chunk.detached(POS);
+        ChunkCodec.decode(ChunkCodec.decompress(ByteBuffer.wrap(compressed), data.length, new Inflater()), decoded);
+        ChunkCodecTester.assertSameChunk(chunk, decoded);
+    }
+
+    @Test
+    void testEmptyChunkIsSmall() {
+        final byte[] data = ChunkCodec.encode(Chunk.detached(POS));
+        final int lightBytes = 2 * (Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS + 1) / 2;
+        assertEquals(1 + Short.BYTES + lightBytes, data.length);
+    }
+
+    @Test
+    void testDecodeOverwritesBlocks() {
+        final Chunk full = ChunkCodecTester.sampleChunk();
+        final Chunk empty = Chunk.detached(POS);
+        ChunkCodec.decode(ByteBuffer.wrap(ChunkCodec.encode(empty)), full);
+        ChunkCodecTester.assertSameChunk(empty, full);
+    }
+
+    @Test
+    void testRejectsCorruptData() {
+        final byte[] data = ChunkCodec.encode(ChunkCodecTester.sampleChunk());
+        // A run of an unknown type of block.
+        data[0] = 100;
+        assertThrows(IllegalArgumentException.class,
+                () -> ChunkCodec.decode(ByteBuffer.wrap(data), Chunk.detached(POS)));
+    }
+
+    /**
+     * @return A chunk not in the world with a sloping dirt surface, a tree trunk and leaves, and varied light.
+     */
+    private static Chunk sampleChunk() {
+        final Chunk chunk = Chunk.detached(POS);
+        final int anchorX = ChunkPos.anchorX(POS);
+        final int anchorY = ChunkPos.anchorY(POS);
+        final int anchorZ = ChunkPos.anchorZ(POS);
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                for (int y = anchorY; y <= anchorY + (x - anchorX + z - anchorZ) / 3; y++) {
+                    chunk.putBlock(new DirtBlock(new Vector(x, y, z)));
+                }
+            }
+        }
+        for (int y = anchorY + 8; y < anchorY + 12; y++) {
+            chunk.putBlock(new WoodBlock(new Vector(anchorX + 2, y, anchorZ + 2)));
+        }
+        chunk.putBlock(new LeafBlock(new Vector(anchorX + 2, anchorY + 12, anchorZ + 2)));
+        for (int i = 0; i < chunk.getSkyLight().length(); i++) {
+            chunk.getSkyLight().set(i, i % 16);
+            chunk.getBlockLight().set(i, (i / 7) % 16);
+        }
+        return chunk;
+    }
+
+    private static void assertSameChunk(final Chunk expected, final Chunk actual) {
+        final int anchorX = ChunkPos.anchorX(expected.getPos());
+        final int anchorY = ChunkPos.anchorY(expected.getPos());
+        final int anchorZ = ChunkPos.anchorZ(expected.getPos());
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                    assertEquals(expected.getBlock(x, y, z).getClass(), actual.getBlock(x, y, z).getClass(),
+                            "block at " + x + ", " + y + ", " + z);
+                }
+            }
+        }
+        for (int i = 0; i < expected.getSkyLight().length(); i++) {
+            assertEquals(expected.getSkyLight().get(i), actual.getSkyLight().get(i));
+            assertEquals(expected.getBlockLight().get(i), actual.getBlockLight().get(i));
+        }
+    }
+}
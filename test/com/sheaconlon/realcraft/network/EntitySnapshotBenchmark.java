@@ -0,0 +1,151 @@
+package com.sheaconlon.realcraft.network;
+
+import com.sheaconlon.realcraft.entities.Animal;
+import com.sheaconlon.realcraft.entities.EntityStore;
+import com.sheaconlon.realcraft.entities.MovementSystem;
+import com.sheaconlon.realcraft.entities.WanderSystem;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.simulator.Hitbox;
+import com.sheaconlon.realcraft.ui.ScriptedInput;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A benchmark of the bandwidth spent keeping clients up to date with wandering animals, headless.
+ *
+ * A server and its clients run in one process over loopback, ticked in simulated time, with a thousand animals
+ * wandering around the spawn point. Reports the bytes of entity snapshots each client receives per second, against
+ * what naive snapshots of every entity's full state would take, and how far the smoothed entities a client shows are
+ * from where the server has them.
+ */
+public class EntitySnapshotBenchmark {
+    private static final int[] CLIENT_COUNTS = new int[]{1, 8};
+    private static final int ANIMALS = 1_000;
+
+    /**
+     * How far from the spawn point the animals start. In blocks.
+     */
+    private static final double ANIMAL_SPREAD = 30;
+
+    private static final double SERVER_INTERVAL = 1.0 / 30;
+    private static final double ENTITY_INTERVAL = 1.0 / 20;
+    private static final double CLIENT_INTERVAL = 1.0 / 60;
+    private static final double WARMUP_SECONDS = 2;
+    private static final double SECONDS = 20;
+
+    /**
+     * The bytes a naive snapshot would spend on an entity: its ID, and its position, velocity and orientations as
+     * doubles.
+     */
+    private static final int NAIVE_ENTITY_BYTES = Integer.BYTES + 8 * Double.BYTES;
+
+    /**
+     * Where the server's clients spawn. Far from the chunks used by other benchmarks.
+     */
+    private static final double SPAWN_X = -61_000.5;
+    private static final double SPAWN_Y = 60;
+    private static final double SPAWN_Z = -61_000.5;
+
+    private static class Critter extends Animal {
+        Critter(final EntityStore store, final Vector pos) {
+            super(store, EntityStore.Archetype.ANIMAL, pos, new Vector(0, 0, 0), 0, 0);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    public static void main(final String[] args) throws IOException {
+        System.out.printf("%d animals, %.0f snapshots per second%n", ANIMALS, 1 / SERVER_INTERVAL);
+        System.out.printf("  naive full state               %10.0f bytes/s per client%n",
+                ANIMALS * NAIVE_ENTITY_BYTES / SERVER_INTERVAL);
+        for (final int clientCount : CLIENT_COUNTS) {
+            run(clientCount);
+        }
+    }
+
+    private static void run(final int clientCount) throws IOException {
+        final EntityStore store = new EntityStore();
+        final Random random = new Random(0);
+        for (int i = 0; i < ANIMALS; i++) {
+            new Critter(store, new Vector(SPAWN_X + (2 * random.nextDouble() - 1) * ANIMAL_SPREAD, SPAWN_Y,
+                    SPAWN_Z + (2 * random.nextDouble() - 1) * ANIMAL_SPREAD));
+        }
+        final WanderSystem wander = new WanderSystem();
+        final MovementSystem movement = new MovementSystem();
+        final Server server = new Server(0, SPAWN_X, SPAWN_Y, SPAWN_Z, store);
+        final Client[] clients = new Client[clientCount];
+        for (int i = 0; i < clientCount; i++) {
+            clients[i] = new Client(new InetSocketAddress("localhost", server.getPort()), true,
+                    new ScriptedInput(0, 0), pos -> Chunk.detached(pos));
+        }
+
+        final double[] time = {0};
+        final double[] entityTime = {0};
+        final Runnable round = () -> {
+            time[0] += SERVER_INTERVAL;
+            while (entityTime[0] < time[0]) {
+                store.runParallel(EntityStore.Archetype.ANIMAL, wander, ENTITY_INTERVAL);
+                store.runParallel(EntityStore.Archetype.ANIMAL, movement, ENTITY_INTERVAL);
+                entityTime[0] += ENTITY_INTERVAL;
+            }
+            server.tick(SERVER_INTERVAL);
+            for (final Client client : clients) {
+                client.tick(CLIENT_INTERVAL);
+            }
+        };
+        for (int i = 0; i < WARMUP_SECONDS / SERVER_INTERVAL; i++) {
+            round.run();
+        }
+        final long bytesBefore = Metrics.counter("Client", "snapshotBytesReceived").getCount();
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < SECONDS / SERVER_INTERVAL; i++) {
+            round.run();
+        }
+        final double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        final double bytesPerSecond = (Metrics.counter("Client", "snapshotBytesReceived").getCount() - bytesBefore)
+                / SECONDS / clientCount;
+        System.out.printf("  %d client(s), delta snapshots   %10.0f bytes/s per client, %.2f blocks error, "
+                + "%.1fx real time%n", clientCount, bytesPerSecond, meanError(store, clients[0].getEntities()),
+                SECONDS / elapsed);
+
+        for (final Client client : clients) {
+            client.close();
+        }
+        server.close();
+    }
+
+    /**
+     * @return The mean distance between where the server has the animals and where a client shows them. In blocks.
+     */
+    private static double meanError(final EntityStore store, final RemoteEntities remote) {
+        final EntityStore.Table table = store.getTable(EntityStore.Archetype.ANIMAL);
+        double total = 0;
+        int count = 0;
+        for (int row = 0; row < table.size(); row++) {
+            final int i = remote.indexOf(table.getEntities()[row].getId());
+            if (i >= 0) {
+                final double dx = table.getPosX()[row] - remote.getPosX(i);
+                final double dy = table.getPosY()[row] - remote.getPosY(i);
+                final double dz = table.getPosZ()[row] - remote.getPosZ(i);
+                total += Math.sqrt(dx * dx + dy * dy + dz * dz);
+                count++;
+            }
+        }
+        return count == 0 ? Double.NaN : total / count;
+    }
+}
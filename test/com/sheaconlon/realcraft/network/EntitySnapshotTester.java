@@ -0,0 +1,202 @@
+package com.sheaconlon.realcraft.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the bit-packing and delta encoding of entity snapshots.
+ */
+class EntitySnapshotTester {
+    private static final double POSITION_ERROR = 0.5 / EntitySnapshot.POSITION_SCALE;
+    private static final double ORIENT_ERROR = Math.PI / EntitySnapshot.ORIENT_STEPS;
+    private static final int ENTITIES = 1_000;
+
+    @Test
+    void testBitsRoundTrip() {
+        final int[] values = {0, 1, -1, 15, 16, -8, -9, 255, 256, 65_535, 65_536, Integer.MAX_VALUE,
+                Integer.MIN_VALUE};
+        final BitWriter writer = new BitWriter();
+        for (final int value : values) {
+            writer.writeSigned(value);
+            writer.writeUnsigned(value);
+            writer.writeBit(value < 0);
+        }
+        final BitReader reader = new BitReader(this.bytes(writer));
+        for (final int value : values) {
+            assertEquals(value, reader.readSigned());
+            assertEquals(value, reader.readUnsigned());
+            assertEquals(value < 0, reader.readBit());
+        }
+    }
+
+    @Test
+    void testSmallNumbersAreShort() {
+        final BitWriter writer = new BitWriter();
+        writer.writeSigned(-3);
+        writer.writeSigned(7);
+        assertEquals(2, writer.getNumBytes());
+    }
+
+    @Test
+    void testFullRoundTrip() {
+        final EntitySnapshot original = this.randomSnapshot(new Random(0), ENTITIES);
+        final EntitySnapshot decoded = this.roundTrip(original, null);
+        assertEquals(ENTITIES, decoded.size());
+        this.assertSame(original, decoded);
+    }
+
+    @Test
+    void testQuantizes() {
+        final EntitySnapshot snapshot = new EntitySnapshot();
+        snapshot.add(7, 70_000.123, -12.5, -70_000.987, -0.5, 1.2);
+        final EntitySnapshot decoded = this.roundTrip(snapshot, null);
+        assertEquals(7, decoded.getId(0));
+        assertEquals(70_000.123, decoded.getPosX(0), POSITION_ERROR);
+        assertEquals(-12.5, decoded.getPosY(0), POSITION_ERROR);
+        assertEquals(-70_000.987, decoded.getPosZ(0), POSITION_ERROR);
+        assertEquals(2 * Math.PI - 0.5, decoded.getOrient(0), ORIENT_ERROR);
+        assertEquals(1.2, decoded.getVertOrient(0), Math.PI / EntitySnapshot.VERT_ORIENT_STEPS);
+    }
+
+    @Test
+    void testDeltaRoundTrip() {
+        final Random random = new Random(1);
+        final EntitySnapshot baseline = this.randomSnapshot(random, ENTITIES);
+        // Drop every third entity, move every other one, and add entities between and after the others.
+        final EntitySnapshot current = new EntitySnapshot();
+        for (int i = 0; i < baseline.size(); i++) {
+            if (i % 7 == 3) {
+                current.add(baseline.getId(i) - 1, random.nextDouble() * 100, 60, random.nextDouble() * 100,
+                        random.nextDouble() * 2 * Math.PI, 0);
+            }
+            if (i % 3 == 0) {
+                continue;
+            }
+            final double move = i % 2 == 0 ? 0.1 : 0;
+            current.add(baseline.getId(i), baseline.getPosX(i) + move, baseline.getPosY(i),
+                    baseline.getPosZ(i) - move, baseline.getOrient(i) + 10 * move, baseline.getVertOrient(i));
+        }
+        current.add(baseline.getId(baseline.size() - 1) + 5, 1, 2, 3, 4, 0.5);
+        this.assertSame(current, this.roundTrip(current, baseline));
+    }
+
+    @Test
+    void testUnchangedEntitiesCostTwoBits() {
+        final EntitySnapshot baseline = this.randomSnapshot(new Random(2), ENTITIES);
+        final BitWriter writer = new BitWriter();
+        baseline.encode(baseline, writer);
+        assertTrue(writer.getNumBytes() <= ENTITIES * 2 / 8 + 1, writer.getNumBytes() + " bytes");
+    }
+
+    @Test
+    void testDeltaIsSmallerThanFull() {
+        final Random random = new Random(3);
+        final EntitySnapshot baseline = this.randomSnapshot(random, ENTITIES);
+        final EntitySnapshot current = new EntitySnapshot();
+        for (int i = 0; i < baseline.size(); i++) {
+            current.add(baseline.getId(i), baseline.getPosX(i) + 0.05, baseline.getPosY(i),
+                    baseline.getPosZ(i), baseline.getOrient(i), baseline.getVertOrient(i));
+        }
+        final BitWriter full = new BitWriter();
+        current.encode(null, full);
+        final BitWriter delta = new BitWriter();
+        current.encode(baseline, delta);
+        assertTrue(3 * delta.getNumBytes() < full.getNumBytes(),
+                delta.getNumBytes() + " bytes as a delta, " + full.getNumBytes() + " in full");
+    }
+
+    @Test
+    void testOrientChangesTheShortWayAround() {
+        final EntitySnapshot baseline = new EntitySnapshot();
+        baseline.add(1, 0, 0, 0, 2 * Math.PI - 0.01, 0);
+        final EntitySnapshot current = new EntitySnapshot();
+        current.add(1, 0, 0, 0, 0.01, 0);
+        final BitWriter writer = new BitWriter();
+        current.encode(baseline, writer);
+        // A bit for still near, one for changed, five for the mask, five for a small change, and five for no added
+        // entities.
+        assertEquals(3, writer.getNumBytes());
+        this.assertSame(current, this.roundTrip(current, baseline));
+    }
+
+    @Test
+    void testSortsById() {
+        final EntitySnapshot snapshot = new EntitySnapshot();
+        snapshot.add(9, 9, 0, 0, 0, 0);
+        snapshot.add(2, 2, 0, 0, 0, 0);
+        snapshot.add(5, 5, 0, 0, 0, 0);
+        snapshot.sortById();
+        assertEquals(2, snapshot.getId(0));
+        assertEquals(5, snapshot.getId(1));
+        assertEquals(9, snapshot.getId(2));
+        assertEquals(9, snapshot.getPosX(2), POSITION_ERROR);
+    }
+
+    @Test
+    void testAddsOnlyNearEntities() {
+        final EntitySnapshot all = new EntitySnapshot();
+        all.add(1, 0, 0, 0, 0, 0);
+        all.add(2, 10, 0, 0, 0, 0);
+        all.add(3, 0, 0, -20, 0, 0);
+        final EntitySnapshot near = new EntitySnapshot();
+        near.addNear(all, 0, 0, 0, 15);
+        assertEquals(2, near.size());
+        assertEquals(2, near.getId(1));
+    }
+
+    @Test
+    void testRejectsTruncatedData() {
+        final EntitySnapshot original = this.randomSnapshot(new Random(4), 10);
+        final BitWriter writer = new BitWriter();
+        original.encode(null, writer);
+        final ByteBuffer truncated = this.bytes(writer);
+        truncated.limit(truncated.limit() / 2);
+        assertThrows(IllegalArgumentException.class,
+                () -> new EntitySnapshot().decode(new BitReader(truncated), null, 0, 0));
+    }
+
+    private EntitySnapshot randomSnapshot(final Random random, final int size) {
+        final EntitySnapshot snapshot = new EntitySnapshot();
+        int id = 0;
+        for (int i = 0; i < size; i++) {
+            id += 2 + random.nextInt(3);
+            snapshot.add(id, -70_000 + random.nextDouble() * 100, 50 + random.nextDouble() * 20,
+                    70_000 + random.nextDouble() * 100, random.nextDouble() * 2 * Math.PI,
+                    random.nextDouble() - 0.5);
+        }
+        return snapshot;
+    }
+
+    private EntitySnapshot roundTrip(final EntitySnapshot snapshot, final EntitySnapshot baseline) {
+        final BitWriter writer = new BitWriter();
+        snapshot.encode(baseline, writer);
+        final EntitySnapshot decoded = new EntitySnapshot();
+        decoded.decode(new BitReader(this.bytes(writer)), baseline, 1, 2);
+        return decoded;
+    }
+
+    private ByteBuffer bytes(final BitWriter writer) {
+        final ByteBuffer buffer = ByteBuffer.allocate(writer.getNumBytes());
+        writer.writeTo(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void assertSame(final EntitySnapshot expected, final EntitySnapshot actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getId(i), actual.getId(i));
+            assertEquals(expected.getPosX(i), actual.getPosX(i));
+            assertEquals(expected.getPosY(i), actual.getPosY(i));
+            assertEquals(expected.getPosZ(i), actual.getPosZ(i));
+            assertEquals(expected.getOrient(i), actual.getOrient(i));
+            assertEquals(expected.getVertOrient(i), actual.getVertOrient(i));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.sheaconlon.realcraft.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the load test harness, with a few bots.
+ */
+class LoadTestTester {
+    private static final int BOTS = 10;
+    private static final int ANIMALS = 50;
+    private static final double INTERVAL = 1.0 / 30;
+    private static final int ROUNDS = 60;
+
+    /**
+     * Where the bots spawn. Far from the chunks used by other tests.
+     */
+    private static final double SPAWN_X = 83_000.5;
+    private static final double SPAWN_Y = 60;
+    private static final double SPAWN_Z = -83_000.5;
+
+    private LoadTest loadTest;
+
+    @BeforeEach
+    void start() throws IOException {
+        this.loadTest = new LoadTest(BOTS, ANIMALS, 0, SPAWN_X, SPAWN_Y, SPAWN_Z);
+    }
+
+    @AfterEach
+    void stop() {
+        this.loadTest.close();
+    }
+
+    @Test
+    void testBotsPlayAndReport() {
+        for (int i = 0; i < ROUNDS; i++) {
+            this.loadTest.round(INTERVAL);
+        }
+        assertEquals(BOTS, this.loadTest.getNumBots());
+        assertEquals(BOTS, this.loadTest.getServer().getNumClients());
+        assertEquals(ROUNDS, this.loadTest.getServerTickDuration().getCount());
+        for (int i = 0; i < BOTS; i++) {
+            final Client client = this.loadTest.getClient(i);
+            assertTrue(client.isWelcomed());
+            assertTrue(client.getNumChunks() > 0);
+            assertTrue(client.getInputLatency().getCount() > 0);
+            assertTrue(client.getEntities().size() > 0);
+        }
+        final String report = this.loadTest.formatReport();
+        assertTrue(report.contains("server tick"));
+        assertTrue(report.contains("bot p99 input latency"));
+    }
+
+    @Test
+    void testBotsConnectAFewAtATime() {
+        this.loadTest.round(INTERVAL);
+        assertTrue(this.loadTest.getNumBots() < BOTS);
+        assertTrue(this.loadTest.getNumBots() > 0);
+    }
+}
@@ -0,0 +1,358 @@
+package com.sheaconlon.realcraft.network;
+
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.blocks.LeafBlock;
+import com.sheaconlon.realcraft.entities.Animal;
+import com.sheaconlon.realcraft.entities.EntityStore;
+import com.sheaconlon.realcraft.entities.MovementSystem;
+import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.entities.WanderSystem;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.renderer.Renderer;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.simulator.Hitbox;
+import com.sheaconlon.realcraft.ui.InputSource;
+import com.sheaconlon.realcraft.ui.ScriptedInput;
+import com.sheaconlon.realcraft.ui.UserInterface;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of a client and server talking over loopback, both ticked by the test.
+ *
+ * The client decodes chunks into chunks detached from the world, so that they can be compared with the server's. Some
+ * tests simulate a slow link, over which the order chunks are sent in matters.
+ */
+class LoopbackTester {
+    private static final double SERVER_INTERVAL = 1.0 / 30;
+    private static final double CLIENT_INTERVAL = 1.0 / 60;
+    private static final int MAX_ROUNDS = 5_000;
+
+    /**
+     * Where the server's clients spawn. Far from the chunks used by other tests.
+     */
+    private static final double SPAWN_X = 70_000.5;
+    private static final double SPAWN_Y = 60;
+    private static final double SPAWN_Z = -70_000.5;
+
+    /**
+     * The number of chunks to wait for, nearest the spawn point first.
+     */
+    private static final int CHUNKS = 30;
+
+    /**
+     * The bytes per server tick of a simulated slow link. About two unencoded chunks.
+     */
+    private static final long SLOW_LINK = 8 * 1024;
+
+    /**
+     * The number of animals wandering around the spawn point, and how far from it they start. In blocks.
+     */
+    private static final int ANIMALS = 1_000;
+    private static final double ANIMAL_SPREAD = 30;
+    private static final double ENTITY_SECONDS = 3;
+
+    /**
+     * The bytes a naive snapshot would spend on an entity: its ID, and its position, velocity and orientations as
+     * doubles.
+     */
+    private static final int NAIVE_ENTITY_BYTES = Integer.BYTES + 8 * Double.BYTES;
+
+    private static class Critter extends Animal {
+        Critter(final EntityStore store, final Vector pos) {
+            super(store, EntityStore.Archetype.ANIMAL, pos, new Vector(0, 0, 0), 0, 0);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    private double x;
+    private double y;
+    private double z;
+    private double orient;
+    private double vertOrient;
+
+    private Server server;
+    private Client client;
+    private LongHashMap<Chunk> clientChunks;
+
+    /**
+     * The packed positions of the chunks the client has decoded, in the order it decoded them.
+     */
+    private List<Long> arrivals;
+
+    @BeforeEach
+    void setUp() {
+        this.x = Player.PLAYER.getPosX();
+        this.y = Player.PLAYER.getPosY();
+        this.z = Player.PLAYER.getPosZ();
+        this.orient = Player.PLAYER.getOrient();
+        this.vertOrient = Player.PLAYER.getVertOrient();
+        this.clientChunks = new LongHashMap<>();
+        this.arrivals = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (this.client != null) {
+            this.client.close();
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+        Player.PLAYER.setPos(this.x, this.y, this.z);
+        Player.PLAYER.setOrient(this.orient);
+        Player.PLAYER.setVertOrient(this.vertOrient);
+    }
+
+    @Test
+    void testStreamsChunks() throws IOException {
+        this.connect(false, new ScriptedInput(0, 0));
+        this.runUntil(() -> this.client.getNumChunks() >= CHUNKS);
+        assertTrue(this.client.isWelcomed());
+        assertEquals(1, this.server.getNumClients());
+        assertEquals(SPAWN_X, Player.PLAYER.getPosX());
+        this.assertChunksMatchServer();
+    }
+
+    @Test
+    void testStreamsCompressedChunks() throws IOException {
+        this.connect(true, new ScriptedInput(0, 0));
+        this.runUntil(() -> this.client.getNumChunks() >= CHUNKS);
+        this.assertChunksMatchServer();
+    }
+
+    @Test
+    void testServerMovesPlayer() throws IOException {
+        Player.PLAYER.setOrient(0);
+        this.connect(false, new ScriptedInput(0, 0, InputSource.Control.FORWARD));
+        // The player does not move locally, since no user interface is ticking, so the server's position replaces
+        // the local one once they are far enough apart.
+        this.runUntil(() -> Player.PLAYER.getPosX() > SPAWN_X);
+        assertEquals(SPAWN_Z, Player.PLAYER.getPosZ(), 1e-9);
+    }
+
+    @Test
+    void testDropsDisconnectedClients() throws IOException {
+        this.connect(false, new ScriptedInput(0, 0));
+        this.runUntil(this.client::isWelcomed);
+        this.client.close();
+        this.client = null;
+        this.runUntil(() -> this.server.getNumClients() == 0);
+        assertFalse(this.server.getNumClients() > 0);
+    }
+
+    @Test
+    void testForgetsChunksNoClientNeeds() throws IOException {
+        this.connect(false, new ScriptedInput(0, 0));
+        this.runUntil(() -> this.client.getNumChunks() >= CHUNKS);
+        assertTrue(this.server.getNumCachedChunks() > 0);
+        this.client.close();
+        this.client = null;
+        this.runUntil(() -> this.server.getNumClients() == 0);
+        // The chunks are kept for a while, in case the client comes back.
+        this.server.tick(SERVER_INTERVAL);
+        assertTrue(this.server.getNumCachedChunks() > 0);
+        this.server.tick(Server.UNLOAD_DELAY);
+        assertEquals(0, this.server.getNumCachedChunks());
+        assertNull(Chunk.existingChunk(ChunkPos.containing(SPAWN_X, SPAWN_Y, SPAWN_Z)));
+    }
+
+    @Test
+    void testSendsEditedChunksAgain() throws IOException {
+        this.connect(false, new ScriptedInput(0, 0));
+        this.runUntil(() -> this.client.getNumChunks() >= CHUNKS);
+        final long spawnChunk = ChunkPos.containing(SPAWN_X, SPAWN_Y, SPAWN_Z);
+        final int version = this.client.getVersions().get(spawnChunk);
+        final Vector pos = new Vector(ChunkPos.anchorX(spawnChunk), ChunkPos.anchorY(spawnChunk),
+                ChunkPos.anchorZ(spawnChunk));
+        final boolean isDirt = Chunk.getChunk(spawnChunk).getBlock(pos.getXInt(), pos.getYInt(), pos.getZInt())
+                instanceof DirtBlock;
+        LightEngine.WORLD.putBlock(isDirt ? new LeafBlock(pos) : new DirtBlock(pos));
+        this.runUntil(() -> this.client.getVersions().get(spawnChunk) != version);
+        assertNotEquals(version, (int)this.client.getVersions().get(spawnChunk));
+        this.assertChunksMatchServer();
+    }
+
+    @Test
+    void testSendsChunksInViewFirst() throws IOException {
+        // Look along the negative x-axis.
+        Player.PLAYER.setOrient(Math.PI);
+        Player.PLAYER.setVertOrient(0);
+        this.connect(false, new ScriptedInput(0, 0));
+        this.server.setSendBudget(SLOW_LINK);
+        this.server.setLinkLimit(SLOW_LINK);
+        this.runUntil(() -> this.arrivals.size() >= CHUNKS);
+        final int spawnAnchorX = ChunkPos.anchorX(ChunkPos.containing(SPAWN_X, SPAWN_Y, SPAWN_Z));
+        int ahead = 0;
+        int behind = 0;
+        for (final long pos : this.arrivals.subList(0, CHUNKS)) {
+            if (ChunkPos.anchorX(pos) < spawnAnchorX) {
+                ahead++;
+            } else if (ChunkPos.anchorX(pos) > spawnAnchorX) {
+                behind++;
+            }
+        }
+        assertTrue(ahead > 2 * behind, ahead + " chunks ahead, " + behind + " behind");
+    }
+
+    @Test
+    void testCancelsChunksLeftBehind() throws IOException {
+        Player.PLAYER.setOrient(0);
+        this.connect(false, new ScriptedInput(0, 0, InputSource.Control.FORWARD));
+        // Let far more be queued than the link can carry.
+        this.server.setLinkLimit(1024);
+        this.runUntil(() -> this.client.getNumChunks() > 0);
+        final long cancelledBefore = Metrics.counter("Server", "chunksCancelled").getCount();
+        // One long tick carries the player twice the streaming radius away, out of reach of everything queued.
+        this.server.tick(2 * Renderer.RENDER_DISTANCE * Chunk.SIZE / UserInterface.SPEED_OF_MOVEMENT);
+        assertTrue(Metrics.counter("Server", "chunksCancelled").getCount() > cancelledBefore);
+    }
+
+    @Test
+    void testHeldChunksMakeReconnectingFaster() throws IOException {
+        this.connect(false, new ScriptedInput(0, 0));
+        this.server.setSendBudget(SLOW_LINK);
+        this.server.setLinkLimit(SLOW_LINK);
+        final int firstRounds = this.runUntil(this.client::isPlayable);
+        assertTrue(this.client.getTimeToPlayable() > 0);
+        final LongHashMap<Integer> held = this.client.getVersions();
+        this.client.close();
+        this.client = null;
+        this.runUntil(() -> this.server.getNumClients() == 0);
+
+        final long currentBefore = Metrics.counter("Client", "chunksCurrent").getCount();
+        this.reconnect(false, new ScriptedInput(0, 0), held);
+        final int secondRounds = this.runUntil(this.client::isPlayable);
+        assertTrue(Metrics.counter("Client", "chunksCurrent").getCount() > currentBefore);
+        assertTrue(2 * secondRounds < firstRounds, "playable after " + firstRounds + " rounds, then "
+                + secondRounds + " on reconnecting");
+        this.assertChunksMatchServer();
+    }
+
+    @Test
+    void testSendsWanderingAnimalsCompactly() throws IOException {
+        final EntityStore store = new EntityStore();
+        final Random random = new Random(0);
+        for (int i = 0; i < ANIMALS; i++) {
+            new Critter(store, new Vector(SPAWN_X + (2 * random.nextDouble() - 1) * ANIMAL_SPREAD, SPAWN_Y,
+                    SPAWN_Z + (2 * random.nextDouble() - 1) * ANIMAL_SPREAD));
+        }
+        final WanderSystem wander = new WanderSystem();
+        final MovementSystem movement = new MovementSystem();
+        this.server = new Server(0, SPAWN_X, SPAWN_Y, SPAWN_Z, store);
+        this.reconnect(true, new ScriptedInput(0, 0), new LongHashMap<>());
+        this.runUntil(this.client::isWelcomed);
+
+        final long bytesBefore = Metrics.counter("Client", "snapshotBytesReceived").getCount();
+        final int rounds = (int)(ENTITY_SECONDS / SERVER_INTERVAL);
+        for (int i = 0; i < rounds; i++) {
+            store.runParallel(EntityStore.Archetype.ANIMAL, wander, SERVER_INTERVAL);
+            store.runParallel(EntityStore.Archetype.ANIMAL, movement, SERVER_INTERVAL);
+            this.server.tick(SERVER_INTERVAL);
+            this.client.tick(CLIENT_INTERVAL);
+        }
+        this.runUntil(() -> this.server.getNumClients() == 1);
+        final double bytesPerSecond = (Metrics.counter("Client", "snapshotBytesReceived").getCount() - bytesBefore)
+                / ENTITY_SECONDS;
+        final double naiveBytesPerSecond = (double)ANIMALS * NAIVE_ENTITY_BYTES / SERVER_INTERVAL;
+        assertTrue(8 * bytesPerSecond < naiveBytesPerSecond, bytesPerSecond + " bytes per second");
+
+        // Entities are shown a little in the past, by when they had walked less than a block.
+        final RemoteEntities remote = this.client.getEntities();
+        assertEquals(ANIMALS, remote.size());
+        final EntityStore.Table table = store.getTable(EntityStore.Archetype.ANIMAL);
+        for (int row = 0; row < table.size(); row++) {
+            final int i = remote.indexOf(table.getEntities()[row].getId());
+            assertTrue(i >= 0);
+            assertEquals(table.getPosX()[row], remote.getPosX(i), 1);
+            assertEquals(table.getPosZ()[row], remote.getPosZ(i), 1);
+        }
+    }
+
+    private void connect(final boolean compress, final InputSource input) throws IOException {
+        this.server = new Server(0, SPAWN_X, SPAWN_Y, SPAWN_Z);
+        this.reconnect(compress, input, new LongHashMap<>());
+    }
+
+    /**
+     * Connect a new client to the server, using the same chunks as any earlier client.
+     */
+    private void reconnect(final boolean compress, final InputSource input, final LongHashMap<Integer> held)
+            throws IOException {
+        this.client = new Client(new InetSocketAddress("localhost", this.server.getPort()), compress, input,
+                pos -> {
+                    Chunk chunk = this.clientChunks.get(pos);
+                    if (chunk == null) {
+                        chunk = Chunk.detached(pos);
+                        this.clientChunks.put(pos, chunk);
+                    }
+                    this.arrivals.add(pos);
+                    return chunk;
+                }, held);
+    }
+
+    /**
+     * Tick the server and then the client until some condition holds.
+     * @return The number of rounds of ticks it took.
+     */
+    private int runUntil(final BooleanSupplier condition) {
+        for (int i = 0; i < MAX_ROUNDS; i++) {
+            this.server.tick(SERVER_INTERVAL);
+            if (this.client != null) {
+                this.client.tick(CLIENT_INTERVAL);
+            }
+            if (condition.getAsBoolean()) {
+                return i + 1;
+            }
+            Thread.yield();
+        }
+        throw new AssertionError("condition did not hold after " + MAX_ROUNDS + " rounds");
+    }
+
+    private void assertChunksMatchServer() {
+        final long spawnChunk = ChunkPos.containing(SPAWN_X, SPAWN_Y, SPAWN_Z);
+        assertTrue(this.client.hasChunk(spawnChunk));
+        final Chunk received = this.clientChunks.get(spawnChunk);
+        final Chunk original = Chunk.getChunk(spawnChunk);
+        final int anchorX = ChunkPos.anchorX(spawnChunk);
+        final int anchorY = ChunkPos.anchorY(spawnChunk);
+        final int anchorZ = ChunkPos.anchorZ(spawnChunk);
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                    assertEquals(original.getBlock(x, y, z).getClass(), received.getBlock(x, y, z).getClass());
+                    assertEquals(original.getLight(x, y, z), received.getLight(x, y, z));
+                }
+            }
+        }
+    }
+}
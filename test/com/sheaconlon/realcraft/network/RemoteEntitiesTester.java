@@ -0,0 +1,99 @@
+package com.sheaconlon.realcraft.network;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the smoothing of entities received from a server.
+ */
+class RemoteEntitiesTester {
+    private static final long NANOSECONDS_PER_MILLISECOND = 1_000_000;
+
+    /**
+     * The local time at which the first snapshot arrives. In milliseconds.
+     */
+    private static final long ARRIVAL = 5_000;
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void testShowsNothingAtFirst() {
+        final RemoteEntities entities = new RemoteEntities();
+        entities.interpolate(ARRIVAL * NANOSECONDS_PER_MILLISECOND);
+        assertEquals(0, entities.size());
+    }
+
+    @Test
+    void testInterpolatesBehindNewestSnapshot() {
+        final RemoteEntities entities = new RemoteEntities();
+        this.receive(entities, 0, 0, 0);
+        this.receive(entities, 1, 100, 4);
+        this.receive(entities, 2, 200, 8);
+        // Entities are shown as they were a delay ago, which here is halfway between the first two snapshots.
+        entities.interpolate((ARRIVAL + 50 + RemoteEntities.INTERPOLATION_DELAY) * NANOSECONDS_PER_MILLISECOND);
+        assertEquals(1, entities.size());
+        assertEquals(2, entities.getPosX(0), EPSILON);
+    }
+
+    @Test
+    void testHoldsNewestSnapshotWhenSnapshotsStop() {
+        final RemoteEntities entities = new RemoteEntities();
+        this.receive(entities, 0, 0, 0);
+        this.receive(entities, 1, 100, 4);
+        entities.interpolate((ARRIVAL + 10_000) * NANOSECONDS_PER_MILLISECOND);
+        assertEquals(4, entities.getPosX(0), EPSILON);
+    }
+
+    @Test
+    void testShowsOldestSnapshotBeforeItsTime() {
+        final RemoteEntities entities = new RemoteEntities();
+        this.receive(entities, 0, 0, 2);
+        this.receive(entities, 1, 100, 4);
+        entities.interpolate(ARRIVAL * NANOSECONDS_PER_MILLISECOND);
+        assertEquals(2, entities.getPosX(0), EPSILON);
+    }
+
+    @Test
+    void testTurnsTheShortWayAround() {
+        final RemoteEntities entities = new RemoteEntities();
+        this.receive(entities, 0, 0, 0, 2 * Math.PI - 0.2);
+        this.receive(entities, 1, 100, 0, 0.2);
+        this.receive(entities, 2, 200, 0, 0.2);
+        entities.interpolate((ARRIVAL + 150) * NANOSECONDS_PER_MILLISECOND);
+        final double orient = entities.getOrient(0);
+        assertTrue(Math.abs(orient - 2 * Math.PI) < 0.01 || Math.abs(orient) < 0.01, "orientation " + orient);
+    }
+
+    @Test
+    void testEntitiesAppearAsInNewerSnapshot() {
+        final RemoteEntities entities = new RemoteEntities();
+        this.receive(entities, 0, 0, 0);
+        final EntitySnapshot snapshot = entities.slot(1);
+        snapshot.clear(1, 100);
+        snapshot.add(1, 4, 0, 0, 0, 0);
+        snapshot.add(2, 10, 0, 0, 0, 0);
+        entities.received(snapshot, (ARRIVAL + 100) * NANOSECONDS_PER_MILLISECOND);
+        this.receive(entities, 2, 200, 8);
+        entities.interpolate((ARRIVAL + 150) * NANOSECONDS_PER_MILLISECOND);
+        assertEquals(2, entities.size());
+        assertEquals(2, entities.getPosX(entities.indexOf(1)), EPSILON);
+        assertEquals(10, entities.getPosX(entities.indexOf(2)), EPSILON);
+    }
+
+    /**
+     * Take in a snapshot of one entity, which arrives as long after the first as it was taken after it.
+     */
+    private void receive(final RemoteEntities entities, final int sequence, final int time, final double x) {
+        this.receive(entities, sequence, time, x, 0);
+    }
+
+    private void receive(final RemoteEntities entities, final int sequence, final int time, final double x,
+                         final double orient) {
+        final EntitySnapshot snapshot = entities.slot(sequence);
+        snapshot.clear(sequence, time);
+        snapshot.add(1, x, 0, 0, orient, 0);
+        entities.received(snapshot, (ARRIVAL + time) * NANOSECONDS_PER_MILLISECOND);
+    }
+}
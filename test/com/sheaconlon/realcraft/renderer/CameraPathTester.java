@@ -0,0 +1,78 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.entities.Player;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A tester of camera paths.
+ */
+class CameraPathTester {
+    private static final double TOLERANCE = 1e-3;
+
+    @Test
+    void testOrbit() {
+        final CameraPath path = CameraPath.orbit(10, 20, 30, 5, 8);
+        assertEquals(8, path.size());
+        for (int i = 0; i < path.size(); i++) {
+            final double dx = path.getX(i) - 10;
+            final double dz = path.getZ(i) - 30;
+            assertEquals(5, Math.sqrt(dx * dx + dz * dz), TOLERANCE);
+            assertEquals(20, path.getY(i));
+        }
+    }
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        final CameraPath path = CameraPath.orbit(-100, 70, 100, 12, 50);
+        final Path file = Files.createTempFile("camera", ".path");
+        try {
+            path.save(file);
+            final CameraPath loaded = CameraPath.load(file);
+            assertEquals(path.size(), loaded.size());
+            for (int i = 0; i < path.size(); i++) {
+                assertEquals(path.getX(i), loaded.getX(i), TOLERANCE);
+                assertEquals(path.getY(i), loaded.getY(i), TOLERANCE);
+                assertEquals(path.getZ(i), loaded.getZ(i), TOLERANCE);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testLoadRejectsMalformedLines() throws IOException {
+        final Path file = Files.createTempFile("camera", ".path");
+        try {
+            Files.write(file, "1 2 3\n".getBytes());
+            assertThrows(IOException.class, () -> CameraPath.load(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testApply() {
+        final double x = Player.PLAYER.getPosX();
+        final double y = Player.PLAYER.getPosY();
+        final double z = Player.PLAYER.getPosZ();
+        final double orient = Player.PLAYER.getOrient();
+        final double vertOrient = Player.PLAYER.getVertOrient();
+        final CameraPath path = new CameraPath(new double[]{1, 2, 3, 0.5, -0.25});
+        path.apply(0, Player.PLAYER);
+        assertEquals(1, Player.PLAYER.getPosX());
+        assertEquals(2, Player.PLAYER.getPosY());
+        assertEquals(3, Player.PLAYER.getPosZ());
+        assertEquals(0.5, Player.PLAYER.getOrient(), TOLERANCE);
+        assertEquals(-0.25, Player.PLAYER.getVertOrient(), TOLERANCE);
+        Player.PLAYER.setPos(x, y, z);
+        Player.PLAYER.setOrient(orient);
+        Player.PLAYER.setVertOrient(vertOrient);
+    }
+}
@@ -0,0 +1,140 @@
+package com.sheaconlon.realcraft.renderer;
+
+import org.joml.Matrix4d;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A graphics layer which draws nothing, so that renderers can run without OpenGL.
+ *
+ * Counts what it is asked to do, so that tests can check what a renderer drew.
+ */
+class FakeGraphics implements Graphics {
+    /**
+     * A render buffer which keeps only counts of what is done with it.
+     */
+    static class FakeRenderBuffer implements RenderBuffer {
+        private static final int BYTES_PER_INSTANCE =
+                (Vertex.POSITION_SIZE + Vertex.COLOR_SIZE + Vertex.NORMAL_SIZE) * Float.BYTES + Integer.BYTES;
+
+        private final int capacity;
+        private int numInstances;
+        private int renders;
+        private boolean sent;
+
+        FakeRenderBuffer(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void write(final Vertex vertex) {
+            if (this.sent) {
+                throw new RuntimeException("attempted to write to a render buffer after sending it");
+            }
+            this.numInstances++;
+        }
+
+        @Override
+        public boolean isFull() {
+            return this.numInstances >= this.capacity;
+        }
+
+        @Override
+        public boolean send() {
+            if (this.sent) {
+                throw new RuntimeException("attempted to send a render buffer twice");
+            }
+            this.sent = true;
+            return true;
+        }
+
+        @Override
+        public int getNumInstances() {
+            return this.numInstances;
+        }
+
+        /**
+         * @return The number of bytes a VBO with the same writes would send if no vertex were repeated.
+         */
+        @Override
+        public int getNumBytes() {
+            return this.numInstances * BYTES_PER_INSTANCE;
+        }
+
+        @Override
+        public void render() {
+            if (!this.sent) {
+                throw new RuntimeException("attempted to render a render buffer that was not sent");
+            }
+            this.renders++;
+        }
+
+        int getRenders() {
+            return this.renders;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final List<FakeRenderBuffer> buffers;
+    private int frames;
+    private boolean inFrame;
+
+    /**
+     * Create a fake graphics layer.
+     * @param width The width of the surface to pretend to draw on.
+     * @param height The height of the surface to pretend to draw on.
+     */
+    FakeGraphics(final int width, final int height) {
+        this.width = width;
+        this.height = height;
+        this.buffers = new ArrayList<>();
+    }
+
+    @Override
+    public void init(final double verticalFieldOfView, final double nearCutoff, final double farCutoff) {
+    }
+
+    @Override
+    public void getDimensions(final int[] dest) {
+        dest[0] = this.width;
+        dest[1] = this.height;
+    }
+
+    @Override
+    public RenderBuffer createBuffer(final int capacity) {
+        final FakeRenderBuffer buffer = new FakeRenderBuffer(capacity);
+        this.buffers.add(buffer);
+        return buffer;
+    }
+
+    @Override
+    public void beginFrame(final Matrix4d camera) {
+        this.inFrame = true;
+    }
+
+    @Override
+    public void endFrame() {
+        if (!this.inFrame) {
+            throw new RuntimeException("attempted to end a frame that was not begun");
+        }
+        this.inFrame = false;
+        this.frames++;
+    }
+
+    int getFrames() {
+        return this.frames;
+    }
+
+    /**
+     * @return The number of times any buffer created by this layer was drawn.
+     */
+    int getRenders() {
+        int renders = 0;
+        for (final FakeRenderBuffer buffer : this.buffers) {
+            renders += buffer.getRenders();
+        }
+        return renders;
+    }
+}
@@ -0,0 +1,83 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import com.sheaconlon.realcraft.utilities.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of view frustums.
+ */
+class FrustumTester {
+    private static final double FIELD_OF_VIEW = Math.PI / 2;
+    private static final double NEAR = 0.05;
+    private static final double FAR = 1000;
+
+    /**
+     * Decide whether a point is within a frustum the way the renderer did before frustums existed.
+     */
+    private static boolean referenceContains(final Vector camera, final double orient, final double vertOrient,
+                                             final double aspectRatio, final Vector p) {
+        final Vector oriented = Vector.rotateVertical(
+                Vector.rotateHorizontal(Vector.subtract(p, camera), -orient), -vertOrient);
+        if (oriented.getX() < NEAR || oriented.getX() > FAR) {
+            return false;
+        }
+        final double vertDir = Math.atan(oriented.getY() / oriented.getX());
+        if (vertDir < -FIELD_OF_VIEW / 2 || vertDir > FIELD_OF_VIEW / 2) {
+            return false;
+        }
+        final double horizFOV = aspectRatio * FIELD_OF_VIEW;
+        final double horizDir = Math.atan(oriented.getZ() / oriented.getX());
+        return horizDir >= -horizFOV / 2 && horizDir <= horizFOV / 2;
+    }
+
+    @Test
+    void testContainsPoint() {
+        final Frustum frustum = new Frustum(FIELD_OF_VIEW, NEAR, FAR);
+        frustum.update(0, 0, 0, 0, 0, 1);
+        assertTrue(frustum.containsPoint(10, 0, 0));
+        assertTrue(frustum.containsPoint(10, 9, -9));
+        assertFalse(frustum.containsPoint(-10, 0, 0));
+        assertFalse(frustum.containsPoint(10, 11, 0));
+        assertFalse(frustum.containsPoint(2000, 0, 0));
+        frustum.update(0, 0, 0, Math.PI / 2, 0, 1);
+        assertTrue(frustum.containsPoint(0, 0, -10));
+        assertFalse(frustum.containsPoint(10, 0, 0));
+    }
+
+    @Test
+    void testAgreesWithReference() {
+        final Random random = new Random(32);
+        final Frustum frustum = new Frustum(FIELD_OF_VIEW, NEAR, FAR);
+        for (int i = 0; i < 100; i++) {
+            final Vector camera = new Vector(random.nextDouble() * 100, random.nextDouble() * 100,
+                    random.nextDouble() * 100);
+            final double orient = random.nextDouble() * 2 * Math.PI;
+            final double vertOrient = (random.nextDouble() - 0.5) * Math.PI;
+            final double aspectRatio = 0.5 + random.nextDouble() * 2.5;
+            frustum.update(camera.getX(), camera.getY(), camera.getZ(), orient, vertOrient, aspectRatio);
+            for (int j = 0; j < 100; j++) {
+                final Vector p = new Vector(random.nextDouble() * 200 - 50, random.nextDouble() * 200 - 50,
+                        random.nextDouble() * 200 - 50);
+                assertEquals(referenceContains(camera, orient, vertOrient, aspectRatio, p),
+                        frustum.containsPoint(p.getX(), p.getY(), p.getZ()), "point " + p);
+            }
+        }
+    }
+
+    @Test
+    void testCullingDoesNotAllocate() {
+        final Frustum frustum = new Frustum(FIELD_OF_VIEW, NEAR, FAR);
+        final double bytes = Allocations.perRun(100_000, 100_000, () -> {
+            frustum.update(1, 2, 3, 0.4, -0.1, 16.0 / 9);
+            frustum.containsPoint(20, 5, -4);
+        });
+        assertTrue(bytes < 1, "allocated " + bytes + " bytes per run");
+    }
+}
@@ -0,0 +1,52 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A benchmark of pre-rendering a chunk into a vertex sink which needs no OpenGL context.
+ */
+public class PrerendererBenchmark {
+    private static final int WARMUP_RUNS = 20;
+    private static final int RUNS = 100;
+
+    /**
+     * @return The cases of this benchmark.
+     */
+    public static List<Benchmark.Case> cases() {
+        final long pos = BlockPos.pack(31_000, 0, -31_000);
+        final Chunk chunk = Chunk.getChunk(pos);
+        final int anchorX = ChunkPos.anchorX(pos);
+        final int anchorY = ChunkPos.anchorY(pos);
+        final int anchorZ = ChunkPos.anchorZ(pos);
+        // Fill the chunk with dirt to a sloping surface, so that it has top, side and hidden faces.
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                final int height = (x - anchorX + z - anchorZ) / 2;
+                for (int y = anchorY; y <= anchorY + height; y++) {
+                    chunk.putBlock(new DirtBlock(new Vector(x, y, z)));
+                }
+            }
+        }
+        LightEngine.WORLD.lightChunk(chunk);
+        final ArrayVertexSink sink = new ArrayVertexSink(Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS * 6 * 4);
+        return Collections.singletonList(
+                new Benchmark.Case("renderer.prerenderChunk", WARMUP_RUNS, RUNS, () -> {
+                    sink.clear();
+                    Prerenderer.prerenderChunk(chunk, sink);
+                })
+        );
+    }
+
+    public static void main(final String[] args) {
+        Benchmark.runAll(cases());
+    }
+}
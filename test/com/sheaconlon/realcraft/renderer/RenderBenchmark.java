@@ -0,0 +1,147 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * A benchmark of rendering frames along a camera path, so that the same frames can be timed before and after a change.
+ *
+ * Usage:
+ * <pre>
+ * RenderBenchmark [--graphics offscreen|fake] [--width PIXELS] [--height PIXELS] [--path FILE]
+ *                 [--warmup-frames FRAMES] [--csv FILE]
+ * </pre>
+ *
+ * The world along the path is generated up front. Each frame, the pre-renderer meshes what it would between frames,
+ * untimed, and then the renderer's tick is timed. With {@code --graphics offscreen} frames are drawn by OpenGL into
+ * an offscreen framebuffer and each is waited on to finish; see {@link OffscreenGraphics} for running without a
+ * display. With {@code --graphics fake} nothing is drawn, which times the renderer's own work. Paths can be recorded
+ * with {@code Launcher --record-camera FILE}; without {@code --path}, a fixed orbit is used.
+ */
+public class RenderBenchmark {
+    private static final double FRAME_INTERVAL = 1.0 / 60;
+    private static final double NANOSECONDS_PER_MILLISECOND = 1_000_000;
+
+    private static final int DEFAULT_WIDTH = 1280;
+    private static final int DEFAULT_HEIGHT = 720;
+    private static final int DEFAULT_WARMUP_FRAMES = 300;
+
+    /**
+     * The orbit used when no path is given. Far from the chunks used by the tests and other benchmarks, and just above
+     * most of the terrain, looking down onto it.
+     */
+    private static final double ORBIT_X = -20_000;
+    private static final double ORBIT_Y = 80;
+    private static final double ORBIT_Z = 20_000;
+    private static final double ORBIT_RADIUS = 16;
+    private static final int ORBIT_FRAMES = 600;
+
+    public static void main(final String[] args) throws IOException {
+        String graphicsName = "offscreen";
+        int width = DEFAULT_WIDTH;
+        int height = DEFAULT_HEIGHT;
+        int warmupFrames = DEFAULT_WARMUP_FRAMES;
+        String pathFile = null;
+        String csvFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--graphics") && i + 1 < args.length) {
+                graphicsName = args[++i];
+            } else if (args[i].equals("--width") && i + 1 < args.length) {
+                width = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--height") && i + 1 < args.length) {
+                height = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--path") && i + 1 < args.length) {
+                pathFile = args[++i];
+            } else if (args[i].equals("--warmup-frames") && i + 1 < args.length) {
+                warmupFrames = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--csv") && i + 1 < args.length) {
+                csvFile = args[++i];
+            } else {
+                throw new IllegalArgumentException("unknown argument " + args[i]);
+            }
+        }
+        final CameraPath path = pathFile == null
+                ? CameraPath.orbit(ORBIT_X, ORBIT_Y, ORBIT_Z, ORBIT_RADIUS, ORBIT_FRAMES)
+                : CameraPath.load(Paths.get(pathFile));
+        if (path.size() == 0) {
+            throw new IllegalArgumentException("camera path has no frames");
+        }
+
+        final Generator generator = new Generator();
+        for (int i = 0; i < path.size(); i++) {
+            generator.generateAround(ChunkPos.containing(path.getX(i), path.getY(i), path.getZ(i)));
+        }
+
+        final Graphics graphics;
+        if (graphicsName.equals("offscreen")) {
+            graphics = new OffscreenGraphics(width, height);
+        } else if (graphicsName.equals("fake")) {
+            graphics = new FakeGraphics(width, height);
+        } else {
+            throw new IllegalArgumentException("unknown graphics " + graphicsName);
+        }
+        final Renderer renderer = new Renderer(graphics);
+        renderer.initInThread();
+        final Prerenderer prerenderer = new Prerenderer(renderer);
+
+        // Warm up on the first pose, which also meshes and sends the chunks around it.
+        path.apply(0, Player.PLAYER);
+        for (int i = 0; i < warmupFrames; i++) {
+            prerenderer.tick(FRAME_INTERVAL);
+            renderer.tick(FRAME_INTERVAL);
+        }
+
+        final Histogram frameTimes = new Histogram();
+        long chunksDrawn = 0;
+        long verticesDrawn = 0;
+        long chunksCulled = 0;
+        long bytesUploaded = 0;
+        final PrintWriter csv = csvFile == null ? null
+                : new PrintWriter(Files.newBufferedWriter(Paths.get(csvFile), StandardCharsets.UTF_8));
+        if (csv != null) {
+            csv.println("frame,milliseconds,chunksDrawn,verticesDrawn,chunksCulled,bytesUploaded");
+        }
+        for (int i = 0; i < path.size(); i++) {
+            path.apply(i, Player.PLAYER);
+            prerenderer.tick(FRAME_INTERVAL);
+            final long start = System.nanoTime();
+            renderer.tick(FRAME_INTERVAL);
+            final long elapsed = System.nanoTime() - start;
+            frameTimes.record(elapsed);
+            chunksDrawn += renderer.getChunksDrawn();
+            verticesDrawn += renderer.getVerticesDrawn();
+            chunksCulled += renderer.getChunksCulled();
+            bytesUploaded += renderer.getBytesUploaded();
+            if (csv != null) {
+                csv.printf("%d,%.4f,%d,%d,%d,%d%n", i, elapsed / NANOSECONDS_PER_MILLISECOND,
+                        renderer.getChunksDrawn(), renderer.getVerticesDrawn(), renderer.getChunksCulled(),
+                        renderer.getBytesUploaded());
+            }
+        }
+        if (csv != null) {
+            csv.close();
+        }
+        if (graphics instanceof OffscreenGraphics) {
+            ((OffscreenGraphics)graphics).close();
+        }
+
+        final int frames = path.size();
+        System.out.printf("%s graphics, %dx%d, %d frames after %d warm-up frames%n", graphicsName, width, height,
+                frames, warmupFrames);
+        System.out.printf("frame time: mean %.3fms p50 %.3fms p90 %.3fms p99 %.3fms max %.3fms%n",
+                frameTimes.getMean(), frameTimes.percentile(0.5) / NANOSECONDS_PER_MILLISECOND,
+                frameTimes.percentile(0.9) / NANOSECONDS_PER_MILLISECOND,
+                frameTimes.percentile(0.99) / NANOSECONDS_PER_MILLISECOND, frameTimes.getMax());
+        System.out.printf("per frame: %.1f draw calls, %.0f vertices, %.1f chunks culled, %.0f bytes uploaded%n",
+                (double)chunksDrawn / frames, (double)verticesDrawn / frames, (double)chunksCulled / frames,
+                (double)bytesUploaded / frames);
+    }
+}
@@ -0,0 +1,122 @@
+package com.sheaconlon.realcraft.renderer;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.entities.Player;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkOffsets;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of how much memory pre-rendering chunks and rendering frames allocate.
+ *
+ * The budgets are set a little above what the code allocated when they were last lowered. A test failing here means
+ * something started allocating on a hot path; the printed report says which path.
+ */
+class RendererAllocationTester {
+    /**
+     * The most bytes pre-rendering a chunk may allocate, per vertex written.
+     */
+    private static final double PRERENDER_BUDGET_PER_VERTEX = 640;
+
+    /**
+     * The most bytes rendering a frame may allocate, once every chunk's VBO has been sent.
+     */
+    private static final double FRAME_BUDGET = 16;
+
+    private static final int WARMUP_CHUNKS = 3;
+    private static final int CHUNKS = 10;
+    private static final int CHUNKS_WITH_VBOS = 30;
+    /**
+     * Enough frames for the JIT compiler to fully compile {@link Renderer#tick(double)}, which removes the allocation
+     * of its Flight Recorder event when no recording is running.
+     */
+    private static final int WARMUP_FRAMES = 20_000;
+    private static final int FRAMES = 1_000;
+    private static final double FRAME_INTERVAL = 1.0 / 60;
+
+    @Test
+    void testPrerenderAllocation() {
+        final Allocations.Report report = new Allocations.Report("pre-rendering a chunk");
+        final Chunk chunk = Chunk.getChunk(BlockPos.pack(400, 0, -400));
+        final int anchorX = ChunkPos.anchorX(chunk.getPos());
+        final int anchorY = ChunkPos.anchorY(chunk.getPos());
+        final int anchorZ = ChunkPos.anchorZ(chunk.getPos());
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                for (int y = anchorY; y <= anchorY + (x - anchorX + z - anchorZ) / 2; y++) {
+                    chunk.putBlock(new DirtBlock(new Vector(x, y, z)));
+                }
+            }
+        }
+        LightEngine.WORLD.lightChunk(chunk);
+        final ArrayVertexSink arrays = new ArrayVertexSink(Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS * 6 * 4);
+        // Charge the sink's own bookkeeping to a separate path from the pre-renderer's. The write is a reused
+        // runnable rather than a lambda per vertex, which would itself be charged to the pre-renderer.
+        final VertexSink sink = new VertexSink() {
+            private Vertex pending;
+            private final Runnable writePending = () -> arrays.write(this.pending);
+
+            @Override
+            public void write(final Vertex vertex) {
+                this.pending = vertex;
+                report.measure("ArrayVertexSink.write", this.writePending);
+            }
+
+            @Override
+            public boolean isFull() {
+                return arrays.isFull();
+            }
+        };
+        for (int i = 0; i < WARMUP_CHUNKS + CHUNKS; i++) {
+            arrays.clear();
+            if (i < WARMUP_CHUNKS) {
+                Prerenderer.prerenderChunk(chunk, arrays);
+            } else {
+                report.measure("Prerenderer.prerenderChunk", () -> Prerenderer.prerenderChunk(chunk, sink));
+            }
+        }
+        final int vertices = arrays.getNumInstances() * CHUNKS;
+        final double perVertex = (double)report.getBytes("Prerenderer.prerenderChunk") / vertices;
+        assertTrue(perVertex <= PRERENDER_BUDGET_PER_VERTEX,
+                "pre-rendering allocated " + perVertex + " bytes per vertex\n" + report.format(vertices, "vertex"));
+    }
+
+    @Test
+    void testFrameAllocation() {
+        final FakeGraphics graphics = new FakeGraphics(1600, 900);
+        final Renderer renderer = new Renderer(graphics);
+        renderer.initInThread();
+        final long playerChunk = ChunkPos.containing(Player.PLAYER.getPosX(), Player.PLAYER.getPosY(),
+                Player.PLAYER.getPosZ());
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(Renderer.RENDER_DISTANCE);
+        for (int i = 0; i < CHUNKS_WITH_VBOS; i++) {
+            renderer.receiveWrittenVBO(Chunk.getChunk(offsets.apply(playerChunk, i)), renderer.getEmptyVBO());
+        }
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            renderer.tick(FRAME_INTERVAL);
+        }
+
+        final Allocations.Report report = new Allocations.Report("rendering a frame");
+        for (int i = 0; i < FRAMES; i++) {
+            // The same steps as Renderer#tick(double), measured one by one.
+            report.measure("refillEmptyVBOs", renderer::refillEmptyVBOs);
+            report.measure("setPerspective", renderer::setPerspective);
+            report.measure("sendVBO", renderer::sendVBO);
+            report.measure("updateFrustum", renderer::updateFrustum);
+            report.measure("drawVisibleChunks", renderer::drawVisibleChunks);
+        }
+        final double perFrame = Allocations.perRun(0, FRAMES, () -> renderer.tick(FRAME_INTERVAL));
+        assertEquals(WARMUP_FRAMES + FRAMES, graphics.getFrames());
+        assertTrue(graphics.getRenders() > 0);
+        assertTrue(perFrame <= FRAME_BUDGET, "rendering allocated " + perFrame + " bytes per frame\n"
+                + report.format(FRAMES, "frame"));
+    }
+}
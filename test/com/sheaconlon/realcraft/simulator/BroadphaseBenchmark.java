@@ -0,0 +1,71 @@
+package com.sheaconlon.realcraft.simulator;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.utilities.Vector;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A benchmark of broadphase updates with growing numbers of entities at a constant density.
+ *
+ * If the broadphase scales near-linearly, the time per entity stays about the same as the count grows. Each entity
+ * jitters back and forth by a fixed random step, so that the endpoints keep passing each other.
+ */
+public class BroadphaseBenchmark {
+    private static final int[] ENTITY_COUNTS = new int[]{1_000, 2_000, 4_000, 8_000, 16_000, 32_000};
+    private static final double VOLUME_PER_ENTITY = 20;
+    private static final double STEP_SIGMA = 0.05;
+    private static final int WARMUP_UPDATES = 50;
+    private static final int UPDATES = 200;
+    private static final List<Hitbox> HITBOXES = Collections.singletonList(
+            new Hitbox(null, new Vector(-0.3, 0, -0.3), new Vector(0.6, 1.75, 0.6))
+    );
+
+    private static class Body extends Entity {
+        Body(final Vector pos) {
+            super(pos, 0, Vector.ZERO);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return HITBOXES;
+        }
+    }
+
+    public static void main(final String[] args) {
+        final Random random = new Random(0);
+        for (final int count : ENTITY_COUNTS) {
+            final double side = Math.cbrt(count * VOLUME_PER_ENTITY);
+            final Broadphase broadphase = new Broadphase();
+            final Body[] bodies = new Body[count];
+            final Vector[][] steps = new Vector[2][count];
+            for (int i = 0; i < count; i++) {
+                bodies[i] = new Body(new Vector(random.nextDouble() * side, random.nextDouble() * side,
+                        random.nextDouble() * side));
+                broadphase.add(bodies[i]);
+                steps[0][i] = Vector.normal(0, STEP_SIGMA);
+                steps[1][i] = Vector.scale(steps[0][i], -1);
+            }
+            final int[] update = new int[]{0};
+            final double mean = Benchmark.run("Broadphase#update, " + count + " entities", WARMUP_UPDATES, UPDATES,
+                    () -> {
+                        final Vector[] updateSteps = steps[update[0] % 2];
+                        for (int i = 0; i < count; i++) {
+                            bodies[i].changePos(updateSteps[i]);
+                        }
+                        broadphase.update();
+                        update[0]++;
+                    });
+            System.out.printf("  %.4f us/entity, %d candidate pairs%n", mean / count, broadphase.pairCount());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.sheaconlon.realcraft.simulator;
+
+import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.utilities.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A tester of broadphases.
+ */
+class BroadphaseTester {
+    private static final List<Hitbox> HITBOXES = Collections.singletonList(
+            new Hitbox(null, new Vector(-0.5, 0, -0.5), new Vector(1, 1, 1))
+    );
+
+    private class DummyEntity extends Entity {
+        public DummyEntity(Vector pos) {
+            super(pos, 0, Vector.ZERO);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return HITBOXES;
+        }
+    }
+
+    private static Vector randomPos(final Random random) {
+        return new Vector(random.nextDouble() * 10, random.nextDouble() * 10, random.nextDouble() * 10);
+    }
+
+    private static Set<Long> bruteForcePairs(final Entity[] entities, final int[] ids) {
+        final Set<Long> pairs = new HashSet<>();
+        for (int i = 0; i < entities.length; i++) {
+            for (int j = i + 1; j < entities.length; j++) {
+                final Entity a = entities[i];
+                final Entity b = entities[j];
+                if (Math.abs(a.getPosX() - b.getPosX()) < 1 && Math.abs(a.getPosY() - b.getPosY()) < 1
+                        && Math.abs(a.getPosZ() - b.getPosZ()) < 1) {
+                    pairs.add(pairKey(ids[i], ids[j]));
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static long pairKey(final int a, final int b) {
+        return ((long)Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    private static Set<Long> broadphasePairs(final Broadphase broadphase) {
+        final Set<Long> pairs = new HashSet<>();
+        for (int pair = 0; pair < broadphase.pairCount(); pair++) {
+            pairs.add(pairKey(broadphase.pairFirst(pair), broadphase.pairSecond(pair)));
+        }
+        return pairs;
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        final Random random = new Random(1);
+        final Broadphase broadphase = new Broadphase();
+        final Entity[] entities = new Entity[200];
+        final int[] ids = new int[entities.length];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = new DummyEntity(randomPos(random));
+            ids[i] = broadphase.add(entities[i]);
+        }
+        for (int update = 0; update < 5; update++) {
+            broadphase.update();
+            assertEquals(bruteForcePairs(entities, ids), broadphasePairs(broadphase));
+            for (final Entity entity : entities) {
+                entity.changePos(Vector.normal(0, 0.3));
+            }
+        }
+    }
+
+    @Test
+    void testRemove() {
+        final Broadphase broadphase = new Broadphase();
+        final int a = broadphase.add(new DummyEntity(new Vector(0, 0, 0)));
+        final int b = broadphase.add(new DummyEntity(new Vector(0.5, 0, 0)));
+        broadphase.update();
+        assertEquals(1, broadphase.pairCount());
+        broadphase.remove(b);
+        broadphase.update();
+        assertEquals(0, broadphase.pairCount());
+        assertEquals(1, broadphase.size());
+        final int c = broadphase.add(new DummyEntity(new Vector(0, 0.5, 0)));
+        assertEquals(b, c);
+        broadphase.update();
+        assertEquals(Collections.singleton(pairKey(a, c)), broadphasePairs(broadphase));
+    }
+}
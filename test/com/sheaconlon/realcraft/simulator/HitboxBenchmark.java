@@ -0,0 +1,64 @@
+package com.sheaconlon.realcraft.simulator;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.utilities.Vector;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A benchmark of finding the minimum translation between two overlapping hitboxes.
+ */
+public class HitboxBenchmark {
+    private static final int WARMUP_RUNS = 100_000;
+    private static final int RUNS = 1_000_000;
+
+    private static class Body extends Entity {
+        Body(final Vector pos, final double orient) {
+            super(pos, orient, Vector.ZERO);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * @return The cases of this benchmark.
+     */
+    public static List<Benchmark.Case> cases() {
+        final Body a = new Body(new Vector(0, 0, 0), 0.3);
+        final Body b = new Body(new Vector(0.7, 0.4, 0.2), 1.1);
+        final Hitbox hitboxA = new Hitbox(a, new Vector(-0.5, 0, -0.5), new Vector(1, 1, 1));
+        final Hitbox hitboxB = new Hitbox(b, new Vector(-0.5, 0, -0.5), new Vector(1, 1, 1));
+        final double[] aMins = new double[3];
+        final double[] aMaxs = new double[3];
+        final double[] bMins = new double[3];
+        final double[] bMaxs = new double[3];
+        final double[] minTrans = new double[3];
+        final double[] sink = new double[1];
+        return Arrays.asList(
+                new Benchmark.Case("hitbox.minTranslation", WARMUP_RUNS, RUNS, () ->
+                        sink[0] += hitboxA.minTranslation(hitboxB).getY()),
+                new Benchmark.Case("hitbox.minTranslationIntoArrays", WARMUP_RUNS, RUNS, () -> {
+                    hitboxA.getBounds(a, aMins, aMaxs);
+                    hitboxB.getBounds(b, bMins, bMaxs);
+                    Hitbox.minTranslation(aMins, aMaxs, bMins, bMaxs, minTrans);
+                    sink[0] += minTrans[1];
+                })
+        );
+    }
+
+    public static void main(final String[] args) {
+        Benchmark.runAll(cases());
+    }
+}
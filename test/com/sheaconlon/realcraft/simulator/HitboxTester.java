@@ -1,5 +1,6 @@
 package com.sheaconlon.realcraft.simulator;
 
+import com.sheaconlon.realcraft.benchmark.Allocations;
 import com.sheaconlon.realcraft.entities.Entity;
 import com.sheaconlon.realcraft.renderer.Vertex;
 import com.sheaconlon.realcraft.utilities.Vector;
@@ -9,6 +10,7 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * A tester of hitboxes.
@@ -66,4 +68,18 @@ class HitboxTester {
         assertEquals(0, minTrans2.getY());
         assertEquals(0, minTrans2.getZ());
     }
+
+    @Test
+    void testBoundsDoNotAllocate() {
+        final Entity dummyEntity = new DummyEntity(new Vector(1.5, 1.5, 1.5), 0.3, Vector.ZERO);
+        final Hitbox hitbox = new Hitbox(dummyEntity, new Vector(-0.5, -0.5, -0.5), new Vector(1, 1, 1));
+        final double[] mins = new double[3];
+        final double[] maxs = new double[3];
+        final long[] blocks = new long[27];
+        final double bytes = Allocations.perRun(100_000, 100_000, () -> {
+            hitbox.getBounds(dummyEntity, mins, maxs);
+            hitbox.intersectingBlocks(mins, maxs, blocks);
+        });
+        assertTrue(bytes < 1, "allocated " + bytes + " bytes per run");
+    }
 }
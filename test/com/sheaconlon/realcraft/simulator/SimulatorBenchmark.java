@@ -0,0 +1,65 @@
+package com.sheaconlon.realcraft.simulator;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A benchmark of simulator steps with varying numbers of moving bodies.
+ */
+public class SimulatorBenchmark {
+    private static final int[] BODY_COUNTS = new int[]{1, 1_000, 10_000};
+    private static final int FLOOR_Y = -1000;
+    private static final int FLOOR_HALF_WIDTH = 30;
+    private static final int WARMUP_STEPS = 200;
+    private static final int STEPS = 500;
+    private static final List<Hitbox> HITBOXES = Collections.singletonList(
+            new Hitbox(null, new Vector(-0.3, 0, -0.3), new Vector(0.6, 1.75, 0.6))
+    );
+
+    private static class Body extends Entity {
+        Body(final Vector pos, final Vector velocity) {
+            super(pos, 0, velocity);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return HITBOXES;
+        }
+    }
+
+    public static void main(final String[] args) {
+        for (int x = -FLOOR_HALF_WIDTH; x <= FLOOR_HALF_WIDTH; x++) {
+            for (int z = -FLOOR_HALF_WIDTH; z <= FLOOR_HALF_WIDTH; z++) {
+                Chunk.containingChunk(x, FLOOR_Y, z).putBlock(new DirtBlock(new Vector(x, FLOOR_Y, z)));
+            }
+        }
+        final Random random = new Random(0);
+        for (final int count : BODY_COUNTS) {
+            final Simulator simulator = new Simulator();
+            for (int i = 0; i < count; i++) {
+                final Vector pos = new Vector(
+                        (random.nextDouble() * 2 - 1) * FLOOR_HALF_WIDTH,
+                        FLOOR_Y + 1 + random.nextDouble() * 5,
+                        (random.nextDouble() * 2 - 1) * FLOOR_HALF_WIDTH
+                );
+                final Vector velocity = new Vector(random.nextDouble() - 0.5, 0, random.nextDouble() - 0.5);
+                simulator.add(new Body(pos, velocity));
+            }
+            Benchmark.run("Simulator#step, " + count + " bodies", WARMUP_STEPS, STEPS,
+                    () -> simulator.step(Simulator.TIMESTEP));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.sheaconlon.realcraft.simulator;
+
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of simulators.
+ */
+class SimulatorTester {
+    private static final List<Hitbox> HITBOXES = Collections.singletonList(
+            new Hitbox(null, new Vector(-0.25, 0, -0.25), new Vector(0.5, 1, 0.5))
+    );
+
+    private class DummyEntity extends Entity {
+        public DummyEntity(Vector pos, Vector velocity) {
+            super(pos, 0, velocity);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return HITBOXES;
+        }
+    }
+
+    private static void putDirt(final int x, final int y, final int z) {
+        Chunk.containingChunk(x, y, z).putBlock(new DirtBlock(new Vector(x, y, z)));
+    }
+
+    @Test
+    void testFallsAndLands() {
+        putDirt(2000, 2000, 2000);
+        final Entity entity = new DummyEntity(new Vector(2000.5, 2005, 2000.5), Vector.ZERO);
+        final Simulator simulator = new Simulator();
+        simulator.add(entity);
+        for (int i = 0; i < 200; i++) {
+            simulator.step(Simulator.TIMESTEP);
+        }
+        assertEquals(2001, entity.getPosY(), 1e-6);
+        assertEquals(0, entity.getVelocityY());
+    }
+
+    @Test
+    void testStopsAtWall() {
+        for (int x = 3000; x <= 3003; x++) {
+            putDirt(x, 2999, 3000);
+        }
+        putDirt(3003, 3000, 3000);
+        final Entity entity = new DummyEntity(new Vector(3000.5, 3000, 3000.5), new Vector(10, 0, 0));
+        final Simulator simulator = new Simulator();
+        simulator.add(entity);
+        simulator.step(0.5);
+        assertEquals(3003 - 0.25, entity.getPosX(), 1e-6);
+        assertEquals(0, entity.getVelocityX());
+    }
+
+    @Test
+    void testPushedOutOfBlockByLeastDistance() {
+        putDirt(5000, 5000, 5000);
+        final Entity entity = new DummyEntity(new Vector(5000.5, 5000.8, 5000.5), Vector.ZERO);
+        final Simulator simulator = new Simulator();
+        simulator.add(entity);
+        simulator.step(Simulator.TIMESTEP);
+        assertEquals(5001, entity.getPosY(), 1e-6);
+        assertEquals(0, entity.getVelocityY());
+    }
+
+    @Test
+    void testFreezesInChunksNotLoaded() {
+        final Entity entity = new DummyEntity(new Vector(6000.5, 6005, 6000.5), Vector.ZERO);
+        final Simulator simulator = new Simulator(pos -> false, new ChunkTickets());
+        simulator.add(entity);
+        for (int i = 0; i < 60; i++) {
+            simulator.step(Simulator.TIMESTEP);
+        }
+        assertEquals(6005, entity.getPosY());
+        assertEquals(0, entity.getVelocityY());
+    }
+
+    @Test
+    void testChunksNotLoadedAreSolid() {
+        // The entity's chunk is loaded, but the one below it is not.
+        final int floor = ChunkPos.anchorY(ChunkPos.containing(-8000, -8000, -8000));
+        final long below = ChunkPos.containing(-8000, floor - 1, -8000);
+        final Entity entity = new DummyEntity(new Vector(-8000.5, floor + 0.5, -8000.5), Vector.ZERO);
+        final Simulator simulator = new Simulator(pos -> pos != below, new ChunkTickets());
+        simulator.add(entity);
+        for (int i = 0; i < 60; i++) {
+            simulator.step(Simulator.TIMESTEP);
+        }
+        assertEquals(floor, entity.getPosY(), 1e-6);
+    }
+
+    @Test
+    void testFixedTimestep() {
+        final Entity entity = new DummyEntity(new Vector(4000, 4000, 4000), Vector.ZERO);
+        final Simulator simulator = new Simulator();
+        simulator.add(entity);
+        simulator.tick(Simulator.TIMESTEP * 0.5);
+        assertEquals(4000, entity.getPosY());
+        simulator.tick(Simulator.TIMESTEP * 0.75);
+        assertTrue(entity.getPosY() < 4000);
+        assertEquals(-Simulator.GRAVITY * Simulator.TIMESTEP, entity.getVelocityY(), 1e-9);
+    }
+
+    @Test
+    void testHoldsTicketAroundBodies() {
+        final ChunkTickets tickets = new ChunkTickets();
+        final Entity entity = new DummyEntity(new Vector(-9000.5, -9000, -9000.5), new Vector(Chunk.SIZE, 0, 0));
+        final Simulator simulator = new Simulator(pos -> true, tickets);
+        simulator.add(entity);
+        simulator.step(Simulator.TIMESTEP);
+        final long start = ChunkPos.containing(entity.getPosX(), entity.getPosY(), entity.getPosZ());
+        assertEquals(ChunkTickets.Level.TICK, tickets.getLevel(start));
+
+        // Nothing below to land on, but a second's flight still carries it a chunk along.
+        for (int i = 0; i < 60; i++) {
+            simulator.step(Simulator.TIMESTEP);
+        }
+        final long end = ChunkPos.containing(entity.getPosX(), entity.getPosY(), entity.getPosZ());
+        assertEquals(ChunkTickets.Level.TICK, tickets.getLevel(end));
+
+        simulator.remove(entity);
+        simulator.step(Simulator.TIMESTEP);
+        assertEquals(0, tickets.getTicketCount(ChunkTickets.Type.SIMULATION));
+        assertNull(tickets.getLevel(end));
+    }
+}
@@ -0,0 +1,121 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A benchmark of the memory each tier of the chunk cache takes against how long getting a chunk back from it takes.
+ *
+ * Generates a block of chunks and releases them so that they are demoted to warm, restores them, and does the same
+ * again with the cache's center moved away so that they go on to cold. Reports the heap or disk each tier takes per
+ * chunk, and how long getting a chunk back takes from each, against generating and lighting it again from scratch.
+ */
+public class ChunkCacheBenchmark {
+    private static final long SEED = 4848;
+
+    /**
+     * The size of the block of chunks, in chunks.
+     */
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 4;
+
+    /**
+     * Far from the chunks used by other benchmarks.
+     */
+    private static final int CHUNK_X = 13_000;
+    private static final int CHUNK_Z = 13_000;
+
+    /**
+     * Where to center the cache to spill every chunk to cold. In chunks from the block.
+     */
+    private static final int COLD_OFFSET = -(ChunkCache.DEFAULT_WARM_DISTANCE + 4 + WIDTH);
+
+    public static void main(final String[] args) throws IOException {
+        final Generator generator = new Generator(SEED);
+        final ChunkCache cache = new ChunkCache(generator, Files.createTempDirectory("chunks"), 0,
+                ChunkCache.DEFAULT_WARM_DISTANCE);
+        final List<Long> positions = new ArrayList<>();
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int z = 0; z < WIDTH; z++) {
+                    positions.add(BlockPos.pack(CHUNK_X + x, y, CHUNK_Z + z));
+                }
+            }
+        }
+        final int chunks = positions.size();
+        final long center = BlockPos.pack(CHUNK_X, 0, CHUNK_Z);
+
+        final long emptyHeap = usedHeap();
+        final Histogram generating = restoreAll(generator, positions);
+        final double hotBytes = (double)(usedHeap() - emptyHeap) / chunks;
+
+        release(positions);
+        final long demoteStart = System.nanoTime();
+        while (cache.getWarmChunks() < chunks) {
+            cache.update(center);
+        }
+        final double demoteNanos = (double)(System.nanoTime() - demoteStart) / chunks;
+        final double warmHeap = (double)(usedHeap() - emptyHeap) / chunks;
+        final double warmBytes = (double)cache.getWarmBytes() / chunks;
+        final Histogram warm = restoreAll(generator, positions);
+
+        release(positions);
+        while (cache.getColdChunks() < chunks) {
+            cache.update(BlockPos.offset(center, COLD_OFFSET, 0, 0));
+        }
+        final double coldHeap = (double)(usedHeap() - emptyHeap) / chunks;
+        final double coldBytes = (double)cache.getColdBytes() / chunks;
+        final Histogram cold = restoreAll(generator, positions);
+        cache.close();
+
+        System.out.printf("%d chunks, demoting took %.1f us per chunk%n", chunks, demoteNanos / 1e3);
+        System.out.printf("  %-10s %9.0f bytes of heap per chunk, get back: p50 %7.3f ms, p99 %7.3f ms "
+                + "(generating and lighting)%n", "hot", hotBytes, generating.getP50(), generating.getP99());
+        System.out.printf("  %-10s %9.0f bytes of heap per chunk (%.0f cached), get back: p50 %7.3f ms, "
+                + "p99 %7.3f ms%n", "warm", warmHeap, warmBytes, warm.getP50(), warm.getP99());
+        System.out.printf("  %-10s %9.0f bytes of heap per chunk (%.0f on disk), get back: p50 %7.3f ms, "
+                + "p99 %7.3f ms%n", "cold", coldHeap, coldBytes, cold.getP50(), cold.getP99());
+    }
+
+    /**
+     * Have a generator generate some chunks, or restore them from its cache.
+     * @return How long getting each chunk took.
+     */
+    private static Histogram restoreAll(final Generator generator, final List<Long> positions) {
+        final Histogram durations = new Histogram();
+        for (final long pos : positions) {
+            final long start = System.nanoTime();
+            generator.generateChunk(pos);
+            durations.record(System.nanoTime() - start);
+        }
+        return durations;
+    }
+
+    /**
+     * Cover some chunks with tickets and take them away again, so that the cache may unload them.
+     */
+    private static void release(final List<Long> positions) {
+        for (final long pos : positions) {
+            ChunkTickets.WORLD.remove(ChunkTickets.WORLD.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE,
+                    pos, 0));
+        }
+    }
+
+    /**
+     * @return The bytes of heap in use once garbage is collected, roughly.
+     */
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
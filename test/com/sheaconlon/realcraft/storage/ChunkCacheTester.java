@@ -0,0 +1,164 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.network.ChunkCodec;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import com.sheaconlon.realcraft.world.ChunkTickets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the tiered chunk cache.
+ */
+class ChunkCacheTester {
+    private static final long SEED = 48;
+    private static final int WARM_DISTANCE = 3;
+
+    /**
+     * Chunks far from those used by other tests, one per test, at the surface so that they are partly dirt.
+     */
+    private static final int CHUNK_X = 8_000;
+    private static final int CHUNK_Y = 3;
+    private static final int CHUNK_Z = 8_000;
+
+    private Path dir;
+    private Generator generator;
+    private ChunkCache cache;
+
+    @BeforeEach
+    void createCache() throws IOException {
+        this.dir = Files.createTempDirectory("chunks");
+        this.generator = new Generator(SEED);
+        this.cache = new ChunkCache(this.generator, this.dir, 0, WARM_DISTANCE);
+    }
+
+    @AfterEach
+    void closeCache() throws IOException {
+        this.cache.close();
+        assertFalse(Files.exists(this.dir));
+    }
+
+    @Test
+    void testReleasedChunksAreKeptWarm() throws IOException {
+        final long pos = BlockPos.pack(CHUNK_X, CHUNK_Y, CHUNK_Z);
+        final ChunkTickets.Ticket ticket = ChunkTickets.WORLD.add(ChunkTickets.Type.CLIENT,
+                ChunkTickets.Level.GENERATE, pos, 0);
+        final byte[] expected = this.generateEdited(pos);
+
+        // While a ticket covers the chunk, it stays in the world.
+        this.cache.update(pos);
+        assertNotNull(Chunk.existingChunk(pos));
+        assertEquals(0, this.cache.getWarmChunks());
+
+        ChunkTickets.WORLD.remove(ticket);
+        this.cache.update(pos);
+        assertNull(Chunk.existingChunk(pos));
+        assertEquals(1, this.cache.getWarmChunks());
+        assertTrue(this.cache.getWarmBytes() < expected.length);
+
+        final Chunk restored = this.generator.generateChunk(pos);
+        assertArrayEquals(expected, ChunkCodec.encode(restored));
+        assertEquals(0, this.cache.getWarmChunks());
+        assertEquals(0, this.cache.getWarmBytes());
+    }
+
+    @Test
+    void testFarChunksSpillToDisk() throws IOException {
+        final long pos = BlockPos.pack(CHUNK_X + 100, CHUNK_Y, CHUNK_Z);
+        final byte[] expected = this.generateReleased(pos);
+
+        this.cache.update(BlockPos.offset(pos, 0, 0, WARM_DISTANCE + 2));
+        assertNull(Chunk.existingChunk(pos));
+        assertEquals(0, this.cache.getWarmChunks());
+        assertEquals(1, this.cache.getColdChunks());
+        assertTrue(this.cache.getColdBytes() > 0);
+
+        final Chunk restored = this.generator.generateChunk(pos);
+        assertArrayEquals(expected, ChunkCodec.encode(restored));
+        assertEquals(0, this.cache.getColdChunks());
+    }
+
+    @Test
+    void testApproachedChunksArePrefetched() throws IOException {
+        final long pos = BlockPos.pack(CHUNK_X + 200, CHUNK_Y, CHUNK_Z);
+        final byte[] expected = this.generateReleased(pos);
+        this.cache.update(BlockPos.offset(pos, -(WARM_DISTANCE + 2), 0, 0));
+        assertEquals(1, this.cache.getColdChunks());
+
+        this.cache.update(BlockPos.offset(pos, -WARM_DISTANCE, 0, 0));
+        assertEquals(0, this.cache.getColdChunks());
+        assertEquals(1, this.cache.getWarmChunks());
+        assertNull(Chunk.existingChunk(pos));
+
+        final Chunk restored = this.generator.generateChunk(pos);
+        assertArrayEquals(expected, ChunkCodec.encode(restored));
+        assertEquals(0, this.cache.getWarmChunks());
+    }
+
+    @Test
+    void testChunksCoveredAgainStayHot() throws IOException {
+        final long pos = BlockPos.pack(CHUNK_X + 300, CHUNK_Y, CHUNK_Z);
+        this.generateReleased(pos);
+        final ChunkTickets.Ticket ticket = ChunkTickets.WORLD.add(ChunkTickets.Type.CLIENT,
+                ChunkTickets.Level.GENERATE, pos, 0);
+        this.cache.update(pos);
+        assertNotNull(Chunk.existingChunk(pos));
+        assertEquals(0, this.cache.getWarmChunks() + this.cache.getColdChunks());
+        ChunkTickets.WORLD.remove(ticket);
+    }
+
+    @Test
+    void testChunksAreUnloadedOnlyAfterDelay() throws IOException {
+        final Path dir = Files.createTempDirectory("chunks");
+        final Generator generator = new Generator(SEED);
+        final ChunkCache cache = new ChunkCache(generator, dir, 60, WARM_DISTANCE);
+        final long pos = BlockPos.pack(CHUNK_X + 400, CHUNK_Y, CHUNK_Z);
+        final ChunkTickets.Ticket ticket = ChunkTickets.WORLD.add(ChunkTickets.Type.CLIENT,
+                ChunkTickets.Level.GENERATE, pos, 0);
+        generator.generateChunk(pos);
+        ChunkTickets.WORLD.remove(ticket);
+        cache.update(pos);
+        assertNotNull(Chunk.existingChunk(pos));
+        assertEquals(0, cache.getWarmChunks());
+        cache.close();
+    }
+
+    /**
+     * Generate a chunk and place a block in it, so that it differs from freshly generated terrain.
+     * @return The chunk, encoded.
+     */
+    private byte[] generateEdited(final long pos) {
+        final Chunk chunk = this.generator.generateChunk(pos);
+        chunk.putBlock(new WoodBlock(new Vector(ChunkPos.anchorX(pos) + 5, ChunkPos.anchorY(pos) + 14,
+                ChunkPos.anchorZ(pos) + 5)));
+        return ChunkCodec.encode(chunk);
+    }
+
+    /**
+     * Generate a chunk under a ticket, place a block in it, and release it.
+     * @return The chunk, encoded.
+     */
+    private byte[] generateReleased(final long pos) {
+        final ChunkTickets.Ticket ticket = ChunkTickets.WORLD.add(ChunkTickets.Type.CLIENT,
+                ChunkTickets.Level.GENERATE, pos, 0);
+        final byte[] encoded = this.generateEdited(pos);
+        ChunkTickets.WORLD.remove(ticket);
+        return encoded;
+    }
+}
@@ -0,0 +1,162 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * A benchmark of journaling block edits, and of recovering them.
+ *
+ * Appends edits as fast as possible for a while, committing them every so often from another thread as the journal's
+ * worker would, and reports the sustained edit rate and how long commits take for each commit interval, against
+ * forcing the journal to disk after every edit. Then reports how long replaying a large journal takes when a world is
+ * opened, and how long compacting a journal into region storage takes.
+ */
+public class EditJournalBenchmark {
+    private static final long SEED = 4321;
+
+    /**
+     * The commit intervals to compare, in seconds. Zero means committing after every edit.
+     */
+    private static final double[] COMMIT_INTERVALS = {0, 0.005, 0.02, 0.1};
+    private static final double DURATION = 2;
+
+    private static final int RECOVERY_EDITS = 1_000_000;
+    private static final int RECOVERY_CHUNKS = 4096;
+    private static final int COMPACTED_CHUNKS = 256;
+    private static final int EDITS_PER_COMPACTED_CHUNK = 64;
+
+    /**
+     * Far from the chunks used by other benchmarks.
+     */
+    private static final int CHUNK_X = 11_000;
+    private static final int CHUNK_Z = -11_000;
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        System.out.println("sustained edits:");
+        for (final double interval : COMMIT_INTERVALS) {
+            runThroughput(interval);
+        }
+        runRecovery();
+        runCompaction();
+    }
+
+    private static void runThroughput(final double interval) throws IOException, InterruptedException {
+        final Path dir = Files.createTempDirectory("journal");
+        try {
+            final EditJournal journal = new EditJournal(dir, EditJournal.DEFAULT_COMMIT_INTERVAL);
+            final Histogram commits = new Histogram();
+            final Random random = new Random(0);
+            final long end = System.nanoTime() + (long)(DURATION * 1e9);
+            final Thread committer = new Thread(() -> {
+                try {
+                    while (System.nanoTime() < end) {
+                        final long start = System.nanoTime();
+                        journal.commit();
+                        commits.record(System.nanoTime() - start);
+                        Thread.sleep((long)(interval * 1e3));
+                    }
+                } catch (final IOException | InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            long edits = 0;
+            if (interval == 0) {
+                while (System.nanoTime() < end) {
+                    append(journal, random, RECOVERY_CHUNKS);
+                    final long start = System.nanoTime();
+                    journal.commit();
+                    commits.record(System.nanoTime() - start);
+                    edits++;
+                }
+            } else {
+                committer.start();
+                while (System.nanoTime() < end) {
+                    append(journal, random, RECOVERY_CHUNKS);
+                    edits++;
+                }
+                committer.join();
+            }
+            journal.close();
+            System.out.printf("  %-10s %10.0f edits/s, %6d commits of %8.1f edits, commit p50 %6.3f ms, "
+                    + "p99 %6.3f ms%n", interval == 0 ? "every edit" : String.format("%.0f ms", interval * 1e3),
+                    edits / DURATION, commits.getCount(), (double)edits / commits.getCount(), commits.getP50(),
+                    commits.getP99());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void runRecovery() throws IOException {
+        final Path dir = Files.createTempDirectory("journal");
+        try {
+            final EditJournal journal = new EditJournal(dir, EditJournal.DEFAULT_COMMIT_INTERVAL);
+            final Random random = new Random(0);
+            for (int i = 0; i < RECOVERY_EDITS; i++) {
+                append(journal, random, RECOVERY_CHUNKS);
+                if (i % 10_000 == 0) {
+                    journal.commit();
+                }
+            }
+            final long diskBytes = journal.getDiskBytes();
+            journal.close();
+
+            final long start = System.nanoTime();
+            final EditJournal replayed = new EditJournal(dir, EditJournal.DEFAULT_COMMIT_INTERVAL);
+            final double nanos = System.nanoTime() - start;
+            replayed.close();
+            System.out.printf("recovery: replayed %d edits (%d bytes) over %d chunks in %.1f ms, %.0f edits/s%n",
+                    RECOVERY_EDITS, diskBytes, RECOVERY_CHUNKS, nanos / 1e6, RECOVERY_EDITS / (nanos / 1e9));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void runCompaction() throws IOException {
+        final Path dir = Files.createTempDirectory("world");
+        try {
+            final WorldStorage storage = WorldStorage.create(dir, WorldStorage.Mode.DELTA, SEED);
+            final SaveWorker saveWorker = new SaveWorker(storage, new Generator(storage), Double.POSITIVE_INFINITY);
+            final Random random = new Random(0);
+            for (int i = 0; i < COMPACTED_CHUNKS * EDITS_PER_COMPACTED_CHUNK; i++) {
+                append(storage.getJournal(), random, COMPACTED_CHUNKS);
+            }
+            storage.getJournal().commit();
+            final long journalBytes = storage.getJournal().getDiskBytes();
+            final long start = System.nanoTime();
+            saveWorker.compactNow();
+            final double nanos = System.nanoTime() - start;
+            System.out.printf("compaction: %d chunks, journal %d -> %d bytes, %.1f ms (%.1f us per chunk)%n",
+                    COMPACTED_CHUNKS, journalBytes, storage.getJournal().getDiskBytes(), nanos / 1e6,
+                    nanos / COMPACTED_CHUNKS / 1e3);
+            storage.close();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Journal an edit to a random block of one of the first {@code chunks} chunks of an area 64 chunks wide.
+     */
+    private static void append(final EditJournal journal, final Random random, final int chunks) {
+        final int chunk = random.nextInt(chunks);
+        final long pos = BlockPos.pack(CHUNK_X + chunk % 64, 4, CHUNK_Z + chunk / 64);
+        journal.append(pos, random.nextInt(Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS), random.nextInt(4));
+    }
+
+    private static void delete(final Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (final Path file : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.blocks.LeafBlock;
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the edit journal, and of recovering edits from it.
+ */
+class EditJournalTester {
+    private static final long SEED = 47;
+
+    /**
+     * The bytes of each edit returned by {@link EditJournal#edits(long)}.
+     */
+    private static final int EDIT_BYTES = Short.BYTES + 1;
+
+    /**
+     * A chunk in the sky, which the tests never load into the world, so it holds only air unless edited.
+     */
+    private static final long POS = BlockPos.pack(-7_000, 20, -7_000);
+    private static final int X = ChunkPos.anchorX(POS);
+    private static final int Y = ChunkPos.anchorY(POS);
+    private static final int Z = ChunkPos.anchorZ(POS);
+
+    private Path dir;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        this.dir = Files.createTempDirectory("world");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            for (final Path file : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void testCommittedEditsSurviveCrash() throws IOException {
+        final WorldStorage crashed = WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED);
+        crashed.journal(new WoodBlock(new Vector(X, Y, Z)));
+        crashed.journal(new LeafBlock(new Vector(X + 14, Y + 14, Z + 14)));
+        crashed.getJournal().commit();
+        crashed.journal(new WoodBlock(new Vector(X + 1, Y, Z)));
+
+        // Open the world again without closing it, as after the process died.
+        final WorldStorage recovered = WorldStorage.open(this.dir);
+        final Chunk chunk = Chunk.detached(POS);
+        recovered.load(chunk);
+        assertTrue(chunk.getBlock(X, Y, Z) instanceof WoodBlock);
+        assertTrue(chunk.getBlock(X + 14, Y + 14, Z + 14) instanceof LeafBlock);
+        assertFalse(chunk.getBlock(X + 1, Y, Z) instanceof WoodBlock);
+        recovered.close();
+        crashed.close();
+    }
+
+    @Test
+    void testEditsAfterRotatingAreInNewSegment() throws IOException {
+        final WorldStorage storage = WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED);
+        storage.journal(new WoodBlock(new Vector(X, Y, Z)));
+        final long rotated = storage.getJournal().rotate();
+        storage.journal(new LeafBlock(new Vector(X + 1, Y, Z)));
+        assertEquals(1, storage.getJournal().editsThrough(rotated).get(POS).length / EDIT_BYTES);
+        assertEquals(2, storage.getJournal().edits(POS).length / EDIT_BYTES);
+        storage.getJournal().commit();
+
+        final WorldStorage recovered = WorldStorage.open(this.dir);
+        final Chunk chunk = Chunk.detached(POS);
+        recovered.load(chunk);
+        assertTrue(chunk.getBlock(X, Y, Z) instanceof WoodBlock);
+        assertTrue(chunk.getBlock(X + 1, Y, Z) instanceof LeafBlock);
+        recovered.close();
+        storage.close();
+    }
+
+    @Test
+    void testTornBatchIsDropped() throws IOException {
+        final WorldStorage storage = WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED);
+        storage.journal(new WoodBlock(new Vector(X, Y, Z)));
+        storage.getJournal().commit();
+        storage.journal(new WoodBlock(new Vector(X + 1, Y, Z)));
+        storage.journal(new WoodBlock(new Vector(X + 2, Y, Z)));
+        storage.close();
+        // Cut the last batch short, as if the process died while writing it.
+        final Path segment = this.dir.resolve("journal.0.log");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        final WorldStorage recovered = WorldStorage.open(this.dir);
+        final Chunk chunk = Chunk.detached(POS);
+        recovered.load(chunk);
+        assertTrue(chunk.getBlock(X, Y, Z) instanceof WoodBlock);
+        assertFalse(chunk.getBlock(X + 1, Y, Z) instanceof WoodBlock);
+        assertFalse(chunk.getBlock(X + 2, Y, Z) instanceof WoodBlock);
+        recovered.close();
+    }
+
+    @Test
+    void testCompactionMovesEditsIntoRegions() throws IOException {
+        final WorldStorage storage = WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED);
+        final SaveWorker saveWorker = new SaveWorker(storage, new Generator(storage), Double.POSITIVE_INFINITY);
+        storage.journal(new WoodBlock(new Vector(X, Y, Z)));
+        storage.journal(new LeafBlock(new Vector(X, Y, Z)));
+        storage.journal(new WoodBlock(new Vector(X + 3, Y + 4, Z + 5)));
+        storage.getJournal().commit();
+        final long journalBytes = storage.getJournal().getDiskBytes();
+        saveWorker.compactNow();
+        assertTrue(storage.getJournal().getDiskBytes() < journalBytes);
+        assertNull(storage.getJournal().edits(POS));
+        assertFalse(Files.exists(this.dir.resolve("journal.0.log")));
+        storage.close();
+
+        final WorldStorage reopened = WorldStorage.open(this.dir);
+        assertNull(reopened.getJournal().edits(POS));
+        final Chunk chunk = Chunk.detached(POS);
+        reopened.load(chunk);
+        assertTrue(chunk.getBlock(X, Y, Z) instanceof LeafBlock);
+        assertTrue(chunk.getBlock(X + 3, Y + 4, Z + 5) instanceof WoodBlock);
+        reopened.close();
+    }
+
+    @Test
+    void testSaveKeepsEditsOfChunksNotLoaded() throws IOException {
+        final WorldStorage storage = WorldStorage.create(this.dir, WorldStorage.Mode.FULL, SEED);
+        final SaveWorker saveWorker = new SaveWorker(storage, new Generator(storage), Double.POSITIVE_INFINITY);
+        storage.journal(new WoodBlock(new Vector(X + 7, Y + 7, Z + 7)));
+        saveWorker.saveNow();
+        assertNull(storage.getJournal().edits(POS));
+        storage.close();
+
+        final WorldStorage reopened = WorldStorage.open(this.dir);
+        final Chunk chunk = Chunk.detached(POS);
+        reopened.load(chunk);
+        assertTrue(chunk.getBlock(X + 7, Y + 7, Z + 7) instanceof WoodBlock);
+        reopened.close();
+    }
+}
@@ -0,0 +1,145 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.blocks.AirBlock;
+import com.sheaconlon.realcraft.blocks.Block;
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * A benchmark of how much saving in the background slows down ticks which are editing the world.
+ *
+ * Edits an area of chunks a tick at a time, and reports how long ticks take with no save in progress, how long a save
+ * which blocks ticks stalls them for, and how long beginning a background save takes. Then reports how long ticks take
+ * while a background save is in progress, both when the save worker's steps run on the editing thread, so that each
+ * tick includes a step, and when they run on another thread, as the save worker's own.
+ */
+public class SaveWorkerBenchmark {
+    private static final long SEED = 46;
+
+    /**
+     * The size of the area of chunks saved, in chunks.
+     */
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 3;
+
+    private static final int WARMUP_TICKS = 200;
+    private static final int TICKS = 1_000;
+    private static final int EDITS_PER_TICK = 20;
+    private static final double NANOSECONDS_PER_MILLISECOND = 1_000_000;
+
+    /**
+     * Far from the chunks used by other benchmarks.
+     */
+    private static final int CHUNK_X = 9_000;
+    private static final int CHUNK_Z = -9_000;
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+        final Path dir = Files.createTempDirectory("world");
+        try {
+            final WorldStorage storage = WorldStorage.create(dir, WorldStorage.Mode.DELTA, SEED);
+            final Generator generator = new Generator(storage);
+            final SaveWorker saveWorker = new SaveWorker(storage, generator, Double.POSITIVE_INFINITY);
+            final List<Chunk> chunks = new ArrayList<>();
+            for (int x = 0; x < WIDTH; x++) {
+                for (int y = 2; y < 2 + HEIGHT; y++) {
+                    for (int z = 0; z < WIDTH; z++) {
+                        chunks.add(generator.generateChunk(BlockPos.pack(CHUNK_X + x, y, CHUNK_Z + z)));
+                    }
+                }
+            }
+            final Random random = new Random(0);
+            for (int i = 0; i < WARMUP_TICKS; i++) {
+                edit(chunks, random);
+            }
+            final Histogram idle = new Histogram();
+            for (int i = 0; i < TICKS; i++) {
+                final long start = System.nanoTime();
+                edit(chunks, random);
+                idle.record(System.nanoTime() - start);
+            }
+
+            // A save which blocks ticks stalls the tick in which it happens for all of this.
+            final long blockingStart = System.nanoTime();
+            storage.save(chunks);
+            final long blocking = System.nanoTime() - blockingStart;
+
+            final long snapshotStart = System.nanoTime();
+            saveWorker.begin();
+            final long snapshot = System.nanoTime() - snapshotStart;
+            final Histogram sharedThread = new Histogram();
+            boolean saved = false;
+            while (!saved) {
+                final long start = System.nanoTime();
+                edit(chunks, random);
+                saved = saveWorker.step();
+                sharedThread.record(System.nanoTime() - start);
+            }
+
+            saveWorker.begin();
+            final Thread saver = new Thread(() -> {
+                try {
+                    while (!saveWorker.step()) {
+                        Thread.yield();
+                    }
+                } catch (final IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            final Histogram ownThread = new Histogram();
+            saver.start();
+            while (saver.isAlive()) {
+                final long start = System.nanoTime();
+                edit(chunks, random);
+                ownThread.record(System.nanoTime() - start);
+            }
+            saver.join();
+            storage.close();
+
+            System.out.printf("%d chunks: blocking save %.2f ms, beginning a background save %.3f ms%n",
+                    chunks.size(), blocking / NANOSECONDS_PER_MILLISECOND, snapshot / NANOSECONDS_PER_MILLISECOND);
+            report("no save", idle);
+            report("saving on the same thread", sharedThread);
+            report("saving on another thread", ownThread);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (final Path file : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static void report(final String name, final Histogram ticks) {
+        System.out.printf("  %-26s %5d ticks, p50 %6.3f ms, p99 %6.3f ms, max %6.3f ms%n", name, ticks.getCount(),
+                ticks.getP50(), ticks.getP99(), ticks.getMax());
+    }
+
+    /**
+     * Put some blocks at random in some chunks, as the game does, updating light.
+     */
+    private static void edit(final List<Chunk> chunks, final Random random) {
+        for (int i = 0; i < EDITS_PER_TICK; i++) {
+            final Chunk chunk = chunks.get(random.nextInt(chunks.size()));
+            final Vector pos = new Vector(ChunkPos.anchorX(chunk.getPos()) + random.nextInt(Chunk.BLOCKS),
+                    ChunkPos.anchorY(chunk.getPos()) + random.nextInt(Chunk.BLOCKS),
+                    ChunkPos.anchorZ(chunk.getPos()) + random.nextInt(Chunk.BLOCKS));
+            final Block block = random.nextBoolean() ? new WoodBlock(pos) : new AirBlock(pos);
+            LightEngine.WORLD.putBlock(block);
+        }
+    }
+}
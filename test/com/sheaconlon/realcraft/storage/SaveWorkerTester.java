@@ -0,0 +1,169 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.blocks.AirBlock;
+import com.sheaconlon.realcraft.blocks.Block;
+import com.sheaconlon.realcraft.blocks.LeafBlock;
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of saving in the background, while the world is being edited. See {@link SaveWorkerBenchmark} for how much
+ * saving slows down ticks.
+ */
+class SaveWorkerTester {
+    private static final long SEED = 46;
+
+    /**
+     * The size of the area of chunks saved, in chunks. Each test uses its own area, far from those used by other
+     * tests, since the chunks are part of the world.
+     */
+    private static final int WIDTH = 4;
+    private static final int HEIGHT = 3;
+
+    private static final int EDITS_PER_TICK = 20;
+
+    private Path dir;
+    private WorldStorage storage;
+    private Generator generator;
+    private SaveWorker saveWorker;
+
+    @BeforeEach
+    void createWorld() throws IOException {
+        this.dir = Files.createTempDirectory("world");
+        this.storage = WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED);
+        this.generator = new Generator(this.storage);
+        this.saveWorker = new SaveWorker(this.storage, this.generator, Double.POSITIVE_INFINITY);
+    }
+
+    @AfterEach
+    void deleteWorld() throws IOException {
+        this.storage.close();
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            for (final Path file : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void testSaveIsOfTheMomentItBegan() throws IOException {
+        final List<Chunk> chunks = this.generate(6_000);
+        final Chunk chunk = chunks.get(0);
+        final int x = ChunkPos.anchorX(chunk.getPos());
+        final int y = ChunkPos.anchorY(chunk.getPos());
+        final int z = ChunkPos.anchorZ(chunk.getPos());
+        LightEngine.WORLD.putBlock(new WoodBlock(new Vector(x, y, z)));
+        this.saveWorker.begin();
+        assertTrue(this.saveWorker.isSaving());
+        LightEngine.WORLD.putBlock(new LeafBlock(new Vector(x, y, z)));
+        LightEngine.WORLD.putBlock(new WoodBlock(new Vector(x + 1, y, z)));
+        while (!this.saveWorker.step()) {
+            LightEngine.WORLD.putBlock(new WoodBlock(new Vector(x + 2, y, z)));
+        }
+        assertFalse(this.saveWorker.isSaving());
+
+        final Chunk loaded = Chunk.detached(chunk.getPos());
+        this.storage.load(loaded);
+        assertTrue(loaded.getBlock(x, y, z) instanceof WoodBlock);
+        assertFalse(loaded.getBlock(x + 1, y, z) instanceof WoodBlock);
+        assertFalse(loaded.getBlock(x + 2, y, z) instanceof WoodBlock);
+    }
+
+    @Test
+    void testSaveAlongsideEditsIsOfTheMomentItBegan() throws Exception {
+        final List<Chunk> chunks = this.generate(6_100);
+        final Random random = new Random(0);
+        final List<Chunk> expected = new ArrayList<>();
+        for (final Chunk chunk : chunks) {
+            expected.add(chunk.snapshot());
+        }
+        this.saveWorker.begin();
+        // Save on another thread, as the save worker's own, while this one keeps editing, as the game's does.
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final Thread saver = new Thread(() -> {
+            try {
+                while (!this.saveWorker.step()) {
+                    Thread.yield();
+                }
+            } catch (final IOException | RuntimeException e) {
+                failure.set(e);
+            }
+        });
+        saver.start();
+        while (saver.isAlive()) {
+            this.edit(chunks, random);
+        }
+        saver.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        for (final Chunk snapshot : expected) {
+            final Chunk loaded = Chunk.detached(snapshot.getPos());
+            this.storage.load(loaded);
+            final int anchorX = ChunkPos.anchorX(snapshot.getPos());
+            final int anchorY = ChunkPos.anchorY(snapshot.getPos());
+            final int anchorZ = ChunkPos.anchorZ(snapshot.getPos());
+            for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+                for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                    for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                        assertEquals(snapshot.getBlock(x, y, z).getClass(), loaded.getBlock(x, y, z).getClass());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generate an area of chunks, with their light.
+     * @param chunkX The x-coordinate of the area's chunks, in chunks.
+     * @return The chunks.
+     */
+    private List<Chunk> generate(final int chunkX) {
+        final List<Chunk> chunks = new ArrayList<>();
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 2; y < 2 + HEIGHT; y++) {
+                for (int z = 0; z < WIDTH; z++) {
+                    chunks.add(this.generator.generateChunk(BlockPos.pack(chunkX + x, y, -chunkX + z)));
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Put some blocks at random in some chunks, as the game does, updating light.
+     */
+    private void edit(final List<Chunk> chunks, final Random random) {
+        for (int i = 0; i < EDITS_PER_TICK; i++) {
+            final Chunk chunk = chunks.get(random.nextInt(chunks.size()));
+            final Vector pos = new Vector(ChunkPos.anchorX(chunk.getPos()) + random.nextInt(Chunk.BLOCKS),
+                    ChunkPos.anchorY(chunk.getPos()) + random.nextInt(Chunk.BLOCKS),
+                    ChunkPos.anchorZ(chunk.getPos()) + random.nextInt(Chunk.BLOCKS));
+            final Block block = random.nextBoolean() ? new WoodBlock(pos) : new AirBlock(pos);
+            LightEngine.WORLD.putBlock(block);
+        }
+    }
+}
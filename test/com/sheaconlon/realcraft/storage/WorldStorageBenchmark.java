@@ -0,0 +1,114 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.blocks.AirBlock;
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * A benchmark of saving a world as whole chunks against saving it as a seed plus each chunk's edits.
+ *
+ * Generates an area of chunks, edits some of them as a player building and digging might, and saves and reloads the
+ * area in each storage mode. Reports the disk each takes and how long saving and loading a chunk take.
+ */
+public class WorldStorageBenchmark {
+    private static final long SEED = 1234;
+
+    /**
+     * The size of the area, in chunks.
+     */
+    private static final int WIDTH = 16;
+    private static final int HEIGHT = 7;
+
+    /**
+     * Far from the chunks used by other benchmarks.
+     */
+    private static final int CHUNK_X = -9_000;
+    private static final int CHUNK_Z = 9_000;
+
+    private static final double EDITED_FRACTION = 0.1;
+    private static final int EDITS_PER_CHUNK = 40;
+
+    public static void main(final String[] args) throws IOException {
+        final List<Chunk> chunks = generate();
+        System.out.printf("%d chunks, %.0f%% edited with %d blocks each%n", chunks.size(), 100 * EDITED_FRACTION,
+                EDITS_PER_CHUNK);
+        for (final WorldStorage.Mode mode : WorldStorage.Mode.values()) {
+            run(mode, chunks);
+        }
+    }
+
+    private static List<Chunk> generate() {
+        final Generator generator = new Generator(SEED);
+        final Random random = new Random(0);
+        final List<Chunk> chunks = new ArrayList<>();
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int z = 0; z < WIDTH; z++) {
+                    final Chunk chunk = Chunk.detached(BlockPos.pack(CHUNK_X + x, y, CHUNK_Z + z));
+                    generator.generate(chunk);
+                    if (random.nextDouble() < EDITED_FRACTION) {
+                        edit(chunk, random);
+                    }
+                    chunks.add(chunk);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private static void edit(final Chunk chunk, final Random random) {
+        final int anchorX = ChunkPos.anchorX(chunk.getPos());
+        final int anchorY = ChunkPos.anchorY(chunk.getPos());
+        final int anchorZ = ChunkPos.anchorZ(chunk.getPos());
+        for (int i = 0; i < EDITS_PER_CHUNK; i++) {
+            final Vector pos = new Vector(anchorX + random.nextInt(Chunk.BLOCKS),
+                    anchorY + random.nextInt(Chunk.BLOCKS), anchorZ + random.nextInt(Chunk.BLOCKS));
+            chunk.putBlock(random.nextBoolean() ? new WoodBlock(pos) : new AirBlock(pos));
+        }
+    }
+
+    private static void run(final WorldStorage.Mode mode, final List<Chunk> chunks) throws IOException {
+        final Path dir = Files.createTempDirectory("world");
+        try {
+            final WorldStorage storage = WorldStorage.create(dir, mode, SEED);
+            final long saveStart = System.nanoTime();
+            storage.save(chunks);
+            final double saveNanos = System.nanoTime() - saveStart;
+            final long diskBytes = storage.getDiskBytes();
+            storage.close();
+
+            final WorldStorage reopened = WorldStorage.open(dir);
+            long loadNanos = 0;
+            for (final Chunk chunk : chunks) {
+                final Chunk loaded = Chunk.detached(chunk.getPos());
+                final long loadStart = System.nanoTime();
+                reopened.load(loaded);
+                loadNanos += System.nanoTime() - loadStart;
+            }
+            reopened.close();
+            System.out.printf("  %-5s %10d bytes on disk (%7.1f per chunk), save %6.1f us per chunk, "
+                    + "load %6.1f us per chunk%n", mode.name().toLowerCase(), diskBytes,
+                    (double)diskBytes / chunks.size(), saveNanos / chunks.size() / 1e3,
+                    (double)loadNanos / chunks.size() / 1e3);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (final Path file : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.sheaconlon.realcraft.storage;
+
+import com.sheaconlon.realcraft.blocks.AirBlock;
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.network.ChunkCodec;
+import com.sheaconlon.realcraft.utilities.Vector;
+import com.sheaconlon.realcraft.world.BlockPos;
+import com.sheaconlon.realcraft.world.Chunk;
+import com.sheaconlon.realcraft.world.ChunkPos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of saved worlds.
+ */
+class WorldStorageTester {
+    private static final long SEED = 42;
+
+    /**
+     * Chunks far from those used by other tests, from underground to the sky, so that some are partly dirt.
+     */
+    private static final int CHUNK_X = 5_000;
+    private static final int CHUNK_Z = -5_000;
+    private static final int CHUNK_LEVELS = 8;
+
+    private Path dir;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        this.dir = Files.createTempDirectory("world");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        try (Stream<Path> files = Files.walk(this.dir)) {
+            for (final Path file : (Iterable<Path>)files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void testUneditedChunksTakeNoSpace() throws IOException {
+        final WorldStorage storage = WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED);
+        final List<Chunk> chunks = this.generateColumn();
+        storage.save(chunks);
+        assertEquals(Files.size(this.dir.resolve("world.dat")),
+                storage.getDiskBytes() - storage.getJournal().getDiskBytes());
+        for (final Chunk chunk : chunks) {
+            final Chunk loaded = Chunk.detached(chunk.getPos());
+            storage.load(loaded);
+            this.assertSameBlocks(chunk, loaded);
+        }
+        storage.close();
+    }
+
+    @Test
+    void testEditsSurviveReopening() throws IOException {
+        for (final WorldStorage.Mode mode : WorldStorage.Mode.values()) {
+            final Path worldDir = this.dir.resolve(mode.name());
+            final WorldStorage storage = WorldStorage.create(worldDir, mode, SEED);
+            final List<Chunk> chunks = this.generateColumn();
+            this.edit(chunks);
+            storage.save(chunks);
+            storage.close();
+
+            final WorldStorage reopened = WorldStorage.open(worldDir);
+            assertEquals(mode, reopened.getMode());
+            assertEquals(SEED, reopened.getSeed());
+            for (final Chunk chunk : chunks) {
+                final Chunk loaded = Chunk.detached(chunk.getPos());
+                reopened.load(loaded);
+                this.assertSameBlocks(chunk, loaded);
+            }
+            reopened.close();
+        }
+    }
+
+    @Test
+    void testDeltasAreSmallerThanFullChunks() throws IOException {
+        final WorldStorage full = WorldStorage.create(this.dir.resolve("full"), WorldStorage.Mode.FULL, SEED);
+        final WorldStorage delta = WorldStorage.create(this.dir.resolve("delta"), WorldStorage.Mode.DELTA, SEED);
+        final List<Chunk> chunks = this.generateColumn();
+        this.edit(chunks.subList(0, 1));
+        full.save(chunks);
+        delta.save(chunks);
+        assertTrue(delta.getDiskBytes() < full.getDiskBytes(),
+                delta.getDiskBytes() + " bytes of deltas, " + full.getDiskBytes() + " of full chunks");
+        full.close();
+        delta.close();
+    }
+
+    @Test
+    void testUndoingEditsRemovesThem() throws IOException {
+        final WorldStorage storage = WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED);
+        final List<Chunk> chunks = this.generateColumn();
+        this.edit(chunks);
+        storage.save(chunks);
+        final long editedBytes = storage.getDiskBytes();
+        final List<Chunk> unedited = this.generateColumn();
+        storage.save(unedited);
+        assertTrue(storage.getDiskBytes() < editedBytes);
+        final Chunk loaded = Chunk.detached(unedited.get(0).getPos());
+        storage.load(loaded);
+        this.assertSameBlocks(unedited.get(0), loaded);
+        storage.close();
+    }
+
+    @Test
+    void testSeedsGenerateDifferentTerrain() throws IOException {
+        final WorldStorage storage = WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED + 1);
+        int differing = 0;
+        for (final Chunk chunk : this.generateColumn()) {
+            final Chunk loaded = Chunk.detached(chunk.getPos());
+            storage.load(loaded);
+            differing += this.countDifferentBlocks(chunk, loaded);
+        }
+        assertNotEquals(0, differing);
+        storage.close();
+    }
+
+    @Test
+    void testCreateRejectsExistingWorld() throws IOException {
+        WorldStorage.create(this.dir, WorldStorage.Mode.DELTA, SEED).close();
+        assertTrue(WorldStorage.exists(this.dir));
+        assertThrows(IOException.class, () -> WorldStorage.create(this.dir, WorldStorage.Mode.FULL, SEED));
+    }
+
+    @Test
+    void testOpenRejectsOtherFiles() throws IOException {
+        Files.write(this.dir.resolve("world.dat"), new byte[]{1, 2, 3});
+        assertThrows(IOException.class, () -> WorldStorage.open(this.dir));
+    }
+
+    /**
+     * @return A column of chunks generated with {@link #SEED}, detached from the world.
+     */
+    private List<Chunk> generateColumn() {
+        final Generator generator = new Generator(SEED);
+        final List<Chunk> chunks = new ArrayList<>();
+        for (int level = 0; level < CHUNK_LEVELS; level++) {
+            final Chunk chunk = Chunk.detached(BlockPos.pack(CHUNK_X, level, CHUNK_Z));
+            generator.generate(chunk);
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Place a pillar of wood through some chunks, and dig a hole through them.
+     */
+    private void edit(final List<Chunk> chunks) {
+        for (final Chunk chunk : chunks) {
+            final int x = ChunkPos.anchorX(chunk.getPos());
+            final int anchorY = ChunkPos.anchorY(chunk.getPos());
+            final int z = ChunkPos.anchorZ(chunk.getPos());
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                chunk.putBlock(new WoodBlock(new Vector(x + 3, y, z + 4)));
+                chunk.putBlock(new AirBlock(new Vector(x + 7, y, z + 7)));
+            }
+        }
+    }
+
+    private void assertSameBlocks(final Chunk expected, final Chunk actual) {
+        assertEquals(0, this.countDifferentBlocks(expected, actual));
+    }
+
+    private int countDifferentBlocks(final Chunk a, final Chunk b) {
+        final int anchorX = ChunkPos.anchorX(a.getPos());
+        final int anchorY = ChunkPos.anchorY(a.getPos());
+        final int anchorZ = ChunkPos.anchorZ(a.getPos());
+        int differing = 0;
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                    if (ChunkCodec.typeOf(a.getBlock(x, y, z)) != ChunkCodec.typeOf(b.getBlock(x, y, z))) {
+                        differing++;
+                    }
+                }
+            }
+        }
+        return differing;
+    }
+}
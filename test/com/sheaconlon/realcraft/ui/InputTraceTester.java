@@ -0,0 +1,180 @@
+package com.sheaconlon.realcraft.ui;
+
+import com.sheaconlon.realcraft.entities.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of recording and replaying input traces.
+ */
+class InputTraceTester {
+    private static final double TICK_INTERVAL = 1.0 / 60;
+    private static final int TICKS = 120;
+    private static final double TOLERANCE = 1e-4;
+
+    /**
+     * The size of a trace's header, and of a record of a tick on which nothing happened. In bytes.
+     */
+    private static final int HEADER_BYTES = Integer.BYTES + 1 + 5 * Double.BYTES;
+    private static final int IDLE_RECORD_BYTES = 2;
+
+    /**
+     * A source of input which polls another and then samples the player's pose, so that a test can see where the
+     * player was on each tick before the user interface responded. Stops sampling once full.
+     */
+    private static class PoseSampler implements InputSource {
+        private final InputSource source;
+        private final double[] poses;
+        private int size;
+
+        PoseSampler(final InputSource source, final int ticks) {
+            this.source = source;
+            this.poses = new double[5 * ticks];
+        }
+
+        @Override
+        public void poll() {
+            this.source.poll();
+            if (this.size == this.poses.length) {
+                return;
+            }
+            this.poses[this.size++] = Player.PLAYER.getPosX();
+            this.poses[this.size++] = Player.PLAYER.getPosY();
+            this.poses[this.size++] = Player.PLAYER.getPosZ();
+            this.poses[this.size++] = Player.PLAYER.getOrient();
+            this.poses[this.size++] = Player.PLAYER.getVertOrient();
+        }
+
+        @Override
+        public boolean isPressed(final Control control) {
+            return this.source.isPressed(control);
+        }
+
+        @Override
+        public void getCursorPosition(final double[] dest) {
+            this.source.getCursorPosition(dest);
+        }
+    }
+
+    private double x;
+    private double y;
+    private double z;
+    private double orient;
+    private double vertOrient;
+
+    @BeforeEach
+    void savePlayer() {
+        this.x = Player.PLAYER.getPosX();
+        this.y = Player.PLAYER.getPosY();
+        this.z = Player.PLAYER.getPosZ();
+        this.orient = Player.PLAYER.getOrient();
+        this.vertOrient = Player.PLAYER.getVertOrient();
+    }
+
+    @AfterEach
+    void restorePlayer() {
+        Player.PLAYER.setPos(this.x, this.y, this.z);
+        Player.PLAYER.setOrient(this.orient);
+        Player.PLAYER.setVertOrient(this.vertOrient);
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final InputTraceWriter writer = new InputTraceWriter(bytes);
+        final ScriptedInput held = new ScriptedInput(0, 0, InputSource.Control.LEFT, InputSource.Control.JUMP);
+        writer.write(0, held, 0, 0, 100.25, 50, -3000.5, 1, -0.5);
+        writer.write(16_666_667, held, 3, -2, 100.5, 49.75, -3000.5, 1.25, -0.5);
+        writer.write(300_000_000_000L, new ScriptedInput(0, 0), 0, 0, 100.5, 49.75, -3000.5, 1.25, -0.5);
+        writer.close();
+
+        final InputTraceReader reader = new InputTraceReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertTrue(reader.next());
+        assertEquals(0, reader.getInterval());
+        assertTrue(reader.isPressed(InputSource.Control.LEFT));
+        assertTrue(reader.isPressed(InputSource.Control.JUMP));
+        assertFalse(reader.isPressed(InputSource.Control.FORWARD));
+        assertEquals(100.25, reader.getX());
+        assertEquals(-3000.5, reader.getZ());
+        assertTrue(reader.next());
+        assertEquals(16_666_667, reader.getInterval());
+        assertEquals(3, reader.getCursorDeltaX());
+        assertEquals(-2, reader.getCursorDeltaY());
+        assertEquals(100.5, reader.getX(), TOLERANCE);
+        assertEquals(49.75, reader.getY(), TOLERANCE);
+        assertEquals(1.25, reader.getOrient(), TOLERANCE);
+        assertTrue(reader.next());
+        assertEquals(300_000_000_000L, reader.getInterval());
+        assertFalse(reader.isPressed(InputSource.Control.LEFT));
+        assertEquals(0, reader.getCursorDeltaX());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void testIdleTicksAreCompact() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final InputTraceWriter writer = new InputTraceWriter(bytes);
+        final ScriptedInput idle = new ScriptedInput(0, 0);
+        for (int i = 0; i < TICKS; i++) {
+            writer.write(i == 0 ? 0 : 100, idle, 0, 0, 1, 2, 3, 0, 0);
+        }
+        writer.close();
+        assertEquals(HEADER_BYTES + TICKS * IDLE_RECORD_BYTES, bytes.size());
+    }
+
+    @Test
+    void testRejectsOtherFiles() {
+        final InputTraceReader reader = new InputTraceReader(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5}));
+        assertThrows(IOException.class, reader::next);
+    }
+
+    @Test
+    void testReplayIsDeterministic() throws IOException {
+        Player.PLAYER.setPos(-7000.5, 60, 7000.5);
+        Player.PLAYER.setOrient(0);
+        Player.PLAYER.setVertOrient(0);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final InputRecorder recorder = new InputRecorder(
+                new ScriptedInput(2, 0.5, InputSource.Control.FORWARD, InputSource.Control.RIGHT),
+                new InputTraceWriter(bytes));
+        final PoseSampler recorded = new PoseSampler(recorder, TICKS);
+        final UserInterface recording = new UserInterface(recorded);
+        for (int i = 0; i < TICKS; i++) {
+            recording.tick(TICK_INTERVAL);
+        }
+        recorder.close();
+
+        // Replay twice with different tick lengths, which would send the player on a different flight if its
+        // state were not restored from the trace on each tick.
+        final double[][] replayed = new double[2][];
+        for (int run = 0; run < replayed.length; run++) {
+            Player.PLAYER.setPos(0, 0, 0);
+            final InputReplayer replayer = new InputReplayer(
+                    new InputTraceReader(new ByteArrayInputStream(bytes.toByteArray())), null);
+            final PoseSampler sampler = new PoseSampler(replayer, TICKS);
+            final UserInterface replaying = new UserInterface(sampler);
+            for (int i = 0; i < TICKS; i++) {
+                replaying.tick(TICK_INTERVAL * (run + 1));
+            }
+            assertEquals(TICKS, replayer.getTicks());
+            assertFalse(replayer.isFinished());
+            replaying.tick(TICK_INTERVAL);
+            assertTrue(replayer.isFinished());
+            assertFalse(replayer.isPressed(InputSource.Control.FORWARD));
+            replayed[run] = sampler.poses;
+        }
+        assertArrayEquals(replayed[0], replayed[1]);
+        assertArrayEquals(recorded.poses, replayed[0], TOLERANCE);
+    }
+}
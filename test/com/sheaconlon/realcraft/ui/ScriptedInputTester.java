@@ -0,0 +1,48 @@
+package com.sheaconlon.realcraft.ui;
+
+import com.sheaconlon.realcraft.entities.Player;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of scripted input sources.
+ */
+class ScriptedInputTester {
+    private static final double TICK_INTERVAL = 1.0 / 60;
+    private static final int TICKS = 60;
+
+    @Test
+    void testHoldsControlsAndMovesCursor() {
+        final ScriptedInput input = new ScriptedInput(2, -1, InputSource.Control.FORWARD, InputSource.Control.JUMP);
+        assertTrue(input.isPressed(InputSource.Control.FORWARD));
+        assertTrue(input.isPressed(InputSource.Control.JUMP));
+        assertFalse(input.isPressed(InputSource.Control.LEFT));
+        final double[] cursor = new double[2];
+        input.poll();
+        input.poll();
+        input.getCursorPosition(cursor);
+        assertEquals(4, cursor[0]);
+        assertEquals(-2, cursor[1]);
+    }
+
+    @Test
+    void testDrivesPlayer() {
+        final UserInterface ui = new UserInterface(new ScriptedInput(1, 0, InputSource.Control.FORWARD));
+        final double x = Player.PLAYER.getPosX();
+        final double z = Player.PLAYER.getPosZ();
+        final double orient = Player.PLAYER.getOrient();
+        for (int i = 0; i < TICKS; i++) {
+            ui.tick(TICK_INTERVAL);
+        }
+        final double dx = Player.PLAYER.getPosX() - x;
+        final double dz = Player.PLAYER.getPosZ() - z;
+        // A second of walking forward at 2 blocks per second, turning slightly.
+        assertEquals(2, Math.sqrt(dx * dx + dz * dz), 0.01);
+        assertTrue(Player.PLAYER.getOrient() != orient);
+        Player.PLAYER.changePos(-dx, 0, -dz);
+        Player.PLAYER.changeOrient(orient - Player.PLAYER.getOrient());
+    }
+}
@@ -0,0 +1,86 @@
+package com.sheaconlon.realcraft.ui;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import com.sheaconlon.realcraft.utilities.Vec3d;
+import com.sheaconlon.realcraft.utilities.Vector;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the input handling of user interfaces which does not need a window.
+ */
+class UserInterfaceTester {
+    /**
+     * The most bytes a user interface tick may allocate.
+     */
+    private static final double TICK_BUDGET = 16;
+
+    private static final int WARMUP_TICKS = 10_000;
+    private static final int TICKS = 10_000;
+    private static final double TICK_INTERVAL = 1.0 / 60;
+
+    /**
+     * An input source which holds forward and right, and moves the cursor a little every poll.
+     */
+    private static class FakeInput implements InputSource {
+        private double cursorX;
+        private int polls;
+
+        @Override
+        public void poll() {
+            this.polls++;
+            this.cursorX += (this.polls % 2 == 0) ? 3 : -3;
+        }
+
+        @Override
+        public boolean isPressed(final Control control) {
+            return control == Control.FORWARD || control == Control.RIGHT;
+        }
+
+        @Override
+        public void getCursorPosition(final double[] dest) {
+            dest[0] = this.cursorX;
+            dest[1] = 0;
+        }
+    }
+
+    @Test
+    void testMovementDisplacement() {
+        final Vec3d displacement = new Vec3d();
+        assertFalse(UserInterface.movementDisplacement(false, false, false, false, 1, 2, displacement));
+        assertFalse(UserInterface.movementDisplacement(true, true, true, true, 1, 2, displacement));
+        assertTrue(UserInterface.movementDisplacement(true, false, false, true, 0.7, 2, displacement));
+        final Vector expected = Vector.scale(Vector.rotateHorizontal(new Vector(1, 0, 1), 0.7), 2 / Math.sqrt(2));
+        assertEquals(expected.getX(), displacement.getX(), 1e-12);
+        assertEquals(0, displacement.getY());
+        assertEquals(expected.getZ(), displacement.getZ(), 1e-12);
+        assertEquals(2, displacement.mag(), 1e-12);
+    }
+
+    @Test
+    void testMovementDoesNotAllocate() {
+        final Vec3d displacement = new Vec3d();
+        final double bytes = Allocations.perRun(100_000, 100_000, () ->
+                UserInterface.movementDisplacement(true, true, false, false, 2.1, 0.03, displacement));
+        assertTrue(bytes < 1, "allocated " + bytes + " bytes per run");
+    }
+
+    @Test
+    void testTickAllocation() {
+        final UserInterface ui = new UserInterface(new FakeInput());
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            ui.tick(TICK_INTERVAL);
+        }
+        final Allocations.Report report = new Allocations.Report("a user interface tick");
+        for (int i = 0; i < TICKS; i++) {
+            // The same steps as UserInterface#tick(double), measured one by one.
+            report.measure("respondToMovement", () -> ui.respondToMovement(TICK_INTERVAL));
+            report.measure("respondToLooking", () -> ui.respondToLooking(TICK_INTERVAL));
+        }
+        final double perTick = Allocations.perRun(0, TICKS, () -> ui.tick(TICK_INTERVAL));
+        assertTrue(perTick <= TICK_BUDGET, "a tick allocated " + perTick + " bytes\n" + report.format(TICKS, "tick"));
+    }
+}
@@ -0,0 +1,31 @@
+package com.sheaconlon.realcraft.utilities;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of rolling averagers.
+ */
+class RollingAveragerTester {
+    @Test
+    void testAveragesLastSamples() {
+        final RollingAverager averager = new RollingAverager(3);
+        averager.add(1);
+        assertEquals(1, averager.average());
+        averager.add(2);
+        averager.add(3);
+        assertEquals(2, averager.average());
+        averager.add(10);
+        assertEquals(5, averager.average());
+    }
+
+    @Test
+    void testAddDoesNotAllocate() {
+        final RollingAverager averager = new RollingAverager(1000);
+        final double bytes = Allocations.perRun(100_000, 100_000, () -> averager.add(0.5));
+        assertTrue(bytes < 1, "adding allocated " + bytes + " bytes");
+    }
+}
@@ -0,0 +1,77 @@
+package com.sheaconlon.realcraft.utilities;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of mutable vectors.
+ */
+class Vec3dTester {
+    private static final double EPSILON = 1e-12;
+
+    private static void assertMatches(final Vector expected, final Vec3d actual) {
+        assertEquals(expected.getX(), actual.getX(), EPSILON);
+        assertEquals(expected.getY(), actual.getY(), EPSILON);
+        assertEquals(expected.getZ(), actual.getZ(), EPSILON);
+    }
+
+    @Test
+    void testAgreesWithVector() {
+        final Random random = new Random(32);
+        final Vec3d v = new Vec3d();
+        for (int i = 0; i < 100; i++) {
+            final Vector a = new Vector(random.nextDouble(), random.nextDouble(), random.nextDouble());
+            final Vector b = new Vector(random.nextDouble(), random.nextDouble(), random.nextDouble());
+            final double theta = random.nextDouble() * 2 * Math.PI;
+            assertMatches(Vector.add(a, b), v.set(a).add(new Vec3d(b.getX(), b.getY(), b.getZ())));
+            assertMatches(Vector.subtract(a, b), v.set(a).subtract(new Vec3d(b.getX(), b.getY(), b.getZ())));
+            assertMatches(Vector.scale(a, theta), v.set(a).scale(theta));
+            assertMatches(Vector.rotateHorizontal(a, theta), v.set(a).rotateHorizontal(theta));
+            assertMatches(Vector.rotateVertical(a, theta), v.set(a).rotateVertical(theta));
+            assertEquals(a.mag(), v.set(a).mag(), EPSILON);
+        }
+    }
+
+    @Test
+    void testBatchOperations() {
+        final double[] components = new double[]{9, 1, 0, 0, 9, 0, 0, 1, 9};
+        Vec3d.rotateHorizontalAll(components, 1, 2, 4, Math.PI / 2);
+        assertMatches(Vector.rotateHorizontal(new Vector(1, 0, 0), Math.PI / 2),
+                new Vec3d(components[1], components[2], components[3]));
+        assertMatches(Vector.rotateHorizontal(new Vector(0, 0, 1), Math.PI / 2),
+                new Vec3d(components[5], components[6], components[7]));
+        assertEquals(9, components[0]);
+        assertEquals(9, components[4]);
+        assertEquals(9, components[8]);
+
+        final float[] floats = new float[]{1, 2, 3, 4, 5, 6};
+        Vec3d.translateAll(floats, 0, 2, 3, 1, 0, -1);
+        Vec3d.scaleAll(floats, 3, 1, 3, 2);
+        assertEquals(2, floats[0]);
+        assertEquals(2, floats[2]);
+        assertEquals(10, floats[3]);
+        assertEquals(10, floats[4]);
+        assertEquals(10, floats[5]);
+    }
+
+    @Test
+    void testScratch() {
+        assertSame(Vec3d.scratch(0), Vec3d.scratch(0));
+        assertTrue(Vec3d.scratch(0) != Vec3d.scratch(1));
+    }
+
+    @Test
+    void testInPlaceOperationsDoNotAllocate() {
+        final Vec3d v = new Vec3d();
+        final Vec3d w = new Vec3d(1, 2, 3);
+        final double bytes = Allocations.perRun(100_000, 100_000, () ->
+                v.set(0.5, 0.25, 0.125).add(w).scale(3).rotateHorizontal(0.3).rotateVertical(-0.2).subtract(w));
+        assertTrue(bytes < 1, "allocated " + bytes + " bytes per run");
+    }
+}
@@ -0,0 +1,48 @@
+package com.sheaconlon.realcraft.utilities;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A benchmark of the same chain of vector operations on immutable and on mutable vectors.
+ */
+public class VectorBenchmark {
+    private static final int WARMUP_RUNS = 100_000;
+    private static final int RUNS = 1_000_000;
+
+    /**
+     * @return The cases of this benchmark.
+     */
+    public static List<Benchmark.Case> cases() {
+        final Vector offset = new Vector(1, 2, 3);
+        final Vec3d mutableOffset = new Vec3d(1, 2, 3);
+        final Vec3d v = new Vec3d();
+        final double[] theta = new double[1];
+        final double[] sink = new double[1];
+        return Arrays.asList(
+                new Benchmark.Case("vector.immutableChain", WARMUP_RUNS, RUNS, () -> {
+                    final Vector result = Vector.rotateVertical(Vector.rotateHorizontal(
+                            Vector.scale(Vector.add(new Vector(0.5, 0.25, theta[0]), offset), 3), theta[0]), 0.2);
+                    sink[0] += result.mag();
+                    theta[0] += 0.001;
+                }),
+                new Benchmark.Case("vector.mutableChain", WARMUP_RUNS, RUNS, () -> {
+                    v.set(0.5, 0.25, theta[0]).add(mutableOffset).scale(3).rotateHorizontal(theta[0])
+                            .rotateVertical(0.2);
+                    sink[0] += v.mag();
+                    theta[0] += 0.001;
+                }),
+                new Benchmark.Case("vector.around", WARMUP_RUNS / 100, RUNS / 100, () -> {
+                    for (final Vector nearby : Vector.around(Vector.ZERO, 4)) {
+                        sink[0] += nearby.getX();
+                    }
+                })
+        );
+    }
+
+    public static void main(final String[] args) {
+        Benchmark.runAll(cases());
+    }
+}
@@ -0,0 +1,129 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.Vector;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A benchmark of looking up chunk-like values by integer position, keyed in several ways.
+ */
+public class BlockPosBenchmark {
+    /**
+     * The number of positions along each axis of the cube of keys.
+     */
+    private static final int SIDE = 40;
+    private static final int WARMUP_RUNS = 20;
+    private static final int RUNS = 100;
+
+    /**
+     * A key hashed as vectors were before their hash was fixed, by XORing the hashes of the components.
+     */
+    private static class XorKey {
+        private final double x;
+        private final double y;
+        private final double z;
+
+        XorKey(final double x, final double y, final double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(this.x) ^ Double.hashCode(this.y) ^ Double.hashCode(this.z);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof XorKey)) {
+                return false;
+            }
+            final XorKey key = (XorKey)other;
+            return this.x == key.x && this.y == key.y && this.z == key.z;
+        }
+    }
+
+    public static void main(final String[] args) {
+        final Map<XorKey, Object> xorMap = new HashMap<>();
+        final Map<Vector, Object> vectorMap = new HashMap<>();
+        final Map<BlockPos, Object> posMap = new HashMap<>();
+        final LongHashMap<Object> packedMap = new LongHashMap<>();
+        final Set<Integer> xorHashes = new HashSet<>();
+        final Set<Integer> vectorHashes = new HashSet<>();
+        final Set<Integer> posHashes = new HashSet<>();
+        final Object value = new Object();
+        final int half = SIDE / 2;
+        for (int x = -half; x < half; x++) {
+            for (int y = -half; y < half; y++) {
+                for (int z = -half; z < half; z++) {
+                    xorMap.put(new XorKey(x, y, z), value);
+                    vectorMap.put(new Vector(x, y, z), value);
+                    posMap.put(new BlockPos(x, y, z), value);
+                    packedMap.put(BlockPos.pack(x, y, z), value);
+                    xorHashes.add(new XorKey(x, y, z).hashCode());
+                    vectorHashes.add(new Vector(x, y, z).hashCode());
+                    posHashes.add(new BlockPos(x, y, z).hashCode());
+                }
+            }
+        }
+        final int keys = SIDE * SIDE * SIDE;
+        System.out.printf("distinct hashes of %d keys: xor %d, vector %d, block position %d%n", keys,
+                xorHashes.size(), vectorHashes.size(), posHashes.size());
+
+        final Object[] sink = new Object[1];
+        Benchmark.run(keys + " lookups, xor-hashed keys", WARMUP_RUNS, RUNS, () -> {
+            for (int x = -half; x < half; x++) {
+                for (int y = -half; y < half; y++) {
+                    for (int z = -half; z < half; z++) {
+                        sink[0] = xorMap.get(new XorKey(x, y, z));
+                    }
+                }
+            }
+        });
+        Benchmark.run(keys + " lookups, vector keys", WARMUP_RUNS, RUNS, () -> {
+            for (int x = -half; x < half; x++) {
+                for (int y = -half; y < half; y++) {
+                    for (int z = -half; z < half; z++) {
+                        sink[0] = vectorMap.get(new Vector(x, y, z));
+                    }
+                }
+            }
+        });
+        Benchmark.run(keys + " lookups, block position keys", WARMUP_RUNS, RUNS, () -> {
+            for (int x = -half; x < half; x++) {
+                for (int y = -half; y < half; y++) {
+                    for (int z = -half; z < half; z++) {
+                        sink[0] = posMap.get(new BlockPos(x, y, z));
+                    }
+                }
+            }
+        });
+        Benchmark.run(keys + " lookups, packed keys", WARMUP_RUNS, RUNS, () -> {
+            for (int x = -half; x < half; x++) {
+                for (int y = -half; y < half; y++) {
+                    for (int z = -half; z < half; z++) {
+                        sink[0] = packedMap.get(BlockPos.pack(x, y, z));
+                    }
+                }
+            }
+        });
+        // Walk the blocks of a few chunks, one chunk lookup per block, as the simulator and light engine do.
+        final int blocks = 2 * Chunk.BLOCKS;
+        Chunk.containingChunk(0, 0, 0);
+        Benchmark.run(blocks * blocks * blocks + " chunk lookups by block", WARMUP_RUNS, RUNS, () -> {
+            for (int x = 0; x < blocks; x++) {
+                for (int y = 0; y < blocks; y++) {
+                    for (int z = 0; z < blocks; z++) {
+                        sink[0] = Chunk.containingChunk(x, y, z);
+                    }
+                }
+            }
+        });
+    }
+}
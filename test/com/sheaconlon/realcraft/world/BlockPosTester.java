@@ -0,0 +1,80 @@
+package com.sheaconlon.realcraft.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of block positions.
+ */
+class BlockPosTester {
+    private static final int SAMPLES = 10_000;
+
+    @Test
+    void testPackUnpack() {
+        final Random random = new Random(0);
+        for (int i = 0; i < SAMPLES; i++) {
+            final int x = BlockPos.MIN_COORD + random.nextInt(BlockPos.MAX_COORD - BlockPos.MIN_COORD + 1);
+            final int y = BlockPos.MIN_COORD + random.nextInt(BlockPos.MAX_COORD - BlockPos.MIN_COORD + 1);
+            final int z = BlockPos.MIN_COORD + random.nextInt(BlockPos.MAX_COORD - BlockPos.MIN_COORD + 1);
+            final long packed = BlockPos.pack(x, y, z);
+            assertEquals(x, BlockPos.getX(packed));
+            assertEquals(y, BlockPos.getY(packed));
+            assertEquals(z, BlockPos.getZ(packed));
+            assertEquals(new BlockPos(x, y, z), new BlockPos(packed));
+        }
+        final long corner = BlockPos.pack(BlockPos.MIN_COORD, BlockPos.MAX_COORD, -1);
+        assertEquals(BlockPos.MIN_COORD, BlockPos.getX(corner));
+        assertEquals(BlockPos.MAX_COORD, BlockPos.getY(corner));
+        assertEquals(-1, BlockPos.getZ(corner));
+    }
+
+    @Test
+    void testPackRejectsPositionsOutsideWorld() {
+        assertThrows(IllegalArgumentException.class, () -> BlockPos.pack(BlockPos.MAX_COORD + 1, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> BlockPos.pack(0, BlockPos.MIN_COORD - 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> BlockPos.offset(BlockPos.pack(0, 0, BlockPos.MAX_COORD),
+                0, 0, 1));
+    }
+
+    @Test
+    void testNeighbors() {
+        final long packed = BlockPos.pack(0, -1, 5);
+        assertEquals(BlockPos.pack(1, -1, 5), BlockPos.neighbor(packed, BlockPos.POS_X));
+        assertEquals(BlockPos.pack(-1, -1, 5), BlockPos.neighbor(packed, BlockPos.NEG_X));
+        assertEquals(BlockPos.pack(0, 0, 5), BlockPos.neighbor(packed, BlockPos.POS_Y));
+        assertEquals(BlockPos.pack(0, -2, 5), BlockPos.neighbor(packed, BlockPos.NEG_Y));
+        assertEquals(BlockPos.pack(0, -1, 6), BlockPos.neighbor(packed, BlockPos.POS_Z));
+        assertEquals(BlockPos.pack(0, -1, 4), BlockPos.neighbor(packed, BlockPos.NEG_Z));
+        assertEquals(BlockPos.pack(-3, 2, 0), BlockPos.offset(packed, -3, 3, -5));
+    }
+
+    @Test
+    void testHashSeparatesPermutations() {
+        assertNotEquals(new BlockPos(1, 2, 3).hashCode(), new BlockPos(3, 2, 1).hashCode());
+        final Set<Integer> hashes = new HashSet<>();
+        for (int x = -10; x < 10; x++) {
+            for (int y = -10; y < 10; y++) {
+                for (int z = -10; z < 10; z++) {
+                    hashes.add(new BlockPos(x, y, z).hashCode());
+                }
+            }
+        }
+        assertTrue(hashes.size() > 0.99 * 20 * 20 * 20);
+    }
+
+    @Test
+    void testChunkPos() {
+        final long packed = ChunkPos.containing(-1, 15, 14);
+        assertEquals(-Chunk.BLOCKS, ChunkPos.anchorX(packed));
+        assertEquals(Chunk.BLOCKS, ChunkPos.anchorY(packed));
+        assertEquals(0, ChunkPos.anchorZ(packed));
+    }
+}
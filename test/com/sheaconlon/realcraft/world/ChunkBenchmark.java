@@ -0,0 +1,75 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.blocks.Block;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.utilities.Vector;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A benchmark of reading and writing the blocks of a chunk, and of walking over nearby chunks.
+ */
+public class ChunkBenchmark {
+    private static final int WARMUP_RUNS = 200;
+    private static final int RUNS = 2_000;
+    private static final int NEARBY_DISTANCE = 4;
+
+    /**
+     * @return The cases of this benchmark.
+     */
+    public static List<Benchmark.Case> cases() {
+        final long pos = BlockPos.pack(-31_000, 0, 31_000);
+        final Chunk chunk = Chunk.getChunk(pos);
+        final int anchorX = ChunkPos.anchorX(pos);
+        final int anchorY = ChunkPos.anchorY(pos);
+        final int anchorZ = ChunkPos.anchorZ(pos);
+        final Block[] blocks = new Block[Chunk.BLOCKS * Chunk.BLOCKS * Chunk.BLOCKS];
+        int i = 0;
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                    blocks[i] = new DirtBlock(new Vector(x, y, z));
+                    chunk.putBlock(blocks[i]);
+                    i++;
+                }
+            }
+        }
+        for (final Chunk nearby : chunk.chunksNearby(NEARBY_DISTANCE)) {
+            nearby.getPos();
+        }
+        final long[] sink = new long[1];
+        return Arrays.asList(
+                new Benchmark.Case("chunk.getBlockWholeChunk", WARMUP_RUNS, RUNS, () -> {
+                    for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+                        for (int y = anchorY; y < anchorY + Chunk.BLOCKS; y++) {
+                            for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                                sink[0] += chunk.getBlock(x, y, z).hashCode();
+                            }
+                        }
+                    }
+                }),
+                new Benchmark.Case("chunk.putBlockWholeChunk", WARMUP_RUNS, RUNS, () -> {
+                    for (final Block block : blocks) {
+                        chunk.putBlock(block);
+                    }
+                }),
+                new Benchmark.Case("chunk.chunksNearby", WARMUP_RUNS, RUNS, () -> {
+                    for (final Chunk nearby : chunk.chunksNearby(NEARBY_DISTANCE)) {
+                        sink[0] += nearby.getPos();
+                    }
+                }),
+                new Benchmark.Case("chunk.chunkOffsetsWalk", WARMUP_RUNS, RUNS, () -> {
+                    final ChunkOffsets offsets = ChunkOffsets.forRadius(NEARBY_DISTANCE);
+                    for (int j = 0; j < offsets.size(); j++) {
+                        sink[0] += Chunk.getChunk(offsets.apply(pos, j)).getPos();
+                    }
+                })
+        );
+    }
+
+    public static void main(final String[] args) {
+        Benchmark.runAll(cases());
+    }
+}
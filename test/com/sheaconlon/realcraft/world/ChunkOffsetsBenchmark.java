@@ -0,0 +1,108 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.generator.PerlinNoiseGenerator;
+import com.sheaconlon.realcraft.lighting.LightEngine;
+import com.sheaconlon.realcraft.utilities.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A benchmark of walking over the chunks near a chunk, in the order of {@link Vector#around(Vector, double)} and in
+ * the nearest-first order of {@link ChunkOffsets}.
+ *
+ * Also simulates generating the world around a newly spawned player in each order, and measures how long it takes
+ * until the player's chunk and its six neighbors are ready.
+ */
+public class ChunkOffsetsBenchmark {
+    private static final int RADIUS = 4;
+    private static final int WARMUP_RUNS = 2_000;
+    private static final int RUNS = 10_000;
+    private static final double HEIGHT_MAP_RANGE = 5 * Chunk.BLOCKS;
+    private static final PerlinNoiseGenerator HEIGHT_MAP = new PerlinNoiseGenerator(0.005, 1, x -> (x + 1) / 2);
+    private static final double NANOSECONDS_PER_MILLISECOND = 1_000_000;
+
+    public static void main(final String[] args) {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(RADIUS);
+        final List<int[]> cubeOrder = new ArrayList<>();
+        for (final Vector v : Vector.around(Vector.ZERO, RADIUS)) {
+            cubeOrder.add(new int[]{v.getXInt(), v.getYInt(), v.getZInt()});
+        }
+        final List<int[]> nearestFirstOrder = new ArrayList<>();
+        for (int i = 0; i < offsets.size(); i++) {
+            nearestFirstOrder.add(new int[]{offsets.getX(i), offsets.getY(i), offsets.getZ(i)});
+        }
+
+        final long center = BlockPos.pack(-20_000, 2, -20_000);
+        for (int i = 0; i < offsets.size(); i++) {
+            Chunk.getChunk(offsets.apply(center, i));
+        }
+        final long[] checksum = new long[1];
+        Benchmark.run("walk " + offsets.size() + " chunks in cube order via Vector#around", WARMUP_RUNS, RUNS, () -> {
+            for (final Vector v : Vector.around(Vector.ZERO, RADIUS)) {
+                checksum[0] += Chunk.getChunk(BlockPos.offset(center, v.getXInt(), v.getYInt(), v.getZInt())).getPos();
+            }
+        });
+        Benchmark.run("walk " + offsets.size() + " chunks nearest-first via ChunkOffsets", WARMUP_RUNS, RUNS, () -> {
+            for (int i = 0; i < offsets.size(); i++) {
+                checksum[0] += Chunk.getChunk(offsets.apply(center, i)).getPos();
+            }
+        });
+        final int[] order = new int[offsets.size()];
+        Benchmark.run("order " + offsets.size() + " offsets toward the view", WARMUP_RUNS, RUNS, () ->
+                offsets.viewOrder(0.6, -0.2, 0.77, 0.5, order));
+
+        generateUntilNeighborsReady("cube order", BlockPos.pack(20_000, 2, 20_000), cubeOrder);
+        generateUntilNeighborsReady("nearest-first order", BlockPos.pack(20_000, 2, -20_000), nearestFirstOrder);
+        System.out.printf("(checksum %d)%n", checksum[0]);
+    }
+
+    /**
+     * Generate and light the chunks around a spawn chunk in some order, as the generator does, and print how many
+     * chunks and how long it took until the spawn chunk and its six neighbors were done.
+     * @param name The name of the order.
+     * @param spawn The packed position of the spawn chunk. Must be far from any chunk generated before.
+     * @param order The offsets from {@code spawn} of the chunks to generate, in order.
+     */
+    private static void generateUntilNeighborsReady(final String name, final long spawn, final List<int[]> order) {
+        final long start = System.nanoTime();
+        int remaining = 1 + BlockPos.DIRECTIONS;
+        int generated = 0;
+        for (final int[] offset : order) {
+            final Chunk chunk = Chunk.getChunk(BlockPos.offset(spawn, offset[0], offset[1], offset[2]));
+            generate(chunk);
+            LightEngine.WORLD.lightChunk(chunk);
+            generated++;
+            if (Math.abs(offset[0]) + Math.abs(offset[1]) + Math.abs(offset[2]) <= 1) {
+                remaining--;
+                if (remaining == 0) {
+                    break;
+                }
+            }
+        }
+        final double elapsed = (System.nanoTime() - start) / NANOSECONDS_PER_MILLISECOND;
+        System.out.printf("%s: spawn chunk and neighbors ready after %d of %d chunks, %.1f ms%n", name, generated,
+                order.size(), elapsed);
+    }
+
+    /**
+     * Fill a chunk with dirt below a height map, like the generator.
+     * @param chunk The chunk.
+     */
+    private static void generate(final Chunk chunk) {
+        final int anchorX = ChunkPos.anchorX(chunk.getPos());
+        final int anchorY = ChunkPos.anchorY(chunk.getPos());
+        final int anchorZ = ChunkPos.anchorZ(chunk.getPos());
+        for (int x = anchorX; x < anchorX + Chunk.BLOCKS; x++) {
+            for (int z = anchorZ; z < anchorZ + Chunk.BLOCKS; z++) {
+                final int height = (int)(HEIGHT_MAP.noise(x, 0, z) * HEIGHT_MAP_RANGE);
+                final int top = Math.min(height, anchorY + Chunk.BLOCKS - 1);
+                for (int y = anchorY; y <= top; y++) {
+                    chunk.putBlock(new DirtBlock(new Vector(x, y, z)));
+                }
+            }
+        }
+    }
+}
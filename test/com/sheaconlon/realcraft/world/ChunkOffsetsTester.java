@@ -0,0 +1,87 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.benchmark.Allocations;
+import com.sheaconlon.realcraft.utilities.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of chunk offset tables.
+ */
+class ChunkOffsetsTester {
+    private static final int RADIUS = 4;
+
+    @Test
+    void testSameOffsetsAsAround() {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(RADIUS);
+        final Set<Vector> expected = new HashSet<>();
+        for (final Vector v : Vector.around(Vector.ZERO, RADIUS)) {
+            expected.add(v);
+        }
+        final Set<Vector> actual = new HashSet<>();
+        for (int i = 0; i < offsets.size(); i++) {
+            actual.add(new Vector(offsets.getX(i), offsets.getY(i), offsets.getZ(i)));
+        }
+        assertEquals(expected.size(), offsets.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testNearestFirst() {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(RADIUS);
+        assertEquals(0, offsets.getDistance(0));
+        for (int i = 1; i < offsets.size(); i++) {
+            assertTrue(offsets.getDistance(i - 1) <= offsets.getDistance(i));
+        }
+        assertSame(offsets, ChunkOffsets.forRadius(RADIUS));
+    }
+
+    @Test
+    void testApply() {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(1);
+        final long pos = BlockPos.pack(-3, 5, 7);
+        for (int i = 0; i < offsets.size(); i++) {
+            final long moved = offsets.apply(pos, i);
+            assertEquals(-3 + offsets.getX(i), BlockPos.getX(moved));
+            assertEquals(5 + offsets.getY(i), BlockPos.getY(moved));
+            assertEquals(7 + offsets.getZ(i), BlockPos.getZ(moved));
+        }
+    }
+
+    @Test
+    void testViewOrder() {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(RADIUS);
+        final int[] order = new int[offsets.size()];
+        offsets.viewOrder(1, 0, 0, 0, order);
+        for (int i = 0; i < order.length; i++) {
+            assertEquals(i, order[i]);
+        }
+        final double bias = 0.5;
+        offsets.viewOrder(0, 0, -2, bias, order);
+        final Set<Integer> seen = new HashSet<>();
+        double previous = Double.NEGATIVE_INFINITY;
+        for (final int i : order) {
+            seen.add(i);
+            final double key = offsets.getDistance(i) + bias * offsets.getZ(i);
+            assertTrue(previous <= key);
+            previous = key;
+        }
+        assertEquals(offsets.size(), seen.size());
+        assertEquals(0, offsets.getZ(order[0]));
+        assertEquals(-1, offsets.getZ(order[1]));
+    }
+
+    @Test
+    void testViewOrderDoesNotAllocate() {
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(RADIUS);
+        final int[] order = new int[offsets.size()];
+        final double bytes = Allocations.perRun(1_000, 1_000, () -> offsets.viewOrder(0.3, -0.1, 0.9, 0.5, order));
+        assertTrue(bytes < 1, "allocated " + bytes + " bytes per run");
+    }
+}
@@ -0,0 +1,71 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.blocks.AirBlock;
+import com.sheaconlon.realcraft.blocks.DirtBlock;
+import com.sheaconlon.realcraft.blocks.WoodBlock;
+import com.sheaconlon.realcraft.metrics.Counter;
+import com.sheaconlon.realcraft.metrics.Metrics;
+import com.sheaconlon.realcraft.utilities.Vector;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of chunks' snapshots.
+ */
+class ChunkTester {
+    private static final long POS = BlockPos.pack(-4_000, 1, 4_000);
+    private static final int X = ChunkPos.anchorX(POS);
+    private static final int Y = ChunkPos.anchorY(POS);
+    private static final int Z = ChunkPos.anchorZ(POS);
+
+    @Test
+    void testSnapshotKeepsBlocks() {
+        final Chunk chunk = Chunk.detached(POS);
+        chunk.putBlock(new WoodBlock(new Vector(X + 1, Y + 2, Z + 3)));
+        final Chunk snapshot = chunk.snapshot();
+        assertEquals(POS, snapshot.getPos());
+        chunk.putBlock(new DirtBlock(new Vector(X + 1, Y + 2, Z + 3)));
+        chunk.putBlock(new DirtBlock(new Vector(X + 9, Y, Z)));
+        assertTrue(snapshot.getBlock(X + 1, Y + 2, Z + 3) instanceof WoodBlock);
+        assertTrue(snapshot.getBlock(X + 9, Y, Z) instanceof AirBlock);
+        assertTrue(chunk.getBlock(X + 1, Y + 2, Z + 3) instanceof DirtBlock);
+        assertTrue(chunk.getBlock(X + 9, Y, Z) instanceof DirtBlock);
+    }
+
+    @Test
+    void testChunkDoesNotSeeSnapshotChanges() {
+        final Chunk chunk = Chunk.detached(POS);
+        final Chunk snapshot = chunk.snapshot();
+        snapshot.putBlock(new WoodBlock(new Vector(X, Y, Z)));
+        assertTrue(chunk.getBlock(X, Y, Z) instanceof AirBlock);
+        assertTrue(snapshot.getBlock(X, Y, Z) instanceof WoodBlock);
+    }
+
+    @Test
+    void testOnlyChangedSectionsAreCopied() {
+        final Counter copied = Metrics.counter("Chunk", "sectionsCopied");
+        final Chunk chunk = Chunk.detached(POS);
+        final long before = copied.getCount();
+        chunk.snapshot();
+        assertEquals(before, copied.getCount());
+        chunk.putBlock(new WoodBlock(new Vector(X + 4, Y, Z)));
+        chunk.putBlock(new WoodBlock(new Vector(X + 4, Y + 14, Z + 14)));
+        chunk.putBlock(new WoodBlock(new Vector(X + 5, Y, Z)));
+        assertEquals(before + 2, copied.getCount());
+        chunk.putBlock(new DirtBlock(new Vector(X + 4, Y + 1, Z)));
+        assertEquals(before + 2, copied.getCount());
+    }
+
+    @Test
+    void testSnapshotCopiesLight() {
+        final Chunk chunk = Chunk.detached(POS);
+        chunk.getBlockLight().set(chunk.lightIndex(X, Y, Z), 7);
+        final Chunk snapshot = chunk.snapshot();
+        chunk.getBlockLight().set(chunk.lightIndex(X, Y, Z), 2);
+        chunk.getSkyLight().fill(0);
+        assertEquals(7, snapshot.getBlockLight().get(snapshot.lightIndex(X, Y, Z)));
+        assertEquals(15, snapshot.getSkyLight().get(snapshot.lightIndex(X + 3, Y + 3, Z + 3)));
+    }
+}
@@ -0,0 +1,149 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.generator.Generator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of chunk tickets.
+ */
+class ChunkTicketsTester {
+    /**
+     * Chunks far from those used by other tests.
+     */
+    private static final long CENTER = BlockPos.pack(-12_000, 2, 12_000);
+    private static final int RADIUS = 2;
+
+    @Test
+    void testOverlappingTicketsAreCounted() {
+        final ChunkTickets tickets = new ChunkTickets();
+        final ChunkTickets.Ticket a = tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE, CENTER,
+                RADIUS);
+        final ChunkTickets.Ticket b = tickets.add(ChunkTickets.Type.CLIENT, ChunkTickets.Level.GENERATE,
+                BlockPos.offset(CENTER, 1, 0, 0), RADIUS);
+        final int size = ChunkOffsets.forRadius(RADIUS).size();
+        assertTrue(tickets.getChunkCount(ChunkTickets.Level.GENERATE) < 2 * size);
+
+        tickets.remove(a);
+        assertEquals(ChunkTickets.Level.GENERATE, tickets.getLevel(BlockPos.offset(CENTER, 1, 0, 0)));
+        assertNull(tickets.getLevel(BlockPos.offset(CENTER, -RADIUS, 0, 0)));
+        assertEquals(size, tickets.getChunkCount(ChunkTickets.Level.GENERATE));
+
+        tickets.remove(b);
+        assertNull(tickets.getLevel(BlockPos.offset(CENTER, 1, 0, 0)));
+        assertEquals(0, tickets.getChunkCount(ChunkTickets.Level.GENERATE));
+    }
+
+    @Test
+    void testHigherLevelsIncludeLower() {
+        final ChunkTickets tickets = new ChunkTickets();
+        tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE, CENTER, RADIUS + 1);
+        tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.MESH, CENTER, RADIUS);
+        assertEquals(ChunkTickets.Level.MESH, tickets.getLevel(CENTER));
+        assertTrue(tickets.isTicketed(CENTER, ChunkTickets.Level.GENERATE));
+        assertFalse(tickets.isTicketed(CENTER, ChunkTickets.Level.TICK));
+        final long edge = BlockPos.offset(CENTER, 0, RADIUS + 1, 0);
+        assertEquals(ChunkTickets.Level.GENERATE, tickets.getLevel(edge));
+        assertFalse(tickets.isTicketed(edge, ChunkTickets.Level.MESH));
+        assertEquals(ChunkOffsets.forRadius(RADIUS + 1).size(), tickets.getChunkCount(ChunkTickets.Level.GENERATE));
+        assertEquals(ChunkOffsets.forRadius(RADIUS).size(), tickets.getChunkCount(ChunkTickets.Level.MESH));
+        assertEquals(0, tickets.getChunkCount(ChunkTickets.Level.TICK));
+        final List<ChunkTickets.Ticket> ticketed = new ArrayList<>();
+        tickets.getTickets(ChunkTickets.Level.MESH, ticketed);
+        assertEquals(1, ticketed.size());
+        tickets.getTickets(ChunkTickets.Level.GENERATE, ticketed);
+        assertEquals(2, ticketed.size());
+    }
+
+    @Test
+    void testMovingReleasesChunksLeftBehind() {
+        final ChunkTickets tickets = new ChunkTickets();
+        final ChunkTickets.Ticket ticket = tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE,
+                CENTER, RADIUS);
+        final long moved = BlockPos.offset(CENTER, 0, 0, 2 * RADIUS + 1);
+        tickets.move(ticket, moved);
+        assertNull(tickets.getLevel(CENTER));
+        assertEquals(ChunkTickets.Level.GENERATE, tickets.getLevel(moved));
+        assertEquals(moved, ticket.getCenter());
+        assertEquals(ChunkOffsets.forRadius(RADIUS).size(), tickets.getChunkCount(ChunkTickets.Level.GENERATE));
+    }
+
+    @Test
+    void testListenersAreToldOfReleasedChunks() {
+        final ChunkTickets tickets = new ChunkTickets();
+        final List<Long> released = new ArrayList<>();
+        tickets.addListener(released::add);
+        final ChunkTickets.Ticket ticket = tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE,
+                CENTER, 0);
+        final ChunkTickets.Ticket other = tickets.add(ChunkTickets.Type.CLIENT, ChunkTickets.Level.GENERATE,
+                CENTER, 0);
+        tickets.remove(other);
+        // Another ticket still covers the chunk.
+        assertTrue(released.isEmpty());
+
+        final long moved = BlockPos.offset(CENTER, 1, 0, 0);
+        tickets.move(ticket, moved);
+        assertEquals(Collections.singletonList(CENTER), released);
+        tickets.remove(ticket);
+        assertEquals(Arrays.asList(CENTER, moved), released);
+    }
+
+    @Test
+    void testCountsTicketsByType() {
+        final ChunkTickets tickets = new ChunkTickets();
+        tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE, CENTER, RADIUS);
+        tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.MESH, CENTER, RADIUS);
+        final ChunkTickets.Ticket client = tickets.add(ChunkTickets.Type.CLIENT, ChunkTickets.Level.GENERATE,
+                CENTER, RADIUS);
+        assertEquals(2, tickets.getTicketCount(ChunkTickets.Type.PLAYER));
+        assertEquals(1, tickets.getTicketCount(ChunkTickets.Type.CLIENT));
+        assertTrue(tickets.format().contains("client 1"));
+        tickets.remove(client);
+        assertEquals(0, tickets.getTicketCount(ChunkTickets.Type.CLIENT));
+        assertThrows(IllegalArgumentException.class, () -> tickets.remove(client));
+    }
+
+    @Test
+    void testGeneratorGeneratesTicketedChunks() {
+        final ChunkTickets tickets = new ChunkTickets();
+        tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.MESH, CENTER, 1);
+        final Generator generator = new Generator();
+        generator.generateTicketed(tickets);
+        final long[] generated = generator.getGenerated();
+        Arrays.sort(generated);
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(1);
+        assertEquals(offsets.size(), generated.length);
+        for (int i = 0; i < offsets.size(); i++) {
+            assertTrue(Arrays.binarySearch(generated, offsets.apply(CENTER, i)) >= 0);
+        }
+    }
+
+    @Test
+    void testGeneratorServesLaterTicketsWithLeftoverBudget() {
+        final long center = BlockPos.offset(CENTER, 0, 0, 10);
+        final long prefetchCenter = BlockPos.offset(center, 0, 0, 10);
+        final ChunkTickets tickets = new ChunkTickets();
+        tickets.add(ChunkTickets.Type.PREFETCH, ChunkTickets.Level.MESH, prefetchCenter, 1);
+        tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE, center, 1);
+        final Generator generator = new Generator();
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(1);
+        assertEquals(Generator.CHUNKS_PER_TICK, generator.generateTicketed(tickets, Generator.CHUNKS_PER_TICK));
+        for (int i = 0; i < offsets.size(); i++) {
+            assertEquals(i < Generator.CHUNKS_PER_TICK, generator.isGenerated(offsets.apply(center, i)));
+            assertFalse(generator.isGenerated(offsets.apply(prefetchCenter, i)));
+        }
+        generator.generateTicketed(tickets, offsets.size());
+        assertEquals(offsets.size() + Generator.CHUNKS_PER_TICK, generator.getGenerated().length);
+        assertTrue(generator.isGenerated(prefetchCenter));
+    }
+}
@@ -0,0 +1,98 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.benchmark.Benchmark;
+import com.sheaconlon.realcraft.entities.Animal;
+import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.entities.EntityStore;
+import com.sheaconlon.realcraft.entities.MovementSystem;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.simulator.Hitbox;
+import com.sheaconlon.realcraft.utilities.Vector;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A benchmark of keeping an entity index up to date and querying it, with entities at a constant density.
+ */
+public class EntityIndexBenchmark {
+    private static final int[] ENTITY_COUNTS = new int[]{1_000, 10_000, 100_000};
+
+    /**
+     * The volume per entity. In cubic blocks.
+     */
+    private static final double VOLUME_PER_ENTITY = 64;
+    private static final double QUERY_RADIUS = 8;
+    private static final int NEIGHBORS = 8;
+    private static final int QUERIES = 1_000;
+    private static final double INTERVAL = 1.0 / 20;
+    private static final int WARMUP_RUNS = 50;
+    private static final int RUNS = 200;
+
+    private static class Critter extends Animal {
+        Critter(final EntityStore store, final Vector pos, final Vector velocity) {
+            super(store, EntityStore.Archetype.ANIMAL, pos, velocity, 0, 0);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    public static void main(final String[] args) {
+        final MovementSystem movement = new MovementSystem();
+        for (final int count : ENTITY_COUNTS) {
+            final Random random = new Random(0);
+            final double side = Math.cbrt(count * VOLUME_PER_ENTITY);
+            final EntityStore store = new EntityStore();
+            final EntityIndex index = new EntityIndex(store, EntityIndex.CELL_SIZE);
+            final Entity[] entities = new Entity[count];
+            for (int i = 0; i < count; i++) {
+                entities[i] = new Critter(store, new Vector(random.nextDouble() * side,
+                        random.nextDouble() * side, random.nextDouble() * side),
+                        new Vector(random.nextDouble() - 0.5, 0, random.nextDouble() - 0.5));
+            }
+            final double[] points = new double[3 * QUERIES];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = random.nextDouble() * side;
+            }
+            final Entity[] dest = new Entity[count];
+            final Entity[] neighbors = new Entity[NEIGHBORS];
+            final double[] squaredDistances = new double[NEIGHBORS];
+
+            Benchmark.run("move all and refile, " + count + " entities", WARMUP_RUNS, RUNS, () ->
+                    store.runParallel(EntityStore.Archetype.ANIMAL, movement, INTERVAL));
+            Benchmark.run("setPos one tenth and refile, " + count + " entities", WARMUP_RUNS, RUNS, () -> {
+                for (int i = 0; i < count; i += 10) {
+                    entities[i].changePos(0.01, 0, 0);
+                }
+                index.withinRadius(0, 0, 0, 0, dest);
+            });
+            Benchmark.run(QUERIES + " radius queries, " + count + " entities", WARMUP_RUNS, RUNS, () -> {
+                for (int i = 0; i < points.length; i += 3) {
+                    index.withinRadius(points[i], points[i + 1], points[i + 2], QUERY_RADIUS, dest);
+                }
+            });
+            Benchmark.run(QUERIES + " box queries, " + count + " entities", WARMUP_RUNS, RUNS, () -> {
+                for (int i = 0; i < points.length; i += 3) {
+                    index.withinBox(points[i] - QUERY_RADIUS, points[i + 1] - QUERY_RADIUS,
+                            points[i + 2] - QUERY_RADIUS, points[i] + QUERY_RADIUS, points[i + 1] + QUERY_RADIUS,
+                            points[i + 2] + QUERY_RADIUS, dest);
+                }
+            });
+            Benchmark.run(QUERIES + " " + NEIGHBORS + "-nearest queries, " + count + " entities", WARMUP_RUNS,
+                    RUNS, () -> {
+                for (int i = 0; i < points.length; i += 3) {
+                    index.nearest(points[i], points[i + 1], points[i + 2], side, neighbors, squaredDistances);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.entities.Animal;
+import com.sheaconlon.realcraft.entities.EntityStore;
+import com.sheaconlon.realcraft.entities.Entity;
+import com.sheaconlon.realcraft.entities.MovementSystem;
+import com.sheaconlon.realcraft.renderer.Vertex;
+import com.sheaconlon.realcraft.simulator.Hitbox;
+import com.sheaconlon.realcraft.utilities.Vector;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A tester of entity indices.
+ */
+class EntityIndexTester {
+    private static final int ENTITY_COUNT = 2_000;
+    private static final double WORLD_SIZE = 100;
+    private static final double CELL_SIZE = 4;
+    private static final int QUERIES = 50;
+
+    private class DummyAnimal extends Animal {
+        public DummyAnimal(final EntityStore store, final Vector pos, final Vector velocity) {
+            super(store, EntityStore.Archetype.ANIMAL, pos, velocity, 0, 0);
+        }
+
+        @Override
+        public List<Vertex> getVertices() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Hitbox> getHitboxes() {
+            return Collections.emptyList();
+        }
+    }
+
+    private List<Entity> populate(final EntityStore store, final Random random) {
+        final List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            entities.add(new DummyAnimal(store, randomPoint(random),
+                    new Vector(random.nextDouble() - 0.5, 0, random.nextDouble() - 0.5)));
+        }
+        return entities;
+    }
+
+    private static Vector randomPoint(final Random random) {
+        return new Vector((random.nextDouble() - 0.5) * WORLD_SIZE, (random.nextDouble() - 0.5) * WORLD_SIZE,
+                (random.nextDouble() - 0.5) * WORLD_SIZE);
+    }
+
+    private static double squaredDistance(final Entity entity, final Vector point) {
+        final double dx = entity.getPosX() - point.getX();
+        final double dy = entity.getPosY() - point.getY();
+        final double dz = entity.getPosZ() - point.getZ();
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Check radius, box, and nearest-neighbor queries against brute force.
+     */
+    private void checkQueries(final EntityIndex index, final List<Entity> entities, final Random random) {
+        final Entity[] dest = new Entity[ENTITY_COUNT];
+        for (int q = 0; q < QUERIES; q++) {
+            final Vector point = randomPoint(random);
+            final double radius = random.nextDouble() * 20;
+            final Set<Entity> expected = new HashSet<>();
+            for (final Entity entity : entities) {
+                if (squaredDistance(entity, point) <= radius * radius) {
+                    expected.add(entity);
+                }
+            }
+            final int count = index.withinRadius(point.getX(), point.getY(), point.getZ(), radius, dest);
+            assertEquals(expected, new HashSet<>(Arrays.asList(dest).subList(0, count)));
+
+            final Set<Entity> expectedInBox = new HashSet<>();
+            for (final Entity entity : entities) {
+                if (Math.abs(entity.getPosX() - point.getX()) <= radius
+                        && Math.abs(entity.getPosY() - point.getY()) <= radius
+                        && Math.abs(entity.getPosZ() - point.getZ()) <= radius) {
+                    expectedInBox.add(entity);
+                }
+            }
+            final int boxCount = index.withinBox(point.getX() - radius, point.getY() - radius,
+                    point.getZ() - radius, point.getX() + radius, point.getY() + radius, point.getZ() + radius, dest);
+            assertEquals(expectedInBox, new HashSet<>(Arrays.asList(dest).subList(0, boxCount)));
+
+            final Entity[] nearest = new Entity[5];
+            final double[] squaredDistances = new double[5];
+            final int nearestCount = index.nearest(point.getX(), point.getY(), point.getZ(), Double.MAX_VALUE,
+                    nearest, squaredDistances);
+            final List<Entity> sorted = new ArrayList<>(entities);
+            sorted.sort((a, b) -> Double.compare(squaredDistance(a, point), squaredDistance(b, point)));
+            assertEquals(nearest.length, nearestCount);
+            for (int i = 0; i < nearest.length; i++) {
+                assertEquals(squaredDistance(sorted.get(i), point), squaredDistances[i], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void testQueriesMatchBruteForce() {
+        final Random random = new Random(0);
+        final EntityStore store = new EntityStore();
+        final EntityIndex index = new EntityIndex(store, CELL_SIZE);
+        checkQueries(index, populate(store, random), random);
+    }
+
+    @Test
+    void testTracksMoves() {
+        final Random random = new Random(1);
+        final EntityStore store = new EntityStore();
+        final List<Entity> entities = populate(store, random);
+        // Created after the entities, so it must pick up the ones already in the store.
+        final EntityIndex index = new EntityIndex(store, CELL_SIZE);
+        for (final Entity entity : entities) {
+            entity.changePos(randomPoint(random));
+        }
+        checkQueries(index, entities, random);
+        store.runParallel(EntityStore.Archetype.ANIMAL, new MovementSystem(), 30);
+        checkQueries(index, entities, random);
+    }
+
+    @Test
+    void testTracksDestroy() {
+        final Random random = new Random(2);
+        final EntityStore store = new EntityStore();
+        final EntityIndex index = new EntityIndex(store, CELL_SIZE);
+        final List<Entity> entities = populate(store, random);
+        for (int i = 0; i < ENTITY_COUNT / 2; i++) {
+            entities.remove(entities.size() - 1).destroy();
+        }
+        assertEquals(ENTITY_COUNT / 2, index.size());
+        for (int i = 0; i < ENTITY_COUNT / 4; i++) {
+            entities.add(new DummyAnimal(store, randomPoint(random), Vector.ZERO));
+        }
+        assertEquals(entities.size(), index.size());
+        checkQueries(index, entities, random);
+    }
+
+    @Test
+    void testNearestWithinMaxDistance() {
+        final EntityStore store = new EntityStore();
+        final EntityIndex index = new EntityIndex(store, CELL_SIZE);
+        final Entity near = new DummyAnimal(store, new Vector(1, 0, 0), Vector.ZERO);
+        new DummyAnimal(store, new Vector(50, 0, 0), Vector.ZERO);
+        final Entity[] dest = new Entity[3];
+        final double[] squaredDistances = new double[3];
+        assertEquals(1, index.nearest(0, 0, 0, 10, dest, squaredDistances));
+        assertEquals(near, dest[0]);
+        assertEquals(1, squaredDistances[0]);
+    }
+}
@@ -0,0 +1,206 @@
+package com.sheaconlon.realcraft.world;
+
+import com.sheaconlon.realcraft.generator.Generator;
+import com.sheaconlon.realcraft.metrics.Histogram;
+import com.sheaconlon.realcraft.renderer.CameraPath;
+import com.sheaconlon.realcraft.renderer.Renderer;
+import com.sheaconlon.realcraft.utilities.LongHashMap;
+import com.sheaconlon.realcraft.utilities.LongHashSet;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A benchmark of how much pop-in predictive prefetching saves, against the work it wastes.
+ *
+ * Replays flights against a real generator, ticked at its own frequency with its own per-tick budget, serving the
+ * player's ticket and then the prefetch planner's. Reports the fraction of chunks which were not ready when they came
+ * within the player's radius, how many chunks were prefetched, how many of those the player never reached, the
+ * planner's own hit rate, and how long generator ticks took, with prefetching off and at several horizons. Time on the
+ * flight is simulated, so results do not depend on how fast the machine generates chunks, only on the budget.
+ *
+ * Usage: {@code PrefetchBenchmark [--chunks-per-tick N] [--path FILE [--frame-interval SECONDS]]}. Flies paths
+ * recorded with {@code Launcher --record-camera} if given, or else a walk, a fast flight and a tight circle.
+ */
+public class PrefetchBenchmark {
+    /**
+     * The default time between the frames of a path, which is that between camera path recorder ticks. In seconds.
+     */
+    private static final double DEFAULT_FRAME_INTERVAL = 1.0 / 60;
+
+    /**
+     * The time between generator ticks, and between planner ticks, as in the game. In seconds.
+     */
+    private static final double GENERATOR_INTERVAL = 0.25;
+    private static final double PLANNER_INTERVAL = 0.1;
+
+    private static final int RADIUS = Renderer.RENDER_DISTANCE;
+    private static final double[] HORIZONS = {0, 1, 2, 4};
+
+    /**
+     * The length of the built-in flights. In seconds.
+     */
+    private static final double FLIGHT_DURATION = 60;
+
+    /**
+     * Far from the chunks used by other benchmarks. In blocks.
+     */
+    private static final double CENTER_X = 16_000 * Chunk.SIZE;
+    private static final double CENTER_Y = 2 * Chunk.SIZE;
+    private static final double CENTER_Z = 16_000 * Chunk.SIZE;
+
+    public static void main(final String[] args) throws IOException {
+        int chunksPerTick = Generator.CHUNKS_PER_TICK;
+        double frameInterval = DEFAULT_FRAME_INTERVAL;
+        String pathFile = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--chunks-per-tick") && i + 1 < args.length) {
+                chunksPerTick = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--path") && i + 1 < args.length) {
+                pathFile = args[++i];
+            } else if (args[i].equals("--frame-interval") && i + 1 < args.length) {
+                frameInterval = Double.parseDouble(args[++i]);
+            } else {
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        final Map<String, CameraPath> flights = new LinkedHashMap<>();
+        if (pathFile != null) {
+            flights.put(pathFile, CameraPath.load(Paths.get(pathFile)));
+        } else {
+            flights.put("walk, 2 blocks/s", flight(2_000, 2, frameInterval));
+            flights.put("flight, 20 blocks/s", flight(2_000, 20, frameInterval));
+            flights.put("circle, 15 blocks/s", flight(60, 15, frameInterval));
+        }
+        final int maxFrames = pathFile == null ? (int)(FLIGHT_DURATION / frameInterval) : Integer.MAX_VALUE;
+        System.out.printf("generating %d chunks per tick, %.0f chunks/s, radius %d%n", chunksPerTick,
+                chunksPerTick / GENERATOR_INTERVAL, RADIUS);
+        for (final Map.Entry<String, CameraPath> flight : flights.entrySet()) {
+            final int frames = Math.min(maxFrames, flight.getValue().size());
+            System.out.println(flight.getKey() + ", " + frames + " frames:");
+            for (final double horizon : HORIZONS) {
+                fly(flight.getValue(), frames, frameInterval, chunksPerTick, horizon);
+            }
+        }
+    }
+
+    /**
+     * @return An orbit at some speed. Only its first {@link #FLIGHT_DURATION} seconds are flown.
+     */
+    private static CameraPath flight(final double radius, final double speed, final double frameInterval) {
+        return CameraPath.orbit(CENTER_X, CENTER_Y, CENTER_Z, radius,
+                (int)Math.round(2 * Math.PI * radius / speed / frameInterval));
+    }
+
+    /**
+     * Replay the first frames of a flight against a new generator, print a line of results, and unload the chunks it
+     * generated.
+     * @param horizon The planner's horizon, or 0 for no prefetching. In seconds.
+     */
+    private static void fly(final CameraPath path, final int frames, final double frameInterval,
+                            final int chunksPerTick, final double horizon) {
+        final ChunkTickets tickets = new ChunkTickets();
+        final PrefetchPlanner planner = horizon == 0 ? null : new PrefetchPlanner(tickets, horizon, RADIUS);
+        final Generator generator = new Generator();
+        final Histogram generatorTicks = new Histogram();
+        final ChunkOffsets offsets = ChunkOffsets.forRadius(RADIUS);
+        final LongHashSet ready = new LongHashSet();
+        final LongHashSet reached = new LongHashSet();
+        final LongHashSet prefetched = new LongHashSet();
+        final LongHashMap<Double> missing = new LongHashMap<>();
+        long entered = 0;
+        long poppedIn = 0;
+        double missingTime = 0;
+
+        // Chunks no ticket covers any longer are unloaded, as the game's chunk cache does, to bound the memory used.
+        tickets.addListener(pos -> {
+            generator.unload(pos);
+            ready.remove(pos);
+        });
+
+        // The player starts with the chunks around it ready.
+        long playerChunk = ChunkPos.containing(path.getX(0), path.getY(0), path.getZ(0));
+        final ChunkTickets.Ticket playerTicket = tickets.add(ChunkTickets.Type.PLAYER, ChunkTickets.Level.GENERATE,
+                playerChunk, RADIUS);
+        generator.generateTicketed(tickets);
+        for (int i = 0; i < offsets.size(); i++) {
+            ready.add(offsets.apply(playerChunk, i));
+            reached.add(offsets.apply(playerChunk, i));
+        }
+        double nextGeneratorTick = 0;
+        double nextPlannerTick = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            final double time = frame * frameInterval;
+            final long chunk = ChunkPos.containing(path.getX(frame), path.getY(frame), path.getZ(frame));
+            if (chunk != playerChunk) {
+                playerChunk = chunk;
+                for (int i = 0; i < offsets.size(); i++) {
+                    final long pos = offsets.apply(playerChunk, i);
+                    if (reached.add(pos)) {
+                        entered++;
+                        if (!ready.contains(pos)) {
+                            poppedIn++;
+                            missing.put(pos, time);
+                        }
+                    }
+                }
+            }
+            if (planner != null && time >= nextPlannerTick) {
+                planner.observe(path.getX(frame), path.getY(frame), path.getZ(frame), path.getOrient(frame),
+                        PLANNER_INTERVAL);
+                nextPlannerTick += PLANNER_INTERVAL;
+            }
+            if (time >= nextGeneratorTick) {
+                tickets.move(playerTicket, playerChunk);
+                final long start = System.nanoTime();
+                generator.generateTicketed(tickets, chunksPerTick);
+                generatorTicks.record(System.nanoTime() - start);
+                for (final long pos : generator.getGenerated()) {
+                    if (ready.add(pos)) {
+                        if (!isWithin(playerChunk, pos)) {
+                            prefetched.add(pos);
+                        }
+                        final Double missingSince = missing.remove(pos);
+                        if (missingSince != null) {
+                            missingTime += time - missingSince;
+                        }
+                    }
+                }
+                nextGeneratorTick += GENERATOR_INTERVAL;
+            }
+        }
+        for (final long pos : generator.getGenerated()) {
+            generator.unload(pos);
+        }
+
+        final long[] prefetchedPositions = new long[prefetched.size()];
+        prefetched.toArray(prefetchedPositions);
+        long unreached = 0;
+        for (final long pos : prefetchedPositions) {
+            if (!reached.contains(pos)) {
+                unreached++;
+            }
+        }
+        System.out.printf("  %-14s popped in %5.1f%% of %5d chunks reached, missing for %5.2f s on average, "
+                + "%5d prefetched, %5d never reached", horizon == 0 ? "no prefetching"
+                : String.format("horizon %.0f s", horizon), 100.0 * poppedIn / Math.max(1, entered), entered,
+                missingTime / Math.max(1, poppedIn - missing.size()), prefetched.size(), unreached);
+        if (planner != null) {
+            System.out.printf(", planner hit rate %5.1f%%", 100 * planner.getHitRate());
+        }
+        System.out.printf(", generator tick p50 %.2f ms, max %.2f ms%n", generatorTicks.getP50(),
+                generatorTicks.getMax());
+    }
+
+    /**
+     * @return Whether a chunk is within the player's radius of the player's chunk.
+     */
+    private static boolean isWithin(final long playerChunk, final long pos) {
+        final int dx = BlockPos.getX(pos) - BlockPos.getX(playerChunk);
+        final int dy = BlockPos.getY(pos) - BlockPos.getY(playerChunk);
+        final int dz = BlockPos.getZ(pos) - BlockPos.getZ(playerChunk);
+        return dx * dx + dy * dy + dz * dz <= RADIUS * RADIUS;
+    }
+}
@@ -0,0 +1,104 @@
+package com.sheaconlon.realcraft.world;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A tester of the prefetch planner.
+ */
+class PrefetchPlannerTester {
+    private static final double HORIZON = 2;
+    private static final int RADIUS = 2;
+    private static final double INTERVAL = 0.1;
+
+    /**
+     * A point far from the chunks used by other tests, in blocks.
+     */
+    private static final double START_X = 14_000 * Chunk.SIZE;
+    private static final double START_Y = 2 * Chunk.SIZE;
+    private static final double START_Z = -14_000 * Chunk.SIZE;
+
+    /**
+     * A speed fast enough to reach a new chunk well within the horizon. In blocks per second.
+     */
+    private static final double SPEED = 20;
+
+    @Test
+    void testStillPlayerPrefetchesNothing() {
+        final ChunkTickets tickets = new ChunkTickets();
+        final PrefetchPlanner planner = new PrefetchPlanner(tickets, HORIZON, RADIUS);
+        for (int i = 0; i < 20; i++) {
+            planner.observe(START_X, START_Y, START_Z, 0, INTERVAL);
+        }
+        assertEquals(0, tickets.getTicketCount(ChunkTickets.Type.PREFETCH));
+    }
+
+    @Test
+    void testPrefetchesAheadOfMovingPlayer() {
+        final ChunkTickets tickets = new ChunkTickets();
+        final PrefetchPlanner planner = new PrefetchPlanner(tickets, HORIZON, RADIUS);
+        // Fly along the x-axis, facing along it.
+        for (int i = 0; i < 20; i++) {
+            planner.observe(START_X + SPEED * INTERVAL * i, START_Y, START_Z, 0, INTERVAL);
+        }
+        final double x = START_X + SPEED * INTERVAL * 19;
+        assertTrue(tickets.getTicketCount(ChunkTickets.Type.PREFETCH) > 0);
+        final long ahead = ChunkPos.containing(x + SPEED * HORIZON, START_Y, START_Z);
+        final long behind = ChunkPos.containing(x - SPEED * HORIZON, START_Y, START_Z);
+        assertTrue(tickets.isTicketed(ahead, ChunkTickets.Level.MESH));
+        assertFalse(tickets.isTicketed(behind, ChunkTickets.Level.GENERATE));
+    }
+
+    @Test
+    void testPredictsTurningPlayerAlongArc() {
+        final PrefetchPlanner planner = new PrefetchPlanner(new ChunkTickets(), HORIZON, RADIUS);
+        // Circle at a quarter turn per second, facing along the circle as orbiting camera paths do.
+        final double turnRate = Math.PI / 2;
+        final double radius = SPEED / turnRate;
+        double angle = 0;
+        for (int i = 0; i < 40; i++) {
+            angle = turnRate * INTERVAL * i;
+            planner.observe(START_X + radius * Math.cos(angle), START_Y, START_Z - radius * Math.sin(angle),
+                    angle + Math.PI / 2, INTERVAL);
+        }
+        final double[] predicted = new double[3];
+        planner.predict(1, predicted);
+        final double expectedX = START_X + radius * Math.cos(angle + turnRate);
+        final double expectedZ = START_Z - radius * Math.sin(angle + turnRate);
+        // Within a block, where a straight line would be off by several.
+        assertEquals(expectedX, predicted[0], 1);
+        assertEquals(expectedZ, predicted[2], 1);
+    }
+
+    @Test
+    void testScoresGuesses() {
+        final ChunkTickets tickets = new ChunkTickets();
+        final PrefetchPlanner planner = new PrefetchPlanner(tickets, HORIZON, RADIUS);
+        double x = START_X;
+        for (int i = 0; i < 100; i++) {
+            x += SPEED * INTERVAL;
+            planner.observe(x, START_Y, START_Z, 0, INTERVAL);
+        }
+        assertTrue(planner.getHits() > 0);
+        assertEquals(0, planner.getMisses());
+        assertEquals(1, planner.getHitRate(), 1e-9);
+
+        // Turn back, so that the chunks prefetched ahead are never reached.
+        for (int i = 0; i < 100; i++) {
+            x -= SPEED * INTERVAL;
+            planner.observe(x, START_Y, START_Z, Math.PI, INTERVAL);
+        }
+        assertTrue(planner.getMisses() > 0);
+        assertTrue(planner.getHitRate() < 1);
+        assertTrue(planner.getHorizon() < HORIZON);
+    }
+
+    @Test
+    void testRejectsNonpositiveHorizon() {
+        assertThrows(IllegalArgumentException.class, () -> new PrefetchPlanner(new ChunkTickets(), 0, RADIUS));
+    }
+}